@@ -0,0 +1,86 @@
+package com.getmegraphs;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic inputs shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+    static final String CLUSTER = "bench-cluster";
+    static final String DB_INSTANCE = "bench-db";
+    static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private BenchmarkFixtures() {
+    }
+
+    static CloudWatchChartService chartService(CloudWatchClient client) throws Exception {
+        // Per-chart INFO logging would otherwise be part of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        // An empty rolling window store passes every request through to the client
+        RollingWindowStore rollingWindowStore = new RollingWindowStore(new SimpleMeterRegistry(), List.of(Duration.ofDays(7)), 120, 60_000);
+        CloudWatchClientRegistry clientRegistry = new CloudWatchClientRegistry(client, null, new StandardEnvironment(), "", List.of());
+        ArtifactSink artifactSink = new LocalArtifactSink();
+        ReportStore reportStore = new ReportStore(new ObjectMapper().findAndRegisterModules(), artifactSink, new SimpleMeterRegistry(),
+                Files.createTempDirectory("bench-reports").toString(), Duration.ofDays(7), DataSize.ofGigabytes(5), 120);
+        CloudWatchChartService service = new CloudWatchChartService(
+                new CloudWatchFetcher(clientRegistry, new SimpleMeterRegistry(), rollingWindowStore, 16, 400, 25, 50, 6, 200, 10000),
+                rollingWindowStore, reportStore, artifactSink, clientRegistry, new ChartRenderCache(new SimpleMeterRegistry(), 64), new SimpleMeterRegistry());
+        // Normally injected from chart.timezone
+        Field timezone = CloudWatchChartService.class.getDeclaredField("chartTimezone");
+        timezone.setAccessible(true);
+        timezone.set(service, "UTC");
+        return service;
+    }
+
+    static String end(int windowHours) {
+        return START.plusSeconds(windowHours * 3600L).toString();
+    }
+
+    /**
+     * {@code seriesCount} minute-resolution series of {@code points} noisy sine values.
+     */
+    static TimeSeriesCollection dataset(int seriesCount, int points) {
+        Random random = new Random(42);
+        TimeSeriesCollection dataset = new TimeSeriesCollection();
+        for (int s = 0; s < seriesCount; s++) {
+            TimeSeries series = new TimeSeries("series-" + s);
+            for (int i = 0; i < points; i++) {
+                double value = 50 + 20 * Math.sin((i + s * 7) / 30.0) + random.nextGaussian() * 5;
+                series.add(new Millisecond(Date.from(START.plusSeconds(i * 60L))), value);
+            }
+            dataset.addSeries(series);
+        }
+        return dataset;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
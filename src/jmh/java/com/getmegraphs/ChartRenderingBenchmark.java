@@ -0,0 +1,69 @@
+package com.getmegraphs;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chart styling + PNG encoding, and the average subtitle, at increasing series and
+ * point counts (60 = 1h, 1440 = 1 day, 10080 = 1 week of minute data).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChartRenderingBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int seriesCount;
+
+    @Param({"60", "1440", "10080"})
+    private int points;
+
+    private CloudWatchChartService chartService;
+    private TimeSeriesCollection dataset;
+    private XYPlot plot;
+
+    @Setup
+    public void setUp() throws Exception {
+        chartService = BenchmarkFixtures.chartService(new SyntheticCloudWatchClient(1, 1, 1));
+        dataset = BenchmarkFixtures.dataset(seriesCount, points);
+        plot = newChart().getXYPlot();
+    }
+
+    @Benchmark
+    public byte[] enhanceChartAndEncodePng() throws IOException {
+        JFreeChart chart = chartService.enhanceChart(newChart(), "Benchmark", "Value", true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChartUtils.writeChartAsPNG(out, chart, 1200, 600);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String calculateAverageText() {
+        return chartService.calculateAverageText(plot);
+    }
+
+    private JFreeChart newChart() {
+        return ChartFactory.createTimeSeriesChart("Benchmark", "Time", "Value", dataset, true, false, false);
+    }
+}
@@ -0,0 +1,71 @@
+package com.getmegraphs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-topic lag aggregation (discovery, SUM(SEARCH(...)) totals and chart) and the
+ * metrics_vector_data.json builder, over a synthetic cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MetricsAggregationBenchmark {
+
+    @Param({"5", "20"})
+    private int topics;
+
+    @Param({"3"})
+    private int consumerGroupsPerTopic;
+
+    @Param({"1", "24"})
+    private int windowHours;
+
+    private CloudWatchChartService chartService;
+    private Path workDir;
+    private String start;
+    private String end;
+
+    @Setup
+    public void setUp() throws Exception {
+        chartService = BenchmarkFixtures.chartService(
+                new SyntheticCloudWatchClient(topics, consumerGroupsPerTopic, 3));
+        workDir = Files.createTempDirectory("metrics-aggregation-benchmark-");
+        start = BenchmarkFixtures.START.toString();
+        end = BenchmarkFixtures.end(windowHours);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public void kafkaLagByTopics() throws Exception {
+        chartService.plotAndSaveKafkaLagByTopics(BenchmarkFixtures.CLUSTER, start, end, "Consumer Lag",
+                workDir.resolve("kafka_lag_by_topics.png").toString());
+    }
+
+    @Benchmark
+    public void structuredMetricsData() {
+        chartService.createStructuredMetricsData(workDir.toString(), BenchmarkFixtures.CLUSTER,
+                BenchmarkFixtures.DB_INSTANCE, start, end);
+    }
+}
@@ -0,0 +1,90 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF assembly from a prepared report directory (the ten charts of a full report) and
+ * PDF text extraction used as the AI upload fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfReportBenchmark {
+
+    private static final List<String> REPORT_CHARTS = List.of(
+            "rds_cpu_utilization.png", "rds_freeable_memory.png", "rds_database_connections.png",
+            "rds_read_iops.png", "rds_write_iops.png", "kafka_consumer_lag_all_groups.png",
+            "kafka_cpu_usage_by_broker.png", "kafka_nft_dashboard_lag.png", "kafka_lag_limited.png",
+            "kafka_time_lag.png");
+
+    @Param({"1", "168"})
+    private int windowHours;
+
+    private CloudWatchChartService chartService;
+    private AIAnalysisService aiAnalysisService;
+    private Path reportDir;
+    private File pdfFile;
+    private String start;
+    private String end;
+
+    @Setup
+    public void setUp() throws Exception {
+        chartService = BenchmarkFixtures.chartService(new SyntheticCloudWatchClient(3, 3, 3));
+        // Only the PDF helpers are exercised; none of the AI collaborators are used
+        aiAnalysisService = new AIAnalysisService(null, null, null, null, null, new SimpleMeterRegistry());
+
+        start = BenchmarkFixtures.START.toString();
+        end = BenchmarkFixtures.end(windowHours);
+        reportDir = Files.createTempDirectory("pdf-report-benchmark-");
+        for (String chart : REPORT_CHARTS) {
+            chartService.plotAndSaveMetric(BenchmarkFixtures.DB_INSTANCE, "CPUUtilization", start, end,
+                    "CPU Utilization (%)", reportDir.resolve(chart).toString());
+        }
+        Files.writeString(reportDir.resolve("report_summary.txt"), "Comprehensive CloudWatch Report\n"
+                + "Time Range: " + start + " to " + end + "\n");
+
+        pdfFile = reportDir.resolve("extract.pdf").toFile();
+        assemble(pdfFile);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.deleteRecursively(reportDir);
+    }
+
+    @Benchmark
+    public void assemblePdfReport() throws Exception {
+        assemble(reportDir.resolve("report.pdf").toFile());
+    }
+
+    @Benchmark
+    public String extractTextFromPdf() throws Exception {
+        return aiAnalysisService.extractTextFromPDF(pdfFile);
+    }
+
+    private void assemble(File target) throws Exception {
+        chartService.assemblePDFReport(reportDir.toString(), target.getPath(), BenchmarkFixtures.CLUSTER,
+                BenchmarkFixtures.DB_INSTANCE, start, end);
+    }
+}
@@ -0,0 +1,86 @@
+package com.getmegraphs;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory CloudWatch client backed by {@link SyntheticMetricSource}, so benchmarks
+ * measure the service's own work and not the network.
+ */
+class SyntheticCloudWatchClient implements CloudWatchClient {
+
+    private final SyntheticMetricSource source;
+
+    SyntheticCloudWatchClient(int topics, int consumerGroupsPerTopic, int brokers) {
+        this.source = new SyntheticMetricSource(topics, consumerGroupsPerTopic, brokers);
+    }
+
+    @Override
+    public GetMetricStatisticsResponse getMetricStatistics(GetMetricStatisticsRequest request) {
+        return GetMetricStatisticsResponse.builder()
+                .label(request.metricName())
+                .datapoints(source.datapoints(request.metricName(), request.dimensions(),
+                        request.startTime(), request.endTime(), request.period()))
+                .build();
+    }
+
+    @Override
+    public GetMetricDataResponse getMetricData(GetMetricDataRequest request) {
+        List<MetricDataResult> results = new ArrayList<>();
+        for (MetricDataQuery query : request.metricDataQueries()) {
+            if (Boolean.FALSE.equals(query.returnData())) {
+                continue;
+            }
+            if (query.metricStat() != null) {
+                List<Datapoint> datapoints = source.datapoints(query.metricStat().metric().metricName(),
+                        query.metricStat().metric().dimensions(), request.startTime(), request.endTime(), query.metricStat().period());
+                results.add(result(query.id(), query.label() != null ? query.label() : query.metricStat().metric().metricName(),
+                        datapoints, query.metricStat().stat()));
+            } else {
+                int period = query.period() != null ? query.period() : 60;
+                for (Map.Entry<String, List<Datapoint>> series : source.expression(query.expression(), query.label(),
+                        request.startTime(), request.endTime(), period).entrySet()) {
+                    results.add(result(query.id(), series.getKey(), series.getValue(), "Average"));
+                }
+            }
+        }
+        return GetMetricDataResponse.builder().metricDataResults(results).build();
+    }
+
+    @Override
+    public ListMetricsResponse listMetrics(ListMetricsRequest request) {
+        return ListMetricsResponse.builder()
+                .metrics(source.listMetrics(request.namespace(), request.metricName(), request.dimensions()))
+                .build();
+    }
+
+    private static MetricDataResult result(String id, String label, List<Datapoint> datapoints, String stat) {
+        return MetricDataResult.builder()
+                .id(id)
+                .label(label)
+                .timestamps(datapoints.stream().map(Datapoint::timestamp).toList())
+                .values(datapoints.stream().map(datapoint -> SyntheticMetricSource.statistic(datapoint, stat)).toList())
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
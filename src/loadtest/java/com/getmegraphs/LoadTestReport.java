@@ -0,0 +1,43 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Writes load test results as a Markdown table and as JSON.
+ */
+final class LoadTestReport {
+
+    private LoadTestReport() {
+    }
+
+    static void write(List<LoadTestRunner.ScenarioResult> results, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+
+        StringBuilder markdown = new StringBuilder()
+                .append("# Load Test Report\n\n")
+                .append("Generated at: ").append(Instant.now()).append("\n")
+                .append("JVM: ").append(System.getProperty("java.version"))
+                .append(", ").append(Runtime.getRuntime().availableProcessors()).append(" CPUs, max heap ")
+                .append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append(" MB\n\n")
+                .append("| Endpoint | Topics | Window (h) | Users | Requests | Errors | p50 (ms) | p95 (ms) | p99 (ms) | Max (ms) | Req/s | Heap max (MB) | Heap avg (MB) | GCs | GC time (ms) |\n")
+                .append("|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|\n");
+        for (LoadTestRunner.ScenarioResult result : results) {
+            markdown.append(String.format("| %s | %s | %d | %d | %d | %d | %.1f | %.1f | %.1f | %.1f | %.2f | %.0f | %.0f | %d | %.0f |\n",
+                    result.endpoint(), result.clusterTopics(), result.windowHours(), result.concurrency(),
+                    result.requests(), result.errors(), result.p50Ms(), result.p95Ms(), result.p99Ms(), result.maxMs(),
+                    result.throughputPerSecond(), result.heapMaxMb(), result.heapAverageMb(),
+                    result.gcCount(), result.gcTimeMs()));
+        }
+        Files.writeString(outputDir.resolve("loadtest-report.md"), markdown.toString());
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(outputDir.resolve("loadtest-report.json").toFile(), results);
+    }
+}
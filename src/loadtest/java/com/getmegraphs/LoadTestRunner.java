@@ -0,0 +1,323 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the HTTP endpoints.
+ *
+ * By default every cluster size gets its own service instance started in this JVM with
+ * the {@code standin} profile, so no AWS or AI access is needed; {@code --target=URL}
+ * drives an already running service instead. For every (endpoint, window, concurrency)
+ * scenario, closed-loop virtual users send requests for a fixed duration while heap
+ * and GC are sampled from the service's actuator. Latency percentiles, throughput,
+ * errors and heap/GC figures are written to {@code loadtest-report.md} and
+ * {@code loadtest-report.json}.
+ *
+ * Options (--key=value, lists comma separated): endpoints, windows (hours),
+ * concurrency, topics (stand-in cluster size), duration-seconds, warmup-requests,
+ * request-timeout-seconds, distinct-windows, target, output. Any other option
+ * (e.g. --standin.ai.completion-delay-ms=500) is passed to the started service.
+ */
+public class LoadTestRunner {
+
+    private static final Instant WINDOW_END = Instant.parse("2024-01-08T00:00:00Z");
+    private static final String CLUSTER = "loadtest-cluster";
+    private static final String DB_INSTANCE = "loadtest-db";
+
+    private static final Map<String, String> ENDPOINTS = Map.of(
+            "report", "/cloudwatch/export/comprehensive-report",
+            "pdf", "/cloudwatch/export/comprehensive-pdf-report",
+            "performance", "/analysis/performance-insights",
+            "stability", "/analysis/stability",
+            "multi-profile", "/analysis/multi-profile");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newCachedThreadPool(ExecutorConfig.namedThreadFactory("loadtest-http-")))
+            .build();
+
+    private final Map<String, String> options;
+    private final List<String> serviceArgs;
+
+    LoadTestRunner(Map<String, String> options, List<String> serviceArgs) {
+        this.options = options;
+        this.serviceArgs = serviceArgs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "endpoints", "pdf,stability,multi-profile",
+                "windows", "1,6,24",
+                "concurrency", "1,4,8",
+                "topics", "10,50",
+                "duration-seconds", "30",
+                "warmup-requests", "2",
+                "request-timeout-seconds", "300",
+                "distinct-windows", "true",
+                "output", "."));
+        List<String> serviceArgs = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.startsWith("--") && arg.contains("=") ? arg.substring(2, arg.indexOf('=')) : null;
+            if (key != null && (options.containsKey(key) || "target".equals(key))) {
+                options.put(key, arg.substring(arg.indexOf('=') + 1));
+            } else {
+                serviceArgs.add(arg);
+            }
+        }
+        System.exit(new LoadTestRunner(options, serviceArgs).run());
+    }
+
+    int run() throws Exception {
+        List<ScenarioResult> results = new ArrayList<>();
+        String target = options.get("target");
+        if (target != null) {
+            results.addAll(runScenarios(target, "external"));
+        } else {
+            for (String topics : list("topics")) {
+                try (ConfigurableApplicationContext context = startService(topics)) {
+                    String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                    results.addAll(runScenarios(baseUrl, topics));
+                }
+            }
+        }
+        Path outputDir = Paths.get(options.get("output")).toAbsolutePath();
+        LoadTestReport.write(results, outputDir);
+        System.out.println("Load test report written to " + outputDir.resolve("loadtest-report.md"));
+        return results.stream().anyMatch(result -> result.requests() == 0) ? 1 : 0;
+    }
+
+    private ConfigurableApplicationContext startService(String topics) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--standin.cluster.topics=" + topics,
+                "--logging.level.root=WARN"));
+        args.addAll(serviceArgs);
+        SpringApplication application = new SpringApplication(GetMeGraphsApplication.class);
+        application.setAdditionalProfiles("standin");
+        System.out.println("Starting service with stand-ins (" + topics + " topics)");
+        return application.run(args.toArray(String[]::new));
+    }
+
+    private List<ScenarioResult> runScenarios(String baseUrl, String clusterSize) throws Exception {
+        List<ScenarioResult> results = new ArrayList<>();
+        for (String endpoint : list("endpoints")) {
+            if (!ENDPOINTS.containsKey(endpoint)) {
+                throw new IllegalArgumentException("Unknown endpoint '" + endpoint + "', expected one of " + ENDPOINTS.keySet());
+            }
+            for (String window : list("windows")) {
+                for (String concurrency : list("concurrency")) {
+                    ScenarioResult result = runScenario(baseUrl, clusterSize, endpoint,
+                            Integer.parseInt(window), Integer.parseInt(concurrency));
+                    System.out.println(result.summary());
+                    results.add(result);
+                }
+            }
+        }
+        return results;
+    }
+
+    private ScenarioResult runScenario(String baseUrl, String clusterSize, String endpoint,
+                                       int windowHours, int concurrency) throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        for (int i = 0; i < Integer.parseInt(options.get("warmup-requests")); i++) {
+            send(baseUrl, endpoint, windowHours, sequence.getAndIncrement());
+        }
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+        HeapSampler heapSampler = new HeapSampler(baseUrl);
+        double[] gcBefore = gcPause(baseUrl);
+        heapSampler.start();
+
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration-seconds")));
+        long startNanos = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int user = 0; user < concurrency; user++) {
+            Thread virtualUser = new Thread(() -> {
+                try {
+                    while (System.nanoTime() - startNanos < durationNanos) {
+                        long requestStart = System.nanoTime();
+                        boolean ok = send(baseUrl, endpoint, windowHours, sequence.getAndIncrement());
+                        latencies.add(System.nanoTime() - requestStart);
+                        if (!ok) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-user-" + user);
+            virtualUser.setDaemon(true);
+            virtualUser.start();
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        heapSampler.stop();
+        double[] gcAfter = gcPause(baseUrl);
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new ScenarioResult(endpoint, clusterSize, windowHours, concurrency, sorted.length, errors.get(),
+                percentileMillis(sorted, 50), percentileMillis(sorted, 95), percentileMillis(sorted, 99),
+                sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0,
+                sorted.length / elapsedSeconds,
+                heapSampler.maxMb(), heapSampler.averageMb(),
+                (long) (gcAfter[0] - gcBefore[0]), (gcAfter[1] - gcBefore[1]) * 1000);
+    }
+
+    /**
+     * One request; true when the endpoint answered without an error. Windows are shifted
+     * per request when distinct-windows is set, so repeated requests are not identical.
+     */
+    private boolean send(String baseUrl, String endpoint, int windowHours, int sequence) {
+        Instant end = Boolean.parseBoolean(options.get("distinct-windows")) ? WINDOW_END.minusSeconds(60L * sequence) : WINDOW_END;
+        Instant start = end.minusSeconds(windowHours * 3600L);
+        StringBuilder query = new StringBuilder()
+                .append("clusterName=").append(encode(CLUSTER))
+                .append("&dbInstanceIdentifier=").append(encode(DB_INSTANCE))
+                .append("&startTime=").append(encode(start.toString()))
+                .append("&endTime=").append(encode(end.toString()));
+        if ("multi-profile".equals(endpoint)) {
+            query.append("&analysisTypes=performance,anomalies,capacity");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + ENDPOINTS.get(endpoint) + "?" + query))
+                .timeout(Duration.ofSeconds(Long.parseLong(options.get("request-timeout-seconds"))))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            // Controllers report failures as a 200 with an "Error: ..." body
+            return response.statusCode() == 200 && !response.body().startsWith("Error");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * [count, total seconds] of GC pauses so far, from the service's actuator.
+     */
+    private double[] gcPause(String baseUrl) {
+        JsonNode metric = actuatorMetric(baseUrl, "jvm.gc.pause", null);
+        double count = 0;
+        double totalTime = 0;
+        if (metric != null) {
+            for (JsonNode measurement : metric.path("measurements")) {
+                switch (measurement.path("statistic").asText()) {
+                    case "COUNT" -> count = measurement.path("value").asDouble();
+                    case "TOTAL_TIME" -> totalTime = measurement.path("value").asDouble();
+                    default -> {
+                    }
+                }
+            }
+        }
+        return new double[]{count, totalTime};
+    }
+
+    private JsonNode actuatorMetric(String baseUrl, String name, String tag) {
+        String uri = baseUrl + "/actuator/metrics/" + name + (tag != null ? "?tag=" + encode(tag) : "");
+        try {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static double percentileMillis(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private List<String> list(String option) {
+        return Arrays.stream(options.get(option).split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Polls heap usage of the service while a scenario runs.
+     */
+    private class HeapSampler {
+
+        private final String baseUrl;
+        private final AtomicLong maxBytes = new AtomicLong();
+        private final AtomicLong totalBytes = new AtomicLong();
+        private final AtomicInteger samples = new AtomicInteger();
+        private ScheduledExecutorService scheduler;
+
+        HeapSampler(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        void start() {
+            scheduler = Executors.newSingleThreadScheduledExecutor(ExecutorConfig.namedThreadFactory("loadtest-heap-"));
+            scheduler.scheduleAtFixedRate(() -> {
+                JsonNode metric = actuatorMetric(baseUrl, "jvm.memory.used", "area:heap");
+                if (metric != null) {
+                    long used = (long) metric.path("measurements").path(0).path("value").asDouble();
+                    maxBytes.accumulateAndGet(used, Math::max);
+                    totalBytes.addAndGet(used);
+                    samples.incrementAndGet();
+                }
+            }, 0, 250, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        double maxMb() {
+            return maxBytes.get() / (1024.0 * 1024.0);
+        }
+
+        double averageMb() {
+            return samples.get() > 0 ? totalBytes.get() / (double) samples.get() / (1024.0 * 1024.0) : 0;
+        }
+    }
+
+    record ScenarioResult(String endpoint, String clusterTopics, int windowHours, int concurrency,
+                          int requests, int errors, double p50Ms, double p95Ms, double p99Ms, double maxMs,
+                          double throughputPerSecond, double heapMaxMb, double heapAverageMb,
+                          long gcCount, double gcTimeMs) {
+
+        String summary() {
+            return String.format("%-14s topics=%-8s window=%3dh users=%2d  requests=%5d errors=%4d  p50=%8.1fms p95=%8.1fms p99=%8.1fms  %6.2f req/s  heap max=%6.0fMB  gc=%d (%.0fms)",
+                    endpoint, clusterTopics, windowHours, concurrency, requests, errors, p50Ms, p95Ms, p99Ms,
+                    throughputPerSecond, heapMaxMb, gcCount, gcTimeMs);
+        }
+    }
+}
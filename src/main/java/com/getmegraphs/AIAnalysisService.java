@@ -2,8 +2,11 @@ package com.getmegraphs;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -13,16 +16,21 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,8 +39,62 @@ public class AIAnalysisService {
     
     private static final Logger logger = LoggerFactory.getLogger(AIAnalysisService.class);
     
+    private static final String VISUALIZATION_CLASS_NAME = "StabilityAnalysisVisualization";
+    
+    private static final String VECTOR_DATA_PROMPT_ROLE = "act as a CloudWatch metrics and data analysis expert who can perform detailed numerical analysis on time-series data";
+    
+    private static final String PERFORMANCE_PROMPT = """
+        Analyze this CloudWatch comprehensive report and provide insights on:
+        1. Performance bottlenecks identified from the metrics
+        2. Resource utilization patterns and recommendations
+        3. Kafka consumer lag analysis and potential issues
+        4. Database performance insights from RDS metrics
+        5. Overall system health assessment
+        6. Actionable recommendations for optimization
+        
+        Please provide a structured analysis with clear sections for each area.
+        """;
+
+    private static final String STABILITY_PROMPT = """
+        Analyze this CloudWatch comprehensive report for stability run. Please examine the visual charts and graphs in the PDF file and provide detailed analysis:
+        
+        1. **DB CPU Utilization Analysis:**
+           - Expected range: 40% - 50%
+           - Look at the CPU utilization chart and identify any values outside this range
+           - Report specific timestamps and values for any spikes above 50% or drops below 40%
+           - Analyze trends and patterns over the time period
+        
+        2. **DB Connections Analysis:**
+           - Expected range: 2,000 - 2,500 connections
+           - Examine the database connections chart for values outside this range
+           - Report specific timestamps and values for any spikes above 2,500 or drops below 2,000
+           - Look for any sudden changes or irregular patterns
+        
+        3. **Overall Stability Assessment:**
+           - Identify any correlation between CPU and connection patterns
+           - Note any periods of instability or concerning trends
+           - Provide specific recommendations based on the observed data
+        
+        Please provide actual values, timestamps, and detailed observations from the charts.
+        """;
+
+    private static final String ANOMALY_NARRATIVE_PROMPT = """
+        The JSON below lists anomalies already detected in CloudWatch metrics (RDS CPU,
+        connections and IOPS, Kafka consumer lag), with their time ranges, peak and expected
+        values, scores and severities. Do not search for further anomalies. Write a short
+        narrative for an on-call engineer:
+        1. What happened and when, grouping anomalies that overlap in time
+        2. Likely relationships between the affected metrics
+        3. Which anomalies need attention first and what to check
+        """;
+    
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final VectorDataChunker vectorDataChunker;
+    private final ExecutorService aiAnalysisExecutor;
+    private final GeneratedCodeRunner generatedCodeRunner;
+    private final GeneratedCodeWorkerPool generatedCodeWorkerPool;
+    private final MeterRegistry meterRegistry;
     
     @Value("${ai.analysis.username}")
     private String aiUsername;
@@ -61,9 +123,32 @@ public class AIAnalysisService {
     @Value("${ai.analysis.try-pdf-upload:true}")
     private boolean tryPdfUpload;
     
-    public AIAnalysisService(RestTemplate restTemplate) {
+    @Value("${ai.analysis.chunking.enabled:true}")
+    private boolean chunkingEnabled;
+    
+    // Tokens kept free in every request for the instructions and the model's answer
+    @Value("${ai.analysis.chunking.reserved-tokens:16000}")
+    private int reservedTokens;
+    
+    @Value("${ai.analysis.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+    
+    @Value("${ai.analysis.timeout-seconds:300}")
+    private long timeoutSeconds;
+    
+    public AIAnalysisService(RestTemplate restTemplate,
+                             VectorDataChunker vectorDataChunker,
+                             @Qualifier("aiAnalysisExecutor") ExecutorService aiAnalysisExecutor,
+                             GeneratedCodeRunner generatedCodeRunner,
+                             GeneratedCodeWorkerPool generatedCodeWorkerPool,
+                             MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
         this.objectMapper = new ObjectMapper();
+        this.vectorDataChunker = vectorDataChunker;
+        this.aiAnalysisExecutor = aiAnalysisExecutor;
+        this.generatedCodeRunner = generatedCodeRunner;
+        this.generatedCodeWorkerPool = generatedCodeWorkerPool;
+        this.meterRegistry = meterRegistry;
     }
     
     public String analyzePDFReport(String pdfPath, String analysisPrompt) throws Exception {
@@ -88,12 +173,8 @@ public class AIAnalysisService {
         // Create the payload for AI analysis with text content
         Map<String, Object> payload = createTextAnalysisPayload(pdfFile.getName(), pdfTextContent, analysisPrompt);
         
-        // Send a message to AI API
-        String taskId = sendMessageToAI(payload);
-        
-        // Poll for completion and get a result
-
-        return pollForCompletion(taskId);
+        // Send a message to AI API and wait for the result
+        return runTask(payload);
     }
     
     private String analyzePDFReportWithBase64(String pdfPath, String analysisPrompt) throws Exception {
@@ -109,15 +190,11 @@ public class AIAnalysisService {
         // Create the payload for AI analysis with base64 PDF
         Map<String, Object> payload = createPDFAnalysisPayload(pdfFile.getName(), base64PDF, analysisPrompt);
         
-        // Send a message to AI API
-        String taskId = sendMessageToAI(payload);
-        
-        // Poll for completion and get a result
-
-        return pollForCompletion(taskId);
+        // Send a message to AI API and wait for the result
+        return runTask(payload);
     }
     
-    private String extractTextFromPDF(File pdfFile) throws IOException {
+    String extractTextFromPDF(File pdfFile) throws IOException {
         try (PDDocument document = PDDocument.load(pdfFile)) {
             PDFTextStripper pdfStripper = new PDFTextStripper();
             return pdfStripper.getText(document);
@@ -128,47 +205,116 @@ public class AIAnalysisService {
         return analyzePDFReport(pdfPath, customPrompt);
     }
     
-    public String analyzeReportForPerformanceInsights(String pdfPath) throws Exception {
-        String performancePrompt = """
-            Analyze this CloudWatch comprehensive report and provide insights on:
-            1. Performance bottlenecks identified from the metrics
-            2. Resource utilization patterns and recommendations
-            3. Kafka consumer lag analysis and potential issues
-            4. Database performance insights from RDS metrics
-            5. Overall system health assessment
-            6. Actionable recommendations for optimization
-            
-            Please provide a structured analysis with clear sections for each area.
-            """;
+    /**
+     * Runs several prompt profiles against the same PDF report concurrently and returns
+     * the results keyed by analysis type, in request order. The PDF is read (and its text
+     * extracted, if the base64 upload fails) only once and shared by all profiles.
+     */
+    public Map<String, String> analyzeReportForProfiles(String pdfPath, List<String> analysisTypes, String customPrompt) throws Exception {
+        File pdfFile = new File(pdfPath);
+        if (!pdfFile.exists()) {
+            throw new RuntimeException("PDF file not found: " + pdfPath);
+        }
+        
+        // Every type is resolved before any task is submitted, so an unknown one fails the request up front
+        Map<String, String> prompts = resolvePrompts(analysisTypes, customPrompt);
+        
+        String base64PDF = tryPdfUpload ? Base64.getEncoder().encodeToString(Files.readAllBytes(pdfFile.toPath())) : null;
+        Map<String, String> extractedText = new ConcurrentHashMap<>();
+        
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, String> profile : prompts.entrySet()) {
+            String type = profile.getKey();
+            String prompt = profile.getValue();
+            futures.put(type, CompletableFuture.supplyAsync(() -> {
+                try {
+                    if (base64PDF != null) {
+                        try {
+                            Map<String, Object> payload = createPDFAnalysisPayload(pdfFile.getName(), base64PDF, prompt);
+                            return runTask(payload);
+                        } catch (Exception e) {
+                            logger.warn("PDF base64 upload failed for {} analysis, falling back to text extraction: {}", type, e.getMessage());
+                        }
+                    }
+                    String pdfTextContent = extractedText.computeIfAbsent(pdfPath, path -> {
+                        try {
+                            return extractTextFromPDF(pdfFile);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    Map<String, Object> payload = createTextAnalysisPayload(pdfFile.getName(), pdfTextContent, prompt);
+                    return runTask(payload);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, aiAnalysisExecutor));
+        }
         
-        return analyzePDFReport(pdfPath, performancePrompt);
+        Map<String, String> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<String>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                logger.error("{} analysis failed for report: {}", entry.getKey(), pdfPath, e.getCause());
+                results.put(entry.getKey(), "Error: " + e.getCause().getMessage());
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Checks that every type is a prompt profile of {@link #analyzeReportForProfiles}, so a
+     * request can be rejected before its PDF is built.
+     *
+     * @throws IllegalArgumentException for an unknown type, or custom without a prompt
+     */
+    public void checkAnalysisTypes(List<String> analysisTypes, String customPrompt) {
+        resolvePrompts(analysisTypes, customPrompt);
+    }
+
+    private Map<String, String> resolvePrompts(List<String> analysisTypes, String customPrompt) {
+        Map<String, String> prompts = new LinkedHashMap<>();
+        for (String analysisType : analysisTypes) {
+            String type = analysisType.trim().toLowerCase();
+            if (!type.isEmpty() && !prompts.containsKey(type)) {
+                prompts.put(type, promptFor(type, customPrompt));
+            }
+        }
+        return prompts;
+    }
+
+    private String promptFor(String analysisType, String customPrompt) {
+        switch (analysisType) {
+            case "performance":
+                return PERFORMANCE_PROMPT;
+            case "stability":
+                return STABILITY_PROMPT;
+            case "custom":
+                if (customPrompt == null || customPrompt.trim().isEmpty()) {
+                    throw new IllegalArgumentException("customPrompt is required for custom analysis");
+                }
+                return customPrompt;
+            default:
+                throw new IllegalArgumentException("Unknown analysis type: " + analysisType
+                        + " (expected performance, stability or custom)");
+        }
+    }
+    
+    public String analyzeReportForPerformanceInsights(String pdfPath) throws Exception {
+        return analyzePDFReport(pdfPath, PERFORMANCE_PROMPT);
     }
 
     public String analyzeReportForStabilityPrompt(String pdfPath) throws Exception {
-        String stabilityPrompt = """
-            Analyze this CloudWatch comprehensive report for stability run. Please examine the visual charts and graphs in the PDF file and provide detailed analysis:
-            
-            1. **DB CPU Utilization Analysis:**
-               - Expected range: 40% - 50%
-               - Look at the CPU utilization chart and identify any values outside this range
-               - Report specific timestamps and values for any spikes above 50% or drops below 40%
-               - Analyze trends and patterns over the time period
-            
-            2. **DB Connections Analysis:**
-               - Expected range: 2,000 - 2,500 connections
-               - Examine the database connections chart for values outside this range
-               - Report specific timestamps and values for any spikes above 2,500 or drops below 2,000
-               - Look for any sudden changes or irregular patterns
-            
-            3. **Overall Stability Assessment:**
-               - Identify any correlation between CPU and connection patterns
-               - Note any periods of instability or concerning trends
-               - Provide specific recommendations based on the observed data
-            
-            Please provide actual values, timestamps, and detailed observations from the charts.
-            """;
-        
-        return analyzePDFReport(pdfPath, stabilityPrompt);
+        return analyzePDFReport(pdfPath, STABILITY_PROMPT);
+    }
+
+    /**
+     * Narrates anomalies found by the {@link AnomalyDetectionService}; the detection itself
+     * is done locally.
+     */
+    public String narrateAnomalies(String anomaliesJson) throws Exception {
+        return analyzeVectorData(anomaliesJson, ANOMALY_NARRATIVE_PROMPT);
     }
 
     public String analyzeVectorDataForStability(String vectorData) throws Exception {
@@ -207,12 +353,12 @@ public class AIAnalysisService {
             6. **Java Visualization Program - REQUIRED:**
                - MUST generate a complete Java program using JFreeChart that can plot all the metrics from the JSON data
                - Include complete main() method and all necessary methods
-               - Parse the VECTOR_DATA JSON string and create time-series charts for CPU, connections, memory, and Kafka lag
+               - Read the metrics from the provided METRICS_DATA constant (a Jackson JsonNode with the same structure as the JSON above, loaded at run time) and create time-series charts for CPU, connections, memory, and Kafka lag; do not embed the JSON data in the program
                - Add red markers for values outside expected ranges (CPU >50% or <40%, connections outside 2000-2500)
-               - Create separate PNG files for each metric type (cpu_analysis.png, connections_analysis.png, memory_analysis.png, kafka_lag_analysis.png)
+               - Create separate PNG files for each metric type (cpu_analysis.png, connections_analysis.png, memory_analysis.png, kafka_lag_analysis.png) inside the directory given by the provided OUTPUT_DIR constant, e.g. new File(OUTPUT_DIR, "cpu_analysis.png")
+               - The class is named StabilityAnalysisVisualization; the METRICS_DATA and OUTPUT_DIR constants and common JFreeChart/Jackson imports are provided, do not redeclare them
                - Include proper chart titles, axis labels, legends, and annotations for anomalies
                - Use JFreeChart TimeSeriesCollection and save charts using ChartUtils.saveChartAsPNG()
-               - Make the program executable with the embedded JSON data
                - Include exception handling and console output for generated files
             
             Please provide detailed analysis with specific values, timestamps, and statistical insights from the raw data, followed by the complete Java visualization program enclosed in ```java code blocks.
@@ -248,168 +394,223 @@ public class AIAnalysisService {
 
             if (javaCode != null && !javaCode.isEmpty()) {
                 // Create the Java source file
-                String javaFileName = reportDir + "/StabilityAnalysisVisualization.java";
-
-                // Add imports and JSON data to the Java code
-                String completeJavaCode = "// AI-Generated Stability Analysis Visualization Program\n" +
-                                        "// Generated from CloudWatch metrics vector data\n\n" +
-                                        "import org.jfree.chart.*;\n" +
-                                        "import org.jfree.chart.plot.*;\n" +
-                                        "import org.jfree.data.time.*;\n" +
-                                        "import org.jfree.data.xy.*;\n" +
-                                        "import com.fasterxml.jackson.databind.*;\n" +
-                                        "import java.io.*;\n" +
-                                        "import java.text.*;\n" +
-                                        "import java.util.*;\n\n" +
-                                        "public class StabilityAnalysisVisualization {\n" +
-                                        "    \n" +
-                                        "    // Vector data from CloudWatch\n" +
-                                        "    private static final String VECTOR_DATA = \"\"\"" +
-                                        vectorData.replace("\"", "\\\"") + "\"\"\";\n\n";
-
-                        logger.info("Java visualization program saved: {}", javaFileName);
-                logger.info("Metrics JSON data saved: {}", completeJavaCode);
-
-                logger.warn("No Java code found in AI response to extract");
-                System.out.println("Java visualization program saved: " + javaFileName);
-
-                // Also save just the vector data as a separate JSON file for convenience
-                String jsonFileName = reportDir + "/metrics_data.json";
+                String javaFileName = reportDir + "/" + VISUALIZATION_CLASS_NAME + ".java";
+
+                // Add imports, output directory and JSON data around the generated class body
+                StringBuilder completeJavaCode = new StringBuilder();
+                completeJavaCode.append("// AI-Generated Stability Analysis Visualization Program\n")
+                        .append("// Generated from CloudWatch metrics vector data\n\n")
+                        .append("import org.jfree.chart.*;\n")
+                        .append("import org.jfree.chart.plot.*;\n")
+                        .append("import org.jfree.data.time.*;\n")
+                        .append("import org.jfree.data.xy.*;\n")
+                        .append("import com.fasterxml.jackson.databind.*;\n")
+                        .append("import com.getmegraphs.GeneratedProgramContext;\n")
+                        .append("import java.io.*;\n")
+                        .append("import java.text.*;\n")
+                        .append("import java.util.*;\n");
+                for (String importLine : extractImports(javaCode)) {
+                    completeJavaCode.append(importLine).append("\n");
+                }
+                completeJavaCode.append("\npublic class ").append(VISUALIZATION_CLASS_NAME).append(" {\n")
+                        .append("    \n")
+                        .append("    // Directory where the charts must be saved\n")
+                        .append("    private static final String OUTPUT_DIR = GeneratedProgramContext.outputDir();\n\n")
+                        .append("    // Vector data from CloudWatch, read from metrics_data.json when the program runs\n")
+                        .append("    private static final JsonNode METRICS_DATA = GeneratedProgramContext.loadMetricsData();\n\n")
+                        .append(extractClassBody(javaCode)).append("\n")
+                        .append("}\n");
+
+                java.nio.file.Files.writeString(java.nio.file.Paths.get(javaFileName), completeJavaCode.toString());
+                logger.info("Java visualization program saved: {}", javaFileName);
+
+                // The program reads the vector data from this file at run time
+                String jsonFileName = reportDir + "/" + GeneratedProgramContext.METRICS_DATA_FILE;
                 java.nio.file.Files.writeString(java.nio.file.Paths.get(jsonFileName), vectorData);
-            logger.info("Compiling Java visualization program...");
+                logger.info("Metrics JSON data saved: {}", jsonFileName);
 
-                // Compile and run the Java program
-                compileAndRunJavaCode(javaFileName, reportDir);
+                // Compile and run the Java program in process
+                compileAndRunJavaCode(completeJavaCode.toString(), vectorData, reportDir);
 
             } else {
-                System.out.println("No Java code found in AI response to extract");
+                logger.warn("No Java code found in AI response to extract");
             }
 
         } catch (Exception e) {
-            System.err.println("Error extracting and saving Java code: " + e.getMessage());
+            logger.error("Error extracting and saving Java code: {}", e.getMessage(), e);
         }
     }
 
-    private void compileAndRunJavaCode(String javaFileName, String reportDir) {
-        try {
-                logger.info("Running Java visualization program...");
-                logger.info("Java program compiled successfully");
-            // Get the classpath with JFreeChart and Jackson libraries
-            String classpath = getClasspath();
-
-            // Compile the Java file
-            ProcessBuilder compileBuilder = new ProcessBuilder(
-                "javac",
-                "-cp", classpath,
-                javaFileName
-            );
-                    logger.info("Generated charts should be in the report directory");
-                    logger.info("Java visualization program executed successfully");
-
-            Process compileProcess = compileBuilder.start();
-            int compileExitCode = compileProcess.waitFor();
-
-            // Read compilation output
-            String compileOutput = readProcessOutput(compileProcess);
-
-            if (compileExitCode == 0) {
-                System.out.println("Java program compiled successfully");
-
-                // Run the compiled Java program
-                System.out.println("Running Java visualization program...");
-
-                ProcessBuilder runBuilder = new ProcessBuilder(
-                    "java",
-                    "-cp", classpath + File.pathSeparator + reportDir,
-                    "StabilityAnalysisVisualization"
-                );
-                runBuilder.directory(new File(reportDir));
-                runBuilder.redirectErrorStream(true);
+    /**
+     * Import statements of the generated code; the class itself is rebuilt around its body.
+     */
+    private List<String> extractImports(String javaCode) {
+        List<String> imports = new ArrayList<>();
+        for (String line : javaCode.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("import ") && trimmed.endsWith(";")) {
+                imports.add(trimmed);
+            }
+        }
+        return imports;
+    }
 
-                Process runProcess = runBuilder.start();
-                int runExitCode = runProcess.waitFor();
+    /**
+     * The AI may answer with either a complete class or only its members; in the first
+     * case keep just what is between the outermost class braces.
+     */
+    private String extractClassBody(String javaCode) {
+        java.util.regex.Matcher matcher = java.util.regex.Pattern
+                .compile("(?m)^\\s*(public\\s+)?(final\\s+)?class\\s+\\w+[^{]*\\{")
+                .matcher(javaCode);
+        if (matcher.find()) {
+            int bodyEnd = javaCode.lastIndexOf('}');
+            if (bodyEnd > matcher.end()) {
+                return javaCode.substring(matcher.end(), bodyEnd);
+            }
+        }
+        StringBuilder body = new StringBuilder();
+        for (String line : javaCode.split("\\R")) {
+            String trimmed = line.trim();
+            if (!trimmed.startsWith("import ") && !trimmed.startsWith("package ")) {
+                body.append(line).append("\n");
+            }
+        }
+        return body.toString();
+    }
 
-                String runOutput = readProcessOutput(runProcess);
+    private void compileAndRunJavaCode(String javaSource, String vectorData, String reportDir) {
+        try {
+            logger.info("Compiling Java visualization program...");
+            Map<String, byte[]> classes = generatedCodeRunner.compile(VISUALIZATION_CLASS_NAME, javaSource);
+            logger.info("Java program compiled successfully");
 
-                if (runExitCode == 0) {
-                    System.out.println("Java visualization program executed successfully");
-                    System.out.println("Generated charts should be in the report directory");
-                } else {
-                    System.err.println("Error running Java program. Exit code: " + runExitCode);
-                    System.err.println("Output: " + runOutput);
-                }
+            // Keep the bytecode next to the source for auditing
+            for (Map.Entry<String, byte[]> compiledClass : classes.entrySet()) {
+                java.nio.file.Files.write(java.nio.file.Paths.get(reportDir, compiledClass.getKey() + ".class"), compiledClass.getValue());
+            }
 
+            logger.info("Running Java visualization program...");
+            if (generatedCodeWorkerPool.isEnabled()) {
+                // Untrusted code runs in a separate, pre-warmed worker JVM without the service's credentials
+                generatedCodeWorkerPool.run(VISUALIZATION_CLASS_NAME, classes, vectorData, reportDir);
             } else {
-                System.err.println("Error compiling Java program. Exit code: " + compileExitCode);
-                System.err.println("Compilation output: " + compileOutput);
+                generatedCodeRunner.run(VISUALIZATION_CLASS_NAME, classes, reportDir);
             }
+            logger.info("Java visualization program executed successfully");
+            logger.info("Generated charts should be in the report directory");
 
         } catch (Exception e) {
-            System.err.println("Error compiling/running Java code: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    private String getClasspath() {
-        // Get the current classpath and add JFreeChart libraries
-        String currentClasspath = System.getProperty("java.class.path");
-        return currentClasspath;
-    }
-    
-    private String readProcessOutput(Process process) throws IOException {
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
+            logger.error("Error compiling/running Java code: {}", e.getMessage(), e);
         }
-        return output.toString();
     }
     
     public String analyzeVectorData(String vectorData, String analysisPrompt) throws Exception {
+        int chunkBudget = chunkTokenBudget(analysisPrompt);
+        if (chunkingEnabled && vectorDataChunker.estimateTokens(vectorData) > chunkBudget) {
+            return analyzeVectorDataInChunks(vectorData, analysisPrompt, chunkBudget);
+        }
+        
         // Create the payload for AI analysis with vector data
         Map<String, Object> payload = createVectorDataAnalysisPayload(vectorData, analysisPrompt);
         
-        // Send message to AI API
-        String taskId = sendMessageToAI(payload);
+        // Send message to AI API and wait for the result
+        return runTask(payload);
+    }
+    
+    /**
+     * Map-reduce analysis for vector data that does not fit in a single request:
+     * every chunk is analyzed as its own AI task (concurrently), then a final reduce
+     * task merges the partial results into one answer to the original prompt.
+     */
+    private String analyzeVectorDataInChunks(String vectorData, String analysisPrompt, int chunkBudget) throws Exception {
+        List<String> chunks = vectorDataChunker.split(vectorData, chunkBudget);
+        logger.info("Vector data exceeds token budget of {}, analyzing {} chunks concurrently", chunkBudget, chunks.size());
+        
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            Map<String, Object> payload = createVectorDataChunkPayload(chunks.get(i), analysisPrompt, i + 1, chunks.size());
+            futures.add(submitAsync(payload));
+        }
         
-        // Poll for completion and get result
-        String result = pollForCompletion(taskId);
+        List<String> partials = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                partials.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                failed++;
+                logger.error("AI analysis failed for chunk {} of {}", i + 1, chunks.size(), e.getCause());
+                partials.add("Analysis of data part " + (i + 1) + " is unavailable: " + e.getCause().getMessage());
+            }
+        }
+        if (failed == chunks.size()) {
+            throw new RuntimeException("AI analysis failed for all " + chunks.size() + " vector data chunks");
+        }
         
-        return result;
+        return reducePartialAnalyses(partials, analysisPrompt, chunkBudget);
     }
     
-    public String analyzeReportForAnomalies(String pdfPath) throws Exception {
-        String anomalyPrompt = """
-            Analyze this CloudWatch comprehensive report and identify:
-            1. Any unusual spikes or drops in metrics
-            2. Patterns that deviate from normal behavior
-            3. Potential system anomalies or issues
-            4. Correlation between different metrics that might indicate problems
-            5. Time periods with suspicious activity
-            6. Recommendations for investigation or immediate action
-            
-            Focus on identifying actionable anomalies that require attention.
-            """;
+    private String reducePartialAnalyses(List<String> partials, String analysisPrompt, int chunkBudget) throws Exception {
+        String joined = String.join("\n\n", partials);
+        if (vectorDataChunker.estimateTokens(joined) <= chunkBudget || partials.size() <= 1) {
+            Map<String, Object> payload = createReducePayload(partials, analysisPrompt, true);
+            return runTask(payload);
+        }
         
-        return analyzePDFReport(pdfPath, anomalyPrompt);
+        // Partial results are still too large for one request: merge them in batches first
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int batchTokens = 0;
+        for (String partial : partials) {
+            int tokens = vectorDataChunker.estimateTokens(partial);
+            if (!batch.isEmpty() && batchTokens + tokens > chunkBudget) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(partial);
+            batchTokens += tokens;
+        }
+        batches.add(batch);
+        
+        if (batches.size() == partials.size()) {
+            // Every partial fills a request on its own; merging further cannot shrink the input
+            Map<String, Object> payload = createReducePayload(partials, analysisPrompt, true);
+            return runTask(payload);
+        }
+        
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (List<String> group : batches) {
+            futures.add(submitAsync(createReducePayload(group, analysisPrompt, false)));
+        }
+        List<String> merged = new ArrayList<>();
+        for (CompletableFuture<String> future : futures) {
+            try {
+                merged.add(future.join());
+            } catch (CompletionException e) {
+                throw new RuntimeException("AI analysis failed while merging partial results: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return reducePartialAnalyses(merged, analysisPrompt, chunkBudget);
     }
     
-    public String analyzeReportForCapacityPlanning(String pdfPath) throws Exception {
-        String capacityPrompt = """
-            Analyze this CloudWatch comprehensive report for capacity planning:
-            1. Current resource utilization trends
-            2. Growth patterns in metrics over time
-            3. Projected resource needs based on current trends
-            4. Recommendations for scaling (up/down/out)
-            5. Cost optimization opportunities
-            6. Timeline for capacity adjustments
-            
-            Provide specific recommendations with estimated timelines and priorities.
-            """;
-        
-        return analyzePDFReport(pdfPath, capacityPrompt);
+    private CompletableFuture<String> submitAsync(Map<String, Object> payload) {
+        long queuedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            meterRegistry.timer("ai.executor.queue").record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                return runTask(payload);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, aiAnalysisExecutor);
+    }
+    
+    private int chunkTokenBudget(String analysisPrompt) {
+        // Leave room for the prompt itself plus the fixed instruction messages
+        int budget = maxTokens - reservedTokens - vectorDataChunker.estimateTokens(analysisPrompt);
+        return Math.max(budget, 1000);
     }
     
     private Map<String, Object> createPDFAnalysisPayload(String fileName, String base64PDF, String analysisPrompt) {
@@ -515,13 +716,6 @@ public class AIAnalysisService {
     }
     
     private Map<String, Object> createVectorDataAnalysisPayload(String vectorData, String analysisPrompt) {
-        Map<String, Object> payload = new HashMap<>();
-        
-        payload.put("username", aiUsername);
-        payload.put("apikey", aiApiKey);
-        payload.put("conv_id", "");
-        payload.put("application", application);
-        
         // Create messages array with vector data content
         List<Map<String, String>> messages = new ArrayList<>();
         
@@ -540,11 +734,57 @@ public class AIAnalysisService {
         formatMessage.put("user", "Please provide detailed numerical analysis based on the vector data. Include specific values, timestamps, statistical calculations, and data-driven insights. Use the exact timestamps and values from the data points.");
         messages.add(formatMessage);
         
+        return createBasePayload(messages, VECTOR_DATA_PROMPT_ROLE);
+    }
+    
+    private Map<String, Object> createVectorDataChunkPayload(String chunkData, String analysisPrompt, int chunkIndex, int chunkCount) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        
+        Map<String, String> dataMessage = new HashMap<>();
+        dataMessage.put("user", "Here is part " + chunkIndex + " of " + chunkCount + " of a CloudWatch metrics vector data set in structured JSON format. The data was split by metric and, for long windows, by time slice; the other parts are analyzed separately:\n\n" + chunkData);
+        messages.add(dataMessage);
+        
+        Map<String, String> analysisMessage = new HashMap<>();
+        analysisMessage.put("user", "The full analysis request is below. Analyze ONLY the metrics in this part and report the findings relevant to the request (specific values, timestamps, out-of-range periods, min/max/average, trends). Do not write an overall conclusion and do not generate any code; your findings will be merged with the other parts.\n\n" + analysisPrompt);
+        messages.add(analysisMessage);
+        
+        return createBasePayload(messages, VECTOR_DATA_PROMPT_ROLE);
+    }
+    
+    private Map<String, Object> createReducePayload(List<String> partialAnalyses, String analysisPrompt, boolean finalReduce) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        
+        StringBuilder partials = new StringBuilder();
+        for (int i = 0; i < partialAnalyses.size(); i++) {
+            partials.append("=== PARTIAL ANALYSIS ").append(i + 1).append(" ===\n").append(partialAnalyses.get(i)).append("\n\n");
+        }
+        Map<String, String> dataMessage = new HashMap<>();
+        dataMessage.put("user", "The CloudWatch metrics vector data was too large for a single request, so it was analyzed in parts. Here are the partial analyses:\n\n" + partials);
+        messages.add(dataMessage);
+        
+        Map<String, String> analysisMessage = new HashMap<>();
+        if (finalReduce) {
+            analysisMessage.put("user", "Combine the partial analyses into one complete answer to the following request. Merge findings for the same metric, keep the exact values and timestamps, and resolve any overlaps between time slices:\n\n" + analysisPrompt);
+        } else {
+            analysisMessage.put("user", "Merge these partial analyses into a single, more compact partial analysis. Keep every specific value, timestamp and out-of-range period; do not write final recommendations or code. The original request was:\n\n" + analysisPrompt);
+        }
+        messages.add(analysisMessage);
+        
+        return createBasePayload(messages, VECTOR_DATA_PROMPT_ROLE);
+    }
+    
+    private Map<String, Object> createBasePayload(List<Map<String, String>> messages, String promptRole) {
+        Map<String, Object> payload = new HashMap<>();
+        
+        payload.put("username", aiUsername);
+        payload.put("apikey", aiApiKey);
+        payload.put("conv_id", "");
+        payload.put("application", application);
         payload.put("messages", messages);
         payload.put("promptfilename", "");
         payload.put("promptname", "");
         payload.put("prompttype", "system");
-        payload.put("promptrole", "act as a CloudWatch metrics and data analysis expert who can perform detailed numerical analysis on time-series data");
+        payload.put("promptrole", promptRole);
         payload.put("prompttask", "");
         payload.put("promptexamples", "");
         payload.put("promptformat", "");
@@ -565,6 +805,30 @@ public class AIAnalysisService {
         return payload;
     }
     
+    /**
+     * Submits one AI task and waits for its result. Records submit latency
+     * ({@code ai.submit}), the number of status polls ({@code ai.poll.count}) and the
+     * end-to-end duration ({@code ai.task}) tagged with the outcome.
+     */
+    private String runTask(Map<String, Object> payload) throws Exception {
+        Timer.Sample taskSample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Timer.Sample submitSample = Timer.start(meterRegistry);
+            String taskId = sendMessageToAI(payload);
+            submitSample.stop(meterRegistry.timer("ai.submit"));
+            String result = pollForCompletion(taskId);
+            outcome = "success";
+            return result;
+        } finally {
+            taskSample.stop(Timer.builder("ai.task")
+                    .description("AI task duration from submit to result")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+    
     private String sendMessageToAI(Map<String, Object> payload) throws Exception {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -597,47 +861,53 @@ public class AIAnalysisService {
     private String pollForCompletion(String taskId) throws Exception {
         String status = "";
         String result = "";
-        int maxAttempts = 60; // 5 minutes maximum wait time
+        long maxAttempts = Math.max(1, timeoutSeconds * 1000 / pollIntervalMs);
         int attempt = 0;
-        
-        while (attempt < maxAttempts) {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("accept", "application/json");
-            
-            HttpEntity<String> request = new HttpEntity<>(headers);
+        int polls = 0;
+
+        try {
+            while (attempt < maxAttempts) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("accept", "application/json");
             
-            ResponseEntity<String> response = restTemplate.exchange(
-                statusUrl + taskId,
-                HttpMethod.GET,
-                request,
-                String.class
-            );
+                HttpEntity<String> request = new HttpEntity<>(headers);
             
-            if (response.getStatusCode().is2xxSuccessful()) {
-                JsonNode statusResponse = objectMapper.readTree(response.getBody());
-                status = statusResponse.get("status").asText();
+                ResponseEntity<String> response = restTemplate.exchange(
+                    statusUrl + taskId,
+                    HttpMethod.GET,
+                    request,
+                    String.class
+                );
+                polls++;
+
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    JsonNode statusResponse = objectMapper.readTree(response.getBody());
+                    status = statusResponse.get("status").asText();
                 
-                System.out.println("AI Analysis Status for task " + taskId + ": " + status);
+                    logger.debug("AI Analysis Status for task {}: {}", taskId, status);
                 
-                if ("Complete".equals(status)) {
-                    // Extract the result from the response
-                    JsonNode resultNode = statusResponse.get("result");
-                    if (resultNode != null) {
-                        result = resultNode.asText();
-                    } else {
-                        result = "Analysis completed but no result content found.";
+                    if ("Complete".equals(status)) {
+                        // Extract the result from the response
+                        JsonNode resultNode = statusResponse.get("result");
+                        if (resultNode != null) {
+                            result = resultNode.asText();
+                        } else {
+                            result = "Analysis completed but no result content found.";
+                        }
+                        break;
+                    } else if ("Failed".equals(status)) {
+                        throw new RuntimeException("AI analysis failed for task: " + taskId);
                     }
-                    break;
-                } else if ("Failed".equals(status)) {
-                    throw new RuntimeException("AI analysis failed for task: " + taskId);
+                } else {
+                    throw new RuntimeException("Status API call failed with status: " + response.getStatusCode());
                 }
-            } else {
-                throw new RuntimeException("Status API call failed with status: " + response.getStatusCode());
-            }
             
-            // Wait 5 seconds before next poll
-            Thread.sleep(5000);
-            attempt++;
+                // Wait before next poll
+                Thread.sleep(pollIntervalMs);
+                attempt++;
+            }
+        } finally {
+            meterRegistry.summary("ai.poll.count").record(polls);
         }
         
         if (attempt >= maxAttempts) {
@@ -0,0 +1,74 @@
+package com.getmegraphs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket whose rate follows AIMD: every successful call adds a little to the rate
+ * (about {@code additiveIncrease} per second of successful traffic), every throttling
+ * response multiplies it by {@code decreaseFactor}. Bursts of throttles from the same
+ * moment only cut the rate once per second.
+ */
+public class AdaptiveRateLimiter {
+
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minRate;
+    private final double maxRate;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+
+    public AdaptiveRateLimiter(double minRate, double maxRate, double additiveIncrease, double decreaseFactor) {
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.additiveIncrease = additiveIncrease;
+        this.decreaseFactor = decreaseFactor;
+        this.rate = maxRate;
+        this.tokens = maxRate;
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastRefillNanos - DECREASE_COOLDOWN_NANOS;
+    }
+
+    /**
+     * Blocks until the caller may send one request.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes one token (possibly going into debt) and returns how long to wait for it.
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        // Burst capacity is one second of traffic
+        tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefillNanos) / 1e9 * rate);
+        lastRefillNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+    }
+
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + additiveIncrease / rate);
+    }
+
+    public synchronized void onThrottle() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+            rate = Math.max(minRate, rate * decreaseFactor);
+            tokens = Math.min(tokens, 0);
+            lastDecreaseNanos = now;
+        }
+    }
+
+    public synchronized double rate() {
+        return rate;
+    }
+}
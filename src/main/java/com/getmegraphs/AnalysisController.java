@@ -12,17 +12,30 @@ import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @RestController
 @RequestMapping("/analysis")
 public class AnalysisController {
     private static final Logger logger = LoggerFactory.getLogger(AnalysisController.class);
+
+    // Analysis types computed from the series by this service rather than by the AI from the PDF
+    private static final Set<String> LOCAL_ANALYSIS_TYPES = Set.of("anomalies", "capacity");
     
     private final CloudWatchChartService chartService;
     private final AIAnalysisService aiAnalysisService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final CapacityForecastService capacityForecastService;
 
-    public AnalysisController(CloudWatchChartService chartService, AIAnalysisService aiAnalysisService) {
+    public AnalysisController(CloudWatchChartService chartService, AIAnalysisService aiAnalysisService,
+                              AnomalyDetectionService anomalyDetectionService,
+                              CapacityForecastService capacityForecastService) {
         this.chartService = chartService;
         this.aiAnalysisService = aiAnalysisService;
+        this.anomalyDetectionService = anomalyDetectionService;
+        this.capacityForecastService = capacityForecastService;
     }
 
     @PostMapping("/comprehensive-report")
@@ -35,6 +48,17 @@ public class AnalysisController {
             @RequestParam(required = false) String customPrompt   // Required if analysisType is "custom"
     ) {
         try {
+            if ("anomalies".equalsIgnoreCase(analysisType)) {
+                // Detected locally from the series, no PDF needed; the AI only narrates the anomalies found
+                return "=== ANOMALY DETECTION (local) ===\n"
+                        + anomalyDetectionService.detect(clusterName, dbInstanceIdentifier, startTime, endTime, true).toText();
+            }
+            if ("capacity".equalsIgnoreCase(analysisType)) {
+                // Forecast locally from the series history, no PDF needed
+                return "=== CAPACITY FORECAST (local) ===\n"
+                        + capacityForecastService.forecast(clusterName, dbInstanceIdentifier, startTime, endTime, null, false).toText();
+            }
+
             // First generate the comprehensive PDF report
             String pdfPath = chartService.generatePDFReport(clusterName, dbInstanceIdentifier, startTime, endTime);
             
@@ -122,6 +146,63 @@ public class AnalysisController {
         }
     }
 
+    /**
+     * Generates the PDF report once and runs every requested prompt profile against it
+     * concurrently, e.g. analysisTypes=performance,stability,anomalies. Anomalies and
+     * capacity forecasts are computed locally, as for /comprehensive-report; the PDF is
+     * only built if an AI profile is asked for.
+     */
+    @PostMapping("/multi-profile")
+    public String generateMultiProfileAnalysis(
+            @RequestParam(required = false) String clusterName,
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam List<String> analysisTypes, // performance, stability, anomalies, capacity, custom
+            @RequestParam(required = false) String customPrompt   // Required if analysisTypes contains "custom"
+    ) {
+        try {
+            List<String> types = analysisTypes.stream()
+                    .map(type -> type.trim().toLowerCase())
+                    .filter(type -> !type.isEmpty())
+                    .distinct()
+                    .toList();
+            List<String> aiTypes = types.stream().filter(type -> !LOCAL_ANALYSIS_TYPES.contains(type)).toList();
+            // Unknown types fail before anything is built
+            aiAnalysisService.checkAnalysisTypes(aiTypes, customPrompt);
+
+            String pdfPath = aiTypes.isEmpty() ? null : chartService.generatePDFReport(clusterName, dbInstanceIdentifier, startTime, endTime);
+            Map<String, String> aiResults = pdfPath != null
+                    ? aiAnalysisService.analyzeReportForProfiles(pdfPath, aiTypes, customPrompt)
+                    : Map.of();
+
+            StringBuilder response = new StringBuilder(pdfPath != null ? "PDF Report: " + pdfPath + "\n" : "");
+            for (String type : types) {
+                String result = LOCAL_ANALYSIS_TYPES.contains(type)
+                        ? localAnalysis(type, clusterName, dbInstanceIdentifier, startTime, endTime)
+                        : aiResults.get(type);
+                response.append("\n=== ").append(type.toUpperCase())
+                        .append(LOCAL_ANALYSIS_TYPES.contains(type) ? " ANALYSIS (local) ===\n" : " ANALYSIS ===\n")
+                        .append(result).append("\n");
+            }
+            return response.toString();
+        } catch (Exception e) {
+            logger.error("Error generating multi-profile analysis for cluster: {}, DB instance: {}", clusterName, dbInstanceIdentifier, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    private String localAnalysis(String analysisType, String clusterName, String dbInstanceIdentifier,
+                                 String startTime, String endTime) {
+        try {
+            return "capacity".equals(analysisType)
+                    ? capacityForecastService.forecast(clusterName, dbInstanceIdentifier, startTime, endTime, null, false).toText()
+                    : anomalyDetectionService.detect(clusterName, dbInstanceIdentifier, startTime, endTime, true).toText();
+        } catch (Exception e) {
+            logger.error("{} analysis failed for cluster: {}, DB instance: {}", analysisType, clusterName, dbInstanceIdentifier, e);
+            return "Error: " + e.getMessage();
+        }
+    }
 
     @PostMapping("/stability")
     public String generateStabilityAnalysis(
@@ -205,4 +286,50 @@ public class AnalysisController {
                 .body("{\"error\": \"Failed to generate metrics vector data: " + e.getMessage() + "\"}");
         }
     }
+
+    /**
+     * Anomalies in the report metrics, found locally by streaming detectors (EWMA, MAD,
+     * time-of-day baseline, CUSUM). The AI API is only called when narrative=true.
+     */
+    @GetMapping("/anomalies")
+    public ResponseEntity<Object> getAnomalies(
+            @RequestParam(required = false) String clusterName,
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(defaultValue = "false") boolean narrative) {
+        try {
+            return ResponseEntity.ok(anomalyDetectionService.detect(clusterName, dbInstanceIdentifier, startTime, endTime, narrative));
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error detecting anomalies for cluster: {}, DB instance: {}", clusterName, dbInstanceIdentifier, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to detect anomalies: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Capacity forecasts (Holt-Winters / linear trend with prediction intervals) of the RDS
+     * and broker CPU series, with time-to-threshold for the limits in capacity.thresholds.
+     * charts=true also writes one forecast chart per series.
+     */
+    @GetMapping("/capacity-forecast")
+    public ResponseEntity<Object> getCapacityForecast(
+            @RequestParam(required = false) String clusterName,
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(required = false) String horizon, // e.g. 7d, 12h; defaults to capacity.forecast.horizon
+            @RequestParam(defaultValue = "false") boolean charts) {
+        try {
+            return ResponseEntity.ok(capacityForecastService.forecast(clusterName, dbInstanceIdentifier, startTime, endTime, horizon, charts));
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error forecasting capacity for cluster: {}, DB instance: {}", clusterName, dbInstanceIdentifier, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to forecast capacity: " + e.getMessage()));
+        }
+    }
 }
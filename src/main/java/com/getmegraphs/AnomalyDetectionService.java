@@ -0,0 +1,247 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds anomalies in the report metrics locally, in milliseconds, instead of sending the PDF
+ * to the AI API: CPU, connections and IOPS of the DB instance and the lag of the default
+ * consumer groups are run through an {@link AnomalyDetector} each.
+ *
+ * Each series is fetched at 1-minute resolution (coarser once CloudWatch no longer keeps it) together with the preceding
+ * {@code anomaly.seasonal.history-days} days, which only train the detectors, so the
+ * time-of-day baseline and the other detectors are ready when the window starts.
+ * Consecutive anomalous minutes of a series are reported as one anomaly. The AI API is
+ * only called to narrate the result when asked to.
+ */
+@Service
+public class AnomalyDetectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetectionService.class);
+
+    private static final int PERIOD_SECONDS = 60;
+    // GetMetricStatistics returns at most this many datapoints per call
+    private static final int MAX_DATAPOINTS_PER_CALL = 1440;
+
+    private static final String[] RDS_METRICS = {"CPUUtilization", "DatabaseConnections", "ReadIOPS", "WriteIOPS"};
+    private static final String[] KAFKA_LAG_METRICS = {"SumOffsetLag", "EstimatedMaxTimeLag"};
+
+    private final CloudWatchFetcher cloudWatchFetcher;
+    private final AIAnalysisService aiAnalysisService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AnomalyDetector.Settings settings;
+    private final int historyDays;
+    private final int seasonalSlotSeconds;
+
+    public AnomalyDetectionService(CloudWatchFetcher cloudWatchFetcher,
+                                   AIAnalysisService aiAnalysisService,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${anomaly.ewma.alpha:0.1}") double ewmaAlpha,
+                                   @Value("${anomaly.ewma.threshold:4}") double ewmaThreshold,
+                                   @Value("${anomaly.warmup-points:30}") int warmupPoints,
+                                   @Value("${anomaly.mad.window:60}") int madWindow,
+                                   @Value("${anomaly.mad.threshold:5}") double madThreshold,
+                                   @Value("${anomaly.seasonal.history-days:2}") int historyDays,
+                                   @Value("${anomaly.seasonal.slot-minutes:15}") int seasonalSlotMinutes,
+                                   @Value("${anomaly.seasonal.threshold:4}") double seasonalThreshold,
+                                   @Value("${anomaly.cusum.k:1}") double cusumK,
+                                   @Value("${anomaly.cusum.h:8}") double cusumH) {
+        this.cloudWatchFetcher = cloudWatchFetcher;
+        this.aiAnalysisService = aiAnalysisService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.historyDays = historyDays;
+        this.seasonalSlotSeconds = seasonalSlotMinutes * 60;
+        this.settings = new AnomalyDetector.Settings(ewmaAlpha, ewmaThreshold, warmupPoints, madWindow, madThreshold,
+                seasonalSlotSeconds, 0, seasonalThreshold, cusumK, cusumH);
+    }
+
+    public AnomalyReport detect(String clusterName,
+                                String dbInstanceIdentifier,
+                                String startTime,
+                                String endTime,
+                                boolean narrative) throws Exception {
+        Instant start = Instant.parse(startTime);
+        Instant end = Instant.parse(endTime);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("startTime must be before endTime");
+        }
+        Instant historyStart = start.minus(Duration.ofDays(historyDays));
+        // Older data is only kept at coarser periods
+        int period = Math.max(PERIOD_SECONDS, DatapointRollup.finestRetainedPeriod(historyStart, Instant.now()));
+
+        long fetchStarted = System.nanoTime();
+        Map<String, MonitoredSeries> series = new LinkedHashMap<>();
+        if (dbInstanceIdentifier != null && !dbInstanceIdentifier.isBlank()) {
+            for (String metricName : RDS_METRICS) {
+                series.put(dbInstanceIdentifier + " " + metricName, new MonitoredSeries(metricName,
+                        fetch("AWS/RDS", metricName, List.of(dimension("DBInstanceIdentifier", dbInstanceIdentifier)), historyStart, end, period)));
+            }
+        }
+        if (clusterName != null && !clusterName.isBlank()) {
+            for (String[] pair : CloudWatchChartService.DEFAULT_CONSUMER_GROUP_TOPIC_PAIRS) {
+                for (String metricName : KAFKA_LAG_METRICS) {
+                    series.put(pair[0] + " " + metricName, new MonitoredSeries(metricName,
+                            fetch("AWS/Kafka", metricName, List.of(dimension("Cluster Name", clusterName),
+                                    dimension("Consumer Group", pair[0]), dimension("Topic", pair[1])), historyStart, end, period)));
+                }
+            }
+        }
+        if (series.isEmpty()) {
+            throw new IllegalArgumentException("Either clusterName or dbInstanceIdentifier is required");
+        }
+        long fetchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetchStarted);
+
+        long detectionStarted = System.nanoTime();
+        List<AnomalyReport.Anomaly> anomalies = new ArrayList<>();
+        int datapoints = 0;
+        for (Map.Entry<String, MonitoredSeries> entry : series.entrySet()) {
+            datapoints += detect(entry.getKey(), entry.getValue(), start, period, anomalies);
+        }
+        anomalies.sort(Comparator.comparing(AnomalyReport.Anomaly::start).thenComparing(AnomalyReport.Anomaly::series));
+        long detectionNanos = System.nanoTime() - detectionStarted;
+        meterRegistry.timer("anomaly.detection").record(detectionNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("anomaly.found").increment(anomalies.size());
+        logger.info("Found {} anomalies in {} series ({} datapoints) in {} ms, fetched in {} ms",
+                anomalies.size(), series.size(), datapoints, TimeUnit.NANOSECONDS.toMillis(detectionNanos), fetchMillis);
+
+        AnomalyReport report = new AnomalyReport(start, end, series.size(), datapoints, fetchMillis,
+                TimeUnit.NANOSECONDS.toMillis(detectionNanos), anomalies, null);
+        if (narrative) {
+            report = report.withNarrative(aiAnalysisService.narrateAnomalies(objectMapper.writeValueAsString(report)));
+        }
+        return report;
+    }
+
+    /**
+     * Runs the detectors over one series and adds its anomalies.
+     *
+     * @return datapoints checked inside the window
+     */
+    private int detect(String name, MonitoredSeries series, Instant start, int period, List<AnomalyReport.Anomaly> anomalies) {
+        // A time-of-day slot is judged once it holds two days' worth of values
+        int seasonalMinSamples = Math.max(2, 2 * seasonalSlotSeconds / period);
+        AnomalyDetector detector = new AnomalyDetector(settings.withSeasonalMinSamples(seasonalMinSamples));
+        return detect(detector, name, series.metricName(), series.datapoints(), start, period, anomalies);
+    }
+
+    /**
+     * Feeds the datapoints (in time order) to {@code detector}, those before {@code start}
+     * only to train it, and merges anomalous points at most one missing period apart into
+     * one anomaly.
+     *
+     * @return datapoints checked inside the window
+     */
+    static int detect(AnomalyDetector detector, String name, String metricName, List<Datapoint> datapoints,
+                      Instant start, int period, List<AnomalyReport.Anomaly> anomalies) {
+        Episode episode = null;
+        int checked = 0;
+        for (Datapoint datapoint : datapoints) {
+            boolean history = datapoint.timestamp().isBefore(start);
+            List<AnomalyDetector.Signal> signals = detector.observe(datapoint.timestamp(), datapoint.average(), history);
+            if (history) {
+                continue;
+            }
+            checked++;
+            if (signals.isEmpty()) {
+                continue;
+            }
+            // Anomalous points at most one missing period apart belong to the same episode
+            if (episode != null && episode.end.plusSeconds(2L * period).isBefore(datapoint.timestamp())) {
+                anomalies.add(episode.toAnomaly(name, metricName));
+                episode = null;
+            }
+            if (episode == null) {
+                episode = new Episode(datapoint.timestamp());
+            }
+            episode.add(datapoint, signals);
+        }
+        if (episode != null) {
+            anomalies.add(episode.toAnomaly(name, metricName));
+        }
+        return checked;
+    }
+
+    private List<Datapoint> fetch(String namespace, String metricName, List<Dimension> dimensions,
+                                  Instant from, Instant until, int period) {
+        List<Datapoint> datapoints = new ArrayList<>();
+        Duration chunk = Duration.ofSeconds((long) period * MAX_DATAPOINTS_PER_CALL);
+        for (Instant chunkStart = from; chunkStart.isBefore(until); chunkStart = chunkStart.plus(chunk)) {
+            Instant chunkEnd = chunkStart.plus(chunk).isBefore(until) ? chunkStart.plus(chunk) : until;
+            datapoints.addAll(cloudWatchFetcher.getMetricStatistics(GetMetricStatisticsRequest.builder()
+                    .namespace(namespace)
+                    .metricName(metricName)
+                    .dimensions(dimensions)
+                    .startTime(chunkStart)
+                    .endTime(chunkEnd)
+                    .period(period)
+                    .statistics(Statistic.AVERAGE)
+                    .build()).datapoints());
+        }
+        datapoints.sort(Comparator.comparing(Datapoint::timestamp));
+        return datapoints;
+    }
+
+    private static Dimension dimension(String name, String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+
+    private record MonitoredSeries(String metricName, List<Datapoint> datapoints) {
+    }
+
+    /**
+     * Anomalous datapoints of one series being merged into one anomaly.
+     */
+    private static final class Episode {
+
+        private final Instant start;
+        private Instant end;
+        private Datapoint peak;
+        private AnomalyDetector.Signal peakSignal;
+        private final Set<String> detectors = new LinkedHashSet<>();
+
+        Episode(Instant start) {
+            this.start = start;
+            this.end = start;
+        }
+
+        void add(Datapoint datapoint, List<AnomalyDetector.Signal> signals) {
+            end = datapoint.timestamp();
+            for (AnomalyDetector.Signal signal : signals) {
+                detectors.add(signal.detector());
+                if (peakSignal == null || signal.score() > peakSignal.score()) {
+                    peak = datapoint;
+                    peakSignal = signal;
+                }
+            }
+        }
+
+        AnomalyReport.Anomaly toAnomaly(String series, String metricName) {
+            double score = peakSignal.score();
+            String severity = score >= 2 ? "high" : score >= 1.5 ? "medium" : "low";
+            return new AnomalyReport.Anomaly(series, metricName, start, end, peak.timestamp(), peak.average(),
+                    peakSignal.expected(), score, severity, List.copyOf(detectors));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.getmegraphs;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming anomaly detectors for one metric series, fed one datapoint at a time in time
+ * order. Every datapoint is checked by four detectors, each against what it has seen before
+ * that point:
+ * <ul>
+ *   <li>{@code ewma}: z-score against an exponentially weighted mean and variance</li>
+ *   <li>{@code mad}: distance from the median of a sliding window, in robust standard
+ *       deviations (1.4826 × median absolute deviation), so earlier outliers do not widen it</li>
+ *   <li>{@code seasonal}: z-score against the values seen at the same time of day</li>
+ *   <li>{@code cusum}: two-sided CUSUM of the deviations from the sliding median, catching
+ *       level shifts too small for a single point to stand out</li>
+ * </ul>
+ * Points flagged by a detector only update its state clamped to the threshold, so an
+ * incident does not become the new normal. Spreads are floored at 1% of the level so
+ * perfectly flat series do not flag every small change.
+ */
+public class AnomalyDetector {
+
+    private static final double MAD_TO_SIGMA = 1.4826;
+    private static final double MIN_RELATIVE_SPREAD = 0.01;
+    private static final long DAY_SECONDS = 24 * 3600;
+
+    /**
+     * @param warmupPoints       points the EWMA and sliding window need before they judge
+     * @param seasonalSlotSeconds width of the time-of-day slots of the seasonal baseline
+     * @param seasonalMinSamples values a slot needs before it judges
+     * @param cusumK             allowed drift per point, in standard deviations
+     * @param cusumH             decision threshold of the cumulative sums
+     */
+    public record Settings(double ewmaAlpha,
+                           double ewmaThreshold,
+                           int warmupPoints,
+                           int madWindow,
+                           double madThreshold,
+                           int seasonalSlotSeconds,
+                           int seasonalMinSamples,
+                           double seasonalThreshold,
+                           double cusumK,
+                           double cusumH) {
+
+        public Settings withSeasonalMinSamples(int seasonalMinSamples) {
+            return new Settings(ewmaAlpha, ewmaThreshold, warmupPoints, madWindow, madThreshold,
+                    seasonalSlotSeconds, seasonalMinSamples, seasonalThreshold, cusumK, cusumH);
+        }
+    }
+
+    /**
+     * One detector firing on one datapoint.
+     *
+     * @param expected the value the detector considered normal
+     * @param score    how far beyond normal the point is, in multiples of the detector's threshold
+     */
+    public record Signal(String detector, double expected, double score) {
+    }
+
+    private final Settings settings;
+
+    private long count;
+    private double ewmaMean;
+    private double ewmaVariance;
+
+    private final ArrayDeque<Double> window = new ArrayDeque<>();
+
+    // Per time-of-day slot: count, mean, sum of squared deviations (Welford)
+    private final Map<Long, double[]> slots = new HashMap<>();
+
+    private double cusumHigh;
+    private double cusumLow;
+
+    public AnomalyDetector(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Checks a datapoint and learns from it.
+     *
+     * @param learnOnly update the detectors without reporting (history before the analyzed window)
+     * @return the detectors that fired, empty for a normal point
+     */
+    public List<Signal> observe(Instant timestamp, double value, boolean learnOnly) {
+        List<Signal> signals = new ArrayList<>(2);
+        checkEwma(value, signals);
+        checkWindow(value, signals);
+        checkSeasonal(timestamp, value, signals);
+        return learnOnly ? List.of() : signals;
+    }
+
+    private void checkEwma(double value, List<Signal> signals) {
+        count++;
+        if (count == 1) {
+            ewmaMean = value;
+            return;
+        }
+        double sigma = spread(Math.sqrt(ewmaVariance), ewmaMean);
+        double z = (value - ewmaMean) / sigma;
+        double learned = value;
+        if (count > settings.warmupPoints() && Math.abs(z) > settings.ewmaThreshold()) {
+            signals.add(new Signal("ewma", ewmaMean, Math.abs(z) / settings.ewmaThreshold()));
+            learned = ewmaMean + Math.signum(z) * settings.ewmaThreshold() * sigma;
+        }
+        double diff = learned - ewmaMean;
+        double increment = settings.ewmaAlpha() * diff;
+        ewmaMean += increment;
+        ewmaVariance = (1 - settings.ewmaAlpha()) * (ewmaVariance + diff * increment);
+    }
+
+    /**
+     * MAD outliers and CUSUM, both relative to the median of the sliding window.
+     */
+    private void checkWindow(double value, List<Signal> signals) {
+        double learned = value;
+        if (window.size() >= Math.min(settings.warmupPoints(), settings.madWindow())) {
+            double[] values = window.stream().mapToDouble(Double::doubleValue).toArray();
+            double median = median(values);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Math.abs(values[i] - median);
+            }
+            double sigma = spread(MAD_TO_SIGMA * median(values), median);
+            double z = (value - median) / sigma;
+            if (Math.abs(z) > settings.madThreshold()) {
+                signals.add(new Signal("mad", median, Math.abs(z) / settings.madThreshold()));
+                learned = median + Math.signum(z) * settings.madThreshold() * sigma;
+            }
+
+            cusumHigh = Math.max(0, cusumHigh + z - settings.cusumK());
+            cusumLow = Math.max(0, cusumLow - z - settings.cusumK());
+            double cusum = Math.max(cusumHigh, cusumLow);
+            if (cusum > settings.cusumH()) {
+                signals.add(new Signal("cusum", median, cusum / settings.cusumH()));
+                cusumHigh = 0;
+                cusumLow = 0;
+            }
+        }
+        window.addLast(learned);
+        if (window.size() > settings.madWindow()) {
+            window.removeFirst();
+        }
+    }
+
+    private void checkSeasonal(Instant timestamp, double value, List<Signal> signals) {
+        long slot = Math.floorMod(timestamp.getEpochSecond(), DAY_SECONDS) / settings.seasonalSlotSeconds();
+        double[] stats = slots.computeIfAbsent(slot, s -> new double[3]);
+        double learned = value;
+        if (stats[0] >= settings.seasonalMinSamples()) {
+            double sigma = spread(Math.sqrt(stats[2] / (stats[0] - 1)), stats[1]);
+            double z = (value - stats[1]) / sigma;
+            if (Math.abs(z) > settings.seasonalThreshold()) {
+                signals.add(new Signal("seasonal", stats[1], Math.abs(z) / settings.seasonalThreshold()));
+                learned = stats[1] + Math.signum(z) * settings.seasonalThreshold() * sigma;
+            }
+        }
+        stats[0]++;
+        double delta = learned - stats[1];
+        stats[1] += delta / stats[0];
+        stats[2] += delta * (learned - stats[1]);
+    }
+
+    private static double spread(double sigma, double level) {
+        return Math.max(sigma, Math.max(Math.abs(level) * MIN_RELATIVE_SPREAD, 1e-9));
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
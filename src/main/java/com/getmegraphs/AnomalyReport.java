@@ -0,0 +1,66 @@
+package com.getmegraphs;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Anomalies found by the {@link AnomalyDetectionService} in one window.
+ *
+ * @param seriesCount     series analyzed
+ * @param datapoints      datapoints checked inside the window
+ * @param fetchMillis     time spent fetching the series and their history
+ * @param detectionMillis time spent running the detectors
+ * @param narrative       AI summary of the anomalies, when one was asked for
+ */
+public record AnomalyReport(Instant start,
+                            Instant end,
+                            int seriesCount,
+                            int datapoints,
+                            long fetchMillis,
+                            long detectionMillis,
+                            List<Anomaly> anomalies,
+                            String narrative) {
+
+    /**
+     * Consecutive anomalous datapoints of one series.
+     *
+     * @param peakTime  datapoint with the highest score
+     * @param expected  normal value at the peak, according to the detector with the highest score
+     * @param score     highest score, in multiples of the detector's threshold
+     * @param severity  {@code low}, {@code medium} (score of 1.5 or more) or {@code high} (2 or more)
+     * @param detectors detectors that fired during the episode
+     */
+    public record Anomaly(String series,
+                          String metric,
+                          Instant start,
+                          Instant end,
+                          Instant peakTime,
+                          double peakValue,
+                          double expected,
+                          double score,
+                          String severity,
+                          List<String> detectors) {
+    }
+
+    public AnomalyReport withNarrative(String narrative) {
+        return new AnomalyReport(start, end, seriesCount, datapoints, fetchMillis, detectionMillis, anomalies, narrative);
+    }
+
+    /**
+     * Plain text listing, one line per anomaly.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(anomalies.size()).append(" anomalies in ").append(seriesCount).append(" series (")
+                .append(datapoints).append(" datapoints, detected in ").append(detectionMillis).append(" ms)\n");
+        for (Anomaly anomaly : anomalies) {
+            text.append(String.format("[%s] %s: %s to %s, peak %.2f at %s (expected %.2f, %s)%n",
+                    anomaly.severity().toUpperCase(), anomaly.series(), anomaly.start(), anomaly.end(),
+                    anomaly.peakValue(), anomaly.peakTime(), anomaly.expected(), String.join(", ", anomaly.detectors())));
+        }
+        if (narrative != null) {
+            text.append("\n").append(narrative).append("\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.getmegraphs;
+
+import java.io.IOException;
+
+/**
+ * Where report artifacts (charts, PDFs, summaries, metrics data) are written, from the
+ * in-memory buffers they were produced in.
+ *
+ * Artifacts are addressed by their local path: the report directory on local disk stays the
+ * working copy that PDFs are assembled from and the AI analysis reads. A sink may publish
+ * every artifact elsewhere as well, in the background (see {@link S3ArtifactSink}).
+ * Configured with {@code artifacts.sink} ({@code local} or {@code s3}).
+ */
+public interface ArtifactSink {
+
+    /**
+     * Writes {@code content} to {@code path}, creating missing directories. Publishing may
+     * still be under way when this returns.
+     */
+    void write(String path, byte[] content, String contentType) throws IOException;
+
+    /**
+     * Waits until every artifact written to {@code path} (a file or a directory) is published.
+     *
+     * @return where the artifacts were published: the absolute local path, or e.g. an {@code s3://} URI
+     * @throws IOException if any of them could not be published
+     */
+    String flush(String path) throws IOException;
+
+    /**
+     * Deletes {@code path} (a file or a directory) locally and wherever it was published.
+     * Uploads still under way for it are waited for first, so none lands after the delete.
+     *
+     * @throws IOException if any of it could not be deleted
+     */
+    void delete(String path) throws IOException;
+}
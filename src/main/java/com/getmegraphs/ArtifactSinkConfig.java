@@ -0,0 +1,61 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class ArtifactSinkConfig {
+
+    /**
+     * The {@link ArtifactSink} selected by {@code artifacts.sink}: {@code local} or {@code s3}.
+     * The S3 client uses the configured AWS credentials unless {@code artifacts.s3.access-key}
+     * and {@code artifacts.s3.secret-key} are set (e.g. for MinIO).
+     */
+    @Bean
+    public ArtifactSink artifactSink(
+            @Value("${artifacts.sink:local}") String sink,
+            AwsCredentialsProvider awsCredentialsProvider,
+            @Value("${aws.region:eu-west-1}") String region,
+            @Value("${artifacts.s3.endpoint:}") String endpoint,
+            @Value("${artifacts.s3.path-style:false}") boolean pathStyle,
+            @Value("${artifacts.s3.access-key:}") String accessKey,
+            @Value("${artifacts.s3.secret-key:}") String secretKey,
+            @Value("${artifacts.s3.bucket:}") String bucket,
+            @Value("${artifacts.s3.prefix:}") String prefix,
+            @Value("${artifacts.s3.multipart-threshold:16MB}") DataSize multipartThreshold,
+            @Value("${artifacts.s3.part-size:8MB}") DataSize partSize,
+            @Qualifier("artifactUploadExecutor") ExecutorService uploadExecutor,
+            MeterRegistry meterRegistry) {
+        return switch (sink.trim().toLowerCase()) {
+            case "local" -> new LocalArtifactSink();
+            case "s3" -> {
+                S3ClientBuilder builder = S3Client.builder()
+                        .region(Region.of(region))
+                        .credentialsProvider(accessKey.isBlank()
+                                ? awsCredentialsProvider
+                                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                        // MinIO and most other S3-compatible stores only serve path-style requests
+                        .forcePathStyle(pathStyle);
+                if (!endpoint.isBlank()) {
+                    builder.endpointOverride(URI.create(endpoint));
+                }
+                yield new S3ArtifactSink(builder.build(), bucket, prefix, multipartThreshold.toBytes(),
+                        Math.toIntExact(partSize.toBytes()), uploadExecutor, meterRegistry);
+            }
+            default -> throw new IllegalArgumentException("Unknown artifacts.sink: " + sink + " (expected local or s3)");
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.getmegraphs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Forecasts made by the {@link CapacityForecastService} from one history window.
+ *
+ * @param start         start of the history window ({@code capacity.forecast.history-days} before the end, or the report window start if earlier)
+ * @param end           end of the history window and of the report window, where the forecasts start
+ * @param forecastEnd   end of the forecasts
+ * @param period        seconds between datapoints, in the history and the forecasts
+ * @param fetchMillis   time spent fetching the history
+ * @param forecastMillis time spent fitting and forecasting, summed over the series
+ * @param chartDirectory directory of the forecast charts, when they were asked for
+ */
+public record CapacityForecastReport(Instant start,
+                                     Instant end,
+                                     Instant forecastEnd,
+                                     int period,
+                                     long fetchMillis,
+                                     long forecastMillis,
+                                     String chartDirectory,
+                                     List<SeriesForecast> series) {
+
+    /**
+     * @param method           {@code holt-winters} (daily seasonality) or {@code linear-trend}
+     * @param lastValue        last value of the history
+     * @param trendPerDay      fitted trend at the end of the history, per day
+     * @param threshold        limit checked for this metric, null if there is none
+     * @param expectedCrossing when the forecast crosses the threshold, null if not within the horizon
+     * @param earliestCrossing when the prediction interval first reaches the threshold
+     * @param warning          why the forecast is unreliable (history shorter than two days or than the horizon), null if it is not
+     * @param forecast         forecast points, one per period
+     */
+    public record SeriesForecast(String series,
+                                 String metric,
+                                 String method,
+                                 double lastValue,
+                                 double trendPerDay,
+                                 Threshold threshold,
+                                 Instant expectedCrossing,
+                                 Instant earliestCrossing,
+                                 String warning,
+                                 List<ForecastPoint> forecast) {
+    }
+
+    /**
+     * @param above whether values above the limit are the problem (below for e.g. free memory)
+     */
+    public record Threshold(String metric, double limit, boolean above) {
+
+        @Override
+        public String toString() {
+            return metric + (above ? " > " : " < ") + limit;
+        }
+    }
+
+    public record ForecastPoint(Instant timestamp, double value, double lower, double upper) {
+    }
+
+    /**
+     * Plain text listing, one line per series.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("Forecast from ").append(end).append(" to ").append(forecastEnd).append(" (")
+                .append(series.size()).append(" series, history from ").append(start)
+                .append(", computed in ").append(forecastMillis).append(" ms)\n");
+        for (SeriesForecast forecast : series) {
+            text.append(String.format("%s: last %.2f, trend %+.2f/day (%s)", forecast.series(), forecast.lastValue(),
+                    forecast.trendPerDay(), forecast.method()));
+            if (forecast.threshold() != null) {
+                if (forecast.expectedCrossing() != null) {
+                    text.append(", crosses ").append(forecast.threshold()).append(" at ").append(forecast.expectedCrossing())
+                            .append(" (in ").append(hours(forecast.expectedCrossing())).append(" h)");
+                } else {
+                    text.append(", stays within ").append(forecast.threshold());
+                }
+                if (forecast.earliestCrossing() != null) {
+                    text.append(", possibly from ").append(forecast.earliestCrossing())
+                            .append(" (in ").append(hours(forecast.earliestCrossing())).append(" h)");
+                }
+            }
+            if (forecast.warning() != null) {
+                text.append(" [unreliable: ").append(forecast.warning()).append("]");
+            }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    private long hours(Instant crossing) {
+        return Duration.between(end, crossing).toHours();
+    }
+}
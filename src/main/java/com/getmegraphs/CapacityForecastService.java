@@ -0,0 +1,380 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.DimensionFilter;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capacity forecasts for the RDS and broker series of a report, computed locally by
+ * {@link CapacityForecaster} instead of asking the AI API to read trends off the PDF.
+ *
+ * The history is the {@code capacity.forecast.history-days} days before the end of the
+ * report window (or the whole window, if longer), so daily seasonality can be fitted
+ * whatever the window length. It is fetched at the finest of 1 minute, 5 minutes, 15 minutes
+ * or 1 hour that keeps both the history and the forecast within 1,440 points, and series are
+ * fetched and forecast in parallel on the {@code reportFanOutExecutor}. A series whose
+ * history turns out shorter than two days or than the horizon (e.g. a new instance) is
+ * still forecast, but flagged with a warning. For metrics with a limit in
+ * {@code capacity.thresholds}, the report gives when the forecast crosses it and when its
+ * prediction interval first does. Reports of closed windows ({@code reports.rolling.settle-seconds}
+ * after their end) are cached per window; forecast charts are kept in the {@link ReportStore}.
+ */
+@Service
+public class CapacityForecastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapacityForecastService.class);
+
+    private static final int[] PERIODS = {60, 300, 900, 3600};
+    private static final int MAX_POINTS = 1440;
+    private static final long DAY_SECONDS = 24 * 3600;
+
+    private static final String[] RDS_METRICS = {"CPUUtilization", "FreeableMemory", "DatabaseConnections", "ReadIOPS", "WriteIOPS"};
+    private static final String BROKER_METRIC = "CpuSystem";
+
+    private final CloudWatchFetcher cloudWatchFetcher;
+    private final CloudWatchChartService chartService;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final ReportStore reportStore;
+    private final ExecutorService fanOutExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Duration defaultHorizon;
+    private final Duration historyLength;
+    private final double intervalZ;
+    private final Duration settle;
+    private final Map<String, CapacityForecastReport.Threshold> thresholds;
+    private final Map<String, CapacityForecastReport> cache;
+
+    public CapacityForecastService(CloudWatchFetcher cloudWatchFetcher,
+                                   CloudWatchChartService chartService,
+                                   CloudWatchClientRegistry clientRegistry,
+                                   ReportStore reportStore,
+                                   @Qualifier("reportFanOutExecutor") ExecutorService fanOutExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${capacity.forecast.horizon:7d}") String defaultHorizon,
+                                   @Value("${capacity.forecast.history-days:14}") int historyDays,
+                                   @Value("${capacity.forecast.interval-z:1.96}") double intervalZ,
+                                   @Value("${capacity.thresholds:}") String thresholds,
+                                   @Value("${capacity.forecast.cache.max-entries:32}") int maxCachedReports,
+                                   @Value("${reports.rolling.settle-seconds:120}") long settleSeconds) {
+        this.cloudWatchFetcher = cloudWatchFetcher;
+        this.chartService = chartService;
+        this.clientRegistry = clientRegistry;
+        this.reportStore = reportStore;
+        this.fanOutExecutor = fanOutExecutor;
+        this.meterRegistry = meterRegistry;
+        this.defaultHorizon = DurationStyle.detectAndParse(defaultHorizon);
+        if (historyDays < 2) {
+            throw new IllegalArgumentException("capacity.forecast.history-days must be at least 2 (two daily seasons)");
+        }
+        this.historyLength = Duration.ofDays(historyDays);
+        this.intervalZ = intervalZ;
+        this.settle = Duration.ofSeconds(settleSeconds);
+        this.thresholds = parseThresholds(thresholds);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CapacityForecastReport> eldest) {
+                return size() > maxCachedReports;
+            }
+        });
+    }
+
+    /**
+     * @param horizon how far past {@code endTime} to forecast (e.g. {@code 7d}), null for {@code capacity.forecast.horizon}
+     * @param charts  also write one chart per series with the forecast and its interval
+     */
+    public CapacityForecastReport forecast(String clusterName,
+                                           String dbInstanceIdentifier,
+                                           String startTime,
+                                           String endTime,
+                                           String horizon,
+                                           boolean charts) throws Exception {
+        Instant start = Instant.parse(startTime);
+        Instant end = Instant.parse(endTime);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("startTime must be before endTime");
+        }
+        Duration forecastHorizon = horizon == null || horizon.isBlank() ? defaultHorizon : DurationStyle.detectAndParse(horizon);
+        if (forecastHorizon.isNegative() || forecastHorizon.isZero()) {
+            throw new IllegalArgumentException("horizon must be positive");
+        }
+        boolean rds = dbInstanceIdentifier != null && !dbInstanceIdentifier.isBlank();
+        boolean kafka = clusterName != null && !clusterName.isBlank();
+        if (!rds && !kafka) {
+            throw new IllegalArgumentException("Either clusterName or dbInstanceIdentifier is required");
+        }
+
+        String key = String.join("|", clientRegistry.currentTarget(), Objects.toString(clusterName, ""),
+                Objects.toString(dbInstanceIdentifier, ""), start.toString(), end.toString(), forecastHorizon.toString(),
+                String.valueOf(charts));
+        CapacityForecastReport cached = cache.get(key);
+        if (cached != null && cached.chartDirectory() != null && !new File(cached.chartDirectory()).exists()) {
+            // Charts deleted by report store compaction
+            cache.remove(key);
+            cached = null;
+        }
+        if (cached != null) {
+            meterRegistry.counter("capacity.forecast.cache", "outcome", "hit").increment();
+            return cached;
+        }
+        meterRegistry.counter("capacity.forecast.cache", "outcome", "miss").increment();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Instant historyStart = start.isBefore(end.minus(historyLength)) ? start : end.minus(historyLength);
+        int period = periodFor(historyStart, end, forecastHorizon);
+        int horizonSteps = (int) (forecastHorizon.getSeconds() / period);
+
+        List<SeriesSpec> specs = new ArrayList<>();
+        if (rds) {
+            for (String metricName : RDS_METRICS) {
+                specs.add(new SeriesSpec(dbInstanceIdentifier + " " + metricName, "AWS/RDS", metricName,
+                        List.of(dimension("DBInstanceIdentifier", dbInstanceIdentifier))));
+            }
+        }
+        if (kafka) {
+            for (String brokerId : brokers(clusterName)) {
+                specs.add(new SeriesSpec("Broker " + brokerId + " " + BROKER_METRIC, "AWS/Kafka", BROKER_METRIC,
+                        List.of(dimension("Cluster Name", clusterName), dimension("Broker ID", brokerId))));
+            }
+        }
+
+        List<Future<SeriesResult>> futures = new ArrayList<>();
+        for (SeriesSpec spec : specs) {
+            futures.add(fanOutExecutor.submit(clientRegistry.bind(() -> forecastSeries(spec, historyStart, end, period, horizonSteps))));
+        }
+        List<SeriesResult> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                SeriesResult result = futures.get(i).get();
+                if (result != null) {
+                    results.add(result);
+                }
+            } catch (ExecutionException e) {
+                logger.error("Failed to forecast series: {}", specs.get(i).name(), e.getCause());
+            }
+        }
+        if (results.isEmpty()) {
+            throw new RuntimeException("No data found to forecast between " + startTime + " and " + endTime);
+        }
+
+        String chartDirectory = null;
+        if (charts) {
+            chartDirectory = reportStore.register(ReportStore.Key.of("capacity-forecast", clientRegistry.currentTarget(),
+                    clusterName, dbInstanceIdentifier, "horizon=" + forecastHorizon, startTime, endTime), writeCharts(results));
+        }
+
+        CapacityForecastReport report = new CapacityForecastReport(historyStart, end, end.plus(forecastHorizon), period,
+                results.stream().mapToLong(SeriesResult::fetchNanos).max().orElse(0) / 1_000_000,
+                results.stream().mapToLong(SeriesResult::forecastNanos).sum() / 1_000_000,
+                chartDirectory,
+                results.stream().map(SeriesResult::forecast).toList());
+        sample.stop(meterRegistry.timer("capacity.forecast"));
+        logger.info("Forecast {} series {} ahead at {}s resolution in {} ms (fetched in {} ms)",
+                results.size(), forecastHorizon, period, report.forecastMillis(), report.fetchMillis());
+        // A window still open gets more datapoints, so its forecast is not reused
+        if (!Instant.now().isBefore(end.plus(settle))) {
+            cache.put(key, report);
+        }
+        return report;
+    }
+
+    private SeriesResult forecastSeries(SeriesSpec spec, Instant start, Instant end, int period, int horizonSteps) {
+        long fetchStarted = System.nanoTime();
+        List<Datapoint> datapoints = cloudWatchFetcher.getMetricStatistics(GetMetricStatisticsRequest.builder()
+                .namespace(spec.namespace())
+                .metricName(spec.metricName())
+                .dimensions(spec.dimensions())
+                .startTime(start)
+                .endTime(end)
+                .period(period)
+                .statistics(Statistic.AVERAGE)
+                .build()).datapoints();
+        long fetchNanos = System.nanoTime() - fetchStarted;
+
+        long forecastStarted = System.nanoTime();
+        NavigableMap<Instant, Double> history = new TreeMap<>();
+        for (Datapoint datapoint : datapoints) {
+            if (datapoint.average() != null) {
+                history.put(datapoint.timestamp(), datapoint.average());
+            }
+        }
+        if (history.size() < 4) {
+            logger.warn("Not enough datapoints to forecast {}: {}", spec.name(), history.size());
+            return null;
+        }
+
+        double[] values = evenlySpaced(history, period);
+        int seasonLength = (int) (DAY_SECONDS / period);
+        CapacityForecaster.Forecast forecast = CapacityForecaster.forecast(values, seasonLength, horizonSteps, intervalZ);
+        String warning = historyWarning(Duration.between(history.firstKey(), history.lastKey()),
+                Duration.ofSeconds((long) horizonSteps * period));
+        if (warning != null) {
+            logger.warn("Forecast of {} is unreliable: {}", spec.name(), warning);
+        }
+
+        Instant last = history.lastKey();
+        CapacityForecastReport.Threshold threshold = thresholds.get(spec.metricName());
+        List<CapacityForecastReport.ForecastPoint> points = new ArrayList<>(forecast.forecast().size());
+        Instant expectedCrossing = threshold != null && beyond(history.lastEntry().getValue(), threshold) ? last : null;
+        Instant earliestCrossing = expectedCrossing;
+        for (int i = 0; i < forecast.forecast().size(); i++) {
+            CapacityForecaster.Point point = forecast.forecast().get(i);
+            Instant timestamp = last.plusSeconds((long) (i + 1) * period);
+            points.add(new CapacityForecastReport.ForecastPoint(timestamp, point.value(), point.lower(), point.upper()));
+            if (threshold != null) {
+                if (expectedCrossing == null && beyond(point.value(), threshold)) {
+                    expectedCrossing = timestamp;
+                }
+                if (earliestCrossing == null && beyond(threshold.above() ? point.upper() : point.lower(), threshold)) {
+                    earliestCrossing = timestamp;
+                }
+            }
+        }
+
+        CapacityForecastReport.SeriesForecast seriesForecast = new CapacityForecastReport.SeriesForecast(spec.name(),
+                spec.metricName(), forecast.method(), history.lastEntry().getValue(),
+                forecast.trend() * DAY_SECONDS / period, threshold, expectedCrossing, earliestCrossing, warning, points);
+        return new SeriesResult(seriesForecast, history, fetchNanos, System.nanoTime() - forecastStarted);
+    }
+
+    private String writeCharts(List<SeriesResult> results) throws Exception {
+        String chartDirectory = reportStore.newPath("capacity_forecast_" + Instant.now().toString().replaceAll("[:.]+", "-"));
+        for (SeriesResult result : results) {
+            CapacityForecastReport.SeriesForecast forecast = result.forecast();
+            String fileName = forecast.series().replaceAll("[^A-Za-z0-9]+", "_").toLowerCase() + "_forecast.png";
+            chartService.saveForecastChart(forecast.series() + " Forecast", forecast.metric(), result.history(),
+                    forecast.forecast(), forecast.threshold(), chartDirectory + "/" + fileName);
+        }
+        return new File(chartDirectory).getAbsolutePath();
+    }
+
+    private List<String> brokers(String clusterName) {
+        return cloudWatchFetcher.listMetrics(ListMetricsRequest.builder()
+                        .namespace("AWS/Kafka")
+                        .metricName(BROKER_METRIC)
+                        .dimensions(DimensionFilter.builder().name("Cluster Name").value(clusterName).build())
+                        .build())
+                .metrics().stream()
+                .flatMap(metric -> metric.dimensions().stream())
+                .filter(dimension -> "Broker ID".equals(dimension.name()))
+                .map(Dimension::value)
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Why a forecast from {@code history} over {@code horizon} is unreliable, or null if it is not.
+     */
+    static String historyWarning(Duration history, Duration horizon) {
+        if (history.compareTo(Duration.ofDays(2)) < 0) {
+            return "only " + history.toHours() + " h of history, less than the two days needed for daily seasonality";
+        }
+        if (history.compareTo(horizon) < 0) {
+            return "only " + history.toHours() + " h of history for a " + horizon.toHours() + " h horizon";
+        }
+        return null;
+    }
+
+    /**
+     * Finest period that CloudWatch still keeps for the history and that keeps both the
+     * history and the forecast within {@link #MAX_POINTS} points.
+     */
+    static int periodFor(Instant start, Instant end, Duration horizon) {
+        long longest = Math.max(Duration.between(start, end).getSeconds(), horizon.getSeconds());
+        int finest = DatapointRollup.finestRetainedPeriod(start, Instant.now());
+        for (int period : PERIODS) {
+            if (period >= finest && longest / period <= MAX_POINTS) {
+                return period;
+            }
+        }
+        throw new IllegalArgumentException("History and horizon must each be at most " + MAX_POINTS + " hours");
+    }
+
+    /**
+     * Values from the first to the last datapoint, one per period; missing periods are
+     * interpolated linearly.
+     */
+    private static double[] evenlySpaced(NavigableMap<Instant, Double> history, int period) {
+        Instant first = history.firstKey();
+        int length = (int) (Duration.between(first, history.lastKey()).getSeconds() / period) + 1;
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            Instant timestamp = first.plusSeconds((long) i * period);
+            Map.Entry<Instant, Double> before = history.floorEntry(timestamp);
+            Map.Entry<Instant, Double> after = history.ceilingEntry(timestamp);
+            if (after == null || before.getKey().equals(after.getKey())) {
+                values[i] = before.getValue();
+            } else {
+                double fraction = (double) Duration.between(before.getKey(), timestamp).getSeconds()
+                        / Duration.between(before.getKey(), after.getKey()).getSeconds();
+                values[i] = before.getValue() + fraction * (after.getValue() - before.getValue());
+            }
+        }
+        return values;
+    }
+
+    private static boolean beyond(double value, CapacityForecastReport.Threshold threshold) {
+        return threshold.above() ? value > threshold.limit() : value < threshold.limit();
+    }
+
+    /**
+     * Parses {@code metric>limit} and {@code metric<limit} entries, comma separated.
+     */
+    static Map<String, CapacityForecastReport.Threshold> parseThresholds(String thresholds) {
+        Map<String, CapacityForecastReport.Threshold> parsed = new LinkedHashMap<>();
+        for (String entry : thresholds.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int operator = Math.max(trimmed.indexOf('>'), trimmed.indexOf('<'));
+            if (operator <= 0) {
+                throw new IllegalArgumentException("Invalid capacity threshold (expected metric>limit or metric<limit): " + trimmed);
+            }
+            String metricName = trimmed.substring(0, operator).trim();
+            parsed.put(metricName, new CapacityForecastReport.Threshold(metricName,
+                    Double.parseDouble(trimmed.substring(operator + 1).trim()), trimmed.charAt(operator) == '>'));
+        }
+        return parsed;
+    }
+
+    private static Dimension dimension(String name, String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+
+    private record SeriesSpec(String name, String namespace, String metricName, List<Dimension> dimensions) {
+    }
+
+    private record SeriesResult(CapacityForecastReport.SeriesForecast forecast,
+                                NavigableMap<Instant, Double> history,
+                                long fetchNanos,
+                                long forecastNanos) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.getmegraphs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forecasts an evenly spaced series with additive Holt-Winters: level, linear trend and,
+ * when at least two seasons of history are available, a seasonal component. Without two
+ * seasons it falls back to Holt's linear trend.
+ *
+ * The smoothing parameters are picked from a small grid by the sum of squared one-step
+ * errors over the history. Prediction intervals widen with the horizon using Holt's
+ * variance formula, {@code σ²(1 + Σ α²(1 + jβ)²)}, with σ the standard deviation of the
+ * one-step errors.
+ */
+public final class CapacityForecaster {
+
+    private static final double[] ALPHAS = {0.05, 0.1, 0.2, 0.3, 0.5, 0.8};
+    private static final double[] BETAS = {0.01, 0.05, 0.1, 0.2};
+    private static final double[] GAMMAS = {0.05, 0.1, 0.3};
+
+    // Points needed for a trend at all
+    private static final int MIN_POINTS = 4;
+
+    /**
+     * @param lower lower bound of the prediction interval
+     * @param upper upper bound of the prediction interval
+     */
+    public record Point(double value, double lower, double upper) {
+    }
+
+    /**
+     * @param method   {@code holt-winters} or {@code linear-trend}
+     * @param trend    trend per step at the end of the history
+     * @param sigma    standard deviation of the one-step errors
+     * @param forecast one point per step after the history
+     */
+    public record Forecast(String method, double alpha, double beta, double gamma, double trend, double sigma,
+                           List<Point> forecast) {
+    }
+
+    private CapacityForecaster() {
+    }
+
+    /**
+     * @param history      evenly spaced values, oldest first
+     * @param seasonLength steps per season (e.g. one day), 0 for none
+     * @param horizon      steps to forecast
+     * @param z            width of the prediction interval in standard deviations (1.96 for 95%)
+     */
+    public static Forecast forecast(double[] history, int seasonLength, int horizon, double z) {
+        if (history.length < MIN_POINTS) {
+            throw new IllegalArgumentException("At least " + MIN_POINTS + " points are needed for a forecast, got " + history.length);
+        }
+        boolean seasonal = seasonLength > 1 && history.length >= 2 * seasonLength;
+        int season = seasonal ? seasonLength : 0;
+
+        Fit best = null;
+        for (double alpha : ALPHAS) {
+            for (double beta : BETAS) {
+                for (double gamma : seasonal ? GAMMAS : new double[]{0}) {
+                    Fit fit = fit(history, season, alpha, beta, gamma);
+                    if (best == null || fit.sse < best.sse) {
+                        best = fit;
+                    }
+                }
+            }
+        }
+
+        double sigma = Math.sqrt(best.sse / Math.max(1, best.errors));
+        List<Point> points = new ArrayList<>(horizon);
+        double variance = 1;
+        for (int h = 1; h <= horizon; h++) {
+            if (h > 1) {
+                double weight = best.alpha * (1 + (h - 1) * best.beta);
+                variance += weight * weight;
+            }
+            double value = best.level + h * best.trend
+                    + (seasonal ? best.seasonals[(history.length + h - 1) % season] : 0);
+            double width = z * sigma * Math.sqrt(variance);
+            points.add(new Point(value, value - width, value + width));
+        }
+        return new Forecast(seasonal ? "holt-winters" : "linear-trend",
+                best.alpha, best.beta, best.gamma, best.trend, sigma, points);
+    }
+
+    private static Fit fit(double[] y, int season, double alpha, double beta, double gamma) {
+        double level;
+        double trend;
+        double[] seasonals = null;
+        int first;
+        if (season > 0) {
+            double firstMean = mean(y, 0, season);
+            double secondMean = mean(y, season, 2 * season);
+            trend = (secondMean - firstMean) / season;
+            seasonals = new double[season];
+            // Detrended, so the trend within the first season does not end up in the seasonals
+            for (int i = 0; i < season; i++) {
+                seasonals[i] = y[i] - (firstMean + (i - (season - 1) / 2.0) * trend);
+            }
+            level = firstMean + (season - 1) / 2.0 * trend;
+            first = season;
+        } else {
+            level = y[0];
+            trend = y[1] - y[0];
+            first = 1;
+        }
+
+        double sse = 0;
+        int errors = 0;
+        for (int t = first; t < y.length; t++) {
+            double seasonalPart = season > 0 ? seasonals[t % season] : 0;
+            double predicted = level + trend + seasonalPart;
+            double error = y[t] - predicted;
+            sse += error * error;
+            errors++;
+
+            double previousLevel = level;
+            level = alpha * (y[t] - seasonalPart) + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+            if (season > 0) {
+                seasonals[t % season] = gamma * (y[t] - level) + (1 - gamma) * seasonalPart;
+            }
+        }
+        return new Fit(alpha, beta, gamma, level, trend, seasonals, sse, errors);
+    }
+
+    private static double mean(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    private record Fit(double alpha, double beta, double gamma, double level, double trend, double[] seasonals,
+                       double sse, int errors) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps the chart, dataset and rendered PNG of recently served charts (e.g. dashboard panels
+ * polling the same rolling window).
+ *
+ * Each render request carries the chart's current data. If its fingerprint matches the
+ * cached one the PNG is returned as is; otherwise the cached dataset is brought up to date
+ * in place (points that slid out of the window are dropped, new or changed points are
+ * written) and only the image is rendered again. The fingerprint doubles as the ETag.
+ *
+ * Outcomes are counted as {@code chart.render-cache} ({@code hit}, {@code incremental},
+ * {@code full}).
+ */
+@Component
+public class ChartRenderCache {
+
+    public record RenderedChart(byte[] png, String etag) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CachedChart> charts;
+
+    public ChartRenderCache(MeterRegistry meterRegistry,
+                            @Value("${chart.render-cache.max-entries:64}") int maxEntries) {
+        this.meterRegistry = meterRegistry;
+        this.charts = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedChart> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * @param chartKey     identity of the chart, independent of where its window currently ends
+     * @param series       points per series name, in legend order
+     * @param createChart  builds and styles the chart around a new dataset
+     * @param refreshChart updates data-derived decorations (e.g. subtitles) after the dataset changed
+     * @param renderPng    renders the chart to PNG bytes
+     */
+    public RenderedChart render(String chartKey,
+                                Map<String, NavigableMap<Instant, Double>> series,
+                                Function<TimeSeriesCollection, JFreeChart> createChart,
+                                Consumer<JFreeChart> refreshChart,
+                                Function<JFreeChart, byte[]> renderPng) {
+        String etag = etag(chartKey, series);
+        CachedChart cached = charts.computeIfAbsent(chartKey, key -> new CachedChart());
+        synchronized (cached) {
+            if (etag.equals(cached.etag)) {
+                count("hit");
+                return cached.rendered;
+            }
+
+            if (cached.chart != null && cached.dataset.getSeriesCount() == series.size()
+                    && sameSeriesKeys(cached.dataset, series)) {
+                int i = 0;
+                for (NavigableMap<Instant, Double> points : series.values()) {
+                    update(cached.dataset.getSeries(i++), points);
+                }
+                refreshChart.accept(cached.chart);
+                count("incremental");
+            } else {
+                TimeSeriesCollection dataset = new TimeSeriesCollection();
+                series.forEach((name, points) -> {
+                    TimeSeries timeSeries = new StatisticsTimeSeries(name);
+                    update(timeSeries, points);
+                    dataset.addSeries(timeSeries);
+                });
+                cached.dataset = dataset;
+                cached.chart = createChart.apply(dataset);
+                count("full");
+            }
+
+            cached.rendered = new RenderedChart(renderPng.apply(cached.chart), etag);
+            cached.etag = etag;
+            return cached.rendered;
+        }
+    }
+
+    /**
+     * Makes {@code series} hold exactly {@code points}, touching only what differs.
+     */
+    private static void update(TimeSeries series, NavigableMap<Instant, Double> points) {
+        series.setNotify(false);
+        List<Millisecond> stale = new ArrayList<>();
+        for (int i = 0; i < series.getItemCount(); i++) {
+            Millisecond period = (Millisecond) series.getTimePeriod(i);
+            if (!points.containsKey(Instant.ofEpochMilli(period.getFirstMillisecond()))) {
+                stale.add(period);
+            }
+        }
+        stale.forEach(series::delete);
+        points.forEach((timestamp, value) -> {
+            Millisecond period = new Millisecond(Date.from(timestamp));
+            Number existing = series.getValue(period);
+            if (existing == null || existing.doubleValue() != value) {
+                series.addOrUpdate(period, value);
+            }
+        });
+        series.setNotify(true);
+    }
+
+    private static boolean sameSeriesKeys(TimeSeriesCollection dataset, Map<String, NavigableMap<Instant, Double>> series) {
+        int i = 0;
+        for (String name : series.keySet()) {
+            if (!name.equals(dataset.getSeries(i++).getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String etag(String chartKey, Map<String, NavigableMap<Instant, Double>> series) {
+        long hash = chartKey.hashCode();
+        for (Map.Entry<String, NavigableMap<Instant, Double>> entry : series.entrySet()) {
+            hash = hash * 31 + entry.getKey().hashCode();
+            for (Map.Entry<Instant, Double> point : entry.getValue().entrySet()) {
+                hash = hash * 31 + point.getKey().toEpochMilli();
+                hash = hash * 31 + Double.doubleToLongBits(point.getValue());
+            }
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("chart.render-cache", "outcome", outcome).increment();
+    }
+
+    private static final class CachedChart {
+        private TimeSeriesCollection dataset;
+        private JFreeChart chart;
+        private String etag;
+        private RenderedChart rendered;
+    }
+}
@@ -2,10 +2,27 @@ package com.getmegraphs;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/cloudwatch")
@@ -13,9 +30,21 @@ public class CloudWatchChartController {
     private static final Logger logger = LoggerFactory.getLogger(CloudWatchChartController.class);
 
     private final CloudWatchChartService chartService;
+    private final MetricsTailService metricsTailService;
+    private final CombinedReportService combinedReportService;
+    private final ReportSpecService reportSpecService;
+    private final ReportStore reportStore;
 
-    public CloudWatchChartController(CloudWatchChartService chartService) {
+    public CloudWatchChartController(CloudWatchChartService chartService,
+                                     MetricsTailService metricsTailService,
+                                     CombinedReportService combinedReportService,
+                                     ReportSpecService reportSpecService,
+                                     ReportStore reportStore) {
         this.chartService = chartService;
+        this.metricsTailService = metricsTailService;
+        this.combinedReportService = combinedReportService;
+        this.reportSpecService = reportSpecService;
+        this.reportStore = reportStore;
     }
 
     @PostMapping("/export")
@@ -66,6 +95,34 @@ public class CloudWatchChartController {
         }
     }
 
+    /**
+     * Charts the consumer groups (or, with {@code groupBy=topic}, the topics) with the highest
+     * peak lag, selected by a Metrics Insights query, plus the rest rolled up as "Other".
+     */
+    @PostMapping("/export/kafka-top-lag")
+    public String exportKafkaTopLagChart(
+            @RequestParam String clusterName,
+            @RequestParam(defaultValue = "consumerGroup") String groupBy,
+            @RequestParam(defaultValue = "SumOffsetLag") String metricName,
+            @RequestParam(defaultValue = "10") int topN,
+            @RequestParam String startTime,
+            @RequestParam String endTime
+    ) {
+        try {
+            boolean byTopic = "topic".equalsIgnoreCase(groupBy);
+            if (!byTopic && !"consumerGroup".equalsIgnoreCase(groupBy)) {
+                throw new IllegalArgumentException("groupBy must be consumerGroup or topic");
+            }
+            String outputFileName = byTopic ? "kafka_top_lag_topics.png" : "kafka_top_lag_consumer_groups.png";
+            chartService.plotAndSaveKafkaTopNLag(clusterName, metricName, byTopic ? "Topic" : "Consumer Group", topN,
+                    startTime, endTime, "Lag Value (Messages)", outputFileName);
+            return "Kafka top " + topN + " lag chart exported successfully: " + outputFileName;
+        } catch (Exception e) {
+            logger.error("Error exporting Kafka top lag chart for cluster: {}", clusterName, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
     @PostMapping("/export/kafka-cpu-usage-by-broker")
     public String exportKafkaCpuUsageByBrokerChart(
             @RequestParam String clusterName,
@@ -97,6 +154,70 @@ public class CloudWatchChartController {
         }
     }
 
+    @PostMapping("/export/combined-report")
+    public String exportCombinedReport(
+            @RequestParam List<String> targets,
+            @RequestParam String startTime,
+            @RequestParam String endTime
+    ) {
+        try {
+            String reportPath = combinedReportService.generateCombinedReport(targets, startTime, endTime);
+            return "Combined report generated successfully at: " + reportPath;
+        } catch (Exception e) {
+            logger.error("Error generating combined report for targets: {}", targets, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Generates a report from a spec: a named one, or the JSON/YAML spec sent as the body.
+     */
+    @PostMapping("/export/spec-report")
+    public String exportSpecReport(
+            @RequestParam(defaultValue = "comprehensive") String spec,
+            @RequestParam(required = false) String clusterName,
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(defaultValue = "false") boolean pdf,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            @RequestBody(required = false) String body
+    ) {
+        try {
+            boolean inline = body != null && !body.isBlank();
+            ReportSpec reportSpec = inline
+                    ? ReportSpec.parse(body, contentType != null && contentType.contains("yaml"))
+                    : reportSpecService.loadSpec(spec);
+            String reportPath = reportSpecService.generateReport(reportSpec, inline ? "inline" : spec,
+                    clusterName, dbInstanceIdentifier, startTime, endTime, pdf);
+            return "Report generated successfully at: " + reportPath;
+        } catch (Exception e) {
+            logger.error("Error generating spec report {} for cluster: {}, DB instance: {}", spec, clusterName, dbInstanceIdentifier, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Lists the stored reports, newest first, of any CloudWatch target. startTime/endTime keep
+     * the reports overlapping that window.
+     */
+    @GetMapping("/reports")
+    public ResponseEntity<Object> listReports(
+            @RequestParam(required = false) String kind,
+            @RequestParam(required = false) String clusterName,
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime
+    ) {
+        try {
+            return ResponseEntity.ok(reportStore.list(kind, clusterName, dbInstanceIdentifier,
+                    startTime != null ? Instant.parse(startTime) : null,
+                    endTime != null ? Instant.parse(endTime) : null));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/export/database-read-iops")
     public String exportDatabaseReadIOPSChart(
             @RequestParam String dbInstanceIdentifier,
@@ -181,5 +302,106 @@ public class CloudWatchChartController {
         }
     }
 
-}
+    /**
+     * Serves an RDS metric chart as PNG for dashboards. Without startTime/endTime the chart
+     * covers the last {@code window} (e.g. 1h, 24h). Responses carry an ETag of the chart data,
+     * so polls with a matching If-None-Match get 304 and unchanged charts are never re-rendered.
+     */
+    @GetMapping("/chart/rds-metric")
+    public ResponseEntity<byte[]> getMetricChart(
+            @RequestParam String dbInstanceIdentifier,
+            @RequestParam String metricName,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(required = false) String yAxisLabel,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        try {
+            Instant end = endTime != null ? Instant.parse(endTime) : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            Instant start = startTime != null ? Instant.parse(startTime) : end.minus(DurationStyle.detectAndParse(window));
+            ChartRenderCache.RenderedChart chart = chartService.renderMetricChart(dbInstanceIdentifier, metricName,
+                    start.toString(), end.toString(), yAxisLabel != null ? yAxisLabel : metricName);
+            return pngResponse(chart, ifNoneMatch);
+        } catch (Exception e) {
+            logger.error("Error rendering chart {} for DB instance: {}", metricName, dbInstanceIdentifier, e);
+            return errorResponse(e);
+        }
+    }
 
+    /**
+     * Serves a Kafka consumer group/topic metric chart as PNG, like {@link #getMetricChart}.
+     */
+    @GetMapping("/chart/kafka-metric")
+    public ResponseEntity<byte[]> getKafkaMetricChart(
+            @RequestParam String clusterName,
+            @RequestParam String consumerGroup,
+            @RequestParam String topic,
+            @RequestParam(defaultValue = "ConsumerLag") String metricName,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(required = false) String yAxisLabel,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        try {
+            Instant end = endTime != null ? Instant.parse(endTime) : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            Instant start = startTime != null ? Instant.parse(startTime) : end.minus(DurationStyle.detectAndParse(window));
+            ChartRenderCache.RenderedChart chart = chartService.renderKafkaMetricChart(clusterName, consumerGroup, topic,
+                    metricName, start.toString(), end.toString(), yAxisLabel != null ? yAxisLabel : metricName);
+            return pngResponse(chart, ifNoneMatch);
+        } catch (Exception e) {
+            logger.error("Error rendering Kafka chart {} for cluster: {}, consumerGroup: {}, topic: {}",
+                    metricName, clusterName, consumerGroup, topic, e);
+            return errorResponse(e);
+        }
+    }
+
+    private static ResponseEntity<byte[]> pngResponse(ChartRenderCache.RenderedChart chart, String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals(chart.etag()) || candidate.equals("*")) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(chart.etag())
+                            .cacheControl(CacheControl.noCache())
+                            .build();
+                }
+            }
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .eTag(chart.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(chart.png());
+    }
+
+    private static ResponseEntity<byte[]> errorResponse(Exception e) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Streams new datapoints of an RDS instance or a Kafka cluster as server-sent events
+     * ("snapshot" on connect for an already watched target, then "datapoints" deltas).
+     * Exactly one of dbInstanceIdentifier and clusterName must be given.
+     */
+    @GetMapping(value = "/tail", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter tailMetrics(
+            @RequestParam(required = false) String dbInstanceIdentifier,
+            @RequestParam(required = false) String clusterName
+    ) {
+        boolean hasDb = dbInstanceIdentifier != null && !dbInstanceIdentifier.isBlank();
+        boolean hasCluster = clusterName != null && !clusterName.isBlank();
+        if (hasDb == hasCluster) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Specify either dbInstanceIdentifier or clusterName");
+        }
+        return hasDb
+                ? metricsTailService.subscribeDbInstance(dbInstanceIdentifier.trim())
+                : metricsTailService.subscribeCluster(clusterName.trim());
+    }
+}
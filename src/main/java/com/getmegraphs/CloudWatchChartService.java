@@ -3,42 +3,61 @@ package com.getmegraphs;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.ValueMarker;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.DeviationRenderer;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.chart.axis.DateAxis;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.title.TextTitle;
+import org.jfree.chart.ui.RectangleAnchor;
 import org.jfree.chart.ui.RectangleEdge;
 import org.jfree.chart.ui.RectangleInsets;
+import org.jfree.chart.ui.TextAnchor;
 import org.jfree.data.time.Millisecond;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.YIntervalSeries;
+import org.jfree.data.xy.YIntervalSeriesCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
 import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.DimensionFilter;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
 import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
 import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
 import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
 import software.amazon.awssdk.services.cloudwatch.model.ListMetricsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.ScanBy;
 import software.amazon.awssdk.services.cloudwatch.model.Statistic;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfWriter;
@@ -48,30 +67,188 @@ import com.itextpdf.text.pdf.PdfWriter;
 public class CloudWatchChartService {
 
     private static final Logger logger = LoggerFactory.getLogger(CloudWatchChartService.class);
-    private final CloudWatchClient cloudWatchClient;
+    private final CloudWatchFetcher cloudWatchFetcher;
+    private final RollingWindowStore rollingWindowStore;
+    private final ReportStore reportStore;
+    private final ArtifactSink artifactSink;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final ChartRenderCache chartRenderCache;
+    private final MeterRegistry meterRegistry;
+
+    // Concurrent requests for the same report share one generation
+    private final SingleFlight<ReportKey, String> reportFlights;
 
     @Value("${chart.timezone:UTC}")
     private String chartTimezone;
 
+    // Consumer groups charted by the comprehensive report's top-N lag chart (0 = no chart)
+    @Value("${kafka.top-n.limit:10}")
+    private int kafkaTopN;
+
+    // How far back Metrics Insights queries can reach
+    @Value("${kafka.top-n.insights-horizon:3h}")
+    private String insightsHorizon;
+
+    // Search expressions sent in one GetMetricData call
+    private static final int MAX_SEARCH_EXPRESSIONS_PER_CALL = 100;
+
+    // Series a Metrics Insights query can return
+    private static final int METRICS_INSIGHTS_MAX_SERIES = 500;
+    private static final Pattern INSIGHTS_IDENTIFIER = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    // Datapoints of the vector data are 5-minute aggregates
+    private static final int VECTOR_DATA_PERIOD_SECONDS = 300;
+
+    // Charts with more series only show averages per series in their subtitle
+    private static final int MAX_SERIES_WITH_SUBTITLE_DETAIL = 4;
+
     // Sanitized placeholder consumer group/topic pairs (replace via configuration if needed)
-    private static final String[][] DEFAULT_CONSUMER_GROUP_TOPIC_PAIRS = {
+    static final String[][] DEFAULT_CONSUMER_GROUP_TOPIC_PAIRS = {
             {"worker-consumer-group", "worker-topic"},
             {"notify-consumer-group", "notify-topic"},
             {"async-notify-consumer-group", "async-notify-topic"}
     };
 
-    public CloudWatchChartService(
-            @Value("${aws.accessKey}") String accessKey,
-            @Value("${aws.secretKey}") String secretKey,
-            @Value("${aws.sessionToken}") String sessionToken) {
-        AwsSessionCredentials awsCreds = AwsSessionCredentials.create(accessKey, secretKey, sessionToken);
-        this.cloudWatchClient = CloudWatchClient.builder()
-                .region(Region.of(String.valueOf(Region.EU_WEST_1)))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCreds))
-                .build();
+    public CloudWatchChartService(CloudWatchFetcher cloudWatchFetcher,
+                                  RollingWindowStore rollingWindowStore,
+                                  ReportStore reportStore,
+                                  ArtifactSink artifactSink,
+                                  CloudWatchClientRegistry clientRegistry,
+                                  ChartRenderCache chartRenderCache,
+                                  MeterRegistry meterRegistry) {
+        this.cloudWatchFetcher = cloudWatchFetcher;
+        this.rollingWindowStore = rollingWindowStore;
+        this.reportStore = reportStore;
+        this.artifactSink = artifactSink;
+        this.clientRegistry = clientRegistry;
+        this.chartRenderCache = chartRenderCache;
+        this.meterRegistry = meterRegistry;
+        this.reportFlights = new SingleFlight<>("report", meterRegistry);
+    }
+
+    /**
+     * Renders the chart and writes it as PNG to the {@link ArtifactSink}, timing rendering
+     * ({@code chart.render}) and encoding ({@code chart.png.encode}) separately.
+     */
+    private void saveChart(JFreeChart chart, String outputFileName) throws IOException {
+        BufferedImage image = renderImage(chart);
+
+        Timer.Sample encodeSample = Timer.start(meterRegistry);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ChartUtils.writeBufferedImageAsPNG(png, image);
+        encodeSample.stop(meterRegistry.timer("chart.png.encode"));
+        artifactSink.write(outputFileName, png.toByteArray(), "image/png");
+    }
+
+    private byte[] renderPng(JFreeChart chart) {
+        BufferedImage image = renderImage(chart);
+
+        Timer.Sample encodeSample = Timer.start(meterRegistry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ChartUtils.writeBufferedImageAsPNG(out, image);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode chart as PNG", e);
+        }
+        encodeSample.stop(meterRegistry.timer("chart.png.encode"));
+        return out.toByteArray();
     }
 
-    private JFreeChart enhanceChart(JFreeChart chart, String title, String yAxisLabel, boolean isKafkaChart) {
+    private BufferedImage renderImage(JFreeChart chart) {
+        Timer.Sample renderSample = Timer.start(meterRegistry);
+        BufferedImage image = chart.createBufferedImage(1200, 600);
+        renderSample.stop(meterRegistry.timer("chart.render"));
+        return image;
+    }
+
+    /**
+     * Charts and saves series of points as one styled time series chart; series without
+     * points are left out.
+     */
+    void saveTimeSeriesChart(String title,
+                             String yAxisLabel,
+                             boolean legend,
+                             Map<String, NavigableMap<Instant, Double>> series,
+                             String outputFileName) throws IOException {
+        TimeSeriesCollection dataset = new TimeSeriesCollection();
+        series.forEach((name, points) -> {
+            if (!points.isEmpty()) {
+                TimeSeries timeSeries = new StatisticsTimeSeries(name);
+                points.forEach((timestamp, value) -> timeSeries.addOrUpdate(new Millisecond(java.util.Date.from(timestamp)), value));
+                dataset.addSeries(timeSeries);
+            }
+        });
+        if (dataset.getSeriesCount() == 0) {
+            throw new RuntimeException("No data found for chart: " + title);
+        }
+
+        JFreeChart chart = ChartFactory.createTimeSeriesChart(title, "Time", yAxisLabel, dataset, legend, false, false);
+        chart = enhanceChart(chart, title, yAxisLabel, legend);
+        saveChart(chart, outputFileName);
+        logger.info("Saved chart: {} with {} series", outputFileName, dataset.getSeriesCount());
+    }
+
+    /**
+     * Charts a history with its forecast: the forecast line over its shaded prediction
+     * interval and, when given, the threshold as a horizontal marker.
+     */
+    void saveForecastChart(String title,
+                           String yAxisLabel,
+                           NavigableMap<Instant, Double> history,
+                           List<CapacityForecastReport.ForecastPoint> forecast,
+                           CapacityForecastReport.Threshold threshold,
+                           String outputFileName) throws IOException {
+        TimeSeriesCollection historyDataset = new TimeSeriesCollection();
+        TimeSeries historySeries = new StatisticsTimeSeries("History");
+        history.forEach((timestamp, value) -> historySeries.addOrUpdate(new Millisecond(java.util.Date.from(timestamp)), value));
+        historyDataset.addSeries(historySeries);
+
+        JFreeChart chart = ChartFactory.createTimeSeriesChart(title, "Time", yAxisLabel, historyDataset, true, false, false);
+        chart = enhanceChart(chart, title, yAxisLabel, true);
+        XYPlot plot = (XYPlot) chart.getPlot();
+
+        YIntervalSeries forecastSeries = new YIntervalSeries("Forecast");
+        double low = historySeries.getMinY();
+        double high = historySeries.getMaxY();
+        for (CapacityForecastReport.ForecastPoint point : forecast) {
+            forecastSeries.add(point.timestamp().toEpochMilli(), point.value(), point.lower(), point.upper());
+            low = Math.min(low, point.lower());
+            high = Math.max(high, point.upper());
+        }
+        YIntervalSeriesCollection forecastDataset = new YIntervalSeriesCollection();
+        forecastDataset.addSeries(forecastSeries);
+        DeviationRenderer forecastRenderer = new DeviationRenderer(true, false);
+        forecastRenderer.setSeriesPaint(0, new Color(220, 53, 69));
+        forecastRenderer.setSeriesFillPaint(0, new Color(220, 53, 69));
+        forecastRenderer.setSeriesStroke(0, new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                1f, new float[]{6f, 4f}, 0f));
+        forecastRenderer.setAlpha(0.15f);
+        plot.setDataset(1, forecastDataset);
+        plot.setRenderer(1, forecastRenderer);
+
+        if (threshold != null) {
+            ValueMarker marker = new ValueMarker(threshold.limit(), new Color(253, 126, 20), new BasicStroke(1.5f));
+            marker.setLabel("Threshold " + threshold);
+            marker.setLabelFont(new java.awt.Font("Arial", java.awt.Font.PLAIN, 11));
+            marker.setLabelAnchor(RectangleAnchor.TOP_LEFT);
+            marker.setLabelTextAnchor(TextAnchor.BOTTOM_LEFT);
+            plot.addRangeMarker(marker);
+            low = Math.min(low, threshold.limit());
+            high = Math.max(high, threshold.limit());
+        }
+        double margin = Math.max((high - low) * 0.05, 1e-9);
+        plot.getRangeAxis().setRange(low - margin, high + margin);
+
+        // Forecasts usually span days
+        SimpleDateFormat axisDateFormat = new SimpleDateFormat("MM-dd HH:mm");
+        axisDateFormat.setTimeZone(java.util.TimeZone.getTimeZone(chartTimezone));
+        ((DateAxis) plot.getDomainAxis()).setDateFormatOverride(axisDateFormat);
+
+        saveChart(chart, outputFileName);
+        logger.info("Saved forecast chart: {}", outputFileName);
+    }
+
+    JFreeChart enhanceChart(JFreeChart chart, String title, String yAxisLabel, boolean isKafkaChart) {
         // Set modern color scheme
         chart.setBackgroundPaint(new Color(248, 249, 250));
         chart.setBorderVisible(false);
@@ -162,7 +339,24 @@ public class CloudWatchChartService {
         return chart;
     }
 
-    private String calculateAverageText(XYPlot plot) {
+    /**
+     * Recomputes the average values subtitle added by {@link #enhanceChart} after the dataset changed.
+     */
+    private void refreshAverageSubtitle(JFreeChart chart) {
+        String averageText = calculateAverageText((XYPlot) chart.getPlot());
+        for (int i = 0; i < chart.getSubtitleCount(); i++) {
+            if (chart.getSubtitle(i) instanceof TextTitle subtitle && subtitle.getText().startsWith("Average Values: ")) {
+                subtitle.setText(averageText);
+            }
+        }
+    }
+
+    /**
+     * Subtitle with the average of every series, from the statistics kept while the series
+     * were filled. Charts with few series also show p95 and maximum per series; charts with
+     * many get them once, over all series together.
+     */
+    String calculateAverageText(XYPlot plot) {
         StringBuilder averageText = new StringBuilder("Average Values: ");
         TimeSeriesCollection dataset = (TimeSeriesCollection) plot.getDataset();
 
@@ -170,29 +364,28 @@ public class CloudWatchChartService {
             return "";
         }
 
+        boolean perSeriesDetail = dataset.getSeriesCount() <= MAX_SERIES_WITH_SUBTITLE_DETAIL;
+        SeriesStatistics allSeries = new SeriesStatistics();
+        boolean first = true;
         for (int i = 0; i < dataset.getSeriesCount(); i++) {
             TimeSeries series = dataset.getSeries(i);
-            if (series.getItemCount() > 0) {
-                double sum = 0.0;
-                int count = 0;
-
-                for (int j = 0; j < series.getItemCount(); j++) {
-                    Number value = series.getValue(j);
-                    if (value != null) {
-                        sum += value.doubleValue();
-                        count++;
-                    }
+            SeriesStatistics statistics = StatisticsTimeSeries.of(series);
+            if (statistics.count() > 0) {
+                if (!first) {
+                    averageText.append(", ");
                 }
-
-                if (count > 0) {
-                    double average = sum / count;
-                    if (i > 0) {
-                        averageText.append(", ");
-                    }
-                    averageText.append(series.getKey()).append(": ").append(String.format("%.2f", average));
+                first = false;
+                averageText.append(series.getKey()).append(": ").append(String.format("%.2f", statistics.mean()));
+                if (perSeriesDetail) {
+                    averageText.append(String.format(" (p95 %.2f, max %.2f)", statistics.quantile(0.95), statistics.max()));
+                } else {
+                    allSeries.merge(statistics);
                 }
             }
         }
+        if (allSeries.count() > 0) {
+            averageText.append(String.format(" | All series: p95 %.2f, max %.2f", allSeries.quantile(0.95), allSeries.max()));
+        }
 
         return averageText.toString();
     }
@@ -221,12 +414,12 @@ public class CloudWatchChartService {
                 .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
                 .build();
 
-        GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+        GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
         List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
         datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-        TimeSeries series = new TimeSeries(metricName);
+        TimeSeries series = new StatisticsTimeSeries(metricName);
 
         for (Datapoint dp : datapoints) {
             double value = dp.average() != null ? dp.average() : 0.0;
@@ -254,10 +447,100 @@ public class CloudWatchChartService {
         chart = enhanceChart(chart, metricName + " for " + dbInstanceIdentifier, yAxisLabel, false);
 
         logger.info("Saved chart: {}", outputFileName);
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
 
     }
 
+    /**
+     * Renders the {@link #plotAndSaveMetric} chart as PNG through the {@link ChartRenderCache}:
+     * polling the same window again only re-renders when its datapoints changed.
+     */
+    public ChartRenderCache.RenderedChart renderMetricChart(String dbInstanceIdentifier,
+                                                            String metricName,
+                                                            String startTimeStr,
+                                                            String endTimeStr,
+                                                            String yAxisLabel) {
+        Instant startTime = Instant.parse(startTimeStr);
+        Instant endTime = Instant.parse(endTimeStr);
+
+        GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
+                .namespace("AWS/RDS")
+                .metricName(metricName)
+                .dimensions(Dimension.builder()
+                        .name("DBInstanceIdentifier")
+                        .value(dbInstanceIdentifier)
+                        .build())
+                .startTime(startTime)
+                .endTime(endTime)
+                .period(60) // 1 minute
+                .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
+                .build();
+
+        NavigableMap<Instant, Double> points = new TreeMap<>();
+        for (Datapoint dp : cloudWatchFetcher.getMetricStatistics(request).datapoints()) {
+            double value = dp.average() != null ? dp.average() : 0.0;
+            if (metricName.equals("FreeableMemory")) {
+                value = value / (1024 * 1024); // Convert bytes to MB
+            }
+            points.put(dp.timestamp(), value);
+        }
+
+        String title = metricName + " for " + dbInstanceIdentifier;
+        String chartKey = String.join("|", "rds", clientRegistry.currentTarget(), dbInstanceIdentifier, metricName, yAxisLabel,
+                String.valueOf(java.time.Duration.between(startTime, endTime).toMinutes()));
+        return renderCachedChart(chartKey, title, yAxisLabel, false, Map.of(metricName, points));
+    }
+
+    /**
+     * Renders the {@link #plotAndSaveKafkaMetric} chart as PNG through the {@link ChartRenderCache}.
+     */
+    public ChartRenderCache.RenderedChart renderKafkaMetricChart(String clusterName,
+                                                                 String consumerGroup,
+                                                                 String topic,
+                                                                 String metricName,
+                                                                 String startTimeStr,
+                                                                 String endTimeStr,
+                                                                 String yAxisLabel) {
+        Instant startTime = Instant.parse(startTimeStr);
+        Instant endTime = Instant.parse(endTimeStr);
+
+        GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
+                .namespace("AWS/Kafka")
+                .metricName(metricName)
+                .dimensions(
+                        Dimension.builder().name("Cluster Name").value(clusterName).build(),
+                        Dimension.builder().name("Consumer Group").value(consumerGroup).build(),
+                        Dimension.builder().name("Topic").value(topic).build())
+                .startTime(startTime)
+                .endTime(endTime)
+                .period(60) // 1 minute
+                .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
+                .build();
+
+        NavigableMap<Instant, Double> points = new TreeMap<>();
+        for (Datapoint dp : cloudWatchFetcher.getMetricStatistics(request).datapoints()) {
+            points.put(dp.timestamp(), dp.average() != null ? dp.average() : 0.0);
+        }
+
+        String title = metricName + " for " + consumerGroup + " on " + topic;
+        String chartKey = String.join("|", "kafka", clientRegistry.currentTarget(), clusterName, consumerGroup, topic, metricName, yAxisLabel,
+                String.valueOf(java.time.Duration.between(startTime, endTime).toMinutes()));
+        return renderCachedChart(chartKey, title, yAxisLabel, true, Map.of(metricName + " - " + consumerGroup, points));
+    }
+
+    private ChartRenderCache.RenderedChart renderCachedChart(String chartKey,
+                                                             String title,
+                                                             String yAxisLabel,
+                                                             boolean isKafkaChart,
+                                                             Map<String, NavigableMap<Instant, Double>> series) {
+        return chartRenderCache.render(chartKey, series,
+                dataset -> enhanceChart(
+                        ChartFactory.createTimeSeriesChart(title, "Time", yAxisLabel, dataset, series.size() > 1, false, false),
+                        title, yAxisLabel, isKafkaChart),
+                this::refreshAverageSubtitle,
+                this::renderPng);
+    }
+
     public void plotAndSaveKafkaMetric(String clusterName,
                                        String consumerGroup,
                                        String topic,
@@ -293,12 +576,12 @@ public class CloudWatchChartService {
                 .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
                 .build();
 
-        GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+        GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
         List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
         datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-        TimeSeries series = new TimeSeries(metricName + " - " + consumerGroup);
+        TimeSeries series = new StatisticsTimeSeries(metricName + " - " + consumerGroup);
 
         for (Datapoint dp : datapoints) {
             double value = dp.average() != null ? dp.average() : 0.0;
@@ -322,7 +605,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, metricName + " for " + consumerGroup + " on " + topic, yAxisLabel, true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka chart: {}", outputFileName);
     }
 
@@ -364,12 +647,12 @@ public class CloudWatchChartService {
                     .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
                     .build();
 
-            GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+            GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
             List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
             datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-            TimeSeries series = new TimeSeries(topic);
+            TimeSeries series = new StatisticsTimeSeries(topic);
 
             for (Datapoint dp : datapoints) {
                 double value = dp.average() != null ? dp.average() : 0.0;
@@ -393,7 +676,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, metricName + " for Consumer Group: " + consumerGroup, yAxisLabel, true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka all topics chart: {}", outputFileName);
     }
 
@@ -423,7 +706,7 @@ public class CloudWatchChartService {
                 )
                 .build();
 
-        ListMetricsResponse listMetricsResponse = cloudWatchClient.listMetrics(listMetricsRequest);
+        ListMetricsResponse listMetricsResponse = cloudWatchFetcher.listMetrics(listMetricsRequest);
 
         TimeSeriesCollection dataset = new TimeSeriesCollection();
 
@@ -469,13 +752,13 @@ public class CloudWatchChartService {
                     .build();
 
             try {
-                GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                 List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                 if (!datapoints.isEmpty()) {
                     datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-                    TimeSeries series = new TimeSeries(topic);
+                    TimeSeries series = new StatisticsTimeSeries(topic);
 
                     for (Datapoint dp : datapoints) {
                         double value = dp.average() != null ? dp.average() : 0.0;
@@ -507,7 +790,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, metricName + " for Consumer Group: " + consumerGroup + " (Auto-discovered)", yAxisLabel, true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka auto-discovered topics chart: {} with {} topics", outputFileName, dataset.getSeriesCount());
     }
 
@@ -532,9 +815,7 @@ public class CloudWatchChartService {
                 )
                 .build();
 
-        ListMetricsResponse listMetricsResponse = cloudWatchClient.listMetrics(listMetricsRequest);
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
+        ListMetricsResponse listMetricsResponse = cloudWatchFetcher.listMetrics(listMetricsRequest);
 
         // Extract unique consumer groups from the metrics
         List<String> discoveredConsumerGroups = listMetricsResponse.metrics().stream()
@@ -551,111 +832,15 @@ public class CloudWatchChartService {
             throw new RuntimeException("No consumer groups found for cluster: " + clusterName);
         }
 
-        // For each consumer group, aggregate lag across all topics
-        for (String consumerGroup : discoveredConsumerGroups) {
-            // Get all topics for this consumer group
-            ListMetricsRequest topicsRequest = ListMetricsRequest.builder()
-                    .namespace("AWS/Kafka")
-                    .metricName(metricName)
-                    .dimensions(
-                            DimensionFilter.builder()
-                                    .name("Cluster Name")
-                                    .value(clusterName)
-                                    .build(),
-                            DimensionFilter.builder()
-                                    .name("Consumer Group")
-                                    .value(consumerGroup)
-                                    .build()
-                    )
-                    .build();
-
-            ListMetricsResponse topicsResponse = cloudWatchClient.listMetrics(topicsRequest);
-
-            List<String> topics = topicsResponse.metrics().stream()
-                    .flatMap(metric -> metric.dimensions().stream())
-                    .filter(dimension -> "Topic".equals(dimension.name()))
-                    .map(Dimension::value)
-                    .distinct()
-                    .sorted()
-                    .toList();
-
-            TimeSeries consumerGroupSeries = new TimeSeries(consumerGroup + " (Total)");
-
-            // For each topic in this consumer group, fetch data and aggregate
-            for (String topic : topics) {
-                List<Dimension> dimensions = new ArrayList<>();
-                dimensions.add(Dimension.builder()
-                        .name("Cluster Name")
-                        .value(clusterName)
-                        .build());
-                dimensions.add(Dimension.builder()
-                        .name("Consumer Group")
-                        .value(consumerGroup)
-                        .build());
-                dimensions.add(Dimension.builder()
-                        .name("Topic")
-                        .value(topic)
-                        .build());
-
-                GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
-                        .namespace("AWS/Kafka")
-                        .metricName(metricName)
-                        .dimensions(dimensions)
-                        .startTime(startTime)
-                        .endTime(endTime)
-                        .period(60) // 1 minutes
-                        .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
-                        .build();
-
-                try {
-                    GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
-                    List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
-
-                    if (!datapoints.isEmpty()) {
-                        datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
-
-                        // Aggregate data points for this consumer group
-                        for (Datapoint dp : datapoints) {
-                            double value = dp.average() != null ? dp.average() : 0.0;
-                            ZonedDateTime zdt = dp.timestamp().atZone(ZoneId.of("UTC"));
-                            Millisecond timePoint = new Millisecond(java.util.Date.from(zdt.toInstant()));
-
-                            // Add to existing value or create new one
-                            Number existingValue = consumerGroupSeries.getValue(timePoint);
-                            double newValue = (existingValue != null ? existingValue.doubleValue() : 0.0) + value;
-                            consumerGroupSeries.addOrUpdate(timePoint, newValue);
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Failed to fetch data for consumer group: {}, topic: {}", consumerGroup, topic, e);
-                }
-            }
-
-            // Only add series if it has data
-            if (consumerGroupSeries.getItemCount() > 0) {
-                dataset.addSeries(consumerGroupSeries);
-            }
-        }
-
-        if (dataset.getSeriesCount() == 0) {
+        // CloudWatch adds up the topics of each group and returns one series per group
+        Map<String, NavigableMap<Instant, Double>> series =
+                fetchKafkaLagTotals(clusterName, metricName, "Consumer Group", discoveredConsumerGroups, startTime, endTime);
+        if (series.isEmpty()) {
             throw new RuntimeException("No data found for any consumer groups in cluster: " + clusterName);
         }
 
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                metricName + " for All Consumer Groups in Cluster: " + clusterName,
-                "Time",
-                yAxisLabel,
-                dataset,
-                true, // Show legend to distinguish consumer groups
-                false,
-                false
-        );
-
-        // Apply enhanced styling
-        chart = enhanceChart(chart, metricName + " for All Consumer Groups in Cluster: " + clusterName, yAxisLabel, true);
-
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
-        logger.info("Saved Kafka all consumer groups chart: {} with {} consumer groups", outputFileName, dataset.getSeriesCount());
+        saveTimeSeriesChart(metricName + " for All Consumer Groups in Cluster: " + clusterName, yAxisLabel, true,
+                series, outputFileName);
     }
 
     public void plotAndSaveKafkaBrokerMetric(String clusterName,
@@ -679,7 +864,7 @@ public class CloudWatchChartService {
                 )
                 .build();
 
-        ListMetricsResponse listMetricsResponse = cloudWatchClient.listMetrics(listMetricsRequest);
+        ListMetricsResponse listMetricsResponse = cloudWatchFetcher.listMetrics(listMetricsRequest);
 
         TimeSeriesCollection dataset = new TimeSeriesCollection();
 
@@ -727,13 +912,13 @@ public class CloudWatchChartService {
                     .build();
 
             try {
-                GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                 List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                 if (!datapoints.isEmpty()) {
                     datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-                    TimeSeries series = new TimeSeries("Broker " + brokerId);
+                    TimeSeries series = new StatisticsTimeSeries("Broker " + brokerId);
 
                     for (Datapoint dp : datapoints) {
                         double value = dp.average() != null ? dp.average() : 0.0;
@@ -767,7 +952,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, metricName + " by Broker for Cluster: " + clusterName, yAxisLabel, true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka broker metric chart: {} with {} brokers", outputFileName, dataset.getSeriesCount());
     }
 
@@ -791,9 +976,7 @@ public class CloudWatchChartService {
                 )
                 .build();
 
-        ListMetricsResponse listMetricsResponse = cloudWatchClient.listMetrics(listMetricsRequest);
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
+        ListMetricsResponse listMetricsResponse = cloudWatchFetcher.listMetrics(listMetricsRequest);
 
         // Extract unique topics from the metrics
         List<String> discoveredTopics = listMetricsResponse.metrics().stream()
@@ -810,119 +993,231 @@ public class CloudWatchChartService {
             throw new RuntimeException("No topics found for cluster: " + clusterName);
         }
 
-        // For each topic, aggregate lag across all consumer groups
-        for (String topic : discoveredTopics) {
-            // Get all consumer groups for this topic
-            ListMetricsRequest consumerGroupsRequest = ListMetricsRequest.builder()
-                    .namespace("AWS/Kafka")
-                    .metricName("ConsumerLag")
-                    .dimensions(
-                            DimensionFilter.builder()
-                                    .name("Cluster Name")
-                                    .value(clusterName)
-                                    .build(),
-                            DimensionFilter.builder()
-                                    .name("Topic")
-                                    .value(topic)
-                                    .build()
-                    )
-                    .build();
-
-            ListMetricsResponse consumerGroupsResponse = cloudWatchClient.listMetrics(consumerGroupsRequest);
-
-            List<String> consumerGroups = consumerGroupsResponse.metrics().stream()
-                    .flatMap(metric -> metric.dimensions().stream())
-                    .filter(dimension -> "Consumer Group".equals(dimension.name()))
-                    .map(Dimension::value)
-                    .distinct()
-                    .sorted()
-                    .toList();
+        // CloudWatch adds up the consumer groups of each topic and returns one series per topic
+        Map<String, NavigableMap<Instant, Double>> series =
+                fetchKafkaLagTotals(clusterName, "ConsumerLag", "Topic", discoveredTopics, startTime, endTime);
+        if (series.isEmpty()) {
+            throw new RuntimeException("No data found for any topics in cluster: " + clusterName);
+        }
 
-            TimeSeries topicSeries = new TimeSeries(topic + " (Total)");
+        saveTimeSeriesChart("Consumer Lag by Topics for Cluster: " + clusterName, yAxisLabel, true, series, outputFileName);
+    }
 
-            // For each consumer group consuming this topic, fetch data and aggregate
-            for (String consumerGroup : consumerGroups) {
-                List<Dimension> dimensions = new ArrayList<>();
-                dimensions.add(Dimension.builder()
-                        .name("Cluster Name")
-                        .value(clusterName)
-                        .build());
-                dimensions.add(Dimension.builder()
-                        .name("Consumer Group")
-                        .value(consumerGroup)
-                        .build());
-                dimensions.add(Dimension.builder()
-                        .name("Topic")
-                        .value(topic)
-                        .build());
+    /**
+     * Lag of each consumer group (or topic) summed over all of its topics (or consumer groups),
+     * by {@code "<value> (Total)"}. Every value is a {@code SUM(SEARCH(...))} metric math
+     * expression, so the sum is computed by CloudWatch and a single series per value is
+     * transferred instead of one per consumer group and topic.
+     *
+     * @param dimensionName {@code Consumer Group} or {@code Topic}
+     */
+    private Map<String, NavigableMap<Instant, Double>> fetchKafkaLagTotals(String clusterName,
+                                                                        String metricName,
+                                                                        String dimensionName,
+                                                                        List<String> values,
+                                                                        Instant startTime,
+                                                                        Instant endTime) {
+        List<MetricDataQuery> queries = new ArrayList<>();
+        for (String value : values) {
+            // Quoted search terms match whole values only
+            String search = "{AWS/Kafka,\"Cluster Name\",\"Consumer Group\",Topic} MetricName=" + searchTerm(metricName)
+                    + " \"Cluster Name\"=" + searchTerm(clusterName)
+                    + " \"" + dimensionName + "\"=" + searchTerm(value);
+            queries.add(MetricDataQuery.builder()
+                    .id("total" + queries.size())
+                    .expression("SUM(SEARCH('" + search + "', 'Average', 60))")
+                    .label(value + " (Total)")
+                    .build());
+        }
 
-                GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
-                        .namespace("AWS/Kafka")
-                        .metricName("ConsumerLag")
-                        .dimensions(dimensions)
-                        .startTime(startTime)
-                        .endTime(endTime)
-                        .period(60) // 1 minute
-                        .statistics(Statistic.MAXIMUM, Statistic.AVERAGE)
-                        .build();
+        Map<String, NavigableMap<Instant, Double>> series = new LinkedHashMap<>();
+        for (int from = 0; from < queries.size(); from += MAX_SEARCH_EXPRESSIONS_PER_CALL) {
+            List<MetricDataResult> results = cloudWatchFetcher.getMetricData(GetMetricDataRequest.builder()
+                    .startTime(startTime)
+                    .endTime(endTime)
+                    .scanBy(ScanBy.TIMESTAMP_ASCENDING)
+                    .metricDataQueries(queries.subList(from, Math.min(queries.size(), from + MAX_SEARCH_EXPRESSIONS_PER_CALL)))
+                    .build());
+            for (MetricDataResult result : results) {
+                NavigableMap<Instant, Double> points = points(result);
+                if (!points.isEmpty()) {
+                    series.put(result.label(), points);
+                }
+            }
+        }
+        logger.info("Fetched {} totals of {} by {} in {} GetMetricData calls", series.size(), metricName, dimensionName,
+                (queries.size() + MAX_SEARCH_EXPRESSIONS_PER_CALL - 1) / MAX_SEARCH_EXPRESSIONS_PER_CALL);
+        return series;
+    }
 
-                try {
-                    GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
-                    List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
+    private static String searchTerm(String value) {
+        if (value.contains("\"") || value.contains("'")) {
+            throw new IllegalArgumentException("Quotes are not supported in CloudWatch search terms: " + value);
+        }
+        return "\"" + value + "\"";
+    }
 
-                    if (!datapoints.isEmpty()) {
-                        datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
+    private static NavigableMap<Instant, Double> points(MetricDataResult result) {
+        NavigableMap<Instant, Double> points = new TreeMap<>();
+        for (int i = 0; i < Math.min(result.timestamps().size(), result.values().size()); i++) {
+            points.put(result.timestamps().get(i), result.values().get(i));
+        }
+        return points;
+    }
 
-                        // Aggregate data points for this topic
-                        for (Datapoint dp : datapoints) {
-                            double value = dp.average() != null ? dp.average() : 0.0;
-                            ZonedDateTime zdt = dp.timestamp().atZone(ZoneId.of("UTC"));
-                            Millisecond timePoint = new Millisecond(java.util.Date.from(zdt.toInstant()));
+    /**
+     * Charts the {@code topN} consumer groups or topics of a cluster with the highest peak
+     * lag, plus an "Other" series with the lag of all the rest.
+     *
+     * Unlike {@link #plotAndSaveKafkaMetricAllConsumerGroups} and
+     * {@link #plotAndSaveKafkaLagByTopics}, which chart every group found by ListMetrics, the
+     * offenders are selected server-side by a CloudWatch Metrics Insights query in a single
+     * GetMetricData call: the lag summed over the topics (or consumer groups) of each group,
+     * ranked by its maximum. A second call gives the cluster total (CloudWatch takes one Metrics
+     * Insights query per GetMetricData request), and the "Other" series is the total minus the
+     * top series.
+     *
+     * Metrics Insights only queries recent data, so the window must start within
+     * {@code kafka.top-n.insights-horizon}.
+     *
+     * @param groupBy {@code Consumer Group} or {@code Topic}
+     */
+    public void plotAndSaveKafkaTopNLag(String clusterName,
+                                        String metricName,
+                                        String groupBy,
+                                        int topN,
+                                        String startTimeStr,
+                                        String endTimeStr,
+                                        String yAxisLabel,
+                                        String outputFileName) throws Exception {
+        Instant startTime = Instant.parse(startTimeStr);
+        Instant endTime = Instant.parse(endTimeStr);
+        if (!"Consumer Group".equals(groupBy) && !"Topic".equals(groupBy)) {
+            throw new IllegalArgumentException("Top-N lag can be grouped by Consumer Group or Topic, not: " + groupBy);
+        }
+        if (topN < 1 || topN > METRICS_INSIGHTS_MAX_SERIES) {
+            throw new IllegalArgumentException("topN must be between 1 and " + METRICS_INSIGHTS_MAX_SERIES);
+        }
+        if (!INSIGHTS_IDENTIFIER.matcher(metricName).matches() || clusterName.contains("'")) {
+            throw new IllegalArgumentException("Unsupported metric or cluster name for a Metrics Insights query");
+        }
+        if (!insideInsightsHorizon(startTime)) {
+            throw new IllegalArgumentException("Metrics Insights only covers the last " + insightsHorizon
+                    + "; the window starts at " + startTime);
+        }
 
-                            // Add to existing value or create new one
-                            Number existingValue = topicSeries.getValue(timePoint);
-                            double newValue = (existingValue != null ? existingValue.doubleValue() : 0.0) + value;
-                            topicSeries.addOrUpdate(timePoint, newValue);
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Failed to fetch data for topic: {}, consumer group: {}", topic, consumerGroup, e);
-                }
-            }
+        String from = " FROM SCHEMA(\"AWS/Kafka\", \"Cluster Name\", \"Consumer Group\", \"Topic\")"
+                + " WHERE \"Cluster Name\" = '" + clusterName + "'";
+        String topQuery = "SELECT SUM(\"" + metricName + "\")" + from
+                + " GROUP BY \"" + groupBy + "\" ORDER BY MAX() DESC LIMIT " + topN;
+        String totalQuery = "SELECT SUM(\"" + metricName + "\")" + from;
+        GetMetricDataRequest window = GetMetricDataRequest.builder()
+                .startTime(startTime)
+                .endTime(endTime)
+                .scanBy(ScanBy.TIMESTAMP_ASCENDING)
+                .build();
 
-            // Only add series if it has data
-            if (topicSeries.getItemCount() > 0) {
-                dataset.addSeries(topicSeries);
-            }
+        // The top query returns one result per group, labelled with the group's value, ranked
+        Map<String, NavigableMap<Instant, Double>> series = new LinkedHashMap<>();
+        for (MetricDataResult result : cloudWatchFetcher.getMetricData(window.toBuilder()
+                .metricDataQueries(MetricDataQuery.builder().id("top").expression(topQuery).period(60).build())
+                .build())) {
+            series.put(result.label(), points(result));
         }
-
-        if (dataset.getSeriesCount() == 0) {
-            throw new RuntimeException("No data found for any topics in cluster: " + clusterName);
+        if (series.isEmpty()) {
+            throw new RuntimeException("No " + metricName + " data found for cluster: " + clusterName);
+        }
+        NavigableMap<Instant, Double> total = new TreeMap<>();
+        for (MetricDataResult result : cloudWatchFetcher.getMetricData(window.toBuilder()
+                .metricDataQueries(MetricDataQuery.builder().id("total").expression(totalQuery).period(60).label("Total").build())
+                .build())) {
+            total = points(result);
         }
 
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                "Consumer Lag by Topics for Cluster: " + clusterName,
-                "Time",
-                yAxisLabel,
-                dataset,
-                true, // Show legend to distinguish topics
-                false,
-                false
-        );
+        NavigableMap<Instant, Double> other = new TreeMap<>();
+        total.forEach((timestamp, value) -> {
+            double top = series.values().stream().mapToDouble(points -> points.getOrDefault(timestamp, 0.0)).sum();
+            other.put(timestamp, Math.max(0, value - top));
+        });
+        if (other.values().stream().anyMatch(value -> value > 0)) {
+            series.put("Other", other);
+        }
 
-        // Apply enhanced styling
-        chart = enhanceChart(chart, "Consumer Lag by Topics for Cluster: " + clusterName, yAxisLabel, true);
+        String title = metricName + " of the Top " + topN + " " + ("Topic".equals(groupBy) ? "Topics" : "Consumer Groups")
+                + " in Cluster: " + clusterName;
+        saveTimeSeriesChart(title, yAxisLabel, true, series, outputFileName);
+    }
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
-        logger.info("Saved Kafka lag by topics chart: {} with {} topics", outputFileName, dataset.getSeriesCount());
+    boolean insideInsightsHorizon(Instant startTime) {
+        return !startTime.isBefore(Instant.now().minus(DurationStyle.detectAndParse(insightsHorizon)));
     }
 
     public String generateComprehensiveReport(String clusterName,
                                               String dbInstanceIdentifier,
                                               String startTime,
                                               String endTime) throws Exception {
+        Optional<RollingWindowStore.PublishedReport> precomputed = findRollingReport(clusterName, dbInstanceIdentifier, startTime, endTime);
+        if (precomputed.isPresent()) {
+            return new File(precomputed.get().reportDir()).getAbsolutePath();
+        }
+        ReportStore.Key storeKey = ReportStore.Key.of("comprehensive", clientRegistry.currentTarget(), clusterName, dbInstanceIdentifier,
+                null, startTime, endTime);
+        Optional<String> stored = reportStore.find(storeKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        return reportFlights.execute(ReportKey.of("directory", clientRegistry.currentTarget(), clusterName, dbInstanceIdentifier, startTime, endTime),
+                () -> reportStore.register(storeKey, buildComprehensiveReport(clusterName, dbInstanceIdentifier, startTime, endTime)));
+    }
+
+    /**
+     * The precomputed report of the rolling window (kept by RollingReportScheduler) the
+     * request asks for, e.g. the last hour. It ends at the last refresh, not at the
+     * requested end.
+     */
+    private Optional<RollingWindowStore.PublishedReport> findRollingReport(String clusterName,
+                                                                           String dbInstanceIdentifier,
+                                                                           String startTime,
+                                                                           String endTime) {
+        Optional<RollingWindowStore.PublishedReport> precomputed = rollingWindowStore.findReport(clientRegistry.currentTarget(),
+                clusterName, dbInstanceIdentifier, Instant.parse(startTime), Instant.parse(endTime));
+        precomputed.ifPresent(report -> logger.info("Serving precomputed rolling report {} ({} to {}) for {} to {}",
+                report.reportDir(), report.start(), report.end(), startTime, endTime));
+        return precomputed;
+    }
+
+    private String buildComprehensiveReport(String clusterName,
+                                            String dbInstanceIdentifier,
+                                            String startTime,
+                                            String endTime) throws Exception {
+        Timer.Sample reportSample = Timer.start(meterRegistry);
         String timestamp = Instant.now().toString().replaceAll("[:.]+", "-");
-        String reportDir = "comprehensive_report_" + timestamp;
+        String reportDir = reportStore.newPath("comprehensive_report_" + timestamp);
+        writeComprehensiveReport(reportDir, clusterName, dbInstanceIdentifier, startTime, endTime);
+        reportSample.stop(meterRegistry.timer("report.generation"));
+        return new File(reportDir).getAbsolutePath();
+    }
+
+    /**
+     * Writes charts, summary and vector data of a report into {@code reportDir}. Charts and
+     * data files asking for the same series share one CloudWatch query.
+     */
+    void writeComprehensiveReport(String reportDir,
+                                  String clusterName,
+                                  String dbInstanceIdentifier,
+                                  String startTime,
+                                  String endTime) throws Exception {
+        cloudWatchFetcher.reportScope(() -> {
+            writeReportFiles(reportDir, clusterName, dbInstanceIdentifier, startTime, endTime);
+            return null;
+        });
+    }
+
+    private void writeReportFiles(String reportDir,
+                                  String clusterName,
+                                  String dbInstanceIdentifier,
+                                  String startTime,
+                                  String endTime) throws Exception {
         new File(reportDir).mkdirs();
 
         List<String> generatedCharts = new ArrayList<>();
@@ -988,6 +1283,20 @@ public class CloudWatchChartService {
                 logger.error("Error generating CPU Usage by Broker chart", e);
             }
 
+            // Top-N consumer groups by lag, when Metrics Insights can reach the window
+            if (kafkaTopN > 0 && insideInsightsHorizon(Instant.parse(startTime))) {
+                try {
+                    String topGroupsChart = reportDir + "/kafka_consumer_lag_all_groups.png";
+                    plotAndSaveKafkaTopNLag(clusterName, "SumOffsetLag", "Consumer Group", kafkaTopN, startTime, endTime,
+                            "Lag Value (Messages)", topGroupsChart);
+                    generatedCharts.add(topGroupsChart);
+                    reportSummary += "✓ Consumer Lag (Top " + kafkaTopN + " Groups) chart generated\n";
+                } catch (Exception e) {
+                    reportSummary += "✗ Error generating Consumer Lag (Top Groups) chart: " + e.getMessage() + "\n";
+                    logger.error("Error generating Consumer Lag (Top Groups) chart", e);
+                }
+            }
+
             // Kafka NFT Dashboard Lag
             try {
                 String kafkaLagChart = reportDir + "/kafka_nft_dashboard_lag.png";
@@ -1022,44 +1331,126 @@ public class CloudWatchChartService {
             }
         }
 
+        // Create structured data file for AI analysis; its statistics also go into the summary
+        Map<String, SeriesStatistics> statistics =
+                createStructuredMetricsData(reportDir, clusterName, dbInstanceIdentifier, startTime, endTime);
+
         // Generate summary file
-        String summaryFile = reportDir + "/report_summary.txt";
-        try (java.io.FileWriter writer = new java.io.FileWriter(summaryFile)) {
-            writer.write(reportSummary);
-            writer.write("\nGenerated Charts:\n");
-            for (String chart : generatedCharts) {
-                writer.write("- " + chart + "\n");
+        StringBuilder summary = new StringBuilder(reportSummary);
+        summary.append("\nGenerated Charts:\n");
+        for (String chart : generatedCharts) {
+            summary.append("- ").append(chart).append("\n");
+        }
+        if (!statistics.isEmpty()) {
+            summary.append("\nStatistics (").append(VECTOR_DATA_PERIOD_SECONDS / 60).append("-minute averages):\n");
+            for (Map.Entry<String, SeriesStatistics> entry : statistics.entrySet()) {
+                summary.append("- ").append(entry.getKey()).append(": ").append(entry.getValue().summary()).append("\n");
             }
         }
+        artifactSink.write(reportDir + "/report_summary.txt", summary.toString().getBytes(StandardCharsets.UTF_8), "text/plain");
 
         logger.info("Comprehensive report generated in directory: {}", reportDir);
         logger.info("Generated {} charts", generatedCharts.size());
-
-        // Create structured data file for AI analysis
-        createStructuredMetricsData(reportDir, clusterName, dbInstanceIdentifier, startTime, endTime);
-
-        return new File(reportDir).getAbsolutePath();
     }
 
     public String generatePDFReport(String clusterName,
                                     String dbInstanceIdentifier,
                                     String startTime,
                                     String endTime) throws Exception {
-        // First generate the comprehensive report with charts
-        String reportDir = generateComprehensiveReport(clusterName, dbInstanceIdentifier, startTime, endTime);
+        ReportStore.Key storeKey = ReportStore.Key.of("pdf", clientRegistry.currentTarget(), clusterName, dbInstanceIdentifier,
+                null, startTime, endTime);
+        Optional<String> stored = reportStore.find(storeKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        return reportFlights.execute(ReportKey.of("pdf", clientRegistry.currentTarget(), clusterName, dbInstanceIdentifier, startTime, endTime),
+                () -> reportStore.register(storeKey, buildPDFReport(clusterName, dbInstanceIdentifier, startTime, endTime)));
+    }
+
+    private String buildPDFReport(String clusterName,
+                                  String dbInstanceIdentifier,
+                                  String startTime,
+                                  String endTime) throws Exception {
+        // First generate the comprehensive report with charts; a precomputed rolling report
+        // is labelled with the window it actually covers
+        Optional<RollingWindowStore.PublishedReport> precomputed = findRollingReport(clusterName, dbInstanceIdentifier, startTime, endTime);
+        String reportDir = precomputed.isPresent()
+                ? new File(precomputed.get().reportDir()).getAbsolutePath()
+                : generateComprehensiveReport(clusterName, dbInstanceIdentifier, startTime, endTime);
+        String reportStart = precomputed.map(report -> report.start().toString()).orElse(startTime);
+        String reportEnd = precomputed.map(report -> report.end().toString()).orElse(endTime);
 
         // Create PDF file name
         String timestamp = Instant.now().toString().replaceAll("[:.]+", "-");
-        String pdfFileName = "comprehensive_report_" + timestamp + ".pdf";
+        String pdfFileName = reportStore.newPath("comprehensive_report_" + timestamp + ".pdf");
+
+        assemblePDFReport(reportDir, pdfFileName, clusterName, dbInstanceIdentifier, reportStart, reportEnd);
 
-        // Create PDF document
+        logger.info("PDF report generated: {}", pdfFileName);
+        return new File(pdfFileName).getAbsolutePath();
+    }
+
+    /**
+     * Builds the PDF in memory from an already generated report directory (summary + charts)
+     * and writes it to the {@link ArtifactSink}.
+     */
+    void assemblePDFReport(String reportDir,
+                           String pdfFileName,
+                           String clusterName,
+                           String dbInstanceIdentifier,
+                           String startTime,
+                           String endTime) throws Exception {
+        Timer.Sample pdfSample = Timer.start(meterRegistry);
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = openReportPDF(pdf, "CloudWatch Comprehensive Report", reportDir,
+                clusterName, dbInstanceIdentifier, startTime, endTime);
+
+        // RDS Charts Section
+        if (dbInstanceIdentifier != null && !dbInstanceIdentifier.trim().isEmpty()) {
+            addSectionHeadingToPDF(document, "RDS Database Metrics");
+
+            // Add RDS charts
+            addChartToPDF(document, reportDir + "/rds_cpu_utilization.png", "CPU Utilization");
+            addChartToPDF(document, reportDir + "/rds_freeable_memory.png", "Freeable Memory");
+            addChartToPDF(document, reportDir + "/rds_database_connections.png", "Database Connections");
+            addChartToPDF(document, reportDir + "/rds_read_iops.png", "Read IOPS");
+            addChartToPDF(document, reportDir + "/rds_write_iops.png", "Write IOPS");
+        }
+
+        // Kafka Charts Section
+        if (clusterName != null && !clusterName.trim().isEmpty()) {
+            addSectionHeadingToPDF(document, "Kafka Cluster Metrics");
+
+            // Add Kafka charts
+            addChartToPDF(document, reportDir + "/kafka_consumer_lag_all_groups.png", "Consumer Lag (Top Consumer Groups)");
+            addChartToPDF(document, reportDir + "/kafka_cpu_usage_by_broker.png", "CPU Usage by Broker");
+            addChartToPDF(document, reportDir + "/kafka_nft_dashboard_lag.png", "Kafka NFT Dashboard Lag");
+            addChartToPDF(document, reportDir + "/kafka_lag_limited.png", "Kafka Lag (SumOffsetLag and MaxOffsetLag)");
+            addChartToPDF(document, reportDir + "/kafka_time_lag.png", "Kafka Time Lag (Time-based lag in milliseconds)");
+        }
+
+        document.close();
+        pdfSample.stop(meterRegistry.timer("report.pdf.assembly"));
+        artifactSink.write(pdfFileName, pdf.toByteArray(), "application/pdf");
+    }
+
+    /**
+     * Opens a report PDF on {@code out} and writes its title, metadata and the report_summary.txt of {@code reportDir}.
+     */
+    Document openReportPDF(OutputStream out,
+                           String reportTitle,
+                           String reportDir,
+                           String clusterName,
+                           String dbInstanceIdentifier,
+                           String startTime,
+                           String endTime) throws Exception {
         Document document = new Document(PageSize.A4, 36, 36, 54, 54);
-        PdfWriter.getInstance(document, new FileOutputStream(pdfFileName));
+        PdfWriter.getInstance(document, out);
         document.open();
 
         // Add title
         com.itextpdf.text.Font titleFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 18, com.itextpdf.text.Font.BOLD);
-        Paragraph title = new Paragraph("CloudWatch Comprehensive Report", titleFont);
+        Paragraph title = new Paragraph(reportTitle, titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20);
         document.add(title);
@@ -1091,46 +1482,15 @@ public class CloudWatchChartService {
         } catch (Exception e) {
             logger.warn("Could not read summary file: {}", e.getMessage());
         }
+        return document;
+    }
 
-        // Add charts with headings
+    void addSectionHeadingToPDF(Document document, String heading) throws DocumentException {
         com.itextpdf.text.Font headingFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 14, com.itextpdf.text.Font.BOLD);
-
-        // RDS Charts Section
-        if (dbInstanceIdentifier != null && !dbInstanceIdentifier.trim().isEmpty()) {
-            // RDS Section Header
-            Paragraph rdsHeader = new Paragraph("RDS Database Metrics", headingFont);
-            rdsHeader.setSpacingBefore(20);
-            rdsHeader.setSpacingAfter(15);
-            document.add(rdsHeader);
-
-            // Add RDS charts
-            addChartToPDF(document, reportDir + "/rds_cpu_utilization.png", "CPU Utilization");
-            addChartToPDF(document, reportDir + "/rds_freeable_memory.png", "Freeable Memory");
-            addChartToPDF(document, reportDir + "/rds_database_connections.png", "Database Connections");
-            addChartToPDF(document, reportDir + "/rds_read_iops.png", "Read IOPS");
-            addChartToPDF(document, reportDir + "/rds_write_iops.png", "Write IOPS");
-        }
-
-        // Kafka Charts Section
-        if (clusterName != null && !clusterName.trim().isEmpty()) {
-            // Kafka Section Header
-            Paragraph kafkaHeader = new Paragraph("Kafka Cluster Metrics", headingFont);
-            kafkaHeader.setSpacingBefore(20);
-            kafkaHeader.setSpacingAfter(15);
-            document.add(kafkaHeader);
-
-            // Add Kafka charts
-            addChartToPDF(document, reportDir + "/kafka_consumer_lag_all_groups.png", "Consumer Lag (All Groups)");
-            addChartToPDF(document, reportDir + "/kafka_cpu_usage_by_broker.png", "CPU Usage by Broker");
-            addChartToPDF(document, reportDir + "/kafka_nft_dashboard_lag.png", "Kafka NFT Dashboard Lag");
-            addChartToPDF(document, reportDir + "/kafka_lag_limited.png", "Kafka Lag (SumOffsetLag and MaxOffsetLag)");
-            addChartToPDF(document, reportDir + "/kafka_time_lag.png", "Kafka Time Lag (Time-based lag in milliseconds)");
-        }
-
-        document.close();
-
-        logger.info("PDF report generated: {}", pdfFileName);
-        return new File(pdfFileName).getAbsolutePath();
+        Paragraph header = new Paragraph(heading, headingFont);
+        header.setSpacingBefore(20);
+        header.setSpacingAfter(15);
+        document.add(header);
     }
 
     public void plotAndSaveKafkaMultiMetricLag(String clusterName,
@@ -1173,13 +1533,13 @@ public class CloudWatchChartService {
                     .build();
 
             try {
-                GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                 List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                 if (!datapoints.isEmpty()) {
                     datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-                    TimeSeries series = new TimeSeries(metricName);
+                    TimeSeries series = new StatisticsTimeSeries(metricName);
 
                     for (Datapoint dp : datapoints) {
                         double value = dp.average() != null ? dp.average() : 0.0;
@@ -1211,7 +1571,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, "Kafka Lag Metrics for " + consumerGroup + " on " + topic, "Lag Value (Mixed Units)", true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka multi-metric lag chart: {} with {} metrics", outputFileName, dataset.getSeriesCount());
     }
 
@@ -1264,13 +1624,13 @@ public class CloudWatchChartService {
                         .build();
 
                 try {
-                    GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                    GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                     List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                     if (!datapoints.isEmpty()) {
                         datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-                        TimeSeries series = new TimeSeries(metricName);
+                        TimeSeries series = new StatisticsTimeSeries(metricName);
 
                         for (Datapoint dp : datapoints) {
                             double value = dp.average() != null ? dp.average() : 0.0;
@@ -1305,7 +1665,7 @@ public class CloudWatchChartService {
                 String baseFileName = outputFileName.replace(".png", "");
                 String consumerGroupFileName = baseFileName + "_" + shortName.toLowerCase().replace(" ", "_") + ".png";
 
-                ChartUtils.saveChartAsPNG(new File(consumerGroupFileName), chart, 1200, 600);
+                saveChart(chart, consumerGroupFileName);
                 generatedCharts.add(consumerGroupFileName);
                 logger.info("Saved Kafka lag chart for {}: {} with {} metrics", shortName, consumerGroupFileName, dataset.getSeriesCount());
             }
@@ -1367,13 +1727,13 @@ public class CloudWatchChartService {
                         .build();
 
                 try {
-                    GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                    GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                     List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                     if (!datapoints.isEmpty()) {
                         datapoints.sort((a, b) -> a.timestamp().compareTo(b.timestamp()));
 
-                        TimeSeries series = new TimeSeries(metricName);
+                        TimeSeries series = new StatisticsTimeSeries(metricName);
 
                         for (Datapoint dp : datapoints) {
                             double value = dp.average() != null ? dp.average() : 0.0;
@@ -1409,7 +1769,7 @@ public class CloudWatchChartService {
                 String baseFileName = outputFileName.replace(".png", "");
                 String consumerGroupFileName = baseFileName + "_" + shortName.toLowerCase().replace(" ", "_") + ".png";
 
-                ChartUtils.saveChartAsPNG(new File(consumerGroupFileName), chart, 1200, 600);
+                saveChart(chart, consumerGroupFileName);
                 generatedCharts.add(consumerGroupFileName);
                 logger.info("Saved Kafka time lag chart for {}: {} with {} metrics", shortName, consumerGroupFileName, dataset.getSeriesCount());
             }
@@ -1467,7 +1827,7 @@ public class CloudWatchChartService {
                         .build();
 
                 try {
-                    GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+                    GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
 
                     List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
                     if (!datapoints.isEmpty()) {
@@ -1475,7 +1835,7 @@ public class CloudWatchChartService {
 
                         // Create series name with consumer group and metric for clarity
                         String seriesName = getShortConsumerGroupName(consumerGroup) + " - " + metricName;
-                        TimeSeries series = new TimeSeries(seriesName);
+                        TimeSeries series = new StatisticsTimeSeries(seriesName);
 
                         for (Datapoint dp : datapoints) {
                             double value = dp.average() != null ? dp.average() : 0.0;
@@ -1510,7 +1870,7 @@ public class CloudWatchChartService {
         // Apply enhanced styling
         chart = enhanceChart(chart, "Kafka NFT Dashboard Lag Metrics for Cluster: " + clusterName, "Lag Value (Mixed Units)", true);
 
-        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 1200, 600);
+        saveChart(chart, outputFileName);
         logger.info("Saved Kafka NFT dashboard lag chart: {} with {} series", outputFileName, dataset.getSeriesCount());
     }
 
@@ -1527,7 +1887,7 @@ public class CloudWatchChartService {
         }
     }
 
-    private void addChartToPDF(Document document, String chartPath, String chartTitle) {
+    void addChartToPDF(Document document, String chartPath, String chartTitle) {
         try {
             File chartFile = new File(chartPath);
             if (chartFile.exists()) {
@@ -1566,20 +1926,17 @@ public class CloudWatchChartService {
     }
 
     /**
-     * Creates structured metrics data in JSON-like format that AI can easily analyze
+     * Creates structured metrics data in JSON-like format that AI can easily analyze. The
+     * statistics of every series, collected while its datapoints are written, go into the
+     * report_metadata header, along with rollups over all consumer groups.
+     *
+     * @return statistics per series, keyed like in the header
      */
-    private void createStructuredMetricsData(String reportDir, String clusterName, String dbInstanceIdentifier,
-                                             String startTime, String endTime) {
+    Map<String, SeriesStatistics> createStructuredMetricsData(String reportDir, String clusterName, String dbInstanceIdentifier,
+                                                              String startTime, String endTime) {
+        Map<String, SeriesStatistics> statistics = new LinkedHashMap<>();
         try {
             StringBuilder jsonData = new StringBuilder();
-            jsonData.append("{\n");
-            jsonData.append("  \"report_metadata\": {\n");
-            jsonData.append("    \"generated_at\": \"").append(Instant.now()).append("\",\n");
-            jsonData.append("    \"time_range\": {\n");
-            jsonData.append("      \"start\": \"").append(startTime).append("\",\n");
-            jsonData.append("      \"end\": \"").append(endTime).append("\"\n");
-            jsonData.append("    }\n");
-            jsonData.append("  },\n");
 
             Instant startInstant = Instant.parse(startTime);
             Instant endInstant = Instant.parse(endTime);
@@ -1594,9 +1951,9 @@ public class CloudWatchChartService {
                 jsonData.append("      \"expected_range\": \"40% - 50%\",\n");
                 jsonData.append("      \"unit\": \"percent\",\n");
                 jsonData.append("      \"data_points\": [\n");
-                appendMetricDataPoints(jsonData, "AWS/RDS", "CPUUtilization",
+                statistics.put("rds.cpu_utilization", appendMetricDataPoints(jsonData, "AWS/RDS", "CPUUtilization",
                         List.of(Dimension.builder().name("DBInstanceIdentifier").value(dbInstanceIdentifier).build()),
-                        startInstant, endInstant);
+                        startInstant, endInstant));
                 jsonData.append("      ]\n");
                 jsonData.append("    },\n");
 
@@ -1605,9 +1962,9 @@ public class CloudWatchChartService {
                 jsonData.append("      \"expected_range\": \"2000 - 2500 connections\",\n");
                 jsonData.append("      \"unit\": \"connections\",\n");
                 jsonData.append("      \"data_points\": [\n");
-                appendMetricDataPoints(jsonData, "AWS/RDS", "DatabaseConnections",
+                statistics.put("rds.database_connections", appendMetricDataPoints(jsonData, "AWS/RDS", "DatabaseConnections",
                         List.of(Dimension.builder().name("DBInstanceIdentifier").value(dbInstanceIdentifier).build()),
-                        startInstant, endInstant);
+                        startInstant, endInstant));
                 jsonData.append("      ]\n");
                 jsonData.append("    },\n");
 
@@ -1615,9 +1972,9 @@ public class CloudWatchChartService {
                 jsonData.append("    \"freeable_memory\": {\n");
                 jsonData.append("      \"unit\": \"bytes\",\n");
                 jsonData.append("      \"data_points\": [\n");
-                appendMetricDataPoints(jsonData, "AWS/RDS", "FreeableMemory",
+                statistics.put("rds.freeable_memory", appendMetricDataPoints(jsonData, "AWS/RDS", "FreeableMemory",
                         List.of(Dimension.builder().name("DBInstanceIdentifier").value(dbInstanceIdentifier).build()),
-                        startInstant, endInstant);
+                        startInstant, endInstant));
                 jsonData.append("      ]\n");
                 jsonData.append("    }\n");
                 jsonData.append("  }");
@@ -1633,6 +1990,8 @@ public class CloudWatchChartService {
                 jsonData.append("    \"consumer_groups\": {\n");
 
                 String[][] consumerGroupTopicPairs = DEFAULT_CONSUMER_GROUP_TOPIC_PAIRS;
+                SeriesStatistics allSumOffsetLag = new SeriesStatistics();
+                SeriesStatistics allMaxOffsetLag = new SeriesStatistics();
 
                 for (int i = 0; i < consumerGroupTopicPairs.length; i++) {
                     String[] pair = consumerGroupTopicPairs[i];
@@ -1649,12 +2008,14 @@ public class CloudWatchChartService {
                     jsonData.append("        \"sum_offset_lag\": {\n");
                     jsonData.append("          \"unit\": \"messages\",\n");
                     jsonData.append("          \"data_points\": [\n");
-                    appendMetricDataPoints(jsonData, "AWS/Kafka", "SumOffsetLag",
+                    SeriesStatistics sumOffsetLag = appendMetricDataPoints(jsonData, "AWS/Kafka", "SumOffsetLag",
                             List.of(
                                     Dimension.builder().name("Cluster Name").value(clusterName).build(),
                                     Dimension.builder().name("Consumer Group").value(consumerGroup).build(),
                                     Dimension.builder().name("Topic").value(topic).build()
                             ), startInstant, endInstant);
+                    statistics.put("kafka." + shortName + ".sum_offset_lag", sumOffsetLag);
+                    allSumOffsetLag.merge(sumOffsetLag);
                     jsonData.append("          ]\n");
                     jsonData.append("        },\n");
 
@@ -1662,12 +2023,14 @@ public class CloudWatchChartService {
                     jsonData.append("        \"max_offset_lag\": {\n");
                     jsonData.append("          \"unit\": \"messages\",\n");
                     jsonData.append("          \"data_points\": [\n");
-                    appendMetricDataPoints(jsonData, "AWS/Kafka", "MaxOffsetLag",
+                    SeriesStatistics maxOffsetLag = appendMetricDataPoints(jsonData, "AWS/Kafka", "MaxOffsetLag",
                             List.of(
                                     Dimension.builder().name("Cluster Name").value(clusterName).build(),
                                     Dimension.builder().name("Consumer Group").value(consumerGroup).build(),
                                     Dimension.builder().name("Topic").value(topic).build()
                             ), startInstant, endInstant);
+                    statistics.put("kafka." + shortName + ".max_offset_lag", maxOffsetLag);
+                    allMaxOffsetLag.merge(maxOffsetLag);
                     jsonData.append("          ]\n");
                     jsonData.append("        }\n");
                     jsonData.append("      }");
@@ -1679,25 +2042,63 @@ public class CloudWatchChartService {
 
                 jsonData.append("    }\n");
                 jsonData.append("  }\n");
+                statistics.put("kafka.all_consumer_groups.sum_offset_lag", allSumOffsetLag);
+                statistics.put("kafka.all_consumer_groups.max_offset_lag", allMaxOffsetLag);
             }
 
             jsonData.append("}\n");
 
+            // The header comes first, but its statistics are only known once the series are written
+            StringBuilder header = new StringBuilder();
+            header.append("{\n");
+            header.append("  \"report_metadata\": {\n");
+            header.append("    \"generated_at\": \"").append(Instant.now()).append("\",\n");
+            header.append("    \"time_range\": {\n");
+            header.append("      \"start\": \"").append(startTime).append("\",\n");
+            header.append("      \"end\": \"").append(endTime).append("\"\n");
+            header.append("    },\n");
+            header.append("    \"period_seconds\": ").append(VECTOR_DATA_PERIOD_SECONDS).append(",\n");
+            header.append("    \"statistics\": {");
+            int written = 0;
+            for (Map.Entry<String, SeriesStatistics> entry : statistics.entrySet()) {
+                SeriesStatistics stats = entry.getValue();
+                if (stats.count() == 0) {
+                    continue;
+                }
+                header.append(written++ > 0 ? ",\n" : "\n");
+                header.append("      \"").append(entry.getKey()).append("\": {")
+                        .append("\"count\": ").append(stats.count())
+                        .append(", \"mean\": ").append(String.format("%.2f", stats.mean()))
+                        .append(", \"stddev\": ").append(String.format("%.2f", stats.standardDeviation()))
+                        .append(", \"min\": ").append(String.format("%.2f", stats.min()))
+                        .append(", \"p50\": ").append(String.format("%.2f", stats.quantile(0.5)))
+                        .append(", \"p95\": ").append(String.format("%.2f", stats.quantile(0.95)))
+                        .append(", \"p99\": ").append(String.format("%.2f", stats.quantile(0.99)))
+                        .append(", \"max\": ").append(String.format("%.2f", stats.max()))
+                        .append("}");
+            }
+            header.append(written > 0 ? "\n    }\n" : "}\n");
+            header.append("  },\n");
+
             // Write structured data to file
             String dataFileName = reportDir + "/metrics_vector_data.json";
-            java.nio.file.Files.writeString(java.nio.file.Paths.get(dataFileName), jsonData.toString());
+            artifactSink.write(dataFileName, header.append(jsonData).toString().getBytes(StandardCharsets.UTF_8), "application/json");
             logger.info("Created structured metrics data file for AI analysis: {}", dataFileName);
 
         } catch (Exception e) {
             logger.error("Error creating structured metrics data file: {}", e.getMessage(), e);
         }
+        return statistics;
     }
 
     /**
      * Appends metric data points in JSON format
+     *
+     * @return statistics of the averages written
      */
-    private void appendMetricDataPoints(StringBuilder jsonData, String namespace, String metricName,
-                                        List<Dimension> dimensions, Instant startTime, Instant endTime) {
+    private SeriesStatistics appendMetricDataPoints(StringBuilder jsonData, String namespace, String metricName,
+                                                    List<Dimension> dimensions, Instant startTime, Instant endTime) {
+        SeriesStatistics statistics = new SeriesStatistics();
         try {
             GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
                     .namespace(namespace)
@@ -1705,11 +2106,11 @@ public class CloudWatchChartService {
                     .dimensions(dimensions)
                     .startTime(startTime)
                     .endTime(endTime)
-                    .period(300) // 5 minute intervals
+                    .period(VECTOR_DATA_PERIOD_SECONDS)
                     .statistics(Statistic.AVERAGE, Statistic.MAXIMUM, Statistic.MINIMUM)
                     .build();
 
-            GetMetricStatisticsResponse response = cloudWatchClient.getMetricStatistics(request);
+            GetMetricStatisticsResponse response = cloudWatchFetcher.getMetricStatistics(request);
             List<Datapoint> datapoints = new ArrayList<>(response.datapoints());
 
             if (!datapoints.isEmpty()) {
@@ -1724,6 +2125,7 @@ public class CloudWatchChartService {
                     double avg = dp.average() != null ? dp.average() : 0.0;
                     double max = dp.maximum() != null ? dp.maximum() : 0.0;
                     double min = dp.minimum() != null ? dp.minimum() : 0.0;
+                    statistics.add(avg);
 
                     jsonData.append("        {\n");
                     jsonData.append("          \"timestamp\": \"").append(timestamp).append("\",\n");
@@ -1740,6 +2142,25 @@ public class CloudWatchChartService {
         } catch (Exception e) {
             logger.error("Error fetching metric data points for {}: {}", metricName, e.getMessage(), e);
         }
+        return statistics;
     }
 
+
+    /**
+     * Identity of a report request: blank targets are dropped and the window is compared
+     * as instants, so equivalent spellings of the same request coalesce.
+     */
+    record ReportKey(String kind, String cloudWatchTarget, String clusterName, String dbInstanceIdentifier,
+                     Instant start, Instant end) {
+
+        static ReportKey of(String kind, String cloudWatchTarget, String clusterName, String dbInstanceIdentifier,
+                            String startTime, String endTime) {
+            return new ReportKey(kind, cloudWatchTarget, normalize(clusterName), normalize(dbInstanceIdentifier),
+                    Instant.parse(startTime), Instant.parse(endTime));
+        }
+
+        private static String normalize(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package com.getmegraphs;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.sts.StsClient;
+import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CloudWatch clients per target, built on first use and kept for reuse. A target is one of:
+ * <ul>
+ *   <li>{@code default}: {@code aws.region} with the configured credentials</li>
+ *   <li>a name listed in {@code aws.cloudwatch.targets}, configured by
+ *       {@code aws.cloudwatch.target.<name>.region} and optionally {@code .role-arn} and
+ *       {@code .external-id} (another account, reached by assuming the role)</li>
+ *   <li>a region id such as {@code us-east-1}: that region with the configured credentials</li>
+ * </ul>
+ *
+ * The target of the current request is bound to the thread (see {@link CloudWatchTargetFilter})
+ * and picked up by {@link CloudWatchFetcher}. Work handed to other threads carries it along
+ * through {@link #bind}.
+ */
+@Component
+public class CloudWatchClientRegistry {
+
+    public static final String DEFAULT_TARGET = "default";
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudWatchClientRegistry.class);
+
+    private final ThreadLocal<String> currentTarget = new ThreadLocal<>();
+    private final Map<String, CloudWatchClient> clients = new ConcurrentHashMap<>();
+    private final List<AutoCloseable> ownedResources = new CopyOnWriteArrayList<>();
+    private final AwsCredentialsProvider credentialsProvider;
+    private final Environment environment;
+    private final String endpoint;
+    private final List<String> configuredTargets;
+
+    public CloudWatchClientRegistry(CloudWatchClient cloudWatchClient,
+                                    AwsCredentialsProvider awsCredentialsProvider,
+                                    Environment environment,
+                                    @Value("${aws.cloudwatch.endpoint:}") String endpoint,
+                                    @Value("${aws.cloudwatch.targets:}") List<String> targets) {
+        this.credentialsProvider = awsCredentialsProvider;
+        this.environment = environment;
+        this.endpoint = endpoint;
+        this.configuredTargets = targets.stream().map(String::trim).filter(t -> !t.isEmpty()).toList();
+        for (String target : configuredTargets) {
+            if (environment.getProperty(prefix(target) + "region") == null) {
+                throw new IllegalStateException("Missing " + prefix(target) + "region for CloudWatch target " + target);
+            }
+        }
+        clients.put(DEFAULT_TARGET, cloudWatchClient);
+    }
+
+    /**
+     * Client of the target bound to the calling thread.
+     */
+    public CloudWatchClient client() {
+        return client(currentTarget());
+    }
+
+    public CloudWatchClient client(String target) {
+        return clients.computeIfAbsent(resolve(target), this::build);
+    }
+
+    public String currentTarget() {
+        String target = currentTarget.get();
+        return target != null ? target : DEFAULT_TARGET;
+    }
+
+    /**
+     * The default target followed by the configured ones.
+     */
+    public List<String> targets() {
+        List<String> targets = new ArrayList<>();
+        targets.add(DEFAULT_TARGET);
+        targets.addAll(configuredTargets);
+        return targets;
+    }
+
+    /**
+     * Normalizes a target name; blank means the default target.
+     *
+     * @throws IllegalArgumentException if the name is neither configured nor a known region
+     */
+    public String resolve(String target) {
+        if (target == null || target.isBlank()) {
+            return DEFAULT_TARGET;
+        }
+        String name = target.trim();
+        if (DEFAULT_TARGET.equals(name) || configuredTargets.contains(name) || Region.regions().contains(Region.of(name))) {
+            return name;
+        }
+        throw new IllegalArgumentException("Unknown CloudWatch target: " + name);
+    }
+
+    /**
+     * Runs {@code work} with {@code target} bound to the calling thread.
+     */
+    public <T> T withTarget(String target, Callable<T> work) throws Exception {
+        String previous = currentTarget.get();
+        currentTarget.set(resolve(target));
+        try {
+            return work.call();
+        } finally {
+            if (previous != null) {
+                currentTarget.set(previous);
+            } else {
+                currentTarget.remove();
+            }
+        }
+    }
+
+    /**
+     * Wraps {@code work} so that it runs with the calling thread's target on whichever thread executes it.
+     */
+    public <T> Callable<T> bind(Callable<T> work) {
+        String target = currentTarget();
+        return () -> withTarget(target, work);
+    }
+
+    public Runnable bind(Runnable work) {
+        String target = currentTarget();
+        return () -> {
+            try {
+                withTarget(target, () -> {
+                    work.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private CloudWatchClient build(String target) {
+        Region region = Region.of(environment.getProperty(prefix(target) + "region", target));
+        String roleArn = environment.getProperty(prefix(target) + "role-arn", "");
+        String externalId = environment.getProperty(prefix(target) + "external-id", "");
+
+        AwsCredentialsProvider provider = credentialsProvider;
+        if (!roleArn.isBlank()) {
+            StsClient stsClient = StsClient.builder()
+                    .region(region)
+                    .credentialsProvider(credentialsProvider)
+                    .build();
+            StsAssumeRoleCredentialsProvider assumeRole = StsAssumeRoleCredentialsProvider.builder()
+                    .stsClient(stsClient)
+                    .refreshRequest(request -> {
+                        request.roleArn(roleArn).roleSessionName("get-me-graphs");
+                        if (!externalId.isBlank()) {
+                            request.externalId(externalId);
+                        }
+                    })
+                    .build();
+            ownedResources.add(assumeRole);
+            ownedResources.add(stsClient);
+            provider = assumeRole;
+        }
+
+        logger.info("Creating CloudWatch client for target {} (region {}{})", target, region,
+                roleArn.isBlank() ? "" : ", role " + roleArn);
+        CloudWatchClient client = CloudWatchConfig.buildClient(region, provider, endpoint);
+        ownedResources.add(client);
+        return client;
+    }
+
+    private static String prefix(String target) {
+        return "aws.cloudwatch.target." + target + ".";
+    }
+
+    @PreDestroy
+    public void close() {
+        // The default client is a bean and closed by the context
+        for (AutoCloseable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close CloudWatch client resource: {}", e.getMessage());
+            }
+        }
+    }
+}
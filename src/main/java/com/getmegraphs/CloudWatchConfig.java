@@ -0,0 +1,53 @@
+package com.getmegraphs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClientBuilder;
+
+import java.net.URI;
+
+@Configuration
+public class CloudWatchConfig {
+
+    /**
+     * The configured session credentials. Other accounts are reached by assuming roles with them.
+     */
+    @Bean
+    public AwsCredentialsProvider awsCredentialsProvider(
+            @Value("${aws.accessKey}") String accessKey,
+            @Value("${aws.secretKey}") String secretKey,
+            @Value("${aws.sessionToken}") String sessionToken) {
+        return StaticCredentialsProvider.create(AwsSessionCredentials.create(accessKey, secretKey, sessionToken));
+    }
+
+    /**
+     * Client of the default target (aws.region with the configured credentials).
+     */
+    @Bean(destroyMethod = "close")
+    public CloudWatchClient cloudWatchClient(
+            AwsCredentialsProvider awsCredentialsProvider,
+            @Value("${aws.region:eu-west-1}") String region,
+            @Value("${aws.cloudwatch.endpoint:}") String endpoint) {
+        return buildClient(Region.of(region), awsCredentialsProvider, endpoint);
+    }
+
+    static CloudWatchClient buildClient(Region region, AwsCredentialsProvider credentialsProvider, String endpoint) {
+        CloudWatchClientBuilder builder = CloudWatchClient.builder()
+                .region(region)
+                .credentialsProvider(credentialsProvider)
+                // Retries and backoff are handled by CloudWatchFetcher together with its rate limiter
+                .overrideConfiguration(config -> config.retryPolicy(RetryPolicy.none()));
+        // Point the client somewhere else than AWS, e.g. the local stand-in
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+}
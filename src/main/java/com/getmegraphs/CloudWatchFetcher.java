@@ -0,0 +1,353 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single entry point for CloudWatch API calls made by the chart service.
+ *
+ * Calls go to the client of the thread's target in the {@link CloudWatchClientRegistry}.
+ * They share a per-target, per-API {@link AdaptiveRateLimiter} (the rate backs off on
+ * throttling and recovers as calls succeed; CloudWatch limits apply per account and region)
+ * and a cap on concurrent requests. Throttled, 5xx and I/O
+ * failures are retried with exponential backoff and full jitter; the SDK's own retries
+ * are disabled so that every throttle reaches the limiter.
+ *
+ * Every attempt is timed as {@code cloudwatch.requests} (tagged by target, API, namespace,
+ * metric and outcome) and the number of datapoints returned is counted as {@code cloudwatch.datapoints}.
+ *
+ * GetMetricStatistics goes through the {@link RollingWindowStore} first, which answers
+ * windows it already holds without calling CloudWatch. Requests without percentiles are
+ * fetched with Sum, SampleCount, Minimum and Maximum and their own statistics derived
+ * from those (see {@link DatapointRollup}). Inside a {@link #reportScope} (one report
+ * being written), each series is then fetched once at the finest period asked for, and
+ * shared by every chart and data file of the report at that or any coarser period.
+ */
+@Component
+public class CloudWatchFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudWatchFetcher.class);
+
+    private final CloudWatchClientRegistry clientRegistry;
+    private final MeterRegistry meterRegistry;
+    private final RollingWindowStore rollingWindowStore;
+    private final Semaphore concurrency;
+    private final Map<String, Double> maxRates;
+    private final Map<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<>();
+    private final ThreadLocal<ReportScope> reportScope = new ThreadLocal<>();
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    public CloudWatchFetcher(CloudWatchClientRegistry clientRegistry,
+                             MeterRegistry meterRegistry,
+                             RollingWindowStore rollingWindowStore,
+                             @Value("${cloudwatch.max-concurrent-requests:16}") int maxConcurrentRequests,
+                             @Value("${cloudwatch.rate-limit.get-metric-statistics:400}") double getMetricStatisticsRate,
+                             @Value("${cloudwatch.rate-limit.list-metrics:25}") double listMetricsRate,
+                             @Value("${cloudwatch.rate-limit.get-metric-data:50}") double getMetricDataRate,
+                             @Value("${cloudwatch.retry.max-attempts:6}") int maxAttempts,
+                             @Value("${cloudwatch.retry.base-delay-ms:200}") long baseDelayMs,
+                             @Value("${cloudwatch.retry.max-delay-ms:10000}") long maxDelayMs) {
+        this.clientRegistry = clientRegistry;
+        this.meterRegistry = meterRegistry;
+        this.rollingWindowStore = rollingWindowStore;
+        this.concurrency = new Semaphore(maxConcurrentRequests, true);
+        this.maxRates = Map.of(
+                "GetMetricStatistics", getMetricStatisticsRate,
+                "ListMetrics", listMetricsRate,
+                "GetMetricData", getMetricDataRate);
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public GetMetricStatisticsResponse getMetricStatistics(GetMetricStatisticsRequest request) {
+        String target = clientRegistry.currentTarget();
+        ReportScope scope = reportScope.get();
+        if (!DatapointRollup.derivable(request)) {
+            return scope != null ? scope.exact(target, request) : fetchMetricStatistics(target, request);
+        }
+
+        // Fetched with all base statistics, so that one fetch serves any statistics and coarser periods
+        QueryKey seriesKey = QueryKey.series(target, request);
+        BaseSeries base = scope != null ? scope.series.get(seriesKey) : null;
+        if (base != null && DatapointRollup.canRollUp(base.period(), request, Instant.now())) {
+            meterRegistry.counter("cloudwatch.report-dedup", "target", target, "kind", "rollup").increment();
+            return DatapointRollup.rollUp(base.response(), base.period(), request);
+        }
+        GetMetricStatisticsResponse response = fetchMetricStatistics(target, DatapointRollup.withBaseStatistics(request));
+        if (scope != null && (base == null || request.period() < base.period())) {
+            scope.series.put(seriesKey, new BaseSeries(request.period(), response));
+        }
+        return DatapointRollup.rollUp(response, request.period(), request);
+    }
+
+    /**
+     * Fetches {@code request} from CloudWatch as it is, bypassing the {@link RollingWindowStore}
+     * and any report scope, for callers that need the newest datapoints (live tails).
+     */
+    public GetMetricStatisticsResponse getLatestMetricStatistics(GetMetricStatisticsRequest request) {
+        return requestMetricStatistics(request);
+    }
+
+    /**
+     * Runs {@code work} (the writing of one report) with GetMetricStatistics results shared
+     * between queries made on the calling thread: identical queries are answered once, and
+     * queries for a coarser period of a series already fetched are rolled up from it.
+     * Nested scopes join the outer one.
+     */
+    public <T> T reportScope(Callable<T> work) throws Exception {
+        if (reportScope.get() != null) {
+            return work.call();
+        }
+        reportScope.set(new ReportScope());
+        try {
+            return work.call();
+        } finally {
+            reportScope.remove();
+        }
+    }
+
+    private GetMetricStatisticsResponse fetchMetricStatistics(String target, GetMetricStatisticsRequest request) {
+        return rollingWindowStore.getMetricStatistics(target, request, this::requestMetricStatistics);
+    }
+
+    private GetMetricStatisticsResponse requestMetricStatistics(GetMetricStatisticsRequest request) {
+        GetMetricStatisticsResponse response = call("GetMetricStatistics", request.namespace(), request.metricName(),
+                () -> clientRegistry.client().getMetricStatistics(request));
+        Counter.builder("cloudwatch.datapoints")
+                .description("Datapoints returned by CloudWatch")
+                .tag("target", clientRegistry.currentTarget())
+                .tag("api", "GetMetricStatistics")
+                .tag("namespace", request.namespace())
+                .tag("metric", request.metricName())
+                .register(meterRegistry)
+                .increment(response.datapoints().size());
+        return response;
+    }
+
+    public ListMetricsResponse listMetrics(ListMetricsRequest request) {
+        return call("ListMetrics", request.namespace(), request.metricName(),
+                () -> clientRegistry.client().listMetrics(request));
+    }
+
+    /**
+     * Runs a GetMetricData request through all of its pages and returns one result per query
+     * id, with the pages' timestamps and values concatenated. Metrics Insights queries with
+     * GROUP BY return one result per group under the same id, told apart by their labels.
+     */
+    public List<MetricDataResult> getMetricData(GetMetricDataRequest request) {
+        Map<String, MetricDataResult> results = new LinkedHashMap<>();
+        String nextToken = null;
+        do {
+            GetMetricDataRequest page = request.toBuilder().nextToken(nextToken).build();
+            GetMetricDataResponse response = call("GetMetricData", null, null,
+                    () -> clientRegistry.client().getMetricData(page));
+            int datapoints = 0;
+            for (MetricDataResult result : response.metricDataResults()) {
+                datapoints += result.values().size();
+                results.merge(result.id() + "\n" + result.label(), result, (previous, next) -> previous.toBuilder()
+                        .timestamps(concat(previous.timestamps(), next.timestamps()))
+                        .values(concat(previous.values(), next.values()))
+                        .statusCode(next.statusCode())
+                        .build());
+            }
+            Counter.builder("cloudwatch.datapoints")
+                    .description("Datapoints returned by CloudWatch")
+                    .tag("target", clientRegistry.currentTarget())
+                    .tag("api", "GetMetricData")
+                    .tag("namespace", "none")
+                    .tag("metric", "none")
+                    .register(meterRegistry)
+                    .increment(datapoints);
+            nextToken = response.nextToken();
+        } while (nextToken != null);
+        return new ArrayList<>(results.values());
+    }
+
+    private static <E> List<E> concat(List<E> first, List<E> second) {
+        List<E> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private <T> T call(String api, String namespace, String metricName, Supplier<T> call) {
+        String target = clientRegistry.currentTarget();
+        AdaptiveRateLimiter limiter = limiter(target, api);
+        for (int attempt = 1; ; attempt++) {
+            RuntimeException failure;
+            boolean throttled = false;
+            try {
+                // Rate first: a thread waiting for its API's rate must not hold a permit other APIs need
+                limiter.acquire();
+                concurrency.acquire();
+                try {
+                    T result = timed(target, api, namespace, metricName, call);
+                    limiter.onSuccess();
+                    return result;
+                } finally {
+                    concurrency.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to call CloudWatch " + api, e);
+            } catch (CloudWatchException e) {
+                throttled = isThrottling(e);
+                if (!throttled && e.statusCode() < 500) {
+                    throw e;
+                }
+                failure = e;
+            } catch (SdkClientException e) {
+                failure = e;
+            }
+
+            if (throttled) {
+                limiter.onThrottle();
+            }
+            if (attempt >= maxAttempts) {
+                throw failure;
+            }
+            long delayMs = ThreadLocalRandom.current().nextLong(Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20)) + 1);
+            Counter.builder("cloudwatch.retries")
+                    .description("CloudWatch calls retried after throttling or a transient error")
+                    .tag("target", target)
+                    .tag("api", api)
+                    .tag("reason", throttled ? "throttled" : "error")
+                    .register(meterRegistry)
+                    .increment();
+            logger.debug("CloudWatch {} for {} on {} failed (attempt {} of {}), retrying in {} ms: {}",
+                    api, metricName, target, attempt, maxAttempts, delayMs, failure.getMessage());
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    private AdaptiveRateLimiter limiter(String target, String api) {
+        return limiters.computeIfAbsent(target + "/" + api, key -> {
+            double maxRate = maxRates.getOrDefault(api, 50.0);
+            AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, maxRate, 1, 0.5);
+            Gauge.builder("cloudwatch.rate-limit", limiter, AdaptiveRateLimiter::rate)
+                    .description("Current allowed CloudWatch request rate per second")
+                    .tag("target", target)
+                    .tag("api", api)
+                    .register(meterRegistry);
+            return limiter;
+        });
+    }
+
+    private <T> T timed(String target, String api, String namespace, String metricName, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.get();
+        } catch (CloudWatchException e) {
+            outcome = isThrottling(e) ? "throttled" : "error";
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            Timer.builder("cloudwatch.requests")
+                    .description("CloudWatch API call latency")
+                    .tag("target", target)
+                    .tag("api", api)
+                    .tag("namespace", namespace != null ? namespace : "none")
+                    .tag("metric", metricName != null ? metricName : "none")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static boolean isThrottling(CloudWatchException e) {
+        String errorCode = e.awsErrorDetails() != null ? e.awsErrorDetails().errorCode() : null;
+        return e.isThrottlingException() || "Throttling".equals(errorCode) || "ThrottlingException".equals(errorCode);
+    }
+
+    /**
+     * Queries answered so far while writing one report.
+     */
+    private final class ReportScope {
+
+        private final Map<QueryKey, GetMetricStatisticsResponse> queries = new HashMap<>();
+        // Base datapoints of every series, at the finest period fetched
+        private final Map<QueryKey, BaseSeries> series = new HashMap<>();
+
+        GetMetricStatisticsResponse exact(String target, GetMetricStatisticsRequest request) {
+            QueryKey key = QueryKey.of(target, request);
+            GetMetricStatisticsResponse response = queries.get(key);
+            if (response != null) {
+                meterRegistry.counter("cloudwatch.report-dedup", "target", target, "kind", "exact").increment();
+                return response;
+            }
+            response = fetchMetricStatistics(target, request);
+            queries.put(key, response);
+            return response;
+        }
+    }
+
+    /**
+     * Datapoints of a series fetched with {@link DatapointRollup#BASE_STATISTICS}.
+     */
+    private record BaseSeries(int period, GetMetricStatisticsResponse response) {
+    }
+
+    /**
+     * Identity of a GetMetricStatistics query within a report, or with {@link #series}, of
+     * the series it reads regardless of period and statistics.
+     */
+    private record QueryKey(String target, String namespace, String metricName, List<String> dimensions,
+                            Integer period, List<String> statistics, List<String> extendedStatistics,
+                            String unit, Instant start, Instant end) {
+
+        static QueryKey of(String target, GetMetricStatisticsRequest request) {
+            return new QueryKey(target, request.namespace(), request.metricName(),
+                    request.dimensions().stream().map(d -> d.name() + "=" + d.value()).sorted().toList(),
+                    request.period(),
+                    request.statisticsAsStrings().stream().sorted().toList(),
+                    request.extendedStatistics().stream().sorted().toList(),
+                    request.unitAsString(), request.startTime(), request.endTime());
+        }
+
+        static QueryKey series(String target, GetMetricStatisticsRequest request) {
+            return new QueryKey(target, request.namespace(), request.metricName(),
+                    request.dimensions().stream().map(d -> d.name() + "=" + d.value()).sorted().toList(),
+                    null, List.of(), List.of(),
+                    request.unitAsString(), request.startTime(), request.endTime());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.getmegraphs;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Routes a request to a CloudWatch target given as the {@code target} request parameter or the
+ * {@code X-CloudWatch-Target} header (a configured target name or a region id). Without either,
+ * the default target is used. Unknown targets are rejected with 400.
+ */
+@Component
+public class CloudWatchTargetFilter extends OncePerRequestFilter {
+
+    static final String TARGET_HEADER = "X-CloudWatch-Target";
+
+    private final CloudWatchClientRegistry clientRegistry;
+
+    public CloudWatchTargetFilter(CloudWatchClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String target = request.getParameter("target");
+        if (target == null) {
+            target = request.getHeader(TARGET_HEADER);
+        }
+        if (target == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String resolved;
+        try {
+            resolved = clientRegistry.resolve(target);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Error: " + e.getMessage());
+            return;
+        }
+        try {
+            clientRegistry.withTarget(resolved, () -> {
+                filterChain.doFilter(request, response);
+                return null;
+            });
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Comprehensive reports spanning several regions or accounts. Each {@link ReportTarget} is
+ * fetched through its own CloudWatch client and written to a subdirectory, all targets in
+ * parallel on the {@code reportFanOutExecutor}. A combined summary lists the outcome of
+ * every part; a failing target does not fail the others.
+ */
+@Service
+public class CombinedReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CombinedReportService.class);
+
+    private final CloudWatchChartService chartService;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final ReportStore reportStore;
+    private final ArtifactSink artifactSink;
+    private final ExecutorService fanOutExecutor;
+    private final MeterRegistry meterRegistry;
+
+    public CombinedReportService(CloudWatchChartService chartService,
+                                 CloudWatchClientRegistry clientRegistry,
+                                 ReportStore reportStore,
+                                 ArtifactSink artifactSink,
+                                 @Qualifier("reportFanOutExecutor") ExecutorService fanOutExecutor,
+                                 MeterRegistry meterRegistry) {
+        this.chartService = chartService;
+        this.clientRegistry = clientRegistry;
+        this.reportStore = reportStore;
+        this.artifactSink = artifactSink;
+        this.fanOutExecutor = fanOutExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param targets entries of the form {@code clusterName:dbInstanceIdentifier[:cloudWatchTarget]}
+     * @return absolute path of the combined report directory
+     */
+    public String generateCombinedReport(List<String> targets, String startTime, String endTime) throws Exception {
+        List<ReportTarget> reportTargets = new ArrayList<>();
+        for (String target : targets) {
+            if (!target.isBlank()) {
+                ReportTarget reportTarget = ReportTarget.parse(target);
+                // Fail fast on unknown targets instead of in the middle of the fan-out
+                clientRegistry.resolve(reportTarget.cloudWatchTarget());
+                reportTargets.add(reportTarget);
+            }
+        }
+        if (reportTargets.isEmpty()) {
+            throw new IllegalArgumentException("At least one report target is required");
+        }
+
+        ReportStore.Key storeKey = ReportStore.Key.of("combined", reportTargets, startTime, endTime);
+        Optional<String> stored = reportStore.find(storeKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String reportDir = reportStore.newPath("combined_report_" + Instant.now().toString().replaceAll("[:.]+", "-"));
+        new File(reportDir).mkdirs();
+
+        List<Future<?>> parts = new ArrayList<>();
+        for (ReportTarget target : reportTargets) {
+            String partDir = reportDir + "/" + target.directoryName();
+            parts.add(fanOutExecutor.submit(() -> clientRegistry.withTarget(target.cloudWatchTarget(), () -> {
+                chartService.writeComprehensiveReport(partDir, target.clusterName(), target.dbInstanceIdentifier(),
+                        startTime, endTime);
+                return null;
+            })));
+        }
+
+        StringBuilder summary = new StringBuilder("Combined CloudWatch Report\n");
+        summary.append("Generated at: ").append(Instant.now()).append("\n");
+        summary.append("Time Range: ").append(startTime).append(" to ").append(endTime).append("\n\n");
+        int failed = 0;
+        for (int i = 0; i < reportTargets.size(); i++) {
+            ReportTarget target = reportTargets.get(i);
+            try {
+                parts.get(i).get();
+                summary.append("✓ ").append(target).append(" -> ").append(target.directoryName()).append("\n");
+            } catch (ExecutionException e) {
+                failed++;
+                summary.append("✗ ").append(target).append(": ").append(e.getCause().getMessage()).append("\n");
+                logger.error("Error generating combined report part for {}", target, e.getCause());
+            }
+        }
+        artifactSink.write(reportDir + "/report_summary.txt", summary.toString().getBytes(StandardCharsets.UTF_8), "text/plain");
+
+        sample.stop(meterRegistry.timer("report.combined"));
+        logger.info("Combined report generated in directory: {} ({} of {} targets failed)", reportDir, failed, reportTargets.size());
+        // Partial reports are regenerated on the next request rather than served again
+        return failed == 0 ? reportStore.register(storeKey, reportDir) : reportDir;
+    }
+}
@@ -0,0 +1,125 @@
+package com.getmegraphs;
+
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Exact rollups of GetMetricStatistics datapoints to coarser periods.
+ *
+ * Datapoints fetched with Sum, SampleCount, Minimum and Maximum can be merged into any
+ * multiple of their period without losing anything: sums and sample counts add up, the
+ * minimum and maximum are those of the merged datapoints, and the average is sum / sample
+ * count, as CloudWatch computes it. Percentiles cannot be merged, so requests with extended
+ * statistics are never rolled up.
+ */
+public final class DatapointRollup {
+
+    // Statistics every derivable series is fetched with
+    static final List<Statistic> BASE_STATISTICS =
+            List.of(Statistic.SUM, Statistic.SAMPLE_COUNT, Statistic.MINIMUM, Statistic.MAXIMUM);
+
+    private DatapointRollup() {
+    }
+
+    /**
+     * Whether all statistics of the request can be computed from {@link #BASE_STATISTICS}.
+     */
+    static boolean derivable(GetMetricStatisticsRequest request) {
+        return request.period() != null
+                && request.extendedStatistics().isEmpty()
+                && !request.statistics().isEmpty()
+                && !request.statistics().contains(Statistic.UNKNOWN_TO_SDK_VERSION);
+    }
+
+    /**
+     * The request, fetching {@link #BASE_STATISTICS} instead of its own statistics.
+     */
+    static GetMetricStatisticsRequest withBaseStatistics(GetMetricStatisticsRequest request) {
+        return request.toBuilder().statistics(BASE_STATISTICS).build();
+    }
+
+    /**
+     * Whether datapoints of {@code basePeriod} roll up into the period of the request: it is
+     * a multiple of the base period, and CloudWatch still keeps the base period for the
+     * start of the window (older data is only available at coarser periods).
+     */
+    static boolean canRollUp(int basePeriod, GetMetricStatisticsRequest request, Instant now) {
+        return request.period() % basePeriod == 0
+                && basePeriod >= finestRetainedPeriod(request.startTime(), now);
+    }
+
+    /**
+     * Finest period CloudWatch still holds for data at {@code start}: 1 second for 3 hours,
+     * 1 minute for 15 days, 5 minutes for 63 days, then 1 hour.
+     */
+    static int finestRetainedPeriod(Instant start, Instant now) {
+        Duration age = Duration.between(start, now);
+        if (age.compareTo(Duration.ofHours(3)) <= 0) {
+            return 1;
+        } else if (age.compareTo(Duration.ofDays(15)) <= 0) {
+            return 60;
+        } else if (age.compareTo(Duration.ofDays(63)) <= 0) {
+            return 300;
+        }
+        return 3600;
+    }
+
+    /**
+     * Rolls datapoints fetched with {@link #BASE_STATISTICS} at {@code basePeriod} up to the
+     * period of {@code request}, keeping only the statistics it asks for. Periods are counted
+     * from the request start, rounded down to the base period.
+     */
+    static GetMetricStatisticsResponse rollUp(GetMetricStatisticsResponse base, int basePeriod,
+                                              GetMetricStatisticsRequest request) {
+        long period = request.period();
+        long anchor = Math.floorDiv(request.startTime().getEpochSecond(), basePeriod) * basePeriod;
+        NavigableMap<Instant, Datapoint> merged = new TreeMap<>();
+        for (Datapoint datapoint : base.datapoints()) {
+            Instant bucket = Instant.ofEpochSecond(
+                    anchor + Math.floorDiv(datapoint.timestamp().getEpochSecond() - anchor, period) * period);
+            merged.merge(bucket, datapoint.toBuilder().timestamp(bucket).build(), DatapointRollup::merge);
+        }
+
+        List<Datapoint> datapoints = merged.values().stream()
+                .map(datapoint -> select(datapoint, request.statistics()))
+                .toList();
+        return GetMetricStatisticsResponse.builder()
+                .label(base.label())
+                .datapoints(datapoints)
+                .build();
+    }
+
+    private static Datapoint merge(Datapoint a, Datapoint b) {
+        return a.toBuilder()
+                .sum(a.sum() + b.sum())
+                .sampleCount(a.sampleCount() + b.sampleCount())
+                .minimum(Math.min(a.minimum(), b.minimum()))
+                .maximum(Math.max(a.maximum(), b.maximum()))
+                .build();
+    }
+
+    private static Datapoint select(Datapoint datapoint, List<Statistic> statistics) {
+        Datapoint.Builder selected = Datapoint.builder()
+                .timestamp(datapoint.timestamp())
+                .unit(datapoint.unit());
+        for (Statistic statistic : statistics) {
+            switch (statistic) {
+                case AVERAGE -> selected.average(datapoint.sampleCount() > 0 ? datapoint.sum() / datapoint.sampleCount() : 0.0);
+                case SUM -> selected.sum(datapoint.sum());
+                case SAMPLE_COUNT -> selected.sampleCount(datapoint.sampleCount());
+                case MINIMUM -> selected.minimum(datapoint.minimum());
+                case MAXIMUM -> selected.maximum(datapoint.maximum());
+                default -> throw new IllegalArgumentException("Statistic cannot be rolled up: " + statistic);
+            }
+        }
+        return selected.build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.getmegraphs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${ai.analysis.concurrency:4}")
+    private int aiAnalysisConcurrency;
+
+    @Value("${codegen.max-concurrent-runs:2}")
+    private int codegenConcurrency;
+
+    @Value("${codegen.queue-capacity:8}")
+    private int codegenQueueCapacity;
+
+    @Value("${metrics.tail.threads:2}")
+    private int metricsTailThreads;
+
+    @Value("${aws.cloudwatch.fan-out-concurrency:4}")
+    private int fanOutConcurrency;
+
+    @Value("${reports.spec.render-concurrency:4}")
+    private int renderConcurrency;
+
+    @Value("${artifacts.upload-concurrency:8}")
+    private int uploadConcurrency;
+
+    /**
+     * Runs AI tasks (submit + poll) concurrently. Threads mostly sleep between status
+     * polls, so the pool size bounds the number of in-flight tasks on the AI API.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiAnalysisExecutor() {
+        return new ThreadPoolExecutor(
+                aiAnalysisConcurrency,
+                aiAnalysisConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedThreadFactory("ai-analysis-"));
+    }
+
+    /**
+     * Runs AI-generated programs in process. The queue is bounded so that a burst of
+     * stability analyses is rejected instead of piling up generated programs in memory.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService generatedCodeExecutor() {
+        return new ThreadPoolExecutor(
+                codegenConcurrency,
+                codegenConcurrency,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(codegenQueueCapacity),
+                namedThreadFactory("generated-code-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the shared CloudWatch polls of live metric tails, one task per watched target.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService metricsTailScheduler() {
+        return Executors.newScheduledThreadPool(metricsTailThreads, namedThreadFactory("metrics-tail-"));
+    }
+
+    /**
+     * Writes the per-target parts of combined reports in parallel. The pool size bounds how
+     * many CloudWatch targets are fetched from at once.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService reportFanOutExecutor() {
+        return new ThreadPoolExecutor(
+                fanOutConcurrency,
+                fanOutConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedThreadFactory("report-fan-out-"));
+    }
+
+    /**
+     * Renders the charts of spec-driven reports. Rendering is CPU bound, so the pool is
+     * best kept at or below the number of cores.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService chartRenderExecutor() {
+        return new ThreadPoolExecutor(
+                renderConcurrency,
+                renderConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedThreadFactory("chart-render-"));
+    }
+
+    /**
+     * Uploads report artifacts (whole objects and multipart parts) when they are published to
+     * S3. Uploads are I/O bound, so the pool may be larger than the number of cores.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService artifactUploadExecutor() {
+        return new ThreadPoolExecutor(
+                uploadConcurrency,
+                uploadConcurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedThreadFactory("artifact-upload-"));
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
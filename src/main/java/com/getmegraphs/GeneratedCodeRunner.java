@@ -0,0 +1,260 @@
+package com.getmegraphs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compiles AI-generated Java source in memory with {@link JavaCompiler} and runs it in a
+ * disposable class loader on a bounded executor, instead of forking javac and java.
+ *
+ * Every run gets a hard wall-clock timeout and an allocation guard: the run is abandoned
+ * when its thread allocates more than the configured amount of memory, and it is not
+ * started at all while the heap is already short on free space.
+ */
+@Component
+public class GeneratedCodeRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedCodeRunner.class);
+
+    private static final long MB = 1024L * 1024L;
+
+    private final ExecutorService generatedCodeExecutor;
+
+    @Value("${codegen.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${codegen.min-free-heap-mb:256}")
+    private long minFreeHeapMb;
+
+    @Value("${codegen.max-allocated-mb:1024}")
+    private long maxAllocatedMb;
+
+    public GeneratedCodeRunner(@Qualifier("generatedCodeExecutor") ExecutorService generatedCodeExecutor) {
+        this.generatedCodeExecutor = generatedCodeExecutor;
+    }
+
+    /**
+     * Compiles a single compilation unit and returns the bytecode of every class it
+     * declares (including nested classes), keyed by binary class name.
+     */
+    public Map<String, byte[]> compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No system Java compiler available; the service must run on a JDK to compile generated code");
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classOutputs = new ConcurrentHashMap<>();
+
+        try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, null);
+             JavaFileManager fileManager = new InMemoryFileManager(standardFileManager, classOutputs)) {
+
+            JavaFileObject sourceFile = new SimpleJavaFileObject(
+                    URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+
+            List<String> options = List.of("-classpath", System.getProperty("java.class.path"), "-proc:none");
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call();
+
+            if (!success) {
+                StringBuilder errors = new StringBuilder();
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        errors.append("line ").append(diagnostic.getLineNumber()).append(": ")
+                                .append(diagnostic.getMessage(null)).append("\n");
+                    }
+                }
+                throw new RuntimeException("Compilation of " + className + " failed:\n" + errors);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Compilation of " + className + " failed: " + e.getMessage(), e);
+        }
+
+        Map<String, byte[]> classes = new ConcurrentHashMap<>();
+        classOutputs.forEach((name, bytes) -> classes.put(name, bytes.toByteArray()));
+        logger.info("Compiled {} in memory ({} classes)", className, classes.size());
+        return classes;
+    }
+
+    /**
+     * Runs {@code main} of the given class from freshly compiled bytecode with the report
+     * directory bound as the program's output directory. Blocks until the program finishes,
+     * fails, or hits one of the limits.
+     */
+    public void run(String className, Map<String, byte[]> classes, String outputDir) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if (freeHeap < minFreeHeapMb * MB) {
+            throw new RuntimeException("Not running " + className + ": only " + freeHeap / MB
+                    + " MB of heap free, at least " + minFreeHeapMb + " MB required");
+        }
+
+        AtomicReference<Thread> runThread = new AtomicReference<>();
+        Future<?> future;
+        try {
+            future = generatedCodeExecutor.submit(() -> {
+                runThread.set(Thread.currentThread());
+                ClassLoader previous = Thread.currentThread().getContextClassLoader();
+                GeneratedClassLoader classLoader = new GeneratedClassLoader(classes, GeneratedCodeRunner.class.getClassLoader());
+                Thread.currentThread().setContextClassLoader(classLoader);
+                GeneratedProgramContext.bind(outputDir);
+                try {
+                    Method main = classLoader.loadClass(className).getMethod("main", String[].class);
+                    main.invoke(null, (Object) new String[0]);
+                } catch (InvocationTargetException e) {
+                    throw new RuntimeException("Generated program " + className + " failed: " + e.getCause(), e.getCause());
+                } finally {
+                    GeneratedProgramContext.clear();
+                    Thread.currentThread().setContextClassLoader(previous);
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("Too many generated programs running or queued, try again later", e);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long allocatedAtStart = -1;
+        while (true) {
+            try {
+                future.get(200, TimeUnit.MILLISECONDS);
+                logger.info("Generated program {} executed successfully", className);
+                return;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException e) {
+                // still running: check the limits below
+            }
+
+            Thread thread = runThread.get();
+            if (thread != null) {
+                long allocated = allocatedBytes(thread);
+                if (allocatedAtStart < 0) {
+                    allocatedAtStart = allocated;
+                }
+                if (allocated >= 0 && allocated - allocatedAtStart > maxAllocatedMb * MB) {
+                    future.cancel(true);
+                    throw new RuntimeException("Generated program " + className + " exceeded the allocation limit of "
+                            + maxAllocatedMb + " MB and was aborted");
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                future.cancel(true);
+                throw new RuntimeException("Generated program " + className + " did not finish within "
+                        + timeoutSeconds + " seconds and was aborted");
+            }
+        }
+    }
+
+    private long allocatedBytes(Thread thread) {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            return threadMXBean.getThreadAllocatedBytes(thread.getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps compiler output in memory instead of writing .class files.
+     */
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classOutputs;
+
+        InMemoryFileManager(JavaFileManager fileManager, Map<String, ByteArrayOutputStream> classOutputs) {
+            super(fileManager);
+            this.classOutputs = classOutputs;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(
+                    URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    classOutputs.put(className, output);
+                    return output;
+                }
+            };
+        }
+    }
+
+    /**
+     * Child-first loader for the generated classes only; everything else (JFreeChart,
+     * Jackson, {@link GeneratedProgramContext}) comes from the application class loader.
+     * Dropped after the run so the generated classes can be unloaded.
+     */
+    static class GeneratedClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        GeneratedClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null && classes.containsKey(name)) {
+                    loaded = findClass(name);
+                }
+                if (loaded == null) {
+                    return super.loadClass(name, resolve);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.Millisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Entry point of the sidecar JVMs managed by {@link GeneratedCodeWorkerPool}.
+ *
+ * The worker warms up JFreeChart and Jackson once, then executes jobs read from stdin:
+ * compiled bytecode plus the vector data, run with a CPU-time and a wall-clock limit in a
+ * private output directory. The files the program wrote are sent back on stdout. A job
+ * that breaks a limit (or leaves the JVM in an unknown state) terminates the worker, and
+ * the pool replaces it.
+ *
+ * Frames: strings and byte arrays are length-prefixed; see {@link #readJob} and
+ * {@link #writeResult}.
+ */
+public class GeneratedCodeWorker {
+
+    static final int READY = 0x52454459;
+
+    public static void main(String[] args) throws Exception {
+        // stdout carries the protocol; anything the generated code prints goes to stderr
+        DataOutputStream protocolOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        DataInputStream protocolIn = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8));
+        System.setProperty("java.awt.headless", "true");
+
+        warmUp();
+        protocolOut.writeInt(READY);
+        protocolOut.flush();
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        while (true) {
+            Job job;
+            try {
+                job = readJob(protocolIn);
+            } catch (EOFException e) {
+                return; // pool closed the pipe
+            }
+
+            Path jobDir = Files.createTempDirectory("generated-code-job-");
+            Files.writeString(jobDir.resolve(GeneratedProgramContext.METRICS_DATA_FILE), job.vectorData());
+
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread runThread = new Thread(() -> {
+                GeneratedCodeRunner.GeneratedClassLoader classLoader =
+                        new GeneratedCodeRunner.GeneratedClassLoader(job.classes(), GeneratedCodeWorker.class.getClassLoader());
+                Thread.currentThread().setContextClassLoader(classLoader);
+                GeneratedProgramContext.bind(jobDir.toString());
+                try {
+                    classLoader.loadClass(job.className()).getMethod("main", String[].class)
+                            .invoke(null, (Object) new String[0]);
+                } catch (InvocationTargetException e) {
+                    failure.set(e.getCause());
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }, "generated-program");
+            runThread.setDaemon(true);
+            runThread.start();
+
+            long deadline = System.nanoTime() + job.wallClockMillis() * 1_000_000L;
+            String limitExceeded = null;
+            while (runThread.isAlive()) {
+                runThread.join(50);
+                long cpuNanos = threadMXBean.isThreadCpuTimeSupported() ? threadMXBean.getThreadCpuTime(runThread.getId()) : -1;
+                if (cpuNanos > job.cpuMillis() * 1_000_000L) {
+                    limitExceeded = "exceeded the CPU time limit of " + job.cpuMillis() + " ms";
+                } else if (System.nanoTime() > deadline) {
+                    limitExceeded = "exceeded the wall-clock limit of " + job.wallClockMillis() + " ms";
+                }
+                if (limitExceeded != null && runThread.isAlive()) {
+                    break;
+                }
+                limitExceeded = null;
+            }
+
+            if (limitExceeded != null) {
+                // The runaway thread cannot be stopped safely: report and let the pool replace this JVM
+                writeResult(protocolOut, false, "Generated program " + job.className() + " " + limitExceeded, Map.of());
+                protocolOut.flush();
+                deleteRecursively(jobDir);
+                System.exit(3);
+            }
+
+            Throwable error = failure.get();
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            if (error == null) {
+                try (Stream<Path> produced = Files.list(jobDir)) {
+                    for (Path file : produced.sorted().toList()) {
+                        if (Files.isRegularFile(file) && !GeneratedProgramContext.METRICS_DATA_FILE.equals(file.getFileName().toString())) {
+                            files.put(file.getFileName().toString(), Files.readAllBytes(file));
+                        }
+                    }
+                }
+            }
+            writeResult(protocolOut, error == null,
+                    error == null ? "ok" : "Generated program " + job.className() + " failed: " + error, files);
+            protocolOut.flush();
+            deleteRecursively(jobDir);
+        }
+    }
+
+    /**
+     * Loads and exercises the chart and JSON stacks so the first job does not pay for it.
+     */
+    private static void warmUp() throws IOException {
+        TimeSeries series = new TimeSeries("warm-up");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 120; i++) {
+            series.add(new Millisecond(new Date(now + i * 60_000L)), Math.sin(i / 10.0));
+        }
+        TimeSeriesCollection dataset = new TimeSeriesCollection(series);
+        JFreeChart chart = ChartFactory.createTimeSeriesChart("warm-up", "Time", "Value", dataset, true, false, false);
+        ChartUtils.writeChartAsPNG(new ByteArrayOutputStream(), chart, 1200, 600);
+        new ObjectMapper().readTree("{\"data_points\":[{\"timestamp\":\"2024-01-01T00:00:00Z\",\"average\":1.0}]}");
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    record Job(String className, Map<String, byte[]> classes, String vectorData, long wallClockMillis, long cpuMillis) {
+    }
+
+    record Result(boolean success, String message, Map<String, byte[]> files) {
+    }
+
+    static void writeJob(DataOutputStream out, Job job) throws IOException {
+        writeString(out, job.className());
+        out.writeInt(job.classes().size());
+        for (Map.Entry<String, byte[]> entry : job.classes().entrySet()) {
+            writeString(out, entry.getKey());
+            writeBytes(out, entry.getValue());
+        }
+        writeString(out, job.vectorData());
+        out.writeLong(job.wallClockMillis());
+        out.writeLong(job.cpuMillis());
+    }
+
+    static Job readJob(DataInputStream in) throws IOException {
+        String className = readString(in);
+        int classCount = in.readInt();
+        Map<String, byte[]> classes = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            classes.put(readString(in), readBytes(in));
+        }
+        return new Job(className, classes, readString(in), in.readLong(), in.readLong());
+    }
+
+    static void writeResult(DataOutputStream out, boolean success, String message, Map<String, byte[]> files) throws IOException {
+        out.writeBoolean(success);
+        writeString(out, message);
+        out.writeInt(files.size());
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            writeString(out, entry.getKey());
+            writeBytes(out, entry.getValue());
+        }
+    }
+
+    static Result readResult(DataInputStream in) throws IOException {
+        boolean success = in.readBoolean();
+        String message = readString(in);
+        int fileCount = in.readInt();
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < fileCount; i++) {
+            files.put(readString(in), readBytes(in));
+        }
+        return new Result(success, message, files);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+}
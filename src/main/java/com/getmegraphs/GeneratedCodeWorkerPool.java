@@ -0,0 +1,288 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.jfree.chart.JFreeChart;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Pool of pre-warmed sidecar JVMs ({@link GeneratedCodeWorker}) that execute AI-generated
+ * programs outside the service process. Bytecode and vector data go to the worker over its
+ * stdin, the produced files come back over its stdout and are written to the report
+ * directory here.
+ *
+ * A worker that fails a job, breaks a limit or has served its job quota is discarded and a
+ * fresh one is started in the background, so the pool stays at its configured size.
+ *
+ * Workers start with an empty environment (no AWS or AI credentials; only the locale and
+ * time zone variables are passed on), in a scratch working, temp and home directory of
+ * their own, and with only the application classes, Jackson and JFreeChart on the class
+ * path. This is process isolation, not a sandbox. Remaining limits:
+ * <ul>
+ *   <li>The worker runs as the service's OS user, so generated code can still read files
+ *   that user can read, by absolute path, and open network connections. Run the service
+ *   under a dedicated user or container when that matters.</li>
+ *   <li>When the service runs from its executable jar, the worker gets that whole jar on
+ *   its class path (the nested libraries cannot be split out).</li>
+ *   <li>The CPU-time limit is measured on the thread running the program only; threads it
+ *   starts are bounded by the wall-clock limit and the heap limit, not by CPU time.</li>
+ * </ul>
+ */
+@Component
+public class GeneratedCodeWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedCodeWorkerPool.class);
+
+    private static final String BOOT_PROPERTIES_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    // Passed on to workers so charts render text the same way as in the service
+    private static final List<String> INHERITED_ENVIRONMENT = List.of("LANG", "LC_ALL", "TZ");
+
+    // One class from every class path entry the worker and the generated programs need
+    private static final List<Class<?>> WORKER_CLASS_PATH = List.of(
+            GeneratedCodeWorker.class, ObjectMapper.class, JsonFactory.class, JsonProperty.class, JFreeChart.class);
+
+    @Value("${codegen.execution-mode:worker}")
+    private String executionMode;
+
+    @Value("${codegen.worker.pool-size:2}")
+    private int poolSize;
+
+    @Value("${codegen.worker.max-heap-mb:512}")
+    private long maxHeapMb;
+
+    @Value("${codegen.worker.cpu-time-limit-seconds:30}")
+    private long cpuTimeLimitSeconds;
+
+    @Value("${codegen.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${codegen.worker.max-jobs-per-worker:50}")
+    private int maxJobsPerWorker;
+
+    @Value("${codegen.worker.acquire-timeout-seconds:30}")
+    private long acquireTimeoutSeconds;
+
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(ExecutorConfig.namedThreadFactory("codegen-worker-watchdog-"));
+    private final ThreadFactory spawnThreadFactory = ExecutorConfig.namedThreadFactory("codegen-worker-spawn-");
+    private volatile boolean closed;
+
+    public boolean isEnabled() {
+        return "worker".equalsIgnoreCase(executionMode);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        logger.info("Starting {} generated-code worker JVMs", poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            spawnAsync();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        closed = true;
+        Worker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            worker.destroy();
+        }
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Executes the program on an idle worker and writes every file it produced into
+     * {@code outputDir}. Returns the paths of the written files.
+     */
+    public List<String> run(String className, Map<String, byte[]> classes, String vectorData, String outputDir) throws Exception {
+        Worker worker = idleWorkers.poll(acquireTimeoutSeconds, TimeUnit.SECONDS);
+        if (worker == null) {
+            throw new RuntimeException("No generated-code worker became available within " + acquireTimeoutSeconds + " seconds");
+        }
+
+        long wallClockMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        // Safety net for a worker that stops responding altogether (e.g. stuck in native code)
+        ScheduledFuture<?> kill = watchdog.schedule(worker::destroy, wallClockMillis + 10_000, TimeUnit.MILLISECONDS);
+
+        GeneratedCodeWorker.Result result = null;
+        try {
+            GeneratedCodeWorker.writeJob(worker.out, new GeneratedCodeWorker.Job(
+                    className, classes, vectorData, wallClockMillis, TimeUnit.SECONDS.toMillis(cpuTimeLimitSeconds)));
+            worker.out.flush();
+            result = GeneratedCodeWorker.readResult(worker.in);
+        } catch (IOException e) {
+            throw new RuntimeException("Generated-code worker terminated while running " + className + ": " + e, e);
+        } finally {
+            kill.cancel(false);
+            worker.jobs++;
+            if (result != null && result.success() && worker.jobs < maxJobsPerWorker && !closed) {
+                idleWorkers.offer(worker);
+            } else {
+                worker.destroy();
+                spawnAsync();
+            }
+        }
+
+        if (!result.success()) {
+            throw new RuntimeException(result.message());
+        }
+
+        List<String> written = new ArrayList<>();
+        for (Map.Entry<String, byte[]> file : result.files().entrySet()) {
+            Path target = Paths.get(outputDir, Paths.get(file.getKey()).getFileName().toString());
+            Files.write(target, file.getValue());
+            written.add(target.toString());
+        }
+        logger.info("Generated program {} executed in worker JVM, produced {} files", className, written.size());
+        return written;
+    }
+
+    private void spawnAsync() {
+        if (closed) {
+            return;
+        }
+        spawnThreadFactory.newThread(() -> {
+            try {
+                Worker worker = spawn();
+                if (closed) {
+                    worker.destroy();
+                } else {
+                    idleWorkers.offer(worker);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to start generated-code worker JVM: {}", e.getMessage(), e);
+            }
+        }).start();
+    }
+
+    private Worker spawn() throws IOException {
+        Path scratch = Files.createTempDirectory("generated-code-worker-");
+        boolean executableJar = GeneratedCodeWorkerPool.class.getClassLoader().getClass().getName().startsWith("org.springframework.boot.loader");
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + maxHeapMb + "m");
+        command.add("-XX:+UseSerialGC");
+        command.add("-Djava.awt.headless=true");
+        command.add("-Djava.io.tmpdir=" + scratch);
+        command.add("-Duser.home=" + scratch);
+        command.add("-cp");
+        command.add(executableJar ? System.getProperty("java.class.path") : workerClassPath());
+        if (executableJar) {
+            // Running from the executable jar: let Boot's launcher resolve the nested libraries
+            command.add("-Dloader.main=" + GeneratedCodeWorker.class.getName());
+            command.add(BOOT_PROPERTIES_LAUNCHER);
+        } else {
+            command.add(GeneratedCodeWorker.class.getName());
+        }
+
+        long started = System.nanoTime();
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(scratch.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        Map<String, String> environment = processBuilder.environment();
+        environment.clear();
+        for (String name : INHERITED_ENVIRONMENT) {
+            String value = System.getenv(name);
+            if (value != null) {
+                environment.put(name, value);
+            }
+        }
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            deleteRecursively(scratch);
+            throw e;
+        }
+        Worker worker = new Worker(process, scratch);
+        if (worker.in.readInt() != GeneratedCodeWorker.READY) {
+            worker.destroy();
+            throw new IOException("Unexpected handshake from generated-code worker");
+        }
+        logger.info("Generated-code worker JVM {} ready in {} ms", process.pid(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return worker;
+    }
+
+    /**
+     * Class path of a worker started from an exploded application (classes directory and
+     * library jars): the entries holding {@link #WORKER_CLASS_PATH}, rather than everything
+     * the service has, such as the AWS SDK.
+     */
+    private static String workerClassPath() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> type : WORKER_CLASS_PATH) {
+            try {
+                entries.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (URISyntaxException | RuntimeException e) {
+                throw new IllegalStateException("Cannot locate " + type.getName() + " for the generated-code worker class path", e);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void deleteRecursively(Path path) {
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("Could not delete generated-code worker directory {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static class Worker {
+
+        private final Process process;
+        private final Path scratch;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private int jobs;
+
+        Worker(Process process, Path scratch) {
+            this.process = process;
+            this.scratch = scratch;
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+            process.onExit().thenRun(() -> deleteRecursively(scratch));
+        }
+    }
+}
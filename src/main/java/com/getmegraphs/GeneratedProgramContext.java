@@ -0,0 +1,74 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runtime API for AI-generated visualization programs.
+ *
+ * Generated programs run inside the service (or a worker JVM) rather than in their own
+ * process, so they cannot rely on the working directory. The runner binds the output
+ * directory of the current run here before calling {@code main}; threads started by the
+ * program inherit it. The metrics vector data is not compiled into the program: it is
+ * read from {@value #METRICS_DATA_FILE} in that directory when the program asks for it.
+ */
+public final class GeneratedProgramContext {
+
+    public static final String METRICS_DATA_FILE = "metrics_data.json";
+
+    private static final InheritableThreadLocal<String> OUTPUT_DIR = new InheritableThreadLocal<>();
+
+    private GeneratedProgramContext() {
+    }
+
+    /**
+     * Directory where the generated program must write its charts.
+     */
+    public static String outputDir() {
+        String outputDir = OUTPUT_DIR.get();
+        return outputDir != null ? outputDir : ".";
+    }
+
+    /**
+     * Location of the metrics vector data for the current run.
+     */
+    public static Path metricsDataPath() {
+        return Paths.get(outputDir(), METRICS_DATA_FILE);
+    }
+
+    /**
+     * Parses the metrics vector data of the current run (same layout as metrics_vector_data.json).
+     */
+    public static JsonNode loadMetricsData() {
+        try {
+            return new ObjectMapper().readTree(metricsDataPath().toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read metrics data from " + metricsDataPath(), e);
+        }
+    }
+
+    /**
+     * Raw JSON text of the metrics vector data of the current run.
+     */
+    public static String readMetricsData() {
+        try {
+            return Files.readString(metricsDataPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read metrics data from " + metricsDataPath(), e);
+        }
+    }
+
+    static void bind(String outputDir) {
+        OUTPUT_DIR.set(outputDir);
+    }
+
+    static void clear() {
+        OUTPUT_DIR.remove();
+    }
+}
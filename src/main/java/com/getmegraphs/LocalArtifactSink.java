@@ -0,0 +1,55 @@
+package com.getmegraphs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes artifacts to local disk only ({@code artifacts.sink=local}, the default).
+ */
+public class LocalArtifactSink implements ArtifactSink {
+
+    @Override
+    public void write(String path, byte[] content, String contentType) throws IOException {
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, content);
+    }
+
+    @Override
+    public String flush(String path) {
+        return Path.of(path).toAbsolutePath().toString();
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        Path root = Path.of(path);
+        if (!Files.exists(root)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        IOException failure = null;
+        for (Path p : paths) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Live tails of RDS instances and Kafka clusters, streamed as server-sent events.
+ *
+ * All subscribers of a target (per CloudWatch target) share one poll. It runs shortly after every period boundary
+ * and fetches only the last few periods, which also picks up datapoints CloudWatch
+ * publishes late. It asks CloudWatch directly, never the stored rolling windows, which may
+ * lag by minutes. Only datapoints that are new, or whose value changed since they were
+ * last pushed, are sent. A new subscriber first receives the datapoints seen so far. The
+ * poll stops when the last subscriber leaves.
+ */
+@Service
+public class MetricsTailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsTailService.class);
+
+    private static final String[] RDS_METRICS = {"CPUUtilization", "DatabaseConnections", "FreeableMemory", "ReadIOPS", "WriteIOPS"};
+    private static final String[] KAFKA_LAG_METRICS = {"SumOffsetLag", "MaxOffsetLag", "EstimatedMaxTimeLag"};
+
+    private final CloudWatchFetcher cloudWatchFetcher;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final ScheduledExecutorService scheduler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Tail> tails = new ConcurrentHashMap<>();
+    private final Counter polls;
+    private final Counter pushed;
+
+    @Value("${metrics.tail.period-seconds:60}")
+    private int periodSeconds;
+
+    // Delay after a period boundary before polling, so the closed period has been published
+    @Value("${metrics.tail.poll-offset-seconds:15}")
+    private int pollOffsetSeconds;
+
+    @Value("${metrics.tail.lookback-periods:5}")
+    private int lookbackPeriods;
+
+    @Value("${metrics.tail.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    public MetricsTailService(CloudWatchFetcher cloudWatchFetcher,
+                              CloudWatchClientRegistry clientRegistry,
+                              @Qualifier("metricsTailScheduler") ScheduledExecutorService scheduler,
+                              MeterRegistry meterRegistry) {
+        this.cloudWatchFetcher = cloudWatchFetcher;
+        this.clientRegistry = clientRegistry;
+        this.scheduler = scheduler;
+        this.polls = Counter.builder("metrics.tail.polls")
+                .description("Shared CloudWatch polls of live tails")
+                .register(meterRegistry);
+        this.pushed = Counter.builder("metrics.tail.datapoints")
+                .description("Datapoints pushed to live tail subscribers")
+                .register(meterRegistry);
+        Gauge.builder("metrics.tail.subscribers", tails, t -> t.values().stream().mapToInt(tail -> tail.subscribers.size()).sum())
+                .description("Open live tail connections")
+                .register(meterRegistry);
+        Gauge.builder("metrics.tail.targets", tails, Map::size)
+                .description("Targets polled for live tails")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribeDbInstance(String dbInstanceIdentifier) {
+        return subscribe("rds:" + dbInstanceIdentifier, () -> {
+            List<TailSeries> series = new ArrayList<>();
+            for (String metricName : RDS_METRICS) {
+                series.add(new TailSeries(metricName, "AWS/RDS", metricName,
+                        List.of(Dimension.builder().name("DBInstanceIdentifier").value(dbInstanceIdentifier).build())));
+            }
+            return series;
+        });
+    }
+
+    public SseEmitter subscribeCluster(String clusterName) {
+        return subscribe("kafka:" + clusterName, () -> {
+            List<TailSeries> series = new ArrayList<>();
+            for (String[] pair : CloudWatchChartService.DEFAULT_CONSUMER_GROUP_TOPIC_PAIRS) {
+                for (String metricName : KAFKA_LAG_METRICS) {
+                    series.add(new TailSeries(pair[0] + " - " + metricName, "AWS/Kafka", metricName, List.of(
+                            Dimension.builder().name("Cluster Name").value(clusterName).build(),
+                            Dimension.builder().name("Consumer Group").value(pair[0]).build(),
+                            Dimension.builder().name("Topic").value(pair[1]).build())));
+                }
+            }
+            return series;
+        });
+    }
+
+    private SseEmitter subscribe(String target, Supplier<List<TailSeries>> seriesFactory) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        String key = clientRegistry.currentTarget() + "/" + target;
+        ArrayNode[] snapshot = new ArrayNode[1];
+        Tail tail = null;
+        while (tail == null) {
+            // Series are resolved outside the map, which must not block on CloudWatch calls
+            List<TailSeries> series = tails.containsKey(key) ? null : seriesFactory.get();
+            tail = tails.compute(key, (k, existing) -> {
+                if (existing != null) {
+                    existing.subscribers.add(emitter);
+                    snapshot[0] = existing.snapshot(objectMapper);
+                    return existing;
+                }
+                if (series == null) {
+                    // The tail stopped since it was looked up; resolve its series and retry
+                    return null;
+                }
+                Tail created = new Tail(k, series);
+                created.subscribers.add(emitter);
+                start(created);
+                return created;
+            });
+        }
+        Tail subscribed = tail;
+        emitter.onCompletion(() -> unsubscribe(subscribed, emitter));
+        emitter.onTimeout(() -> unsubscribe(subscribed, emitter));
+        emitter.onError(e -> unsubscribe(subscribed, emitter));
+
+        if (snapshot[0] != null && !snapshot[0].isEmpty()) {
+            send(tail, emitter, "snapshot", snapshot[0]);
+        }
+        return emitter;
+    }
+
+    /**
+     * Schedules the shared poll of a new tail. Called while the tail is being added to the
+     * map, so an unsubscribe that removes it always finds the poll to cancel.
+     */
+    private void start(Tail tail) {
+        long periodMillis = periodSeconds * 1000L;
+        long now = System.currentTimeMillis();
+        long firstPoll = now - Math.floorMod(now, periodMillis) + periodMillis + pollOffsetSeconds * 1000L;
+        // Poll right away for the first subscriber, then at every period boundary
+        Runnable poll = clientRegistry.bind(() -> poll(tail));
+        scheduler.execute(poll);
+        tail.future = scheduler.scheduleAtFixedRate(poll, firstPoll - now, periodMillis, TimeUnit.MILLISECONDS);
+        logger.info("Started live tail of {} ({} series)", tail.target, tail.series.size());
+    }
+
+    private void unsubscribe(Tail tail, SseEmitter emitter) {
+        tails.computeIfPresent(tail.target, (key, current) -> {
+            current.subscribers.remove(emitter);
+            if (!current.subscribers.isEmpty()) {
+                return current;
+            }
+            current.future.cancel(false);
+            logger.info("Stopped live tail of {}", key);
+            return null;
+        });
+    }
+
+    private void poll(Tail tail) {
+        if (tail.subscribers.isEmpty()) {
+            return;
+        }
+        polls.increment();
+        Instant end = Instant.now();
+        Instant start = end.minusSeconds((long) periodSeconds * lookbackPeriods);
+        ArrayNode delta = objectMapper.createArrayNode();
+        for (TailSeries series : tail.series) {
+            try {
+                GetMetricStatisticsRequest request = GetMetricStatisticsRequest.builder()
+                        .namespace(series.namespace())
+                        .metricName(series.metricName())
+                        .dimensions(series.dimensions())
+                        .startTime(start)
+                        .endTime(end)
+                        .period(periodSeconds)
+                        .statistics(Statistic.AVERAGE, Statistic.MAXIMUM)
+                        .build();
+                for (Datapoint dp : cloudWatchFetcher.getLatestMetricStatistics(request).datapoints()) {
+                    tail.record(series, dp, delta, objectMapper);
+                }
+            } catch (Exception e) {
+                logger.warn("Live tail poll of {} failed for {}: {}", tail.target, series.name(), e.getMessage());
+            }
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        pushed.increment(delta.size());
+        for (SseEmitter emitter : tail.subscribers) {
+            send(tail, emitter, "datapoints", delta);
+        }
+    }
+
+    private void send(Tail tail, SseEmitter emitter, String event, ArrayNode datapoints) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(datapoints.toString(), MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Disconnected client; the emitter callbacks may not fire for a broken connection
+            emitter.completeWithError(e);
+            unsubscribe(tail, emitter);
+        }
+    }
+
+    private record TailSeries(String name, String namespace, String metricName, List<Dimension> dimensions) {
+    }
+
+    /**
+     * Shared state of one watched target: its subscribers and the datapoints pushed so far
+     * (kept for the lookback window only).
+     */
+    private final class Tail {
+
+        private final String target;
+        private final List<TailSeries> series;
+        private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        private final Map<String, NavigableMap<Instant, Double>> sent = new ConcurrentHashMap<>();
+        // Set when the tail is added to the map and read when it is removed, both inside the map's compute
+        private ScheduledFuture<?> future;
+
+        Tail(String target, List<TailSeries> series) {
+            this.target = target;
+            this.series = series;
+        }
+
+        void record(TailSeries tailSeries, Datapoint dp, ArrayNode delta, ObjectMapper mapper) {
+            double average = dp.average() != null ? dp.average() : 0.0;
+            NavigableMap<Instant, Double> points = sent.computeIfAbsent(tailSeries.name(), k -> new ConcurrentSkipListMap<>());
+            Double previous = points.put(dp.timestamp(), average);
+            points.headMap(Instant.now().minusSeconds((long) periodSeconds * lookbackPeriods * 2), false).clear();
+            if (previous == null || previous != average) {
+                delta.add(toJson(mapper, tailSeries, dp.timestamp(), average, dp.maximum()));
+            }
+        }
+
+        ArrayNode snapshot(ObjectMapper mapper) {
+            ArrayNode snapshot = mapper.createArrayNode();
+            for (TailSeries tailSeries : series) {
+                NavigableMap<Instant, Double> points = sent.get(tailSeries.name());
+                if (points != null) {
+                    points.forEach((timestamp, average) -> snapshot.add(toJson(mapper, tailSeries, timestamp, average, null)));
+                }
+            }
+            return snapshot;
+        }
+
+        private ObjectNode toJson(ObjectMapper mapper, TailSeries tailSeries, Instant timestamp, double average, Double maximum) {
+            ObjectNode node = mapper.createObjectNode()
+                    .put("series", tailSeries.name())
+                    .put("metric", tailSeries.metricName())
+                    .put("timestamp", timestamp.toString())
+                    .put("average", average);
+            if (maximum != null) {
+                node.put("maximum", maximum);
+            }
+            return node;
+        }
+    }
+}
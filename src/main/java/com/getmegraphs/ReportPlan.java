@@ -0,0 +1,54 @@
+package com.getmegraphs;
+
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ReportSpec} compiled for one report: the unique CloudWatch queries grouped into
+ * GetMetricData calls, and the charts and PDF sections built from their results.
+ *
+ * @param batches        queries of each GetMetricData call
+ * @param seriesCount    chart series before deduplication
+ * @param discoveryCalls ListMetrics calls made to resolve wildcard dimensions
+ */
+public record ReportPlan(String title,
+                         Instant start,
+                         Instant end,
+                         List<List<MetricDataQuery>> batches,
+                         List<PlannedChart> charts,
+                         List<PlannedSection> sections,
+                         int seriesCount,
+                         int discoveryCalls) {
+
+    public int queryCount() {
+        return batches.stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * @param queryId id of the {@link MetricDataQuery} whose values make up the series
+     */
+    public record PlannedSeries(String label, String queryId, double scale) {
+    }
+
+    public record PlannedChart(String id,
+                               String file,
+                               String title,
+                               String yAxisLabel,
+                               boolean legend,
+                               List<PlannedSeries> series) {
+
+        public Set<String> queryIds() {
+            return series.stream().map(PlannedSeries::queryId).collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * @param heading null for charts listed without a layout
+     */
+    public record PlannedSection(String heading, List<PlannedChart> charts) {
+    }
+}
@@ -0,0 +1,295 @@
+package com.getmegraphs;
+
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.DimensionFilter;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricStat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compiles a {@link ReportSpec} into a {@link ReportPlan}.
+ *
+ * Every chart series is expanded ({@code forEach} entries, wildcard dimensions) into a
+ * concrete query. Queries that are identical across the whole report (namespace, metric,
+ * dimensions, period and statistic) are planned once, however many charts use them. The
+ * unique queries are then packed into as few GetMetricData calls as the API limits allow
+ * (500 queries and 100,800 datapoints per call).
+ */
+@Component
+public class ReportPlanner {
+
+    static final int MAX_QUERIES_PER_CALL = 500;
+    static final int MAX_DATAPOINTS_PER_CALL = 100_800;
+
+    private static final int DEFAULT_PERIOD = 60;
+
+    private final CloudWatchFetcher cloudWatchFetcher;
+
+    public ReportPlanner(CloudWatchFetcher cloudWatchFetcher) {
+        this.cloudWatchFetcher = cloudWatchFetcher;
+    }
+
+    public ReportPlan compile(ReportSpec spec, String clusterName, String dbInstanceIdentifier, Instant start, Instant end) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Report start must be before its end");
+        }
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("clusterName", clusterName != null ? clusterName.trim() : "");
+        parameters.put("dbInstanceIdentifier", dbInstanceIdentifier != null ? dbInstanceIdentifier.trim() : "");
+
+        Compilation compilation = new Compilation(spec);
+        Map<String, List<ReportPlan.PlannedChart>> chartsById = new LinkedHashMap<>();
+        Set<String> files = new HashSet<>();
+        int seriesCount = 0;
+
+        for (ReportSpec.ChartSpec chartSpec : spec.charts()) {
+            if (chartSpec.id() == null || chartsById.containsKey(chartSpec.id())) {
+                throw new IllegalArgumentException("Chart ids must be present and unique: " + chartSpec.id());
+            }
+            List<ReportPlan.PlannedChart> planned = new ArrayList<>();
+            chartsById.put(chartSpec.id(), planned);
+            if (!satisfied(chartSpec.requires(), parameters)) {
+                continue;
+            }
+
+            for (Map<String, String> chartContext : compilation.entries(chartSpec.forEach(), parameters)) {
+                List<ReportPlan.PlannedSeries> series = new ArrayList<>();
+                for (ReportSpec.SeriesSpec seriesSpec : chartSpec.series()) {
+                    for (Map<String, String> seriesContext : compilation.entries(seriesSpec.forEach(), chartContext)) {
+                        series.addAll(compilation.series(seriesSpec, seriesContext));
+                    }
+                }
+                seriesCount += series.size();
+
+                String file = ReportSpec.expand(chartSpec.file() != null ? chartSpec.file() : chartSpec.id(), chartContext)
+                        .replaceAll("[^A-Za-z0-9._-]+", "_") + ".png";
+                if (!files.add(file)) {
+                    throw new IllegalArgumentException("Chart file " + file + " is written twice; "
+                            + "expanded charts need a file name referencing their forEach fields");
+                }
+                boolean legend = chartSpec.legend() != null ? chartSpec.legend() : series.size() > 1;
+                planned.add(new ReportPlan.PlannedChart(chartSpec.id(), file,
+                        ReportSpec.expand(chartSpec.title(), chartContext),
+                        ReportSpec.expand(chartSpec.yAxisLabel(), chartContext),
+                        legend, series));
+            }
+        }
+
+        List<ReportPlan.PlannedSection> sections = new ArrayList<>();
+        if (spec.layout() == null || spec.layout().isEmpty()) {
+            sections.add(new ReportPlan.PlannedSection(null,
+                    chartsById.values().stream().flatMap(List::stream).toList()));
+        } else {
+            for (ReportSpec.SectionSpec section : spec.layout()) {
+                if (!satisfied(section.requires(), parameters)) {
+                    continue;
+                }
+                List<ReportPlan.PlannedChart> charts = new ArrayList<>();
+                for (String id : section.charts()) {
+                    List<ReportPlan.PlannedChart> planned = chartsById.get(id);
+                    if (planned == null) {
+                        throw new IllegalArgumentException("Layout references unknown chart: " + id);
+                    }
+                    charts.addAll(planned);
+                }
+                sections.add(new ReportPlan.PlannedSection(ReportSpec.expand(section.heading(), parameters), charts));
+            }
+        }
+
+        return new ReportPlan(
+                ReportSpec.expand(spec.title() != null ? spec.title() : "CloudWatch Report", parameters),
+                start, end,
+                batch(compilation.queries(), Duration.between(start, end)),
+                chartsById.values().stream().flatMap(List::stream).toList(),
+                sections,
+                seriesCount,
+                compilation.discoveryCalls);
+    }
+
+    /**
+     * Packs queries into GetMetricData calls, in order, within the per-call limits.
+     */
+    static List<List<MetricDataQuery>> batch(List<MetricDataQuery> queries, Duration window) {
+        List<List<MetricDataQuery>> batches = new ArrayList<>();
+        List<MetricDataQuery> current = new ArrayList<>();
+        long datapoints = 0;
+        for (MetricDataQuery query : queries) {
+            long queryDatapoints = Math.max(1, (window.getSeconds() + query.metricStat().period() - 1) / query.metricStat().period());
+            if (!current.isEmpty() && (current.size() >= MAX_QUERIES_PER_CALL || datapoints + queryDatapoints > MAX_DATAPOINTS_PER_CALL)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                datapoints = 0;
+            }
+            // A single query above the datapoint limit gets a call of its own and is paginated
+            current.add(query);
+            datapoints += queryDatapoints;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private static boolean satisfied(String requires, Map<String, String> parameters) {
+        return requires == null || !parameters.getOrDefault(requires, "").isEmpty();
+    }
+
+    /**
+     * State of one compilation: unique queries and ListMetrics results so far.
+     */
+    private final class Compilation {
+
+        private final ReportSpec spec;
+        private final Map<String, MetricDataQuery> queriesByKey = new LinkedHashMap<>();
+        private final Map<String, List<List<Dimension>>> discovered = new HashMap<>();
+        private int discoveryCalls;
+
+        Compilation(ReportSpec spec) {
+            this.spec = spec;
+        }
+
+        List<MetricDataQuery> queries() {
+            return new ArrayList<>(queriesByKey.values());
+        }
+
+        /**
+         * The context once, or extended by each entry of the named variable list.
+         */
+        List<Map<String, String>> entries(String forEach, Map<String, String> context) {
+            if (forEach == null) {
+                return List.of(context);
+            }
+            List<Map<String, String>> values = spec.variables() != null ? spec.variables().get(forEach) : null;
+            if (values == null) {
+                throw new IllegalArgumentException("Unknown forEach variable: " + forEach);
+            }
+            List<Map<String, String>> entries = new ArrayList<>();
+            for (Map<String, String> value : values) {
+                Map<String, String> entry = new HashMap<>(context);
+                entry.putAll(value);
+                entries.add(entry);
+            }
+            return entries;
+        }
+
+        List<ReportPlan.PlannedSeries> series(ReportSpec.SeriesSpec seriesSpec, Map<String, String> context) {
+            int period = seriesSpec.period() != null ? seriesSpec.period()
+                    : spec.period() != null ? spec.period() : DEFAULT_PERIOD;
+            String stat = seriesSpec.stat() != null ? seriesSpec.stat() : "Average";
+            double scale = seriesSpec.scale() != null ? seriesSpec.scale() : 1.0;
+            String namespace = ReportSpec.expand(seriesSpec.namespace(), context);
+            String metricName = ReportSpec.expand(seriesSpec.metric(), context);
+
+            Map<String, String> dimensions = new TreeMap<>();
+            if (seriesSpec.dimensions() != null) {
+                seriesSpec.dimensions().forEach((name, value) -> dimensions.put(name, ReportSpec.expand(value, context)));
+            }
+
+            List<ReportPlan.PlannedSeries> series = new ArrayList<>();
+            for (List<Dimension> resolved : resolve(namespace, metricName, dimensions)) {
+                Map<String, String> labelContext = new HashMap<>(context);
+                resolved.forEach(dimension -> labelContext.put(dimension.name(), dimension.value()));
+                String label = ReportSpec.expand(seriesSpec.label() != null ? seriesSpec.label() : metricName, labelContext);
+                series.add(new ReportPlan.PlannedSeries(label, query(namespace, metricName, resolved, period, stat).id(), scale));
+            }
+            return series;
+        }
+
+        private MetricDataQuery query(String namespace, String metricName, List<Dimension> dimensions, int period, String stat) {
+            StringBuilder key = new StringBuilder(namespace).append('|').append(metricName);
+            dimensions.forEach(dimension -> key.append('|').append(dimension.name()).append('=').append(dimension.value()));
+            key.append('|').append(period).append('|').append(stat);
+            return queriesByKey.computeIfAbsent(key.toString(), k -> MetricDataQuery.builder()
+                    .id("q" + queriesByKey.size())
+                    .metricStat(MetricStat.builder()
+                            .metric(Metric.builder()
+                                    .namespace(namespace)
+                                    .metricName(metricName)
+                                    .dimensions(dimensions)
+                                    .build())
+                            .period(period)
+                            .stat(stat)
+                            .build())
+                    .returnData(true)
+                    .build());
+        }
+
+        /**
+         * Concrete dimension sets for a selector: itself, or one per metric found by ListMetrics
+         * when some dimension values are {@code "*"}.
+         */
+        private List<List<Dimension>> resolve(String namespace, String metricName, Map<String, String> selector) {
+            if (!selector.containsValue("*")) {
+                List<Dimension> dimensions = new ArrayList<>();
+                selector.forEach((name, value) -> dimensions.add(Dimension.builder().name(name).value(value).build()));
+                return List.of(dimensions);
+            }
+            return discovered.computeIfAbsent(namespace + "|" + metricName + "|" + selector, key -> discover(namespace, metricName, selector));
+        }
+
+        private List<List<Dimension>> discover(String namespace, String metricName, Map<String, String> selector) {
+            List<DimensionFilter> filters = new ArrayList<>();
+            selector.forEach((name, value) -> filters.add("*".equals(value)
+                    ? DimensionFilter.builder().name(name).build()
+                    : DimensionFilter.builder().name(name).value(value).build()));
+
+            List<List<Dimension>> found = new ArrayList<>();
+            String nextToken = null;
+            do {
+                ListMetricsResponse response = cloudWatchFetcher.listMetrics(ListMetricsRequest.builder()
+                        .namespace(namespace)
+                        .metricName(metricName)
+                        .dimensions(filters)
+                        .nextToken(nextToken)
+                        .build());
+                discoveryCalls++;
+                for (Metric metric : response.metrics()) {
+                    // Only metrics with exactly the selected dimensions, not finer-grained ones
+                    if (metric.dimensions().size() == selector.size()) {
+                        List<Dimension> dimensions = new ArrayList<>(metric.dimensions());
+                        dimensions.sort(Comparator.comparing(Dimension::name));
+                        if (!found.contains(dimensions)) {
+                            found.add(dimensions);
+                        }
+                    }
+                }
+                nextToken = response.nextToken();
+            } while (nextToken != null);
+
+            found.sort(ReportPlanner::compareDimensions);
+            return found;
+        }
+    }
+
+    /**
+     * Orders dimension sets by value, numeric values numerically (broker 10 after broker 9).
+     */
+    private static int compareDimensions(List<Dimension> a, List<Dimension> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            String valueA = a.get(i).value();
+            String valueB = b.get(i).value();
+            int result = valueA.matches("\\d{1,18}") && valueB.matches("\\d{1,18}")
+                    ? Long.compare(Long.parseLong(valueA), Long.parseLong(valueB))
+                    : valueA.compareTo(valueB);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+}
@@ -0,0 +1,111 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Declarative description of a report: its charts, the CloudWatch series behind each chart
+ * and the PDF layout. Compiled into a fetch and render plan by {@link ReportPlanner}.
+ *
+ * Strings may reference {@code ${clusterName}}, {@code ${dbInstanceIdentifier}}, the fields
+ * of the current {@code forEach} entry and, in series labels, the values of wildcard
+ * ({@code "*"}) dimensions, which are discovered with ListMetrics.
+ *
+ * @param title     report and PDF title
+ * @param period    default period of all series, in seconds
+ * @param variables named lists of entries that charts and series can expand over
+ * @param charts    charts in the order they are written
+ * @param layout    PDF sections referencing chart ids
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ReportSpec(String title,
+                         Integer period,
+                         Map<String, List<Map<String, String>>> variables,
+                         List<ChartSpec> charts,
+                         List<SectionSpec> layout) {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+
+    /**
+     * @param id         unique id, referenced by the layout
+     * @param file       PNG file name without extension (defaults to the id); must reference a
+     *                   {@code forEach} field when the chart is expanded
+     * @param requires   {@code clusterName} or {@code dbInstanceIdentifier}: the chart is skipped
+     *                   unless that parameter is given
+     * @param forEach    name of a variable list; one chart is written per entry
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ChartSpec(String id,
+                            String file,
+                            String title,
+                            String yAxisLabel,
+                            String requires,
+                            String forEach,
+                            Boolean legend,
+                            List<SeriesSpec> series) {
+    }
+
+    /**
+     * @param stat    CloudWatch statistic (e.g. Average, Maximum, Sum, p99); defaults to Average
+     * @param period  overrides the report period
+     * @param scale   factor applied to every value (e.g. bytes to MB)
+     * @param forEach name of a variable list; one series is added per entry
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record SeriesSpec(String label,
+                             String namespace,
+                             String metric,
+                             Map<String, String> dimensions,
+                             String stat,
+                             Integer period,
+                             Double scale,
+                             String forEach) {
+    }
+
+    /**
+     * @param requires as for charts
+     * @param charts   chart ids; an expanded chart contributes all of its entries
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record SectionSpec(String heading, String requires, List<String> charts) {
+    }
+
+    /**
+     * Reads a spec in JSON or, when {@code yaml} is set, YAML.
+     */
+    public static ReportSpec parse(String content, boolean yaml) throws IOException {
+        ObjectMapper mapper = yaml ? new ObjectMapper(new YAMLFactory()) : new ObjectMapper();
+        ReportSpec spec = mapper.readValue(content, ReportSpec.class);
+        if (spec.charts() == null || spec.charts().isEmpty()) {
+            throw new IllegalArgumentException("Report spec has no charts");
+        }
+        return spec;
+    }
+
+    /**
+     * Replaces the {@code ${name}} placeholders of {@code template} with values from {@code context}.
+     */
+    static String expand(String template, Map<String, String> context) {
+        if (template == null) {
+            return null;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuilder expanded = new StringBuilder();
+        while (matcher.find()) {
+            String value = context.get(matcher.group(1));
+            if (value == null) {
+                throw new IllegalArgumentException("Unknown placeholder ${" + matcher.group(1) + "} in: " + template);
+            }
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(expanded);
+        return expanded.toString();
+    }
+}
@@ -0,0 +1,254 @@
+package com.getmegraphs;
+
+import com.itextpdf.text.Document;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.ScanBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+
+/**
+ * Generates reports from {@link ReportSpec}s.
+ *
+ * The spec is compiled by the {@link ReportPlanner}, then its GetMetricData calls run one
+ * after the other while charts render on the {@code chartRenderExecutor}: each chart starts
+ * as soon as the calls holding its queries have returned. The report directory gets the
+ * charts and a summary; optionally a PDF is laid out as the spec describes.
+ *
+ * Specs are looked up by name in {@code reports.spec.directory} and then on the classpath
+ * under {@code report-specs/}, as {@code .json}, {@code .yaml} or {@code .yml}.
+ */
+@Service
+public class ReportSpecService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportSpecService.class);
+
+    private static final Pattern SPEC_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String[] SPEC_EXTENSIONS = {".json", ".yaml", ".yml"};
+
+    private final ReportPlanner reportPlanner;
+    private final CloudWatchFetcher cloudWatchFetcher;
+    private final CloudWatchChartService chartService;
+    private final ExecutorService renderExecutor;
+    private final ReportStore reportStore;
+    private final ArtifactSink artifactSink;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${reports.spec.directory:report-specs}")
+    private String specDirectory;
+
+    public ReportSpecService(ReportPlanner reportPlanner,
+                             CloudWatchFetcher cloudWatchFetcher,
+                             CloudWatchChartService chartService,
+                             @Qualifier("chartRenderExecutor") ExecutorService renderExecutor,
+                             ReportStore reportStore,
+                             ArtifactSink artifactSink,
+                             CloudWatchClientRegistry clientRegistry,
+                             MeterRegistry meterRegistry) {
+        this.reportPlanner = reportPlanner;
+        this.cloudWatchFetcher = cloudWatchFetcher;
+        this.chartService = chartService;
+        this.renderExecutor = renderExecutor;
+        this.reportStore = reportStore;
+        this.artifactSink = artifactSink;
+        this.clientRegistry = clientRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ReportSpec loadSpec(String name) throws IOException {
+        if (!SPEC_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid report spec name: " + name);
+        }
+        for (String extension : SPEC_EXTENSIONS) {
+            Path file = Path.of(specDirectory, name + extension);
+            if (Files.isRegularFile(file)) {
+                return ReportSpec.parse(Files.readString(file), !".json".equals(extension));
+            }
+        }
+        for (String extension : SPEC_EXTENSIONS) {
+            ClassPathResource resource = new ClassPathResource("report-specs/" + name + extension);
+            if (resource.exists()) {
+                return ReportSpec.parse(resource.getContentAsString(StandardCharsets.UTF_8), !".json".equals(extension));
+            }
+        }
+        throw new IllegalArgumentException("Unknown report spec: " + name);
+    }
+
+    /**
+     * @return absolute path of the PDF when {@code pdf} is set, otherwise of the report directory
+     */
+    public String generateReport(ReportSpec spec,
+                                 String specName,
+                                 String clusterName,
+                                 String dbInstanceIdentifier,
+                                 String startTime,
+                                 String endTime,
+                                 boolean pdf) throws Exception {
+        String target = clientRegistry.currentTarget();
+        String specKey = reportStore.specKey(specName, spec);
+        ReportStore.Key directoryKey = ReportStore.Key.of("spec", target, clusterName, dbInstanceIdentifier, specKey, startTime, endTime);
+        ReportStore.Key pdfKey = ReportStore.Key.of("spec-pdf", target, clusterName, dbInstanceIdentifier, specKey, startTime, endTime);
+        Optional<String> stored = reportStore.find(pdf ? pdfKey : directoryKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ReportPlan plan = reportPlanner.compile(spec, clusterName, dbInstanceIdentifier,
+                Instant.parse(startTime), Instant.parse(endTime));
+        logger.info("Planned report {}: {} charts, {} series as {} unique queries in {} GetMetricData calls ({} ListMetrics calls)",
+                specName, plan.charts().size(), plan.seriesCount(), plan.queryCount(), plan.batches().size(), plan.discoveryCalls());
+        meterRegistry.counter("report.spec.series", "source", "fetched").increment(plan.queryCount());
+        meterRegistry.counter("report.spec.series", "source", "shared").increment(plan.seriesCount() - plan.queryCount());
+
+        String timestamp = Instant.now().toString().replaceAll("[:.]+", "-");
+        String reportDir = reportStore.newPath("spec_report_" + specName + "_" + timestamp);
+        new File(reportDir).mkdirs();
+
+        Map<String, CompletableFuture<MetricDataResult>> results = new HashMap<>();
+        plan.batches().forEach(batch -> batch.forEach(query -> results.put(query.id(), new CompletableFuture<>())));
+
+        // The render graph: every chart waits for its own queries only
+        List<CompletableFuture<String>> renders = new ArrayList<>();
+        for (ReportPlan.PlannedChart chart : plan.charts()) {
+            CompletableFuture<?>[] inputs = chart.queryIds().stream().map(results::get).toArray(CompletableFuture[]::new);
+            renders.add(CompletableFuture.allOf(inputs)
+                    .thenApplyAsync(ignored -> render(chart, results, reportDir), renderExecutor)
+                    .exceptionally(e -> {
+                        logger.error("Error generating chart {}", chart.file(), e);
+                        return "✗ Error generating " + chart.title() + ": " + rootMessage(e) + "\n";
+                    }));
+        }
+
+        for (List<MetricDataQuery> batch : plan.batches()) {
+            fetch(plan, batch, results);
+        }
+
+        StringBuilder summary = new StringBuilder(plan.title()).append("\n");
+        summary.append("Generated at: ").append(Instant.now()).append("\n");
+        summary.append("Time Range: ").append(startTime).append(" to ").append(endTime).append("\n");
+        summary.append("Plan: ").append(plan.seriesCount()).append(" series from ").append(plan.queryCount())
+                .append(" unique queries in ").append(plan.batches().size()).append(" GetMetricData calls\n\n");
+        for (CompletableFuture<String> render : renders) {
+            summary.append(render.join());
+        }
+        artifactSink.write(reportDir + "/report_summary.txt", summary.toString().getBytes(StandardCharsets.UTF_8), "text/plain");
+
+        String result = reportStore.register(directoryKey, reportDir);
+        if (pdf) {
+            String pdfFileName = reportDir + ".pdf";
+            writePDF(plan, pdfFileName, reportDir, clusterName, dbInstanceIdentifier, startTime, endTime);
+            result = reportStore.register(pdfKey, pdfFileName);
+        }
+        sample.stop(meterRegistry.timer("report.spec", "spec", specName));
+        logger.info("Report {} generated: {}", specName, result);
+        return result;
+    }
+
+    private void fetch(ReportPlan plan, List<MetricDataQuery> batch, Map<String, CompletableFuture<MetricDataResult>> results) {
+        try {
+            List<MetricDataResult> fetched = cloudWatchFetcher.getMetricData(GetMetricDataRequest.builder()
+                    .startTime(plan.start())
+                    .endTime(plan.end())
+                    .scanBy(ScanBy.TIMESTAMP_ASCENDING)
+                    .metricDataQueries(batch)
+                    .build());
+            for (MetricDataResult result : fetched) {
+                CompletableFuture<MetricDataResult> future = results.get(result.id());
+                if (future != null) {
+                    future.complete(result);
+                }
+            }
+            for (MetricDataQuery query : batch) {
+                results.get(query.id()).complete(MetricDataResult.builder().id(query.id()).build());
+            }
+        } catch (Exception e) {
+            for (MetricDataQuery query : batch) {
+                results.get(query.id()).completeExceptionally(e);
+            }
+        }
+    }
+
+    private String render(ReportPlan.PlannedChart chart, Map<String, CompletableFuture<MetricDataResult>> results, String reportDir) {
+        Map<String, NavigableMap<Instant, Double>> series = new LinkedHashMap<>();
+        StringBuilder statistics = new StringBuilder();
+        for (ReportPlan.PlannedSeries plannedSeries : chart.series()) {
+            MetricDataResult result = results.get(plannedSeries.queryId()).join();
+            NavigableMap<Instant, Double> points = new TreeMap<>();
+            SeriesStatistics seriesStatistics = new SeriesStatistics();
+            for (int i = 0; i < Math.min(result.timestamps().size(), result.values().size()); i++) {
+                double value = result.values().get(i) * plannedSeries.scale();
+                points.put(result.timestamps().get(i), value);
+                seriesStatistics.add(value);
+            }
+            String label = plannedSeries.label();
+            for (int n = 2; series.containsKey(label); n++) {
+                label = plannedSeries.label() + " (" + n + ")";
+            }
+            series.put(label, points);
+            if (seriesStatistics.count() > 0) {
+                statistics.append("    ").append(label).append(": ").append(seriesStatistics.summary()).append("\n");
+            }
+        }
+        try {
+            chartService.saveTimeSeriesChart(chart.title(), chart.yAxisLabel(), chart.legend(), series,
+                    reportDir + "/" + chart.file());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write chart " + chart.file(), e);
+        }
+        return "✓ " + chart.title() + " chart generated\n" + statistics;
+    }
+
+    private void writePDF(ReportPlan plan, String pdfFileName, String reportDir, String clusterName,
+                          String dbInstanceIdentifier, String startTime, String endTime) throws Exception {
+        Timer.Sample pdfSample = Timer.start(meterRegistry);
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = chartService.openReportPDF(pdf, plan.title(), reportDir,
+                clusterName, dbInstanceIdentifier, startTime, endTime);
+        for (ReportPlan.PlannedSection section : plan.sections()) {
+            if (section.heading() != null) {
+                chartService.addSectionHeadingToPDF(document, section.heading());
+            }
+            for (ReportPlan.PlannedChart chart : section.charts()) {
+                chartService.addChartToPDF(document, reportDir + "/" + chart.file(), chart.title());
+            }
+        }
+        document.close();
+        pdfSample.stop(meterRegistry.timer("report.pdf.assembly"));
+        artifactSink.write(pdfFileName, pdf.toByteArray(), "application/pdf");
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+}
@@ -0,0 +1,380 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generated reports and their index. Report directories and PDFs are written under
+ * {@code reports.store.directory}, and {@code index.json} there records what each one covers:
+ * kind, targets, spec, window, creation and last access, path and size.
+ *
+ * A request for a window that was already reported is answered with the stored artifacts,
+ * provided the window had closed ({@code reports.rolling.settle-seconds} after its end) when
+ * they were written, so reports holding still incomplete periods are never reused.
+ *
+ * Compaction runs every {@code reports.store.compaction-interval-ms}: it drops entries whose
+ * files are gone, deletes reports older than {@code reports.store.max-age}, then the least
+ * recently used ones until the store fits {@code reports.store.max-size}. Reports used in
+ * the last {@link #IN_USE_GRACE} are kept, as a PDF may still be built from them. Deleted
+ * reports are deleted from the {@link ArtifactSink}, including their published copies.
+ */
+@Component
+public class ReportStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportStore.class);
+
+    private static final String INDEX_FILE = "index.json";
+    static final Duration IN_USE_GRACE = Duration.ofMinutes(10);
+
+    /**
+     * One stored report.
+     *
+     * @param kind     {@code comprehensive}, {@code pdf}, {@code combined}, {@code spec}, {@code spec-pdf}
+     *                 or {@code capacity-forecast} (forecast charts)
+     * @param targets  report targets as {@code clusterName:dbInstanceIdentifier:cloudWatchTarget}
+     * @param spec     spec name and fingerprint of its content, the horizon of forecast charts,
+     *                 null for the built-in reports
+     * @param path     absolute path of the report directory or PDF
+     * @param location where the {@link ArtifactSink} published it, e.g. an {@code s3://} URI
+     */
+    public record Entry(String id,
+                        String kind,
+                        List<String> targets,
+                        String spec,
+                        Instant start,
+                        Instant end,
+                        Instant createdAt,
+                        Instant lastAccessed,
+                        String path,
+                        String location,
+                        long sizeBytes) {
+
+        Entry accessed(Instant when) {
+            return new Entry(id, kind, targets, spec, start, end, createdAt, when, path, location, sizeBytes);
+        }
+
+        Entry resized(long size) {
+            return new Entry(id, kind, targets, spec, start, end, createdAt, lastAccessed, path, location, size);
+        }
+
+        boolean matches(Key key) {
+            return kind.equals(key.kind()) && targets.equals(key.targets()) && Objects.equals(spec, key.spec())
+                    && start.equals(key.start()) && end.equals(key.end());
+        }
+    }
+
+    /**
+     * What a report request asks for. Targets are written like {@link ReportTarget#toString}
+     * with a missing cluster or DB instance left empty, and the window is compared as instants.
+     */
+    public record Key(String kind, List<String> targets, String spec, Instant start, Instant end) {
+
+        static Key of(String kind, String cloudWatchTarget, String clusterName, String dbInstanceIdentifier,
+                      String spec, String startTime, String endTime) {
+            String target = new ReportTarget(normalize(clusterName), normalize(dbInstanceIdentifier), cloudWatchTarget).toString();
+            return new Key(kind, List.of(target), spec, Instant.parse(startTime), Instant.parse(endTime));
+        }
+
+        static Key of(String kind, List<ReportTarget> targets, String startTime, String endTime) {
+            return new Key(kind, targets.stream().map(ReportTarget::toString).toList(), null,
+                    Instant.parse(startTime), Instant.parse(endTime));
+        }
+
+        private static String normalize(String value) {
+            return value == null ? "" : value.trim();
+        }
+    }
+
+    private final Path root;
+    private final Path indexFile;
+    private final ObjectMapper objectMapper;
+    private final ArtifactSink artifactSink;
+    private final MeterRegistry meterRegistry;
+    private final Duration settle;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+    // Guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public ReportStore(ObjectMapper objectMapper,
+                       ArtifactSink artifactSink,
+                       MeterRegistry meterRegistry,
+                       @Value("${reports.store.directory:reports}") String directory,
+                       @Value("${reports.store.max-age:7d}") Duration maxAge,
+                       @Value("${reports.store.max-size:5GB}") DataSize maxSize,
+                       @Value("${reports.rolling.settle-seconds:120}") long settleSeconds) {
+        this.root = Path.of(directory).toAbsolutePath();
+        this.indexFile = root.resolve(INDEX_FILE);
+        this.objectMapper = objectMapper;
+        this.artifactSink = artifactSink;
+        this.meterRegistry = meterRegistry;
+        this.settle = Duration.ofSeconds(settleSeconds);
+        this.maxAge = maxAge;
+        this.maxSizeBytes = maxSize.toBytes();
+        load();
+        Gauge.builder("reports.store.entries", this, store -> store.snapshot().size())
+                .description("Reports in the report store")
+                .register(meterRegistry);
+        Gauge.builder("reports.store.size", this, store -> store.snapshot().stream().mapToLong(Entry::sizeBytes).sum())
+                .description("Bytes of the reports in the report store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Path for a new report artifact of the given file or directory name.
+     */
+    public String newPath(String name) throws IOException {
+        Files.createDirectories(root);
+        return root.resolve(name).toString();
+    }
+
+    /**
+     * Finds a reusable report for the request: the newest entry with the same kind, targets,
+     * spec and window that was written after the window had closed and is still on disk.
+     */
+    public synchronized Optional<String> find(Key key) {
+        Instant closed = key.end().plus(settle);
+        Entry found = null;
+        for (Entry entry : entries.values()) {
+            if (entry.matches(key) && !entry.createdAt().isBefore(closed)
+                    && (found == null || entry.createdAt().isAfter(found.createdAt()))) {
+                found = entry;
+            }
+        }
+        if (found != null && !Files.exists(Path.of(found.path()))) {
+            entries.remove(found.id());
+            meterRegistry.counter("reports.store.evictions", "reason", "missing").increment();
+            save();
+            found = null;
+        }
+        meterRegistry.counter("reports.store.lookups", "outcome", found != null ? "hit" : "miss").increment();
+        if (found == null) {
+            return Optional.empty();
+        }
+        entries.put(found.id(), found.accessed(Instant.now()));
+        save();
+        logger.info("Serving stored {} report: {}", key.kind(), found.path());
+        return Optional.of(found.path());
+    }
+
+    /**
+     * Indexes a report that has just been written, once the {@link ArtifactSink} has published
+     * it, and returns its path.
+     */
+    public String register(Key key, String path) throws IOException {
+        String location = artifactSink.flush(path);
+        Instant now = Instant.now();
+        Entry entry = new Entry(UUID.randomUUID().toString(), key.kind(), key.targets(), key.spec(), key.start(), key.end(),
+                now, now, path, location, sizeOf(Path.of(path)));
+        boolean overSize;
+        synchronized (this) {
+            entries.put(entry.id(), entry);
+            save();
+            overSize = entries.values().stream().mapToLong(Entry::sizeBytes).sum() > maxSizeBytes;
+        }
+        if (overSize) {
+            compact();
+        }
+        return path;
+    }
+
+    /**
+     * Stored reports, newest first, optionally limited to a kind, a cluster, a DB instance and
+     * reports overlapping a window.
+     */
+    public List<Entry> list(String kind, String clusterName, String dbInstanceIdentifier, Instant from, Instant until) {
+        return snapshot().stream()
+                .filter(entry -> kind == null || kind.isBlank() || entry.kind().equals(kind))
+                .filter(entry -> covers(entry, clusterName, dbInstanceIdentifier))
+                .filter(entry -> from == null || entry.end().isAfter(from))
+                .filter(entry -> until == null || entry.start().isBefore(until))
+                .sorted(Comparator.comparing(Entry::createdAt).reversed())
+                .toList();
+    }
+
+    private static boolean covers(Entry entry, String clusterName, String dbInstanceIdentifier) {
+        for (String target : entry.targets()) {
+            String[] parts = target.split(":", -1);
+            if ((clusterName == null || clusterName.isBlank() || parts[0].equals(clusterName.trim()))
+                    && (dbInstanceIdentifier == null || dbInstanceIdentifier.isBlank() || parts[1].equals(dbInstanceIdentifier.trim()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Spec identity for {@link Key#spec}: its name and a fingerprint of its content, so edited
+     * or inline specs never match reports of another version.
+     */
+    public String specKey(String specName, ReportSpec spec) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(spec));
+            return specName + "@" + HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${reports.store.compaction-interval-ms:600000}",
+            fixedDelayString = "${reports.store.compaction-interval-ms:600000}")
+    public void compact() {
+        Instant now = Instant.now();
+        Instant inUse = now.minus(IN_USE_GRACE);
+        List<Entry> evicted = new ArrayList<>();
+        Set<Path> indexed;
+        // Measured outside the lock, so walking the report directories does not hold up find and register;
+        // missing reports get a size of -1
+        Map<String, Long> sizes = new HashMap<>();
+        for (Entry entry : snapshot()) {
+            Path path = Path.of(entry.path());
+            sizes.put(entry.id(), Files.exists(path) ? sizeOf(path) : -1L);
+        }
+        synchronized (this) {
+            for (Entry entry : List.copyOf(entries.values())) {
+                Long size = sizes.get(entry.id());
+                if (size == null) {
+                    // Registered while sizes were measured, with its size at registration
+                    continue;
+                }
+                if (size < 0) {
+                    entries.remove(entry.id());
+                    meterRegistry.counter("reports.store.evictions", "reason", "missing").increment();
+                    continue;
+                }
+                entry = entry.resized(size);
+                entries.put(entry.id(), entry);
+                if (entry.createdAt().isBefore(now.minus(maxAge)) && entry.lastAccessed().isBefore(inUse)) {
+                    entries.remove(entry.id());
+                    evicted.add(entry);
+                    meterRegistry.counter("reports.store.evictions", "reason", "age").increment();
+                }
+            }
+            long size = entries.values().stream().mapToLong(Entry::sizeBytes).sum();
+            List<Entry> leastRecentlyUsed = entries.values().stream()
+                    .sorted(Comparator.comparing(Entry::lastAccessed))
+                    .toList();
+            for (Entry entry : leastRecentlyUsed) {
+                if (size <= maxSizeBytes) {
+                    break;
+                }
+                if (entry.lastAccessed().isBefore(inUse)) {
+                    entries.remove(entry.id());
+                    evicted.add(entry);
+                    size -= entry.sizeBytes();
+                    meterRegistry.counter("reports.store.evictions", "reason", "size").increment();
+                }
+            }
+            save();
+            indexed = entries.values().stream().map(entry -> Path.of(entry.path())).collect(Collectors.toSet());
+        }
+
+        for (Entry entry : evicted) {
+            delete(Path.of(entry.path()));
+        }
+        // Leftovers of reports that failed or were written before a crash, once they are old
+        int orphans = 0;
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> children = Files.list(root)) {
+                for (Path child : children.toList()) {
+                    if (!child.equals(indexFile) && !indexed.contains(child)
+                            && Files.getLastModifiedTime(child).toInstant().isBefore(now.minus(maxAge))) {
+                        delete(child);
+                        orphans++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Error listing the report store {}", root, e);
+            }
+        }
+        if (!evicted.isEmpty() || orphans > 0) {
+            logger.info("Report store compaction deleted {} reports and {} unindexed files", evicted.size(), orphans);
+        }
+    }
+
+    private synchronized List<Entry> snapshot() {
+        return List.copyOf(entries.values());
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try {
+            List<Entry> stored = objectMapper.readValue(indexFile.toFile(), new TypeReference<List<Entry>>() {
+            });
+            for (Entry entry : stored) {
+                entries.put(entry.id(), entry);
+            }
+            logger.info("Loaded {} stored reports from {}", entries.size(), indexFile);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable report index {}", indexFile, e);
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves half an index
+    private void save() {
+        try {
+            Files.createDirectories(root);
+            Path temporary = root.resolve(INDEX_FILE + ".tmp");
+            Files.write(temporary, objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValueAsString(List.copyOf(entries.values())).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Error writing the report index {}", indexFile, e);
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            logger.warn("Error measuring {}", path, e);
+            return 0;
+        }
+    }
+
+    // Through the sink, so published copies go as well
+    private void delete(Path path) {
+        try {
+            artifactSink.delete(path.toString());
+        } catch (IOException e) {
+            logger.warn("Could not delete {}", path, e);
+        }
+    }
+}
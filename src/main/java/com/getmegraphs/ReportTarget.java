@@ -0,0 +1,41 @@
+package com.getmegraphs;
+
+/**
+ * What a report covers: an MSK cluster and/or an RDS instance, read through a CloudWatch
+ * target of the {@link CloudWatchClientRegistry}.
+ */
+public record ReportTarget(String clusterName, String dbInstanceIdentifier, String cloudWatchTarget) {
+
+    /**
+     * Parses {@code clusterName:dbInstanceIdentifier[:cloudWatchTarget]}; the cluster or the DB
+     * instance may be empty, and without a CloudWatch target the default one is used.
+     */
+    public static ReportTarget parse(String spec) {
+        String[] parts = spec.trim().split(":", 3);
+        String clusterName = parts[0].trim();
+        String dbInstanceIdentifier = parts.length > 1 ? parts[1].trim() : "";
+        String cloudWatchTarget = parts.length > 2 && !parts[2].isBlank()
+                ? parts[2].trim()
+                : CloudWatchClientRegistry.DEFAULT_TARGET;
+        if (clusterName.isEmpty() && dbInstanceIdentifier.isEmpty()) {
+            throw new IllegalArgumentException("Report target needs a cluster name or a DB instance identifier: " + spec);
+        }
+        return new ReportTarget(clusterName, dbInstanceIdentifier, cloudWatchTarget);
+    }
+
+    /**
+     * File system friendly name, e.g. for report directories.
+     */
+    public String directoryName() {
+        String name = clusterName + "_" + dbInstanceIdentifier;
+        if (!CloudWatchClientRegistry.DEFAULT_TARGET.equals(cloudWatchTarget)) {
+            name = cloudWatchTarget + "_" + name;
+        }
+        return name.replaceAll("[^A-Za-z0-9._-]+", "_");
+    }
+
+    @Override
+    public String toString() {
+        return clusterName + ":" + dbInstanceIdentifier + ":" + cloudWatchTarget;
+    }
+}
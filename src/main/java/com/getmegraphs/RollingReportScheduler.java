@@ -0,0 +1,168 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps comprehensive reports for the configured targets precomputed over rolling windows
+ * (by default the last 1h, 24h and 7d), so requests for those windows are answered with
+ * an existing report directory.
+ *
+ * Each refresh runs with the {@link RollingWindowStore} recording, so only the CloudWatch
+ * periods closed since the previous refresh are fetched. Windows are refreshed longest
+ * first; the shorter ones are then served entirely from memory. A replaced report is kept
+ * for {@link ReportStore#IN_USE_GRACE} after it was replaced, in case a PDF or an
+ * AI analysis is still reading it, and deleted by a later refresh, from the {@link ArtifactSink}
+ * as well. A refresh completes once the {@link ArtifactSink} has published the report.
+ */
+@Component
+public class RollingReportScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollingReportScheduler.class);
+
+    private final CloudWatchChartService chartService;
+    private final ArtifactSink artifactSink;
+    private final RollingWindowStore rollingWindowStore;
+    private final CloudWatchClientRegistry clientRegistry;
+    private final MeterRegistry meterRegistry;
+    private final List<ReportTarget> targets = new ArrayList<>();
+    private final List<Duration> windows;
+    private final Queue<RetiredReport> retiredReports = new ConcurrentLinkedQueue<>();
+
+    @Value("${reports.rolling.directory:rolling_reports}")
+    private String directory;
+
+    @Value("${reports.rolling.settle-seconds:120}")
+    private long settleSeconds;
+
+    /**
+     * @param targets entries of the form {@code clusterName:dbInstanceIdentifier[:cloudWatchTarget]}
+     *                (see {@link ReportTarget#parse})
+     */
+    public RollingReportScheduler(CloudWatchChartService chartService,
+                                  ArtifactSink artifactSink,
+                                  RollingWindowStore rollingWindowStore,
+                                  CloudWatchClientRegistry clientRegistry,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${reports.rolling.targets:}") List<String> targets,
+                                  @Value("${reports.rolling.windows:1h,24h,7d}") List<Duration> windows) {
+        this.chartService = chartService;
+        this.artifactSink = artifactSink;
+        this.rollingWindowStore = rollingWindowStore;
+        this.clientRegistry = clientRegistry;
+        this.meterRegistry = meterRegistry;
+        for (String target : targets) {
+            if (!target.isBlank()) {
+                ReportTarget reportTarget = ReportTarget.parse(target);
+                clientRegistry.resolve(reportTarget.cloudWatchTarget());
+                this.targets.add(reportTarget);
+            }
+        }
+        this.windows = windows.stream().sorted(Comparator.reverseOrder()).toList();
+    }
+
+    @Scheduled(initialDelayString = "${reports.rolling.initial-delay-ms:10000}",
+            fixedDelayString = "${reports.rolling.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (targets.isEmpty()) {
+            return;
+        }
+        // All windows of one refresh end at the same closed minute
+        Instant end = Instant.now().minusSeconds(settleSeconds).truncatedTo(ChronoUnit.MINUTES);
+        for (ReportTarget target : targets) {
+            for (Duration window : windows) {
+                try {
+                    clientRegistry.withTarget(target.cloudWatchTarget(), () -> {
+                        refresh(target, window, end);
+                        return null;
+                    });
+                } catch (Exception e) {
+                    logger.error("Error refreshing rolling {} report for {}", label(window), target, e);
+                }
+            }
+        }
+    }
+
+    private void refresh(ReportTarget target, Duration window, Instant end) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Instant start = end.minus(window);
+        String clusterName = target.clusterName();
+        String dbInstanceIdentifier = target.dbInstanceIdentifier();
+        String targetName = target.directoryName();
+        String reportDir = directory + "/" + targetName + "/" + label(window) + "_" + end.toString().replaceAll("[:.]+", "-");
+
+        rollingWindowStore.recording(() -> {
+            chartService.writeComprehensiveReport(reportDir, clusterName, dbInstanceIdentifier, start.toString(), end.toString());
+            return null;
+        });
+        try {
+            artifactSink.flush(reportDir);
+        } catch (IOException e) {
+            // Not published, so it would never be retired
+            delete(reportDir);
+            throw e;
+        }
+        String replaced = rollingWindowStore.publishReport(target.cloudWatchTarget(), clusterName, dbInstanceIdentifier,
+                window, start, end,
+                new File(reportDir).getAbsolutePath());
+
+        if (replaced != null) {
+            retiredReports.add(new RetiredReport(replaced, Instant.now()));
+        }
+        deleteRetired();
+        sample.stop(meterRegistry.timer("reports.rolling.refresh", "window", label(window)));
+        logger.info("Refreshed rolling {} report for {} ({} to {})", label(window), target, start, end);
+    }
+
+    /**
+     * Deletes the reports replaced, and so last handed out, more than {@link ReportStore#IN_USE_GRACE}
+     * ago. They are queued in the order they were replaced.
+     */
+    private void deleteRetired() {
+        Instant cutoff = Instant.now().minus(ReportStore.IN_USE_GRACE);
+        for (RetiredReport retired = retiredReports.peek();
+             retired != null && retired.retiredAt().isBefore(cutoff);
+             retired = retiredReports.peek()) {
+            retiredReports.poll();
+            delete(retired.reportDir());
+        }
+    }
+
+    private static String label(Duration window) {
+        if (window.toHours() >= 24 && window.toHours() % 24 == 0) {
+            return window.toDays() + "d";
+        }
+        if (window.toMinutes() >= 60 && window.toMinutes() % 60 == 0) {
+            return window.toHours() + "h";
+        }
+        return window.toMinutes() + "m";
+    }
+
+    // Through the sink, so published copies go as well
+    private void delete(String reportDir) {
+        try {
+            artifactSink.delete(reportDir);
+        } catch (IOException e) {
+            logger.warn("Could not delete retired rolling report {}: {}", reportDir, e.getMessage());
+        }
+    }
+
+    private record RetiredReport(String reportDir, Instant retiredAt) {
+    }
+}
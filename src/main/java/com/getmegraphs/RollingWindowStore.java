@@ -0,0 +1,299 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory copy of the CloudWatch series behind the rolling reports, and the index of
+ * the precomputed rolling reports themselves.
+ *
+ * While {@link #recording} is active on a thread (a rolling report refresh), every
+ * GetMetricStatistics call is answered from memory after fetching only what is not stored
+ * yet: newly closed periods after the stored range, or older history before it. Outside of
+ * a refresh, requests starting inside a stored range read the stored part from memory and
+ * fetch only the still open periods after it (never stored), so a live "last hour" request
+ * costs one short CloudWatch call. Everything else goes to CloudWatch.
+ *
+ * A period counts as closed once it ended {@code reports.rolling.settle-seconds} ago, so
+ * late CloudWatch datapoints are not frozen into the store. Series are trimmed to the
+ * longest rolling window. Series and reports are kept per CloudWatch target (see
+ * {@link CloudWatchClientRegistry}).
+ */
+@Component
+public class RollingWindowStore {
+
+    // GetMetricStatistics returns at most this many datapoints per call
+    private static final int MAX_DATAPOINTS_PER_CALL = 1440;
+    // Rolling report windows end at a closed minute
+    private static final Duration REPORT_MATCH_TOLERANCE = Duration.ofMinutes(1);
+
+    private final ThreadLocal<Boolean> recording = ThreadLocal.withInitial(() -> false);
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+    private final Map<Target, Map<Duration, PublishedReport>> reports = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final Duration settle;
+    private final Duration maxReportLag;
+    private final Counter seriesServed;
+    private final Counter reportsServed;
+
+    public RollingWindowStore(MeterRegistry meterRegistry,
+                              @Value("${reports.rolling.windows:1h,24h,7d}") List<Duration> windows,
+                              @Value("${reports.rolling.settle-seconds:120}") long settleSeconds,
+                              @Value("${reports.rolling.refresh-interval-ms:60000}") long refreshIntervalMs) {
+        this.retention = windows.stream().max(Duration::compareTo).orElse(Duration.ofDays(7));
+        this.settle = Duration.ofSeconds(settleSeconds);
+        // Refreshes end at a closed minute and may run late by up to one interval while the
+        // next one is under way
+        this.maxReportLag = settle.plus(REPORT_MATCH_TOLERANCE).plusMillis(2 * refreshIntervalMs);
+        this.seriesServed = Counter.builder("reports.rolling.served").tag("kind", "series")
+                .description("Requests answered from the rolling window store").register(meterRegistry);
+        this.reportsServed = Counter.builder("reports.rolling.served").tag("kind", "report")
+                .description("Requests answered from the rolling window store").register(meterRegistry);
+        Gauge.builder("reports.rolling.series", series, Map::size)
+                .description("Series held by the rolling window store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code work} with incremental fetching enabled for the calling thread.
+     */
+    public <T> T recording(Callable<T> work) throws Exception {
+        recording.set(true);
+        try {
+            return work.call();
+        } finally {
+            recording.remove();
+        }
+    }
+
+    public GetMetricStatisticsResponse getMetricStatistics(String cloudWatchTarget, GetMetricStatisticsRequest request,
+                                                           Function<GetMetricStatisticsRequest, GetMetricStatisticsResponse> remote) {
+        SeriesKey key = SeriesKey.of(cloudWatchTarget, request);
+        if (recording.get()) {
+            Series stored = series.computeIfAbsent(key, k -> new Series());
+            update(stored, request, remote);
+            return stored.slice(request);
+        }
+
+        Series stored = series.get(key);
+        Instant coveredUntil = stored != null ? stored.coveredUntil(request.startTime()) : null;
+        if (coveredUntil == null) {
+            return remote.apply(request);
+        }
+        seriesServed.increment();
+        if (!request.endTime().isAfter(coveredUntil)) {
+            return stored.slice(request);
+        }
+        List<Datapoint> datapoints = new ArrayList<>(stored.slice(request.toBuilder().endTime(coveredUntil).build()).datapoints());
+        datapoints.addAll(fetch(request, coveredUntil, request.endTime(), remote));
+        return GetMetricStatisticsResponse.builder()
+                .label(request.metricName())
+                .datapoints(datapoints)
+                .build();
+    }
+
+    /**
+     * Fetches the periods of the request window that the series does not hold yet.
+     */
+    private void update(Series stored, GetMetricStatisticsRequest request,
+                        Function<GetMetricStatisticsRequest, GetMetricStatisticsResponse> remote) {
+        int period = request.period();
+        Instant from = align(request.startTime(), period);
+        Instant closedUntil = align(min(request.endTime(), Instant.now().minus(settle)), period);
+        if (!from.isBefore(closedUntil)) {
+            return;
+        }
+
+        Instant coveredFrom;
+        Instant coveredUntil;
+        synchronized (stored) {
+            if (stored.coveredUntil != null && stored.coveredUntil.isBefore(from)) {
+                // Too far behind to be worth filling the gap
+                stored.clear();
+            }
+            coveredFrom = stored.coveredFrom;
+            coveredUntil = stored.coveredUntil;
+        }
+
+        if (coveredFrom == null) {
+            stored.append(from, closedUntil, fetch(request, from, closedUntil, remote));
+        } else {
+            if (from.isBefore(coveredFrom)) {
+                stored.append(from, coveredFrom, fetch(request, from, coveredFrom, remote));
+            }
+            if (closedUntil.isAfter(coveredUntil)) {
+                stored.append(coveredUntil, closedUntil, fetch(request, coveredUntil, closedUntil, remote));
+            }
+        }
+        stored.trim(retention);
+    }
+
+    private static List<Datapoint> fetch(GetMetricStatisticsRequest request, Instant from, Instant until,
+                                         Function<GetMetricStatisticsRequest, GetMetricStatisticsResponse> remote) {
+        List<Datapoint> datapoints = new ArrayList<>();
+        Duration chunk = Duration.ofSeconds((long) request.period() * MAX_DATAPOINTS_PER_CALL);
+        for (Instant start = from; start.isBefore(until); start = start.plus(chunk)) {
+            Instant end = min(until, start.plus(chunk));
+            datapoints.addAll(remote.apply(request.toBuilder().startTime(start).endTime(end).build()).datapoints());
+        }
+        return datapoints;
+    }
+
+    /**
+     * Makes a precomputed report available for requests matching its window and returns
+     * the report it replaces, if any.
+     */
+    public String publishReport(String cloudWatchTarget, String clusterName, String dbInstanceIdentifier, Duration window,
+                                Instant start, Instant end, String reportDir) {
+        PublishedReport previous = reports.computeIfAbsent(Target.of(cloudWatchTarget, clusterName, dbInstanceIdentifier), t -> new ConcurrentHashMap<>())
+                .put(window, new PublishedReport(reportDir, start, end));
+        return previous != null ? previous.reportDir() : null;
+    }
+
+    /**
+     * Finds the precomputed report of the rolling window the request asks for: one whose
+     * length matches the request to within a minute and whose end is at most the refresh lag
+     * before the requested end. A live "last 1h" request, ending now, gets the 1h report
+     * ending at the last closed minute; callers label it with the report's own window.
+     */
+    public Optional<PublishedReport> findReport(String cloudWatchTarget, String clusterName, String dbInstanceIdentifier,
+                                                Instant start, Instant end) {
+        Map<Duration, PublishedReport> published = reports.get(Target.of(cloudWatchTarget, clusterName, dbInstanceIdentifier));
+        if (published == null) {
+            return Optional.empty();
+        }
+        Duration length = Duration.between(start, end);
+        Instant now = Instant.now();
+        for (Map.Entry<Duration, PublishedReport> entry : published.entrySet()) {
+            PublishedReport report = entry.getValue();
+            Duration lag = Duration.between(report.end(), end);
+            if (within(entry.getKey(), length)
+                    && lag.compareTo(REPORT_MATCH_TOLERANCE.negated()) > 0
+                    && lag.compareTo(maxReportLag) <= 0
+                    && end.isBefore(now.plus(REPORT_MATCH_TOLERANCE))) {
+                reportsServed.increment();
+                return Optional.of(report);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean within(Duration expected, Duration actual) {
+        return expected.minus(actual).abs().compareTo(REPORT_MATCH_TOLERANCE) < 0;
+    }
+
+    private static Instant align(Instant instant, int periodSeconds) {
+        long seconds = instant.getEpochSecond();
+        return Instant.ofEpochSecond(seconds - Math.floorMod(seconds, periodSeconds));
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Datapoints of one series over the contiguous range [coveredFrom, coveredUntil).
+     */
+    private static final class Series {
+
+        private final NavigableMap<Instant, Datapoint> datapoints = new TreeMap<>();
+        private Instant coveredFrom;
+        private Instant coveredUntil;
+
+        synchronized void append(Instant from, Instant until, List<Datapoint> fetched) {
+            for (Datapoint datapoint : fetched) {
+                datapoints.put(datapoint.timestamp(), datapoint);
+            }
+            coveredFrom = coveredFrom == null || from.isBefore(coveredFrom) ? from : coveredFrom;
+            coveredUntil = coveredUntil == null || until.isAfter(coveredUntil) ? until : coveredUntil;
+        }
+
+        synchronized void trim(Duration retention) {
+            if (coveredUntil == null) {
+                return;
+            }
+            Instant cutoff = coveredUntil.minus(retention);
+            if (coveredFrom.isBefore(cutoff)) {
+                datapoints.headMap(cutoff, false).clear();
+                coveredFrom = cutoff;
+            }
+        }
+
+        synchronized void clear() {
+            datapoints.clear();
+            coveredFrom = null;
+            coveredUntil = null;
+        }
+
+        /**
+         * End of the stored range if it holds {@code start}, otherwise null.
+         */
+        synchronized Instant coveredUntil(Instant start) {
+            return coveredFrom != null && !start.isBefore(coveredFrom) && start.isBefore(coveredUntil)
+                    ? coveredUntil
+                    : null;
+        }
+
+        synchronized GetMetricStatisticsResponse slice(GetMetricStatisticsRequest request) {
+            List<Datapoint> slice = request.startTime().isBefore(request.endTime())
+                    ? new ArrayList<>(datapoints.subMap(request.startTime(), true, request.endTime(), false).values())
+                    : Collections.emptyList();
+            return GetMetricStatisticsResponse.builder()
+                    .label(request.metricName())
+                    .datapoints(slice)
+                    .build();
+        }
+    }
+
+    /**
+     * Identity of a series: its CloudWatch target and everything in the request except its window.
+     */
+    private record SeriesKey(String cloudWatchTarget, String namespace, String metricName, List<String> dimensions, Integer period,
+                             List<String> statistics, List<String> extendedStatistics, String unit) {
+
+        static SeriesKey of(String cloudWatchTarget, GetMetricStatisticsRequest request) {
+            return new SeriesKey(cloudWatchTarget, request.namespace(), request.metricName(),
+                    request.dimensions().stream().map(d -> d.name() + "=" + d.value()).sorted().toList(),
+                    request.period(),
+                    request.statisticsAsStrings().stream().sorted().toList(),
+                    request.extendedStatistics().stream().sorted().toList(),
+                    request.unitAsString());
+        }
+    }
+
+    private record Target(String cloudWatchTarget, String clusterName, String dbInstanceIdentifier) {
+
+        static Target of(String cloudWatchTarget, String clusterName, String dbInstanceIdentifier) {
+            return new Target(cloudWatchTarget, normalize(clusterName), normalize(dbInstanceIdentifier));
+        }
+
+        private static String normalize(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+
+    /**
+     * A precomputed rolling report and the window it actually covers.
+     */
+    public record PublishedReport(String reportDir, Instant start, Instant end) {
+    }
+}
@@ -0,0 +1,262 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps the local working copy of every artifact and uploads it to an S3-compatible bucket
+ * ({@code artifacts.sink=s3}), so reports written on one node can be fetched from any other.
+ *
+ * Uploads start as soon as an artifact is written and run on the {@code artifactUploadExecutor},
+ * so the charts of a report upload concurrently while the next ones render. They are sent
+ * from the buffer the artifact was produced in, without reading the local copy back.
+ * Artifacts of at least {@code artifacts.s3.multipart-threshold} (large PDFs) are sent as a
+ * multipart upload whose parts upload in parallel; a failed multipart upload is aborted.
+ *
+ * Object keys are {@code artifacts.s3.prefix} followed by the artifact path relative to the
+ * working directory, e.g. {@code reports/comprehensive_report_<timestamp>/rds_cpu_utilization.png}.
+ * Deleting a report deletes its objects as well. Upload failures of artifacts that are never
+ * flushed (single charts, reports that failed anyway) are forgotten after an hour.
+ */
+public class S3ArtifactSink implements ArtifactSink, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ArtifactSink.class);
+
+    // Failed uploads remembered for a later flush of their report
+    private static final int MAX_REMEMBERED_FAILURES = 1000;
+    private static final Duration FAILURE_RETENTION = Duration.ofHours(1);
+    // DeleteObjects takes at most this many keys per call
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+    // S3 rejects multipart uploads with a part other than the last below this size (EntityTooSmall)
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final LocalArtifactSink workingCopy = new LocalArtifactSink();
+    private final S3Client s3;
+    private final String bucket;
+    private final String prefix;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final ExecutorService uploadExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Path baseDirectory = Path.of("").toAbsolutePath();
+    private final Map<Path, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final Map<Path, Failure> failures = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Failure> eldest) {
+            return size() > MAX_REMEMBERED_FAILURES;
+        }
+    });
+
+    public S3ArtifactSink(S3Client s3,
+                          String bucket,
+                          String prefix,
+                          long multipartThreshold,
+                          int partSize,
+                          ExecutorService uploadExecutor,
+                          MeterRegistry meterRegistry) {
+        if (bucket == null || bucket.isBlank()) {
+            throw new IllegalArgumentException("artifacts.s3.bucket is required for artifacts.sink=s3");
+        }
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("artifacts.s3.part-size must be at least 5MB, S3 rejects smaller parts");
+        }
+        this.s3 = s3;
+        this.bucket = bucket;
+        String trimmedPrefix = prefix == null ? "" : prefix.trim();
+        this.prefix = trimmedPrefix.isEmpty() || trimmedPrefix.endsWith("/") ? trimmedPrefix : trimmedPrefix + "/";
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.uploadExecutor = uploadExecutor;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("artifacts.upload.pending", pending, Map::size)
+                .description("Artifact uploads under way")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void write(String path, byte[] content, String contentType) throws IOException {
+        workingCopy.write(path, content, contentType);
+
+        Path file = Path.of(path).toAbsolutePath().normalize();
+        String key = key(file);
+        CompletableFuture<Void> upload = content.length >= multipartThreshold
+                ? uploadMultipart(key, content, contentType)
+                : CompletableFuture.runAsync(() -> putObject(key, content, contentType), uploadExecutor);
+
+        // Never completes exceptionally; failures are kept for flush
+        CompletableFuture<Void> tracked = new CompletableFuture<>();
+        pending.put(file, tracked);
+        upload.whenComplete((ignored, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                Instant now = Instant.now();
+                synchronized (failures) {
+                    failures.values().removeIf(failure -> failure.at().isBefore(now.minus(FAILURE_RETENTION)));
+                    failures.put(file, new Failure(cause.getMessage(), now));
+                }
+                logger.error("Error uploading {} to s3://{}/{}", file, bucket, key, cause);
+            }
+            pending.remove(file, tracked);
+            tracked.complete(null);
+        });
+    }
+
+    @Override
+    public String flush(String path) throws IOException {
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        List<String> failed = awaitUploads(root);
+        if (!failed.isEmpty()) {
+            throw new IOException("Upload of " + failed.size() + " artifacts to s3://" + bucket + " failed, e.g. " + failed.get(0));
+        }
+        return "s3://" + bucket + "/" + key(root);
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        awaitUploads(root);
+        workingCopy.delete(path);
+
+        String key = key(root);
+        try {
+            List<ObjectIdentifier> objects = new ArrayList<>();
+            for (S3Object object : s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(key)).contents()) {
+                if (object.key().equals(key) || object.key().startsWith(key + "/")) {
+                    objects.add(ObjectIdentifier.builder().key(object.key()).build());
+                }
+            }
+            for (int from = 0; from < objects.size(); from += MAX_KEYS_PER_DELETE) {
+                List<ObjectIdentifier> batch = objects.subList(from, Math.min(objects.size(), from + MAX_KEYS_PER_DELETE));
+                DeleteObjectsResponse response = s3.deleteObjects(request -> request.bucket(bucket)
+                        .delete(delete -> delete.objects(batch).quiet(true)));
+                if (response.hasErrors() && !response.errors().isEmpty()) {
+                    S3Error error = response.errors().get(0);
+                    throw new IOException("Deleting " + response.errors().size() + " objects from s3://" + bucket
+                            + " failed, e.g. " + error.key() + ": " + error.message());
+                }
+            }
+            meterRegistry.counter("artifacts.deleted").increment(objects.size());
+        } catch (SdkException e) {
+            throw new IOException("Error deleting s3://" + bucket + "/" + key, e);
+        }
+    }
+
+    /**
+     * Waits for the uploads under {@code root} and returns (and forgets) those that failed.
+     */
+    private List<String> awaitUploads(Path root) {
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        pending.forEach((file, upload) -> {
+            if (file.startsWith(root)) {
+                uploads.add(upload);
+            }
+        });
+        CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+
+        List<String> failed = new ArrayList<>();
+        synchronized (failures) {
+            failures.entrySet().removeIf(failure -> {
+                if (failure.getKey().startsWith(root)) {
+                    failed.add(failure.getKey().getFileName() + ": " + failure.getValue().message());
+                    return true;
+                }
+                return false;
+            });
+        }
+        return failed;
+    }
+
+    private void putObject(String key, byte[] content, String contentType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        s3.putObject(request -> request.bucket(bucket).key(key).contentType(contentType).contentLength((long) content.length),
+                RequestBody.fromInputStream(new ByteArrayInputStream(content), content.length));
+        sample.stop(meterRegistry.timer("artifacts.upload", "method", "single"));
+        meterRegistry.counter("artifacts.upload.bytes").increment(content.length);
+    }
+
+    /**
+     * Creates the upload, sends all parts in parallel and completes it. Nothing here blocks
+     * on another upload task, so parts cannot starve each other of executor threads.
+     */
+    private CompletableFuture<Void> uploadMultipart(String key, byte[] content, String contentType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return CompletableFuture.supplyAsync(() -> s3.createMultipartUpload(request -> request.bucket(bucket).key(key)
+                        .contentType(contentType)).uploadId(), uploadExecutor)
+                .thenCompose(uploadId -> {
+                    List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+                    for (int offset = 0, partNumber = 1; offset < content.length; offset += partSize, partNumber++) {
+                        int from = offset;
+                        int length = Math.min(partSize, content.length - offset);
+                        int number = partNumber;
+                        parts.add(CompletableFuture.supplyAsync(() -> uploadPart(key, uploadId, number, content, from, length), uploadExecutor));
+                    }
+                    return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                            .thenRunAsync(() -> s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                                    .multipartUpload(upload -> upload.parts(parts.stream().map(CompletableFuture::join).toList()))), uploadExecutor)
+                            .whenComplete((ignored, e) -> {
+                                if (e != null) {
+                                    abort(key, uploadId);
+                                }
+                            });
+                })
+                .thenRun(() -> {
+                    sample.stop(meterRegistry.timer("artifacts.upload", "method", "multipart"));
+                    meterRegistry.counter("artifacts.upload.bytes").increment(content.length);
+                });
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] content, int offset, int length) {
+        String eTag = s3.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId).partNumber(partNumber)
+                        .contentLength((long) length),
+                RequestBody.fromInputStream(new ByteArrayInputStream(content, offset, length), length)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+        } catch (Exception e) {
+            logger.warn("Error aborting multipart upload {} of s3://{}/{}", uploadId, bucket, key, e);
+        }
+    }
+
+    private String key(Path file) {
+        Path relative = file.startsWith(baseDirectory) ? baseDirectory.relativize(file) : file.getRoot().relativize(file);
+        return prefix + relative.toString().replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public void close() {
+        s3.close();
+    }
+
+    private record Failure(String message, Instant at) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.getmegraphs;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single-pass, mergeable statistics of a series: count, mean and variance (Welford), minimum,
+ * maximum and percentiles from a DDSketch.
+ *
+ * The sketch puts every value in a logarithmic bucket, so percentiles are within
+ * {@link #RELATIVE_ACCURACY} of the exact value whatever the distribution, and two sketches
+ * merge by adding their bucket counts. Means and variances merge with Chan's formula, so
+ * statistics of several series (e.g. all consumer groups of a cluster) can be rolled up
+ * without going over their datapoints again.
+ */
+public final class SeriesStatistics {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Values closer to zero than this count as zero
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final TreeMap<Integer, Long> positive = new TreeMap<>();
+    // Keyed by the bucket of the absolute value
+    private final TreeMap<Integer, Long> negative = new TreeMap<>();
+    private long zeros;
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        if (value > MIN_INDEXABLE) {
+            positive.merge(bucket(value), 1L, Long::sum);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.merge(bucket(-value), 1L, Long::sum);
+        } else {
+            zeros++;
+        }
+    }
+
+    /**
+     * Adds the values of {@code other} as if they had been added to this one.
+     */
+    public SeriesStatistics merge(SeriesStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        other.positive.forEach((bucket, n) -> positive.merge(bucket, n, Long::sum));
+        other.negative.forEach((bucket, n) -> negative.merge(bucket, n, Long::sum));
+        zeros += other.zeros;
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    public double standardDeviation() {
+        return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0;
+    }
+
+    public double min() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * Value at quantile {@code q} (0 to 1), within {@link #RELATIVE_ACCURACY} of the exact
+     * value and clamped to the minimum and maximum.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : negative.descendingMap().entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return clamp(-value(entry.getKey()));
+            }
+        }
+        seen += zeros;
+        if (seen > rank) {
+            return clamp(0);
+        }
+        for (Map.Entry<Integer, Long> entry : positive.entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return clamp(value(entry.getKey()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Short summary for chart subtitles and report summaries.
+     */
+    public String summary() {
+        if (count == 0) {
+            return "no data";
+        }
+        return String.format("avg %.2f, p95 %.2f, p99 %.2f, max %.2f", mean(), quantile(0.95), quantile(0.99), max());
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int bucket(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    // Midpoint of the bucket, in relative terms, so any value in it is within the accuracy
+    private static double value(int bucket) {
+        return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+}
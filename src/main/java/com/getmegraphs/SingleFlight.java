@@ -0,0 +1,54 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller (leader) does the work,
+ * callers arriving while it is in flight (followers) wait for and share its result or
+ * failure. Nothing is cached once the leader finishes.
+ *
+ * Calls are counted as {@code singleflight.calls}, tagged with the flight name and role.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaders = Counter.builder("singleflight.calls").tag("name", name).tag("role", "leader").register(meterRegistry);
+        this.followers = Counter.builder("singleflight.calls").tag("name", name).tag("role", "follower").register(meterRegistry);
+    }
+
+    public V execute(K key, Callable<V> work) throws Exception {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        leaders.increment();
+        try {
+            V result = work.call();
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.getmegraphs;
+
+import org.jfree.data.time.RegularTimePeriod;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesDataItem;
+
+/**
+ * A {@link TimeSeries} that keeps {@link SeriesStatistics} of its values as they are added,
+ * so chart subtitles and summaries need no extra pass over the data.
+ *
+ * The statistics only hold while values are appended. Once a value is replaced or removed
+ * they no longer match the series, and {@link #statistics()} recomputes them from the data.
+ */
+public class StatisticsTimeSeries extends TimeSeries {
+
+    private static final long serialVersionUID = 1L;
+
+    private SeriesStatistics statistics = new SeriesStatistics();
+    private boolean stale;
+
+    public StatisticsTimeSeries(Comparable<?> name) {
+        super(name);
+    }
+
+    @Override
+    public void add(TimeSeriesDataItem item, boolean notify) {
+        super.add(item, notify);
+        record(null, item);
+    }
+
+    @Override
+    public TimeSeriesDataItem addOrUpdate(TimeSeriesDataItem item) {
+        TimeSeriesDataItem overwritten = super.addOrUpdate(item);
+        record(overwritten, item);
+        return overwritten;
+    }
+
+    @Override
+    public void update(int index, Number value) {
+        super.update(index, value);
+        stale = true;
+    }
+
+    @Override
+    public void delete(RegularTimePeriod period) {
+        super.delete(period);
+        stale = true;
+    }
+
+    @Override
+    public void delete(int start, int end, boolean notify) {
+        super.delete(start, end, notify);
+        stale = true;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        stale = true;
+    }
+
+    /**
+     * Statistics of the values currently in the series.
+     */
+    public SeriesStatistics statistics() {
+        if (stale || statistics.count() > getItemCount()) {
+            statistics = recompute(this);
+            stale = false;
+        }
+        return statistics;
+    }
+
+    /**
+     * Statistics of any time series, from the values it holds.
+     */
+    public static SeriesStatistics of(TimeSeries series) {
+        if (series instanceof StatisticsTimeSeries tracked) {
+            return tracked.statistics();
+        }
+        return recompute(series);
+    }
+
+    private static SeriesStatistics recompute(TimeSeries series) {
+        SeriesStatistics statistics = new SeriesStatistics();
+        for (int i = 0; i < series.getItemCount(); i++) {
+            Number value = series.getValue(i);
+            if (value != null) {
+                statistics.add(value.doubleValue());
+            }
+        }
+        return statistics;
+    }
+
+    private void record(TimeSeriesDataItem overwritten, TimeSeriesDataItem item) {
+        if (overwritten != null) {
+            stale = true;
+        } else if (!stale && item.getValue() != null) {
+            statistics.add(item.getValue().doubleValue());
+        }
+    }
+}
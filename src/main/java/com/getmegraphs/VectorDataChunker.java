@@ -0,0 +1,177 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits metrics vector JSON into chunks that fit a token budget so that large
+ * windows can be analyzed as several independent AI tasks.
+ *
+ * Chunks are cut along metric groups first (every object holding a "data_points"
+ * array is one group); a single metric that is still too large is sliced by time into
+ * {@code <metric>_part_1}, {@code <metric>_part_2}, ...
+ * Each chunk keeps the report metadata and the original JSON path of its metrics.
+ */
+@Component
+public class VectorDataChunker {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorDataChunker.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${ai.analysis.chunking.chars-per-token:4}")
+    private double charsPerToken;
+
+    public int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (int) Math.ceil(text.length() / charsPerToken);
+    }
+
+    public List<String> split(String vectorData, int maxChunkTokens) throws Exception {
+        JsonNode root = objectMapper.readTree(vectorData);
+        JsonNode metadata = root.get("report_metadata");
+
+        // Collect every metric group together with the path that leads to it
+        List<MetricGroup> groups = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> field : root.properties()) {
+            if (!"report_metadata".equals(field.getKey())) {
+                collectGroups(field.getValue(), List.of(field.getKey()), root, groups);
+            }
+        }
+
+        // Slice oversized groups by time so every piece fits on its own
+        List<MetricGroup> pieces = new ArrayList<>();
+        for (MetricGroup group : groups) {
+            pieces.addAll(sliceByTime(group, maxChunkTokens));
+        }
+
+        // Pack pieces greedily into chunks, keeping each metric group intact where possible
+        List<String> chunks = new ArrayList<>();
+        ObjectNode current = null;
+        int currentTokens = 0;
+        for (MetricGroup piece : pieces) {
+            int pieceTokens = estimateTokens(objectMapper.writeValueAsString(piece.metric));
+            if (current != null && currentTokens + pieceTokens > maxChunkTokens) {
+                chunks.add(objectMapper.writeValueAsString(current));
+                current = null;
+            }
+            if (current == null) {
+                current = objectMapper.createObjectNode();
+                if (metadata != null) {
+                    current.set("report_metadata", metadata);
+                }
+                currentTokens = estimateTokens(objectMapper.writeValueAsString(current));
+            }
+            place(current, piece);
+            currentTokens += pieceTokens;
+        }
+        if (current != null) {
+            chunks.add(objectMapper.writeValueAsString(current));
+        }
+
+        logger.info("Split vector data ({} estimated tokens) into {} chunks of at most {} tokens",
+                estimateTokens(vectorData), chunks.size(), maxChunkTokens);
+        return chunks;
+    }
+
+    private void collectGroups(JsonNode node, List<String> path, JsonNode root, List<MetricGroup> groups) {
+        if (!node.isObject()) {
+            return;
+        }
+        if (node.has("data_points")) {
+            groups.add(new MetricGroup(path, (ObjectNode) node, contextFor(path, root)));
+            return;
+        }
+        for (Map.Entry<String, JsonNode> field : node.properties()) {
+            List<String> childPath = new ArrayList<>(path);
+            childPath.add(field.getKey());
+            collectGroups(field.getValue(), childPath, root, groups);
+        }
+    }
+
+    /**
+     * Scalar siblings along the path (db_instance, cluster_name, consumer_group, topic...)
+     * so that a chunk still tells the model what the metric belongs to.
+     */
+    private List<ObjectNode> contextFor(List<String> path, JsonNode root) {
+        List<ObjectNode> context = new ArrayList<>();
+        JsonNode node = root;
+        for (int i = 0; i < path.size() - 1; i++) {
+            node = node.get(path.get(i));
+            ObjectNode scalars = objectMapper.createObjectNode();
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                if (field.getValue().isValueNode()) {
+                    scalars.set(field.getKey(), field.getValue());
+                }
+            }
+            context.add(scalars);
+        }
+        return context;
+    }
+
+    private List<MetricGroup> sliceByTime(MetricGroup group, int maxChunkTokens) throws Exception {
+        int tokens = estimateTokens(objectMapper.writeValueAsString(group.metric));
+        JsonNode dataPoints = group.metric.get("data_points");
+        if (tokens <= maxChunkTokens || dataPoints.size() < 2) {
+            return List.of(group);
+        }
+
+        int slices = (int) Math.ceil((double) tokens / maxChunkTokens);
+        int pointsPerSlice = (int) Math.ceil((double) dataPoints.size() / slices);
+
+        // Each slice is its own metric under a numbered key, so slices in one chunk do not collide
+        List<String> path = new ArrayList<>(group.path);
+        String leaf = path.remove(path.size() - 1);
+        List<MetricGroup> pieces = new ArrayList<>();
+        for (int start = 0; start < dataPoints.size(); start += pointsPerSlice) {
+            int end = Math.min(start + pointsPerSlice, dataPoints.size());
+            // Everything but the data points, which would otherwise be copied once per slice
+            ObjectNode slice = objectMapper.createObjectNode();
+            for (Map.Entry<String, JsonNode> field : group.metric.properties()) {
+                if (!"data_points".equals(field.getKey())) {
+                    slice.set(field.getKey(), field.getValue());
+                }
+            }
+            ArrayNode slicePoints = slice.putArray("data_points");
+            for (int i = start; i < end; i++) {
+                slicePoints.add(dataPoints.get(i));
+            }
+            ObjectNode timeSlice = slice.putObject("time_slice");
+            timeSlice.set("start", dataPoints.get(start).get("timestamp"));
+            timeSlice.set("end", dataPoints.get(end - 1).get("timestamp"));
+            List<String> slicePath = new ArrayList<>(path);
+            slicePath.add(leaf + "_part_" + (pieces.size() + 1));
+            pieces.add(new MetricGroup(slicePath, slice, group.context));
+        }
+        return pieces;
+    }
+
+    private void place(ObjectNode chunk, MetricGroup piece) {
+        ObjectNode node = chunk;
+        for (int i = 0; i < piece.path.size() - 1; i++) {
+            String key = piece.path.get(i);
+            ObjectNode child = (ObjectNode) node.get(key);
+            if (child == null) {
+                child = node.putObject(key);
+                child.setAll(piece.context.get(i));
+            }
+            node = child;
+        }
+        node.set(piece.path.get(piece.path.size() - 1), piece.metric);
+    }
+
+    private record MetricGroup(List<String> path, ObjectNode metric, List<ObjectNode> context) {
+    }
+}
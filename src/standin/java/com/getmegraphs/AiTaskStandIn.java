@@ -0,0 +1,188 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local AI task API for load testing (Spring profile {@code standin}).
+ *
+ * {@code POST /send-message} accepts the usual payload and returns a {@code task_id};
+ * {@code GET /status/{taskId}} reports "In Progress" until the completion delay has
+ * passed, then "Complete" with a canned analysis (or "Failed" at the configured rate).
+ * When the prompt asks for a Java visualization program the result contains a small
+ * JFreeChart program, so the code generation path is exercised as well.
+ */
+@Component
+@Profile("standin")
+public class AiTaskStandIn {
+
+    private static final Logger logger = LoggerFactory.getLogger(AiTaskStandIn.class);
+
+    private static final String VISUALIZATION_CODE = """
+            ```java
+            import java.time.Instant;
+
+            public class StabilityAnalysisVisualization {
+                public static void main(String[] args) throws Exception {
+                    List<String> written = new ArrayList<>();
+                    plotGroups(METRICS_DATA, "metrics", written);
+                    System.out.println("Generated charts: " + written);
+                }
+
+                private static void plotGroups(JsonNode node, String name, List<String> written) throws IOException {
+                    if (node.has("data_points")) {
+                        TimeSeries series = new TimeSeries(name);
+                        for (JsonNode point : node.get("data_points")) {
+                            series.addOrUpdate(new Millisecond(Date.from(Instant.parse(point.get("timestamp").asText()))),
+                                    point.path("average").asDouble());
+                        }
+                        JFreeChart chart = ChartFactory.createTimeSeriesChart(name, "Time", "Value",
+                                new TimeSeriesCollection(series), true, false, false);
+                        File file = new File(OUTPUT_DIR, name + "_analysis.png");
+                        ChartUtils.saveChartAsPNG(file, chart, 1200, 600);
+                        written.add(file.getName());
+                        return;
+                    }
+                    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        if (field.getValue().isObject()) {
+                            plotGroups(field.getValue(), field.getKey(), written);
+                        }
+                    }
+                }
+            }
+            ```
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+
+    @Value("${standin.ai.port:9102}")
+    private int port;
+
+    @Value("${standin.ai.threads:16}")
+    private int threads;
+
+    @Value("${standin.ai.submit-latency-ms:20}")
+    private long submitLatencyMs;
+
+    @Value("${standin.ai.completion-delay-ms:2000}")
+    private long completionDelayMs;
+
+    @Value("${standin.ai.failure-rate:0.0}")
+    private double failureRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        executor = Executors.newFixedThreadPool(threads, ExecutorConfig.namedThreadFactory("ai-standin-"));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/send-message", this::sendMessage);
+        server.createContext("/status/", this::status);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("AI task stand-in listening on http://localhost:{} (completion delay {} ms)", port, completionDelayMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void sendMessage(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode payload = objectMapper.readTree(exchange.getRequestBody());
+            long promptChars = 0;
+            boolean wantsCode = false;
+            for (JsonNode message : payload.path("messages")) {
+                String text = message.path("user").asText();
+                promptChars += text.length();
+                wantsCode |= text.contains("```java");
+            }
+            sleep(submitLatencyMs);
+
+            String taskId = UUID.randomUUID().toString();
+            boolean fails = failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+            tasks.put(taskId, new Task(System.currentTimeMillis() + completionDelayMs, fails, promptChars, wantsCode));
+            respond(exchange, 200, objectMapper.createObjectNode().put("task_id", taskId).toString());
+        } catch (Exception e) {
+            logger.error("AI stand-in failed to accept a message", e);
+        }
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String taskId = exchange.getRequestURI().getPath().substring("/status/".length());
+            Task task = tasks.get(taskId);
+            if (task == null) {
+                respond(exchange, 404, objectMapper.createObjectNode().put("error", "Unknown task " + taskId).toString());
+                return;
+            }
+            if (System.currentTimeMillis() < task.completeAt()) {
+                respond(exchange, 200, objectMapper.createObjectNode().put("status", "In Progress").toString());
+                return;
+            }
+            tasks.remove(taskId);
+            if (task.fails()) {
+                respond(exchange, 200, objectMapper.createObjectNode().put("status", "Failed").toString());
+                return;
+            }
+            String result = "## Stand-in analysis\n\nAnalyzed " + task.promptChars() + " characters of input. "
+                    + "All metrics stayed within their expected ranges.\n" + (task.wantsCode() ? "\n" + VISUALIZATION_CODE : "");
+            respond(exchange, 200, objectMapper.createObjectNode().put("status", "Complete").put("result", result).toString());
+        } catch (Exception e) {
+            logger.error("AI stand-in failed to report a status", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Task(long completeAt, boolean fails, long promptChars, boolean wantsCode) {
+    }
+}
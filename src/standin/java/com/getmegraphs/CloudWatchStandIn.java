@@ -0,0 +1,336 @@
+package com.getmegraphs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.DimensionFilter;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local CloudWatch endpoint for load testing (Spring profile {@code standin}).
+ *
+ * Speaks the awsQuery protocol of the SDK client for GetMetricStatistics, GetMetricData
+ * (including simple Metrics Insights queries, one per request as in CloudWatch) and ListMetrics, serving
+ * {@link SyntheticMetricSource} data. Every call waits the
+ * configured latency; above the configured request rate calls fail with the same
+ * Throttling error CloudWatch returns. The client is pointed here through
+ * {@code aws.cloudwatch.endpoint}.
+ */
+@Component
+@Profile("standin")
+public class CloudWatchStandIn {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudWatchStandIn.class);
+
+    private static final String XMLNS = "http://monitoring.amazonaws.com/doc/2010-08-01/";
+
+    // Limit of GetMetricStatistics per call
+    private static final int MAX_DATAPOINTS = 1440;
+
+
+    @Value("${standin.cloudwatch.port:9101}")
+    private int port;
+
+    @Value("${standin.cloudwatch.threads:32}")
+    private int threads;
+
+    @Value("${standin.cloudwatch.latency-ms:50}")
+    private long latencyMs;
+
+    @Value("${standin.cloudwatch.latency-jitter-ms:25}")
+    private long latencyJitterMs;
+
+    // 0 = unlimited
+    @Value("${standin.cloudwatch.max-requests-per-second:0}")
+    private int maxRequestsPerSecond;
+
+    @Value("${standin.cloudwatch.enforce-datapoint-limit:true}")
+    private boolean enforceDatapointLimit;
+
+    // Synthetic incidents per series and day, for the anomaly detection
+    @Value("${standin.cloudwatch.incidents-per-day:0}")
+    private int incidentsPerDay;
+
+    // Linear trend per day, as a fraction of each metric's baseline, for capacity forecasts
+    @Value("${standin.cloudwatch.growth-per-day:0}")
+    private double growthPerDay;
+
+    @Value("${standin.cluster.topics:10}")
+    private int topics;
+
+    @Value("${standin.cluster.consumer-groups-per-topic:3}")
+    private int consumerGroupsPerTopic;
+
+    @Value("${standin.cluster.brokers:3}")
+    private int brokers;
+
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger requestsInSecond = new AtomicInteger();
+
+    private SyntheticMetricSource source;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        source = new SyntheticMetricSource(topics, consumerGroupsPerTopic, brokers, incidentsPerDay, growthPerDay);
+        executor = Executors.newFixedThreadPool(threads, ExecutorConfig.namedThreadFactory("cloudwatch-standin-"));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("CloudWatch stand-in listening on http://localhost:{} ({} topics x {} consumer groups, {} brokers)",
+                port, topics, consumerGroupsPerTopic, brokers);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, String> params = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            String action = params.getOrDefault("Action", "");
+
+            sleep(latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0));
+            if (throttled()) {
+                respond(exchange, 400, error("Throttling", "Rate exceeded"));
+                return;
+            }
+
+            try {
+                String body = switch (action) {
+                    case "GetMetricStatistics" -> getMetricStatistics(params);
+                    case "GetMetricData" -> getMetricData(params);
+                    case "ListMetrics" -> listMetrics(params);
+                    default -> throw new IllegalArgumentException("Unsupported action: " + action);
+                };
+                respond(exchange, 200, body);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error("InvalidParameterCombination", e.getMessage()));
+            }
+        } catch (Exception e) {
+            logger.error("CloudWatch stand-in failed to handle request", e);
+        }
+    }
+
+    private boolean throttled() {
+        if (maxRequestsPerSecond <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (currentSecond.getAndSet(second) != second) {
+            requestsInSecond.set(0);
+        }
+        return requestsInSecond.incrementAndGet() > maxRequestsPerSecond;
+    }
+
+    private String getMetricStatistics(Map<String, String> params) {
+        String metricName = params.get("MetricName");
+        List<Dimension> dimensions = dimensions(params, "Dimensions.member.");
+        Instant start = Instant.parse(params.get("StartTime"));
+        Instant end = Instant.parse(params.get("EndTime"));
+        int period = Integer.parseInt(params.get("Period"));
+        if (enforceDatapointLimit && (end.getEpochSecond() - start.getEpochSecond()) / period > MAX_DATAPOINTS) {
+            throw new IllegalArgumentException("You have requested up to " + (end.getEpochSecond() - start.getEpochSecond()) / period
+                    + " datapoints, which exceeds the limit of " + MAX_DATAPOINTS + ".");
+        }
+        List<String> statistics = members(params, "Statistics.member.");
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<GetMetricStatisticsResponse xmlns=\"").append(XMLNS).append("\"><GetMetricStatisticsResult>")
+                .append("<Label>").append(escape(metricName)).append("</Label><Datapoints>");
+        for (Datapoint datapoint : source.datapoints(metricName, dimensions, start, end, period)) {
+            xml.append("<member><Timestamp>").append(datapoint.timestamp()).append("</Timestamp>");
+            for (String statistic : statistics) {
+                xml.append('<').append(statistic).append('>').append(SyntheticMetricSource.statistic(datapoint, statistic))
+                        .append("</").append(statistic).append('>');
+            }
+            xml.append("<Unit>None</Unit></member>");
+        }
+        xml.append("</Datapoints></GetMetricStatisticsResult>");
+        return withMetadata(xml, "GetMetricStatisticsResponse");
+    }
+
+    private String getMetricData(Map<String, String> params) {
+        Instant start = Instant.parse(params.get("StartTime"));
+        Instant end = Instant.parse(params.get("EndTime"));
+        boolean ascending = "TimestampAscending".equals(params.get("ScanBy"));
+        long insightsQueries = params.entrySet().stream()
+                .filter(param -> param.getKey().startsWith("MetricDataQueries.member.") && param.getKey().endsWith(".Expression"))
+                .filter(param -> param.getValue().trim().regionMatches(true, 0, "SELECT", 0, 6))
+                .count();
+        if (insightsQueries > 1) {
+            // As in CloudWatch, a request may contain only one Metrics Insights query
+            throw new IllegalArgumentException("A GetMetricData request can contain only one Metrics Insights query, found " + insightsQueries);
+        }
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<GetMetricDataResponse xmlns=\"").append(XMLNS).append("\"><GetMetricDataResult><MetricDataResults>");
+        for (int i = 1; params.containsKey("MetricDataQueries.member." + i + ".Id"); i++) {
+            String prefix = "MetricDataQueries.member." + i + ".";
+            if ("false".equals(params.get(prefix + "ReturnData"))) {
+                continue;
+            }
+            String id = params.get(prefix + "Id");
+            String expression = params.get(prefix + "Expression");
+            Map<String, List<Datapoint>> series = new LinkedHashMap<>();
+            String stat;
+            if (params.containsKey(prefix + "MetricStat.Metric.MetricName")) {
+                String metricName = params.get(prefix + "MetricStat.Metric.MetricName");
+                List<Dimension> dimensions = dimensions(params, prefix + "MetricStat.Metric.Dimensions.member.");
+                int period = Integer.parseInt(params.get(prefix + "MetricStat.Period"));
+                stat = params.get(prefix + "MetricStat.Stat");
+                series.put(params.getOrDefault(prefix + "Label", metricName), source.datapoints(metricName, dimensions, start, end, period));
+            } else {
+                int period = Integer.parseInt(params.getOrDefault(prefix + "Period", "60"));
+                stat = "Average";
+                series.putAll(source.expression(expression, params.get(prefix + "Label"), start, end, period));
+            }
+
+            for (Map.Entry<String, List<Datapoint>> entry : series.entrySet()) {
+                List<Datapoint> datapoints = new ArrayList<>(entry.getValue());
+                if (!ascending) {
+                    datapoints.sort(Comparator.comparing(Datapoint::timestamp).reversed());
+                }
+                xml.append("<member><Id>").append(escape(id)).append("</Id>")
+                        .append("<Label>").append(escape(entry.getKey())).append("</Label><StatusCode>Complete</StatusCode><Timestamps>");
+                for (Datapoint datapoint : datapoints) {
+                    xml.append("<member>").append(datapoint.timestamp()).append("</member>");
+                }
+                xml.append("</Timestamps><Values>");
+                for (Datapoint datapoint : datapoints) {
+                    xml.append("<member>").append(SyntheticMetricSource.statistic(datapoint, stat)).append("</member>");
+                }
+                xml.append("</Values></member>");
+            }
+        }
+        xml.append("</MetricDataResults><Messages/></GetMetricDataResult>");
+        return withMetadata(xml, "GetMetricDataResponse");
+    }
+
+    private String listMetrics(Map<String, String> params) {
+        List<DimensionFilter> filters = new ArrayList<>();
+        for (int i = 1; params.containsKey("Dimensions.member." + i + ".Name"); i++) {
+            filters.add(DimensionFilter.builder()
+                    .name(params.get("Dimensions.member." + i + ".Name"))
+                    .value(params.get("Dimensions.member." + i + ".Value"))
+                    .build());
+        }
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<ListMetricsResponse xmlns=\"").append(XMLNS).append("\"><ListMetricsResult><Metrics>");
+        for (Metric metric : source.listMetrics(params.get("Namespace"), params.get("MetricName"), filters)) {
+            xml.append("<member><Namespace>").append(escape(metric.namespace())).append("</Namespace>")
+                    .append("<MetricName>").append(escape(metric.metricName())).append("</MetricName><Dimensions>");
+            for (Dimension dimension : metric.dimensions()) {
+                xml.append("<member><Name>").append(escape(dimension.name())).append("</Name><Value>")
+                        .append(escape(dimension.value())).append("</Value></member>");
+            }
+            xml.append("</Dimensions></member>");
+        }
+        xml.append("</Metrics></ListMetricsResult>");
+        return withMetadata(xml, "ListMetricsResponse");
+    }
+
+    private static List<Dimension> dimensions(Map<String, String> params, String prefix) {
+        List<Dimension> dimensions = new ArrayList<>();
+        for (int i = 1; params.containsKey(prefix + i + ".Name"); i++) {
+            dimensions.add(Dimension.builder()
+                    .name(params.get(prefix + i + ".Name"))
+                    .value(params.get(prefix + i + ".Value"))
+                    .build());
+        }
+        return dimensions;
+    }
+
+    private static List<String> members(Map<String, String> params, String prefix) {
+        List<String> members = new ArrayList<>();
+        for (int i = 1; params.containsKey(prefix + i); i++) {
+            members.add(params.get(prefix + i));
+        }
+        return members;
+    }
+
+    private static String withMetadata(StringBuilder xml, String rootElement) {
+        return xml.append("<ResponseMetadata><RequestId>").append(UUID.randomUUID()).append("</RequestId></ResponseMetadata></")
+                .append(rootElement).append('>').toString();
+    }
+
+    private static String error(String code, String message) {
+        return "<ErrorResponse xmlns=\"" + XMLNS + "\"><Error><Type>Sender</Type><Code>" + code + "</Code><Message>"
+                + escape(message) + "</Message></Error><RequestId>" + UUID.randomUUID() + "</RequestId></ErrorResponse>";
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.getmegraphs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local S3-compatible endpoint, MinIO style (Spring profile {@code standin}).
+ *
+ * Serves path-style requests for PutObject, the multipart upload calls (create, upload part,
+ * complete, abort), GetObject, HeadObject, ListObjectsV2, DeleteObject and DeleteObjects,
+ * keeping objects in memory.
+ * Bodies sent with aws-chunked encoding (signed payload over plain HTTP) are decoded.
+ * Like real S3, completing a multipart upload with a part other than the last under 5MB
+ * fails with EntityTooSmall.
+ * Every call waits the configured latency and fails with InternalError at the configured
+ * rate. The {@link S3ArtifactSink} is pointed here through {@code artifacts.s3.endpoint}.
+ */
+@Component
+@Profile("standin")
+public class S3StandIn {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3StandIn.class);
+
+    private static final String XMLNS = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+    private static final Pattern KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+
+    @Value("${standin.s3.port:9103}")
+    private int port;
+
+    @Value("${standin.s3.threads:16}")
+    private int threads;
+
+    @Value("${standin.s3.latency-ms:20}")
+    private long latencyMs;
+
+    @Value("${standin.s3.failure-rate:0.0}")
+    private double failureRate;
+
+    // Keyed by bucket/key
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        executor = Executors.newFixedThreadPool(threads, ExecutorConfig.namedThreadFactory("s3-standin-"));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("S3 stand-in listening on http://localhost:{}", port);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        logger.info("S3 stand-in served {} requests, holding {} objects", requests.get(), objects.size());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            sleep(latencyMs);
+            byte[] body = readBody(exchange);
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                respond(exchange, 500, error("InternalError", "Injected failure"));
+                return;
+            }
+
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8).substring(1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int slash = path.indexOf('/');
+            String bucket = slash < 0 ? path : path.substring(0, slash);
+            String key = slash < 0 ? "" : path.substring(slash + 1);
+            if (bucket.isEmpty()) {
+                respond(exchange, 400, error("InvalidBucketName", "Only path-style requests are supported"));
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            if (key.isEmpty()) {
+                if ("GET".equals(method)) {
+                    respond(exchange, 200, listObjects(bucket, query.getOrDefault("prefix", "")));
+                } else if ("POST".equals(method) && query.containsKey("delete")) {
+                    respond(exchange, 200, deleteObjects(bucket, new String(body, StandardCharsets.UTF_8)));
+                } else {
+                    // Buckets exist as soon as they are used
+                    respond(exchange, 200, "");
+                }
+                return;
+            }
+            switch (method) {
+                case "PUT" -> {
+                    if (query.containsKey("uploadId")) {
+                        MultipartUpload upload = uploads.get(query.get("uploadId"));
+                        if (upload == null) {
+                            respond(exchange, 404, error("NoSuchUpload", "The specified upload does not exist"));
+                            return;
+                        }
+                        upload.parts().put(Integer.parseInt(query.get("partNumber")), body);
+                        exchange.getResponseHeaders().set("ETag", eTag(body));
+                    } else {
+                        objects.put(bucket + "/" + key, new StoredObject(body, exchange.getRequestHeaders().getFirst("Content-Type")));
+                        exchange.getResponseHeaders().set("ETag", eTag(body));
+                    }
+                    respond(exchange, 200, "");
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        uploads.put(uploadId, new MultipartUpload(bucket + "/" + key,
+                                exchange.getRequestHeaders().getFirst("Content-Type"), new ConcurrentSkipListMap<>()));
+                        respond(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + XMLNS + "\"><Bucket>" + escape(bucket)
+                                + "</Bucket><Key>" + escape(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else if (query.containsKey("uploadId")) {
+                        completeUpload(exchange, query.get("uploadId"), bucket, key, new String(body, StandardCharsets.UTF_8));
+                    } else {
+                        respond(exchange, 400, error("InvalidRequest", "Unsupported POST"));
+                    }
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(bucket + "/" + key);
+                    }
+                    respond(exchange, 204, "");
+                }
+                case "GET", "HEAD" -> {
+                    StoredObject object = objects.get(bucket + "/" + key);
+                    if (object == null) {
+                        respond(exchange, 404, error("NoSuchKey", "The specified key does not exist."));
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("Content-Type",
+                            object.contentType() != null ? object.contentType() : "application/octet-stream");
+                    exchange.getResponseHeaders().set("ETag", eTag(object.content()));
+                    if ("HEAD".equals(method)) {
+                        exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.content().length));
+                        exchange.sendResponseHeaders(200, -1);
+                        return;
+                    }
+                    exchange.sendResponseHeaders(200, object.content().length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(object.content());
+                    }
+                }
+                default -> respond(exchange, 405, error("MethodNotAllowed", "Unsupported method " + method));
+            }
+        } catch (Exception e) {
+            logger.error("S3 stand-in failed to handle request", e);
+        }
+    }
+
+    /**
+     * Joins the parts listed in the request, in part number order. As on S3 and MinIO, every
+     * part but the last must be at least {@link S3ArtifactSink#MIN_PART_SIZE}.
+     */
+    private void completeUpload(HttpExchange exchange, String uploadId, String bucket, String key, String request) throws IOException {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            respond(exchange, 404, error("NoSuchUpload", "The specified upload does not exist"));
+            return;
+        }
+        List<byte[]> listed = new ArrayList<>();
+        Matcher partNumbers = PART_NUMBER.matcher(request);
+        while (partNumbers.find()) {
+            byte[] part = upload.parts().get(Integer.parseInt(partNumbers.group(1)));
+            if (part == null) {
+                respond(exchange, 400, error("InvalidPart", "Part " + partNumbers.group(1) + " was not uploaded"));
+                return;
+            }
+            listed.add(part);
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (int i = 0; i < listed.size(); i++) {
+            if (i < listed.size() - 1 && listed.get(i).length < S3ArtifactSink.MIN_PART_SIZE) {
+                respond(exchange, 400, error("EntityTooSmall", "Your proposed upload is smaller than the minimum allowed object size."));
+                return;
+            }
+            content.write(listed.get(i));
+        }
+        uploads.remove(uploadId);
+        int parts = listed.size();
+        objects.put(upload.bucketKey(), new StoredObject(content.toByteArray(), upload.contentType()));
+        respond(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + XMLNS + "\"><Location>http://localhost:" + port + "/" + escape(bucket) + "/"
+                + escape(key) + "</Location><Bucket>" + escape(bucket) + "</Bucket><Key>" + escape(key) + "</Key><ETag>&quot;"
+                + UUID.randomUUID().toString().replace("-", "") + "-" + parts + "&quot;</ETag></CompleteMultipartUploadResult>");
+    }
+
+    /**
+     * DeleteObjects: removes the listed keys (missing keys count as deleted, as on S3).
+     */
+    private String deleteObjects(String bucket, String request) {
+        StringBuilder xml = new StringBuilder("<DeleteResult xmlns=\"" + XMLNS + "\">");
+        boolean quiet = request.contains("<Quiet>true</Quiet>");
+        Matcher keys = KEY.matcher(request);
+        while (keys.find()) {
+            String key = unescape(keys.group(1));
+            objects.remove(bucket + "/" + key);
+            if (!quiet) {
+                xml.append("<Deleted><Key>").append(escape(key)).append("</Key></Deleted>");
+            }
+        }
+        return xml.append("</DeleteResult>").toString();
+    }
+
+    private String listObjects(String bucket, String prefix) {
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"" + XMLNS + "\"><Name>").append(escape(bucket))
+                .append("</Name><Prefix>").append(escape(prefix)).append("</Prefix>");
+        NavigableMap<String, StoredObject> sorted = new TreeMap<>(objects);
+        int count = 0;
+        for (Map.Entry<String, StoredObject> entry : sorted.tailMap(bucket + "/" + prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(bucket + "/" + prefix)) {
+                break;
+            }
+            xml.append("<Contents><Key>").append(escape(entry.getKey().substring(bucket.length() + 1)))
+                    .append("</Key><Size>").append(entry.getValue().content().length).append("</Size></Contents>");
+            count++;
+        }
+        return xml.append("<KeyCount>").append(count).append("</KeyCount><IsTruncated>false</IsTruncated></ListBucketResult>").toString();
+    }
+
+    /**
+     * Reads the request body, decoding aws-chunked bodies ({@code <hex size>;chunk-signature=...\r\n<data>\r\n}).
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean chunked = (contentSha256 != null && contentSha256.startsWith("STREAMING-"))
+                || (contentEncoding != null && contentEncoding.contains("aws-chunked"));
+        if (!chunked) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(raw.length);
+        int position = 0;
+        while (position < raw.length) {
+            int lineEnd = indexOfCrlf(raw, position);
+            String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";", 2)[0].trim(), 16);
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Malformed aws-chunked body");
+    }
+
+    private static String eTag(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            } else if (!pair.isEmpty()) {
+                params.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+            }
+        }
+        return params;
+    }
+
+    private static String error(String code, String message) {
+        return "<Error><Code>" + code + "</Code><Message>" + escape(message) + "</Message><RequestId>"
+                + UUID.randomUUID() + "</RequestId></Error>";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        if (bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record StoredObject(byte[] content, String contentType) {
+    }
+
+    private record MultipartUpload(String bucketKey, String contentType, NavigableMap<Integer, byte[]> parts) {
+    }
+}
@@ -0,0 +1,378 @@
+package com.getmegraphs;
+
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.DimensionFilter;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic synthetic CloudWatch data for the local stand-ins and the benchmarks.
+ *
+ * Every series is a daily wave plus noise around a baseline that depends on the metric
+ * name (CPU around 45%, connections around 2,250, lag in the thousands...). Values are a
+ * pure function of (metric, dimensions, minute), so overlapping or repeated queries see
+ * the same data. The Kafka catalog has lag metrics for every (topic, consumer group) pair
+ * and broker metrics for every broker of whatever cluster is asked for. Optionally, every
+ * series has a few incidents per day: 5 to 30 minutes at 3 to 8 times the wave amplitude
+ * above its normal value, at times that also only depend on the series and the day. A
+ * growth rate adds a linear trend (free memory shrinks instead), counted from the start
+ * of the day the source was created.
+ */
+public class SyntheticMetricSource {
+
+    private static final long DAY_SECONDS = 24 * 3600;
+
+    // Series an expression returns at most
+    private static final int MAX_EXPRESSION_SERIES = 500;
+
+    private static final Pattern INSIGHTS_QUERY = Pattern.compile(
+            "SELECT (\\w+)\\(\"?([^\")]+)\"?\\) FROM SCHEMA\\(\"([^\"]+)\"[^)]*\\)"
+                    + "(?: WHERE (.+?))?(?: GROUP BY \"([^\"]+)\")?(?: ORDER BY (\\w+)\\(\\) (ASC|DESC))?(?: LIMIT (\\d+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSIGHTS_CONDITION = Pattern.compile("\"([^\"]+)\" = '([^']*)'");
+    private static final Pattern SEARCH = Pattern.compile(
+            "(?:(SUM|AVG|MIN|MAX)\\()?SEARCH\\('\\{([^,}]+)[^}]*}\\s*(.*?)',\\s*'(\\w+)'(?:,\\s*(\\d+))?\\)\\)?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SEARCH_TERM = Pattern.compile("(?:\"([^\"]+)\"|(\\w+))=\"([^\"]*)\"");
+
+    private final int topics;
+    private final int consumerGroupsPerTopic;
+    private final int brokers;
+    private final int incidentsPerDay;
+    private final double growthPerDay;
+    private final long growthOrigin;
+
+    public SyntheticMetricSource(int topics, int consumerGroupsPerTopic, int brokers) {
+        this(topics, consumerGroupsPerTopic, brokers, 0, 0);
+    }
+
+    /**
+     * @param growthPerDay trend per day, as a fraction of each metric's baseline
+     */
+    public SyntheticMetricSource(int topics, int consumerGroupsPerTopic, int brokers, int incidentsPerDay, double growthPerDay) {
+        this.topics = topics;
+        this.consumerGroupsPerTopic = consumerGroupsPerTopic;
+        this.brokers = brokers;
+        this.incidentsPerDay = incidentsPerDay;
+        this.growthPerDay = growthPerDay;
+        this.growthOrigin = Instant.now().truncatedTo(ChronoUnit.DAYS).getEpochSecond();
+    }
+
+    /**
+     * Per-minute value of one series.
+     */
+    public double value(String metricName, List<Dimension> dimensions, Instant timestamp) {
+        long seriesSeed = (metricName + dimensions).hashCode();
+        long minute = Math.floorDiv(timestamp.getEpochSecond(), 60);
+        double[] shape = shapeOf(metricName);
+        double phase = (seriesSeed & 0xff) / 255.0 * 2 * Math.PI;
+        double wave = Math.sin(2 * Math.PI * (minute * 60 % DAY_SECONDS) / DAY_SECONDS + phase);
+        double noise = noise(seriesSeed, minute);
+        double growth = growthPerDay == 0 ? 0
+                : shape[0] * growthPerDay * (minute * 60 - growthOrigin) / DAY_SECONDS * (metricName.startsWith("Free") ? -1 : 1);
+        return Math.max(0, shape[0] + shape[1] * wave + shape[1] * 0.3 * noise + shape[1] * incident(seriesSeed, minute) + growth);
+    }
+
+    /**
+     * Height of the incident at a minute, in wave amplitudes; 0 outside incidents.
+     */
+    private double incident(long seriesSeed, long minute) {
+        long minutesPerDay = DAY_SECONDS / 60;
+        long day = Math.floorDiv(minute, minutesPerDay);
+        long minuteOfDay = minute - day * minutesPerDay;
+        for (int i = 0; i < incidentsPerDay; i++) {
+            long incidentSeed = seriesSeed * 31 + day * 1_000_003L + i;
+            long startMinute = (long) ((noise(incidentSeed, 1) + 1) / 2 * minutesPerDay);
+            long duration = 5 + (long) ((noise(incidentSeed, 2) + 1) / 2 * 25);
+            if (minuteOfDay >= startMinute && minuteOfDay < startMinute + duration) {
+                return 3 + (noise(incidentSeed, 3) + 1) / 2 * 5;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * One datapoint per period in [start, end), aggregated from the per-minute values. Like
+     * CloudWatch for recent data, the start is rounded down to the whole minute.
+     */
+    public List<Datapoint> datapoints(String metricName, List<Dimension> dimensions, Instant start, Instant end, int period) {
+        List<Datapoint> datapoints = new ArrayList<>();
+        int samples = Math.max(1, period / 60);
+        for (Instant t = start.truncatedTo(ChronoUnit.MINUTES); t.isBefore(end); t = t.plusSeconds(period)) {
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = 0; i < samples; i++) {
+                double value = value(metricName, dimensions, t.plusSeconds(i * 60L));
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            datapoints.add(Datapoint.builder()
+                    .timestamp(t)
+                    .average(sum / samples)
+                    .sum(sum)
+                    .minimum(min)
+                    .maximum(max)
+                    .sampleCount((double) samples)
+                    .build());
+        }
+        return datapoints;
+    }
+
+    /**
+     * Metrics matching a ListMetrics request. The cluster name and DB instance are taken
+     * from the dimension filters, so any cluster the caller asks about exists.
+     */
+    public List<Metric> listMetrics(String namespace, String metricName, List<DimensionFilter> filters) {
+        List<Metric> metrics = new ArrayList<>();
+        if ("AWS/Kafka".equals(namespace)) {
+            String clusterName = filterValue(filters, "Cluster Name", "standin-cluster");
+            List<String> metricNames = metricName != null ? List.of(metricName)
+                    : List.of("ConsumerLag", "SumOffsetLag", "MaxOffsetLag", "EstimatedMaxTimeLag", "CpuSystem", "CpuUser");
+            for (String name : metricNames) {
+                if (name.contains("Lag")) {
+                    for (int t = 0; t < topics; t++) {
+                        for (int g = 0; g < consumerGroupsPerTopic; g++) {
+                            metrics.add(metric(namespace, name,
+                                    dimension("Cluster Name", clusterName),
+                                    dimension("Consumer Group", "consumer-group-" + t + "-" + g),
+                                    dimension("Topic", "topic-" + t)));
+                        }
+                    }
+                } else {
+                    for (int b = 1; b <= brokers; b++) {
+                        metrics.add(metric(namespace, name,
+                                dimension("Cluster Name", clusterName),
+                                dimension("Broker ID", String.valueOf(b))));
+                    }
+                }
+            }
+        } else if ("AWS/RDS".equals(namespace)) {
+            String dbInstance = filterValue(filters, "DBInstanceIdentifier", "standin-db");
+            List<String> metricNames = metricName != null ? List.of(metricName)
+                    : List.of("CPUUtilization", "FreeableMemory", "DatabaseConnections", "ReadIOPS", "WriteIOPS");
+            for (String name : metricNames) {
+                metrics.add(metric(namespace, name, dimension("DBInstanceIdentifier", dbInstance)));
+            }
+        }
+        return metrics.stream()
+                .filter(metric -> filters.stream().allMatch(filter -> matches(metric, filter)))
+                .toList();
+    }
+
+    /**
+     * Series of a GetMetricData expression, by label, with the values as averages. Understands
+     * Metrics Insights queries ({@code SELECT FUNC("Metric") FROM SCHEMA("Namespace", ...)
+     * [WHERE "Dim" = 'value' [AND ...]] [GROUP BY "Dim"] [ORDER BY FUNC() ASC|DESC] [LIMIT n]})
+     * and {@code SEARCH('{Namespace,...} MetricName="Metric" "Dim"="value"', 'Stat', period)},
+     * optionally wrapped in SUM, AVG, MIN or MAX. Other expressions are answered with one
+     * synthetic series.
+     *
+     * @param label label of the query, used for single-series results; defaults to the expression
+     */
+    public Map<String, List<Datapoint>> expression(String expression, String label, Instant start, Instant end, int period) {
+        String seriesLabel = label != null ? label : expression;
+        Matcher insights = INSIGHTS_QUERY.matcher(expression);
+        if (insights.matches()) {
+            List<DimensionFilter> filters = new ArrayList<>();
+            if (insights.group(4) != null) {
+                Matcher condition = INSIGHTS_CONDITION.matcher(insights.group(4));
+                while (condition.find()) {
+                    filters.add(DimensionFilter.builder().name(condition.group(1)).value(condition.group(2)).build());
+                }
+            }
+            String function = insights.group(1).toUpperCase();
+            String metricName = insights.group(2);
+            String groupBy = insights.group(5);
+            Map<String, SortedMap<Instant, double[]>> groups = new TreeMap<>();
+            for (Metric metric : listMetrics(insights.group(3), metricName, filters)) {
+                String group = groupBy == null ? seriesLabel : dimensionValue(metric, groupBy);
+                for (Datapoint datapoint : datapoints(metricName, metric.dimensions(), start, end, period)) {
+                    accumulate(groups.computeIfAbsent(group, ignored -> new TreeMap<>()), datapoint.timestamp(),
+                            datapoint.sum(), datapoint.sampleCount(), datapoint.minimum(), datapoint.maximum());
+                }
+            }
+            List<Map.Entry<String, List<Datapoint>>> ranked = new ArrayList<>(aggregate(function, groups).entrySet());
+            if (insights.group(6) != null) {
+                String orderFunction = insights.group(6).toUpperCase();
+                Comparator<Map.Entry<String, List<Datapoint>>> order =
+                        Comparator.comparingDouble(entry -> rank(orderFunction, entry.getValue()));
+                ranked.sort("DESC".equalsIgnoreCase(insights.group(7)) ? order.reversed() : order);
+            }
+            int limit = insights.group(8) != null ? Integer.parseInt(insights.group(8)) : MAX_EXPRESSION_SERIES;
+            Map<String, List<Datapoint>> series = new LinkedHashMap<>();
+            ranked.stream().limit(limit).forEach(entry -> series.put(entry.getKey(), entry.getValue()));
+            return series;
+        }
+
+        Matcher search = SEARCH.matcher(expression);
+        if (search.matches()) {
+            String metricName = null;
+            List<DimensionFilter> filters = new ArrayList<>();
+            Matcher term = SEARCH_TERM.matcher(search.group(3));
+            while (term.find()) {
+                String name = term.group(1) != null ? term.group(1) : term.group(2);
+                if ("MetricName".equals(name)) {
+                    metricName = term.group(3);
+                } else {
+                    filters.add(DimensionFilter.builder().name(name).value(term.group(3)).build());
+                }
+            }
+            String function = search.group(1);
+            String stat = search.group(4);
+            int searchPeriod = search.group(5) != null ? Integer.parseInt(search.group(5)) : period;
+            Map<String, SortedMap<Instant, double[]>> groups = new TreeMap<>();
+            for (Metric metric : listMetrics(search.group(2), metricName, filters)) {
+                String group = function != null ? seriesLabel : metric.dimensions().stream()
+                        .map(Dimension::value)
+                        .reduce((a, b) -> a + " " + b)
+                        .orElse(metric.metricName());
+                for (Datapoint datapoint : datapoints(metric.metricName(), metric.dimensions(), start, end, searchPeriod)) {
+                    double value = statistic(datapoint, stat);
+                    accumulate(groups.computeIfAbsent(group, ignored -> new TreeMap<>()), datapoint.timestamp(), value, 1, value, value);
+                }
+            }
+            return aggregate(function != null ? function.toUpperCase() : "SUM", groups);
+        }
+
+        return Map.of(seriesLabel, datapoints(expression, List.of(), start, end, period));
+    }
+
+    /**
+     * Value of a statistic (Average, Sum, Minimum, Maximum, SampleCount or a percentile,
+     * approximated by the maximum).
+     */
+    public static double statistic(Datapoint datapoint, String statistic) {
+        return switch (statistic) {
+            case "Sum" -> datapoint.sum();
+            case "Minimum" -> datapoint.minimum();
+            case "Maximum" -> datapoint.maximum();
+            case "SampleCount" -> datapoint.sampleCount();
+            default -> statistic.startsWith("p") ? datapoint.maximum() : datapoint.average();
+        };
+    }
+
+    /**
+     * Adds one datapoint to the running sum, count, minimum and maximum of its timestamp.
+     */
+    private static void accumulate(SortedMap<Instant, double[]> points, Instant timestamp,
+                                   double sum, double count, double min, double max) {
+        double[] aggregate = points.computeIfAbsent(timestamp, ignored -> new double[]{0, 0, Double.MAX_VALUE, -Double.MAX_VALUE});
+        aggregate[0] += sum;
+        aggregate[1] += count;
+        aggregate[2] = Math.min(aggregate[2], min);
+        aggregate[3] = Math.max(aggregate[3], max);
+    }
+
+    private static Map<String, List<Datapoint>> aggregate(String function, Map<String, SortedMap<Instant, double[]>> groups) {
+        Map<String, List<Datapoint>> series = new LinkedHashMap<>();
+        groups.forEach((group, points) -> {
+            List<Datapoint> datapoints = new ArrayList<>();
+            points.forEach((timestamp, aggregate) -> datapoints.add(Datapoint.builder()
+                    .timestamp(timestamp)
+                    .average(switch (function) {
+                        case "SUM" -> aggregate[0];
+                        case "COUNT" -> aggregate[1];
+                        case "MIN" -> aggregate[2];
+                        case "MAX" -> aggregate[3];
+                        default -> aggregate[0] / aggregate[1];
+                    })
+                    .build()));
+            series.put(group, datapoints);
+        });
+        return series;
+    }
+
+    /**
+     * Value of an ORDER BY function over a whole series.
+     */
+    private static double rank(String function, List<Datapoint> datapoints) {
+        DoubleSummaryStatistics statistics = datapoints.stream().mapToDouble(Datapoint::average).summaryStatistics();
+        return switch (function) {
+            case "SUM" -> statistics.getSum();
+            case "COUNT" -> statistics.getCount();
+            case "MIN" -> statistics.getMin();
+            case "MAX" -> statistics.getMax();
+            default -> statistics.getAverage();
+        };
+    }
+
+    private static String dimensionValue(Metric metric, String name) {
+        return metric.dimensions().stream()
+                .filter(dimension -> name.equals(dimension.name()))
+                .map(Dimension::value)
+                .findFirst()
+                .orElse("Other");
+    }
+
+    /**
+     * Baseline and amplitude per metric family.
+     */
+    private static double[] shapeOf(String metricName) {
+        if (metricName == null) {
+            return new double[]{50, 20};
+        }
+        return switch (metricName) {
+            case "CPUUtilization" -> new double[]{45, 6};
+            case "DatabaseConnections" -> new double[]{2250, 300};
+            case "FreeableMemory" -> new double[]{8e9, 1e9};
+            case "ReadIOPS", "WriteIOPS" -> new double[]{500, 200};
+            default -> {
+                if (metricName.contains("TimeLag")) {
+                    yield new double[]{2000, 1500};
+                } else if (metricName.contains("Lag")) {
+                    yield new double[]{1000, 800};
+                } else if (metricName.startsWith("Cpu")) {
+                    yield new double[]{30, 10};
+                }
+                yield new double[]{50, 20};
+            }
+        };
+    }
+
+    /**
+     * Hash-based noise in [-1, 1] that only depends on the series and the minute.
+     */
+    private static double noise(long seriesSeed, long minute) {
+        long x = seriesSeed * 0x9E3779B97F4A7C15L + minute;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        x = x ^ (x >>> 31);
+        return (x >>> 11) / (double) (1L << 53) * 2 - 1;
+    }
+
+    private static String filterValue(List<DimensionFilter> filters, String name, String defaultValue) {
+        return filters.stream()
+                .filter(filter -> name.equals(filter.name()) && filter.value() != null)
+                .map(DimensionFilter::value)
+                .findFirst()
+                .orElse(defaultValue);
+    }
+
+    private static boolean matches(Metric metric, DimensionFilter filter) {
+        return metric.dimensions().stream().anyMatch(dimension -> dimension.name().equals(filter.name())
+                && (filter.value() == null || dimension.value().equals(filter.value())));
+    }
+
+    private static Metric metric(String namespace, String metricName, Dimension... dimensions) {
+        return Metric.builder().namespace(namespace).metricName(metricName).dimensions(dimensions).build();
+    }
+
+    private static Dimension dimension(String name, String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+}
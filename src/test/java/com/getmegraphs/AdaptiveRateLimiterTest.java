@@ -0,0 +1,76 @@
+package com.getmegraphs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AdaptiveRateLimiterTest {
+
+    @Test
+    void startsAtMaximumRateWithOneSecondOfBurst() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 10, 1, 0.5);
+
+        assertThat(limiter.rate()).isEqualTo(10);
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.reserve()).isZero();
+        }
+        long wait = 0;
+        for (int i = 0; i < 10; i++) {
+            wait = limiter.reserve();
+        }
+        // Ten requests into debt at ten per second
+        assertThat(wait).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(500))
+                .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void throttleCutsRateMultiplicativelyOncePerSecond() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 10, 1, 0.5);
+
+        limiter.onThrottle();
+        assertThat(limiter.rate()).isEqualTo(5);
+        // Throttles of calls sent at the old rate do not cut it again
+        limiter.onThrottle();
+        limiter.onThrottle();
+        assertThat(limiter.rate()).isEqualTo(5);
+    }
+
+    @Test
+    void throttleDropsTheBurst() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 10, 1, 0.5);
+
+        limiter.onThrottle();
+
+        assertThat(limiter.reserve()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(150))
+                .isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void successIncreasesRateAdditivelyUpToMaximum() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 10, 1, 0.5);
+        limiter.onThrottle();
+
+        // About one request per second more for every second of successful traffic
+        for (int i = 0; i < 5; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.rate()).isCloseTo(6, within(0.1));
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.rate()).isEqualTo(10);
+    }
+
+    @Test
+    void rateNeverDropsBelowMinimum() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(4, 10, 1, 0.1);
+
+        limiter.onThrottle();
+
+        assertThat(limiter.rate()).isEqualTo(4);
+    }
+}
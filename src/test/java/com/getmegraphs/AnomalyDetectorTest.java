@@ -0,0 +1,155 @@
+package com.getmegraphs;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnomalyDetectorTest {
+
+    private static final Instant START = Instant.parse("2026-10-01T00:00:00Z");
+
+    // The defaults of application.properties, with 15 minute slots judged after two days of 1 minute points
+    private static final AnomalyDetector.Settings SETTINGS =
+            new AnomalyDetector.Settings(0.1, 4, 30, 60, 5, 900, 30, 4, 1, 8);
+
+    @Test
+    void flatSeriesNoiseIsNotFlagged() {
+        AnomalyDetector detector = new AnomalyDetector(SETTINGS);
+        Random random = new Random(42);
+
+        // ±0.1% around 100, far below the 1% spread floor
+        for (int minute = 0; minute < 600; minute++) {
+            assertThat(detector.observe(minute(minute), 100 + (random.nextDouble() - 0.5) * 0.2, false))
+                    .as("minute %d", minute).isEmpty();
+        }
+    }
+
+    @Test
+    void spikeIsFlaggedByEwmaAndMad() {
+        AnomalyDetector detector = new AnomalyDetector(SETTINGS);
+        Random random = new Random(42);
+        for (int minute = 0; minute < 120; minute++) {
+            detector.observe(minute(minute), 100 + random.nextGaussian(), false);
+        }
+
+        List<AnomalyDetector.Signal> signals = detector.observe(minute(120), 150, false);
+
+        assertThat(signals).extracting(AnomalyDetector.Signal::detector).contains("ewma", "mad");
+        assertThat(signals).allSatisfy(signal -> {
+            assertThat(signal.expected()).isCloseTo(100, within(2.0));
+            assertThat(signal.score()).isGreaterThan(1);
+        });
+    }
+
+    @Test
+    void sustainedIncidentDoesNotBecomeTheBaseline() {
+        AnomalyDetector detector = new AnomalyDetector(SETTINGS);
+        Random random = new Random(7);
+        for (int minute = 0; minute < 120; minute++) {
+            detector.observe(minute(minute), 100 + random.nextGaussian(), false);
+        }
+
+        // 45 minutes at twice the level. Learned as is, it would be the median of the
+        // 60 point window after 30 minutes; clamped, it is still flagged at the end
+        List<AnomalyDetector.Signal> last = List.of();
+        for (int minute = 120; minute < 165; minute++) {
+            last = detector.observe(minute(minute), 200 + random.nextGaussian(), false);
+            assertThat(last).as("minute %d", minute).extracting(AnomalyDetector.Signal::detector).contains("mad");
+        }
+        assertThat(last).filteredOn(signal -> signal.detector().equals("mad")).allSatisfy(signal -> assertThat(signal.expected()).isLessThan(150));
+        // And the old level is still normal afterwards
+        assertThat(detector.observe(minute(165), 100, false))
+                .extracting(AnomalyDetector.Signal::detector).doesNotContain("mad");
+    }
+
+    @Test
+    void cusumCatchesSmallLevelShift() {
+        AnomalyDetector detector = new AnomalyDetector(SETTINGS);
+        Random random = new Random(3);
+        for (int minute = 0; minute < 120; minute++) {
+            assertThat(detector.observe(minute(minute), 100 + random.nextGaussian(), false)).as("minute %d", minute).isEmpty();
+        }
+
+        // Two standard deviations up: no single point stands out
+        List<String> fired = new ArrayList<>();
+        for (int minute = 120; minute < 140; minute++) {
+            detector.observe(minute(minute), 102 + random.nextGaussian(), false)
+                    .forEach(signal -> fired.add(signal.detector()));
+        }
+
+        assertThat(fired).contains("cusum").doesNotContain("mad", "ewma");
+    }
+
+    @Test
+    void seasonalDetectorWaitsForEnoughSamplesPerSlot() {
+        AnomalyDetector.Settings settings = SETTINGS.withSeasonalMinSamples(3);
+
+        // One point a day in the same slot, so the other detectors are still warming up
+        AnomalyDetector early = new AnomalyDetector(settings);
+        early.observe(day(0), 10, false);
+        early.observe(day(1), 10.2, false);
+        assertThat(early.observe(day(2), 50, false)).isEmpty();
+
+        AnomalyDetector ready = new AnomalyDetector(settings);
+        ready.observe(day(0), 10, false);
+        ready.observe(day(1), 10.2, false);
+        ready.observe(day(2), 9.8, false);
+        assertThat(ready.observe(day(3), 50, false))
+                .extracting(AnomalyDetector.Signal::detector).containsExactly("seasonal");
+    }
+
+    @Test
+    void learnOnlyPointsAreNeverReported() {
+        AnomalyDetector detector = new AnomalyDetector(SETTINGS);
+        for (int minute = 0; minute < 120; minute++) {
+            detector.observe(minute(minute), 100, true);
+        }
+
+        assertThat(detector.observe(minute(120), 500, true)).isEmpty();
+        assertThat(detector.observe(minute(121), 500, false)).isNotEmpty();
+    }
+
+    @Test
+    void adjacentFlaggedMinutesAreMergedIntoOneAnomaly() {
+        List<Datapoint> datapoints = new ArrayList<>();
+        for (int minute = 0; minute < 200; minute++) {
+            double value = minute >= 100 && minute <= 103 || minute == 105 ? 300 + minute : minute == 150 ? 400 : 100;
+            // Minute 104 is missing: one missing period still belongs to the same anomaly
+            if (minute != 104) {
+                datapoints.add(Datapoint.builder().timestamp(minute(minute)).average(value).build());
+            }
+        }
+
+        List<AnomalyReport.Anomaly> anomalies = new ArrayList<>();
+        int checked = AnomalyDetectionService.detect(new AnomalyDetector(SETTINGS), "db CPU", "CPUUtilization",
+                datapoints, minute(60), 60, anomalies);
+
+        assertThat(checked).isEqualTo(139);
+        assertThat(anomalies).hasSize(2);
+        AnomalyReport.Anomaly first = anomalies.get(0);
+        assertThat(first.start()).isEqualTo(minute(100));
+        assertThat(first.end()).isEqualTo(minute(105));
+        assertThat(first.peakValue()).isGreaterThanOrEqualTo(400);
+        assertThat(first.expected()).isCloseTo(100, within(5.0));
+        assertThat(first.detectors()).contains("ewma", "mad");
+        assertThat(first.severity()).isEqualTo("high");
+        assertThat(anomalies.get(1).start()).isEqualTo(minute(150));
+        assertThat(anomalies.get(1).end()).isEqualTo(minute(150));
+    }
+
+    private static Instant minute(int minute) {
+        return START.plus(Duration.ofMinutes(minute));
+    }
+
+    private static Instant day(int day) {
+        return START.plus(Duration.ofDays(day)).plus(Duration.ofHours(12));
+    }
+}
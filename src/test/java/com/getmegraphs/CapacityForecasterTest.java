@@ -0,0 +1,135 @@
+package com.getmegraphs;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.within;
+
+class CapacityForecasterTest {
+
+    private static final int DAY = 24;
+
+    @Test
+    void linearTrendRecoversTheSlope() {
+        Random random = new Random(42);
+        double[] history = new double[200];
+        for (int t = 0; t < history.length; t++) {
+            history[t] = 10 + 0.5 * t + random.nextGaussian() * 0.2;
+        }
+
+        CapacityForecaster.Forecast forecast = CapacityForecaster.forecast(history, 0, 20, 1.96);
+
+        assertThat(forecast.method()).isEqualTo("linear-trend");
+        assertThat(forecast.trend()).isCloseTo(0.5, within(0.02));
+        for (int h = 1; h <= 20; h++) {
+            assertThat(forecast.forecast().get(h - 1).value()).as("h=%d", h)
+                    .isCloseTo(10 + 0.5 * (history.length + h - 1), within(1.0));
+        }
+    }
+
+    @Test
+    void holtWintersRecoversDailySeasonality() {
+        Random random = new Random(7);
+        double[] history = new double[10 * DAY];
+        for (int t = 0; t < history.length; t++) {
+            history[t] = hourly(t) + random.nextGaussian() * 0.2;
+        }
+
+        CapacityForecaster.Forecast forecast = CapacityForecaster.forecast(history, DAY, 2 * DAY, 1.96);
+
+        assertThat(forecast.method()).isEqualTo("holt-winters");
+        assertThat(forecast.trend()).isCloseTo(0.05, within(0.01));
+        // An hour off in the seasonal index is a 15° phase shift, about 2.6 at the steepest hour
+        for (int h = 1; h <= 2 * DAY; h++) {
+            assertThat(forecast.forecast().get(h - 1).value()).as("h=%d", h)
+                    .isCloseTo(hourly(history.length + h - 1), within(1.0));
+        }
+    }
+
+    @Test
+    void predictionIntervalsWidenWithTheHorizon() {
+        Random random = new Random(3);
+        double[] history = new double[5 * DAY];
+        for (int t = 0; t < history.length; t++) {
+            history[t] = hourly(t) + random.nextGaussian();
+        }
+
+        List<CapacityForecaster.Point> points = CapacityForecaster.forecast(history, DAY, DAY, 1.96).forecast();
+
+        double previousWidth = 0;
+        for (CapacityForecaster.Point point : points) {
+            assertThat(point.lower()).isLessThan(point.value());
+            assertThat(point.upper()).isGreaterThan(point.value());
+            assertThat(point.upper() - point.value()).isCloseTo(point.value() - point.lower(), within(1e-9));
+            assertThat(point.upper() - point.lower()).isGreaterThan(previousWidth);
+            previousWidth = point.upper() - point.lower();
+        }
+    }
+
+    @Test
+    void fallsBackToLinearTrendBelowTwoSeasons() {
+        double[] history = new double[2 * DAY];
+        for (int t = 0; t < history.length; t++) {
+            history[t] = hourly(t);
+        }
+
+        double[] shortHistory = new double[2 * DAY - 1];
+        System.arraycopy(history, 0, shortHistory, 0, shortHistory.length);
+
+        assertThat(CapacityForecaster.forecast(shortHistory, DAY, DAY, 1.96).method()).isEqualTo("linear-trend");
+        assertThat(CapacityForecaster.forecast(history, DAY, DAY, 1.96).method()).isEqualTo("holt-winters");
+        assertThatThrownBy(() -> CapacityForecaster.forecast(new double[]{1, 2, 3}, 0, DAY, 1.96))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void parsesThresholds() {
+        assertThat(CapacityForecastService.parseThresholds(" CPUUtilization > 80 ,,FreeableMemory<1e9,"))
+                .containsExactly(
+                        entry("CPUUtilization", new CapacityForecastReport.Threshold("CPUUtilization", 80, true)),
+                        entry("FreeableMemory", new CapacityForecastReport.Threshold("FreeableMemory", 1e9, false)));
+        assertThat(CapacityForecastService.parseThresholds("")).isEmpty();
+
+        assertThatThrownBy(() -> CapacityForecastService.parseThresholds("CPUUtilization=80"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("CPUUtilization=80");
+        assertThatThrownBy(() -> CapacityForecastService.parseThresholds(">80"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining(">80");
+        assertThatThrownBy(() -> CapacityForecastService.parseThresholds("CPUUtilization>high"))
+                .isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void periodKeepsHistoryAndHorizonWithinTheLimit() {
+        Instant now = Instant.now();
+
+        // An hour of history for an hour ahead: one minute
+        assertThat(CapacityForecastService.periodFor(now.minus(Duration.ofHours(1)), now, Duration.ofHours(1))).isEqualTo(60);
+        // The horizon counts too: a week ahead needs 15 minutes
+        assertThat(CapacityForecastService.periodFor(now.minus(Duration.ofHours(1)), now, Duration.ofDays(7))).isEqualTo(900);
+        // Two weeks of history, as configured by default
+        assertThat(CapacityForecastService.periodFor(now.minus(Duration.ofDays(14)), now, Duration.ofDays(7))).isEqualTo(900);
+        // Only 5 minute data is left 20 days back, and 1440 points cover 20 days only hourly
+        assertThat(CapacityForecastService.periodFor(now.minus(Duration.ofDays(20)), now, Duration.ofDays(1))).isEqualTo(3600);
+        assertThatThrownBy(() -> CapacityForecastService.periodFor(now.minus(Duration.ofDays(61)), now, Duration.ofDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void warnsAboutShortHistory() {
+        assertThat(CapacityForecastService.historyWarning(Duration.ofHours(1), Duration.ofDays(7))).contains("1 h of history");
+        assertThat(CapacityForecastService.historyWarning(Duration.ofDays(3), Duration.ofDays(7))).contains("168 h horizon");
+        assertThat(CapacityForecastService.historyWarning(Duration.ofDays(14), Duration.ofDays(7))).isNull();
+    }
+
+    // 50 with a daily swing of ±10, growing 0.05 an hour
+    private static double hourly(int t) {
+        return 50 + 10 * Math.sin(2 * Math.PI * t / DAY) + 0.05 * t;
+    }
+}
@@ -0,0 +1,148 @@
+package com.getmegraphs;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DatapointRollupTest {
+
+    // Not aligned to the 5 minute period, so buckets must be counted from the start
+    private static final Instant START = Instant.parse("2026-10-01T00:02:00Z");
+    private static final Instant END = START.plus(Duration.ofHours(2));
+
+    @Test
+    void rollUpMatchesDirectFetchAtCoarserPeriod() {
+        Map<Instant, List<Double>> samples = samples(new Random(42));
+        GetMetricStatisticsRequest request = request(300, Statistic.AVERAGE, Statistic.SUM, Statistic.SAMPLE_COUNT,
+                Statistic.MINIMUM, Statistic.MAXIMUM);
+
+        GetMetricStatisticsResponse rolledUp = DatapointRollup.rollUp(fetch(samples, 60), 60, request);
+        GetMetricStatisticsResponse direct = fetch(samples, 300);
+
+        assertThat(rolledUp.datapoints()).hasSameSizeAs(direct.datapoints());
+        for (int i = 0; i < direct.datapoints().size(); i++) {
+            Datapoint expected = direct.datapoints().get(i);
+            Datapoint actual = rolledUp.datapoints().get(i);
+            assertThat(actual.timestamp()).isEqualTo(expected.timestamp());
+            assertThat(actual.sum()).isCloseTo(expected.sum(), within(1e-9));
+            assertThat(actual.sampleCount()).isEqualTo(expected.sampleCount());
+            assertThat(actual.minimum()).isEqualTo(expected.minimum());
+            assertThat(actual.maximum()).isEqualTo(expected.maximum());
+            assertThat(actual.average()).isCloseTo(expected.sum() / expected.sampleCount(), within(1e-9));
+            assertThat(actual.unit()).isEqualTo(StandardUnit.PERCENT);
+        }
+    }
+
+    @Test
+    void rollUpKeepsOnlyRequestedStatistics() {
+        GetMetricStatisticsResponse rolledUp = DatapointRollup.rollUp(
+                fetch(samples(new Random(7)), 60), 60, request(300, Statistic.MAXIMUM));
+
+        assertThat(rolledUp.datapoints()).isNotEmpty().allSatisfy(datapoint -> {
+            assertThat(datapoint.maximum()).isNotNull();
+            assertThat(datapoint.average()).isNull();
+            assertThat(datapoint.sum()).isNull();
+            assertThat(datapoint.sampleCount()).isNull();
+            assertThat(datapoint.minimum()).isNull();
+        });
+    }
+
+    @Test
+    void rollUpLeavesGapsEmpty() {
+        Map<Instant, List<Double>> samples = samples(new Random(3));
+        samples.keySet().removeIf(minute -> !minute.isBefore(START.plus(Duration.ofMinutes(10)))
+                && minute.isBefore(START.plus(Duration.ofMinutes(20))));
+
+        GetMetricStatisticsResponse rolledUp = DatapointRollup.rollUp(fetch(samples, 60), 60, request(300, Statistic.SUM));
+
+        assertThat(rolledUp.datapoints()).extracting(Datapoint::timestamp)
+                .doesNotContain(START.plus(Duration.ofMinutes(10)), START.plus(Duration.ofMinutes(15)))
+                .hasSize(24 - 2);
+    }
+
+    @Test
+    void percentilesAreNotDerivable() {
+        assertThat(DatapointRollup.derivable(request(300, Statistic.AVERAGE))).isTrue();
+        assertThat(DatapointRollup.derivable(request(300, Statistic.AVERAGE).toBuilder()
+                .extendedStatistics("p99").build())).isFalse();
+        assertThat(DatapointRollup.derivable(request(300, Statistic.AVERAGE).toBuilder()
+                .statistics(List.of()).extendedStatistics("p99").build())).isFalse();
+    }
+
+    @Test
+    void rollsUpOnlyToMultiplesOfRetainedPeriods() {
+        Instant now = END.plus(Duration.ofMinutes(5));
+
+        assertThat(DatapointRollup.canRollUp(60, request(300, Statistic.AVERAGE), now)).isTrue();
+        assertThat(DatapointRollup.canRollUp(60, request(90, Statistic.AVERAGE), now)).isFalse();
+        // One minute data is gone after 15 days
+        assertThat(DatapointRollup.canRollUp(60, request(3600, Statistic.AVERAGE), START.plus(Duration.ofDays(16)))).isFalse();
+        assertThat(DatapointRollup.canRollUp(300, request(3600, Statistic.AVERAGE), START.plus(Duration.ofDays(16)))).isTrue();
+    }
+
+    @Test
+    void finestRetainedPeriodFollowsCloudWatchRetention() {
+        assertThat(DatapointRollup.finestRetainedPeriod(START, START.plus(Duration.ofHours(3)))).isEqualTo(1);
+        assertThat(DatapointRollup.finestRetainedPeriod(START, START.plus(Duration.ofDays(15)))).isEqualTo(60);
+        assertThat(DatapointRollup.finestRetainedPeriod(START, START.plus(Duration.ofDays(63)))).isEqualTo(300);
+        assertThat(DatapointRollup.finestRetainedPeriod(START, START.plus(Duration.ofDays(64)))).isEqualTo(3600);
+    }
+
+    private static GetMetricStatisticsRequest request(int period, Statistic... statistics) {
+        return GetMetricStatisticsRequest.builder()
+                .namespace("AWS/RDS")
+                .metricName("CPUUtilization")
+                .startTime(START)
+                .endTime(END)
+                .period(period)
+                .statistics(statistics)
+                .build();
+    }
+
+    // A few raw samples per minute, as CloudWatch would have received them
+    private static Map<Instant, List<Double>> samples(Random random) {
+        Map<Instant, List<Double>> samples = new TreeMap<>();
+        for (Instant minute = START; minute.isBefore(END); minute = minute.plus(Duration.ofMinutes(1))) {
+            List<Double> values = new ArrayList<>();
+            for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                values.add(random.nextDouble() * 100);
+            }
+            samples.put(minute, values);
+        }
+        return samples;
+    }
+
+    // What GetMetricStatistics returns for the samples at the given period, with the base statistics
+    private static GetMetricStatisticsResponse fetch(Map<Instant, List<Double>> samples, int period) {
+        Map<Instant, List<Double>> buckets = new TreeMap<>();
+        samples.forEach((minute, values) -> {
+            long offset = Math.floorDiv(minute.getEpochSecond() - START.getEpochSecond(), period) * period;
+            buckets.computeIfAbsent(START.plusSeconds(offset), bucket -> new ArrayList<>()).addAll(values);
+        });
+
+        List<Datapoint> datapoints = new ArrayList<>();
+        buckets.forEach((bucket, values) -> datapoints.add(Datapoint.builder()
+                .timestamp(bucket)
+                .sum(values.stream().mapToDouble(Double::doubleValue).sum())
+                .sampleCount((double) values.size())
+                .minimum(values.stream().mapToDouble(Double::doubleValue).min().orElseThrow())
+                .maximum(values.stream().mapToDouble(Double::doubleValue).max().orElseThrow())
+                .unit(StandardUnit.PERCENT)
+                .build()));
+        return GetMetricStatisticsResponse.builder().label("CPUUtilization").datapoints(datapoints).build();
+    }
+}
@@ -0,0 +1,191 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListMetricsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricStat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReportPlannerTest {
+
+    private static final Instant END = Instant.parse("2026-10-01T00:00:00Z");
+    private static final Instant START = END.minus(Duration.ofHours(1));
+
+    private final List<ListMetricsRequest> listMetricsCalls = new ArrayList<>();
+    private final List<ListMetricsResponse> listMetricsPages = new ArrayList<>();
+
+    // Only ListMetrics is used while planning; it answers with the queued pages in order
+    private final CloudWatchFetcher cloudWatchFetcher = new CloudWatchFetcher(null, new SimpleMeterRegistry(), null,
+            16, 400, 25, 50, 6, 200, 10000) {
+        @Override
+        public ListMetricsResponse listMetrics(ListMetricsRequest request) {
+            listMetricsCalls.add(request);
+            return listMetricsPages.remove(0);
+        }
+    };
+    private final ReportPlanner planner = new ReportPlanner(cloudWatchFetcher);
+
+    @Test
+    void identicalSeriesAcrossChartsShareOneQuery() {
+        ReportSpec.SeriesSpec cpu = series("CPU", "AWS/RDS", "CPUUtilization", Map.of("DBInstanceIdentifier", "${dbInstanceIdentifier}"));
+        ReportSpec.SeriesSpec connections = series("Connections", "AWS/RDS", "DatabaseConnections",
+                Map.of("DBInstanceIdentifier", "${dbInstanceIdentifier}"));
+        ReportSpec spec = spec(null,
+                chart("cpu", null, null, List.of(cpu)),
+                chart("overview", null, null, List.of(cpu, connections)));
+
+        ReportPlan plan = planner.compile(spec, "cluster", "db", START, END);
+
+        assertThat(plan.seriesCount()).isEqualTo(3);
+        assertThat(plan.queryCount()).isEqualTo(2);
+        assertThat(plan.charts().get(0).series().get(0).queryId())
+                .isEqualTo(plan.charts().get(1).series().get(0).queryId());
+        assertThat(plan.charts().get(1).queryIds()).hasSize(2);
+    }
+
+    @Test
+    void seriesDifferingInPeriodOrStatAreNotShared() {
+        Map<String, String> db = Map.of("DBInstanceIdentifier", "db");
+        ReportSpec spec = spec(null, chart("cpu", null, null, List.of(
+                series("Average", "AWS/RDS", "CPUUtilization", db),
+                new ReportSpec.SeriesSpec("Maximum", "AWS/RDS", "CPUUtilization", db, "Maximum", null, null, null),
+                new ReportSpec.SeriesSpec("Average 5m", "AWS/RDS", "CPUUtilization", db, null, 300, null, null))));
+
+        ReportPlan plan = planner.compile(spec, "cluster", "db", START, END);
+
+        assertThat(plan.queryCount()).isEqualTo(3);
+    }
+
+    @Test
+    void batchSplitsAtTheQueryLimit() {
+        List<MetricDataQuery> queries = queries(ReportPlanner.MAX_QUERIES_PER_CALL * 2 + 1, 60);
+
+        List<List<MetricDataQuery>> batches = ReportPlanner.batch(queries, Duration.ofHours(1));
+
+        assertThat(batches).extracting(List::size)
+                .containsExactly(ReportPlanner.MAX_QUERIES_PER_CALL, ReportPlanner.MAX_QUERIES_PER_CALL, 1);
+        assertThat(batches.stream().flatMap(List::stream).toList()).isEqualTo(queries);
+    }
+
+    @Test
+    void batchSplitsAtTheDatapointLimit() {
+        // A day at one minute is 1440 datapoints: 70 queries fill a call exactly
+        List<MetricDataQuery> queries = queries(71, 60);
+
+        List<List<MetricDataQuery>> batches = ReportPlanner.batch(queries, Duration.ofDays(1));
+
+        assertThat(ReportPlanner.MAX_DATAPOINTS_PER_CALL).isEqualTo(70 * 1440);
+        assertThat(batches).extracting(List::size).containsExactly(70, 1);
+    }
+
+    @Test
+    void oversizedQueryGetsACallOfItsOwn() {
+        // 90 days at one minute is above the datapoint limit on its own
+        List<MetricDataQuery> queries = new ArrayList<>(queries(2, 3600));
+        queries.add(1, query("big", 60));
+
+        List<List<MetricDataQuery>> batches = ReportPlanner.batch(queries, Duration.ofDays(90));
+
+        assertThat(batches).extracting(batch -> batch.stream().map(MetricDataQuery::id).toList())
+                .containsExactly(List.of("q0"), List.of("big"), List.of("q1"));
+    }
+
+    @Test
+    void duplicateExpandedFileNamesAreRejected() {
+        ReportSpec.SeriesSpec cpu = series("CPU", "AWS/Kafka", "CpuUser",
+                Map.of("Cluster Name", "${clusterName}", "Broker ID", "${broker}"));
+        Map<String, List<Map<String, String>>> brokers = Map.of("brokers", List.of(Map.of("broker", "1"), Map.of("broker", "2")));
+
+        ReportSpec sameFile = spec(brokers, chart("broker_cpu", null, "brokers", List.of(cpu)));
+        assertThatThrownBy(() -> planner.compile(sameFile, "cluster", "", START, END))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("broker_cpu.png is written twice");
+
+        ReportSpec fileReferencesEntry = spec(brokers, chart("broker_cpu", "broker_${broker}_cpu", "brokers", List.of(cpu)));
+        assertThat(planner.compile(fileReferencesEntry, "cluster", "", START, END).charts())
+                .extracting(ReportPlan.PlannedChart::file)
+                .containsExactly("broker_1_cpu.png", "broker_2_cpu.png");
+    }
+
+    @Test
+    void wildcardDiscoveryFollowsNextToken() {
+        listMetricsPages.add(ListMetricsResponse.builder()
+                .metrics(broker("10"), broker("2"))
+                .nextToken("page-2")
+                .build());
+        listMetricsPages.add(ListMetricsResponse.builder()
+                .metrics(broker("1"),
+                        // Finer-grained metrics are not part of the selection
+                        metric(dimension("Cluster Name", "cluster"), dimension("Broker ID", "3"), dimension("Topic", "orders")))
+                .build());
+        ReportSpec.SeriesSpec cpu = series("Broker ${Broker ID}", "AWS/Kafka", "CpuUser",
+                Map.of("Cluster Name", "${clusterName}", "Broker ID", "*"));
+        ReportSpec spec = spec(null,
+                chart("cpu", null, null, List.of(cpu)),
+                chart("cpu_again", null, null, List.of(cpu)));
+
+        ReportPlan plan = planner.compile(spec, "cluster", "", START, END);
+
+        assertThat(listMetricsCalls).extracting(ListMetricsRequest::nextToken).containsExactly(null, "page-2");
+        // Each selector is discovered once per report
+        assertThat(plan.discoveryCalls()).isEqualTo(2);
+        assertThat(plan.charts().get(0).series()).extracting(ReportPlan.PlannedSeries::label)
+                .containsExactly("Broker 1", "Broker 2", "Broker 10");
+        assertThat(plan.queryCount()).isEqualTo(3);
+    }
+
+    private static ReportSpec spec(Map<String, List<Map<String, String>>> variables, ReportSpec.ChartSpec... charts) {
+        return new ReportSpec("Report", 60, variables, List.of(charts), null);
+    }
+
+    private static ReportSpec.ChartSpec chart(String id, String file, String forEach, List<ReportSpec.SeriesSpec> series) {
+        return new ReportSpec.ChartSpec(id, file, id, "Value", null, forEach, null, series);
+    }
+
+    private static ReportSpec.SeriesSpec series(String label, String namespace, String metric, Map<String, String> dimensions) {
+        return new ReportSpec.SeriesSpec(label, namespace, metric, dimensions, null, null, null, null);
+    }
+
+    private static List<MetricDataQuery> queries(int count, int period) {
+        List<MetricDataQuery> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queries.add(query("q" + i, period));
+        }
+        return queries;
+    }
+
+    private static MetricDataQuery query(String id, int period) {
+        return MetricDataQuery.builder()
+                .id(id)
+                .metricStat(MetricStat.builder()
+                        .metric(Metric.builder().namespace("AWS/RDS").metricName("CPUUtilization").build())
+                        .period(period)
+                        .stat("Average")
+                        .build())
+                .build();
+    }
+
+    private static Metric broker(String id) {
+        return metric(dimension("Broker ID", id), dimension("Cluster Name", "cluster"));
+    }
+
+    private static Metric metric(Dimension... dimensions) {
+        return Metric.builder().namespace("AWS/Kafka").metricName("CpuUser").dimensions(dimensions).build();
+    }
+
+    private static Dimension dimension(String name, String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingWindowStoreTest {
+
+    private static final long SETTLE_SECONDS = 120;
+    private static final String TARGET = "default";
+
+    private final RollingWindowStore store = new RollingWindowStore(new SimpleMeterRegistry(),
+            List.of(Duration.ofHours(1), Duration.ofHours(24)), SETTLE_SECONDS, 60_000);
+    private final List<GetMetricStatisticsRequest> remoteCalls = new ArrayList<>();
+    private final Function<GetMetricStatisticsRequest, GetMetricStatisticsResponse> remote = request -> {
+        remoteCalls.add(request);
+        List<Datapoint> datapoints = new ArrayList<>();
+        for (Instant minute = request.startTime(); minute.isBefore(request.endTime()); minute = minute.plus(Duration.ofMinutes(1))) {
+            datapoints.add(Datapoint.builder().timestamp(minute).average((double) minute.getEpochSecond()).build());
+        }
+        return GetMetricStatisticsResponse.builder().datapoints(datapoints).build();
+    };
+
+    @Test
+    void liveRequestIsServedTheRollingReportOfItsLength() {
+        Instant now = Instant.now();
+        Instant publishedEnd = now.minusSeconds(SETTLE_SECONDS).truncatedTo(ChronoUnit.MINUTES);
+        store.publishReport(TARGET, "cluster", "db", Duration.ofHours(1), publishedEnd.minus(Duration.ofHours(1)), publishedEnd, "/reports/1h");
+        store.publishReport(TARGET, "cluster", "db", Duration.ofHours(24), publishedEnd.minus(Duration.ofHours(24)), publishedEnd, "/reports/24h");
+
+        // "Last hour", ending now: the 1h report, labelled with the window it covers
+        assertThat(store.findReport(TARGET, "cluster", "db", now.minus(Duration.ofHours(1)), now))
+                .hasValue(new RollingWindowStore.PublishedReport("/reports/1h", publishedEnd.minus(Duration.ofHours(1)), publishedEnd));
+        assertThat(store.findReport(TARGET, "cluster", "db", now.minus(Duration.ofHours(24)), now))
+                .get().extracting(RollingWindowStore.PublishedReport::reportDir).isEqualTo("/reports/24h");
+        // Exactly the published window
+        assertThat(store.findReport(TARGET, "cluster", "db", publishedEnd.minus(Duration.ofHours(1)), publishedEnd))
+                .get().extracting(RollingWindowStore.PublishedReport::reportDir).isEqualTo("/reports/1h");
+    }
+
+    @Test
+    void otherWindowsAreNotServedARollingReport() {
+        Instant now = Instant.now();
+        Instant publishedEnd = now.minusSeconds(SETTLE_SECONDS).truncatedTo(ChronoUnit.MINUTES);
+        store.publishReport(TARGET, "cluster", "db", Duration.ofHours(1), publishedEnd.minus(Duration.ofHours(1)), publishedEnd, "/reports/1h");
+
+        // Another length
+        assertThat(store.findReport(TARGET, "cluster", "db", now.minus(Duration.ofHours(2)), now)).isEmpty();
+        // An hour ending before the report
+        assertThat(store.findReport(TARGET, "cluster", "db", now.minus(Duration.ofHours(3)), now.minus(Duration.ofHours(2)))).isEmpty();
+        // An hour ending in the future
+        assertThat(store.findReport(TARGET, "cluster", "db", now, now.plus(Duration.ofHours(1)))).isEmpty();
+        // Another target
+        assertThat(store.findReport(TARGET, "cluster", "other-db", now.minus(Duration.ofHours(1)), now)).isEmpty();
+    }
+
+    @Test
+    void staleRollingReportIsNotServed() {
+        Instant now = Instant.now();
+        Instant publishedEnd = now.minus(Duration.ofMinutes(30)).truncatedTo(ChronoUnit.MINUTES);
+        store.publishReport(TARGET, "cluster", "db", Duration.ofHours(1), publishedEnd.minus(Duration.ofHours(1)), publishedEnd, "/reports/1h");
+
+        assertThat(store.findReport(TARGET, "cluster", "db", now.minus(Duration.ofHours(1)), now)).isEmpty();
+    }
+
+    @Test
+    void liveRequestReadsStoredPrefixAndFetchesOnlyTheOpenTail() throws Exception {
+        Instant now = Instant.now();
+        Instant refreshEnd = now.minusSeconds(SETTLE_SECONDS).truncatedTo(ChronoUnit.MINUTES);
+        store.recording(() -> store.getMetricStatistics(TARGET, request(refreshEnd.minus(Duration.ofHours(1)), refreshEnd), remote));
+        Instant coveredUntil = remoteCalls.get(0).endTime();
+        remoteCalls.clear();
+
+        Instant liveStart = now.minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.MINUTES);
+        GetMetricStatisticsResponse response = store.getMetricStatistics(TARGET, request(liveStart, now), remote);
+
+        assertThat(remoteCalls).singleElement().satisfies(call -> {
+            assertThat(call.startTime()).isEqualTo(coveredUntil);
+            assertThat(call.endTime()).isEqualTo(now);
+        });
+        // Every minute up to now, once
+        List<Instant> timestamps = response.datapoints().stream().map(Datapoint::timestamp).toList();
+        for (int i = 0; i < timestamps.size(); i++) {
+            assertThat(timestamps.get(i)).isEqualTo(liveStart.plus(Duration.ofMinutes(i)));
+        }
+        assertThat(timestamps.get(timestamps.size() - 1)).isAfter(now.minus(Duration.ofMinutes(1)));
+
+        // The open tail is not stored: the next live request fetches it again
+        store.getMetricStatistics(TARGET, request(liveStart, now), remote);
+        assertThat(remoteCalls).hasSize(2);
+    }
+
+    @Test
+    void requestStartingBeforeStoredRangeGoesToCloudWatch() throws Exception {
+        Instant end = Instant.now().minusSeconds(SETTLE_SECONDS).truncatedTo(ChronoUnit.MINUTES);
+        store.recording(() -> store.getMetricStatistics(TARGET, request(end.minus(Duration.ofHours(1)), end), remote));
+        remoteCalls.clear();
+
+        GetMetricStatisticsRequest request = request(end.minus(Duration.ofHours(2)), end);
+        store.getMetricStatistics(TARGET, request, remote);
+
+        assertThat(remoteCalls).containsExactly(request);
+    }
+
+    private static GetMetricStatisticsRequest request(Instant start, Instant end) {
+        return GetMetricStatisticsRequest.builder()
+                .namespace("AWS/RDS")
+                .metricName("CPUUtilization")
+                .startTime(start)
+                .endTime(end)
+                .period(60)
+                .statistics(Statistic.AVERAGE)
+                .build();
+    }
+}
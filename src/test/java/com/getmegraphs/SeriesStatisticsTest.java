@@ -0,0 +1,115 @@
+package com.getmegraphs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SeriesStatisticsTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1};
+
+    @Test
+    void quantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        assertQuantilesAccurate(() -> random.nextDouble() * 100);
+        assertQuantilesAccurate(() -> Math.exp(random.nextGaussian() * 3));
+        // Negative values and exact zeros, e.g. deltas of a counter
+        assertQuantilesAccurate(() -> random.nextInt(10) == 0 ? 0 : random.nextGaussian() * 1000);
+    }
+
+    @Test
+    void momentsMatchTwoPassComputation() {
+        Random random = new Random(7);
+        double[] values = random.doubles(10_000, 1e6, 1e6 + 1).toArray();
+        SeriesStatistics statistics = statisticsOf(values);
+
+        double mean = Arrays.stream(values).average().orElseThrow();
+        double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / (values.length - 1);
+        assertThat(statistics.count()).isEqualTo(values.length);
+        assertThat(statistics.mean()).isCloseTo(mean, within(1e-6));
+        assertThat(statistics.standardDeviation()).isCloseTo(Math.sqrt(variance), within(1e-6));
+        assertThat(statistics.min()).isEqualTo(Arrays.stream(values).min().orElseThrow());
+        assertThat(statistics.max()).isEqualTo(Arrays.stream(values).max().orElseThrow());
+    }
+
+    @Test
+    void mergeEqualsAddingAllValues() {
+        Random random = new Random(3);
+        double[] a = random.doubles(5_000, -50, 200).toArray();
+        double[] b = random.doubles(3_000, 0, 1000).toArray();
+        double[] all = new double[a.length + b.length];
+        System.arraycopy(a, 0, all, 0, a.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+
+        SeriesStatistics merged = statisticsOf(a).merge(statisticsOf(b));
+        SeriesStatistics direct = statisticsOf(all);
+
+        assertThat(merged.count()).isEqualTo(direct.count());
+        assertThat(merged.mean()).isCloseTo(direct.mean(), within(1e-9));
+        assertThat(merged.standardDeviation()).isCloseTo(direct.standardDeviation(), within(1e-9));
+        assertThat(merged.min()).isEqualTo(direct.min());
+        assertThat(merged.max()).isEqualTo(direct.max());
+        for (double q : QUANTILES) {
+            assertThat(merged.quantile(q)).as("q=%s", q).isEqualTo(direct.quantile(q));
+        }
+    }
+
+    @Test
+    void mergingEmptyStatisticsChangesNothing() {
+        SeriesStatistics statistics = statisticsOf(new double[]{1, 2, 3});
+
+        statistics.merge(new SeriesStatistics());
+        SeriesStatistics empty = new SeriesStatistics().merge(statisticsOf(new double[]{1, 2, 3}));
+
+        assertThat(statistics.count()).isEqualTo(3);
+        assertThat(statistics.mean()).isEqualTo(2);
+        assertThat(empty.count()).isEqualTo(3);
+        assertThat(empty.mean()).isEqualTo(2);
+        assertThat(empty.min()).isEqualTo(1);
+        assertThat(empty.max()).isEqualTo(3);
+    }
+
+    @Test
+    void emptyAndMissingValues() {
+        SeriesStatistics statistics = new SeriesStatistics();
+        statistics.add(Double.NaN);
+
+        assertThat(statistics.count()).isZero();
+        assertThat(statistics.mean()).isNaN();
+        assertThat(statistics.quantile(0.5)).isNaN();
+        assertThat(statistics.summary()).isEqualTo("no data");
+
+        statistics.add(5);
+        assertThat(statistics.quantile(0.99)).isEqualTo(5);
+        assertThat(statistics.standardDeviation()).isZero();
+    }
+
+    private static void assertQuantilesAccurate(DoubleSupplier distribution) {
+        double[] values = new double[20_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = distribution.getAsDouble();
+        }
+        SeriesStatistics statistics = statisticsOf(values);
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double q : QUANTILES) {
+            double exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            assertThat(statistics.quantile(q)).as("q=%s", q)
+                    .isCloseTo(exact, within(Math.abs(exact) * SeriesStatistics.RELATIVE_ACCURACY + 1e-12));
+        }
+    }
+
+    private static SeriesStatistics statisticsOf(double[] values) {
+        SeriesStatistics statistics = new SeriesStatistics();
+        for (double value : values) {
+            statistics.add(value);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,128 @@
+package com.getmegraphs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int FOLLOWERS = 8;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", meterRegistry);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareTheLeaderResult() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> {
+            calls.incrementAndGet();
+            release.await();
+            return "report";
+        }, release);
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("report");
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("follower")).isEqualTo(FOLLOWERS);
+    }
+
+    @Test
+    void concurrentCallersShareTheLeaderFailure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> {
+            release.await();
+            throw new IOException("CloudWatch unavailable");
+        }, release);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(IOException.class).hasMessage("CloudWatch unavailable");
+        }
+    }
+
+    @Test
+    void finishedCallsAreNotCached() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThat(flight.execute("key", () -> "first " + calls.incrementAndGet())).isEqualTo("first 1");
+        assertThat(flight.execute("key", () -> "second " + calls.incrementAndGet())).isEqualTo("second 2");
+        assertThatThrownBy(() -> flight.execute("key", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(flight.execute("key", () -> "third " + calls.incrementAndGet())).isEqualTo("third 3");
+        assertThat(count("follower")).isZero();
+    }
+
+    @Test
+    void differentKeysDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> blocked = executor.submit(() -> flight.execute("a", () -> {
+            release.await();
+            return "a";
+        }));
+
+        assertThat(flight.execute("b", () -> "b")).isEqualTo("b");
+        assertThat(blocked).isNotDone();
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+    }
+
+    /**
+     * Starts a leader running {@code work} and {@link #FOLLOWERS} callers of the same key,
+     * then counts down {@code release} once all of them are waiting for the leader.
+     */
+    private List<Future<String>> runConcurrently(Callable<String> work, CountDownLatch release)
+            throws InterruptedException {
+        CountDownLatch leading = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.execute("key", () -> {
+            leading.countDown();
+            return work.call();
+        })));
+        assertThat(leading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < FOLLOWERS; i++) {
+            results.add(executor.submit(() -> flight.execute("key", () -> {
+                throw new AssertionError("Follower must not run the work");
+            })));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("follower") < FOLLOWERS && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        return results;
+    }
+
+    private double count(String role) {
+        return meterRegistry.counter("singleflight.calls", "name", "test", "role", role).count();
+    }
+}
@@ -0,0 +1,152 @@
+package com.getmegraphs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorDataChunkerTest {
+
+    private static final Instant START = Instant.parse("2026-10-01T00:00:00Z");
+    private static final int MAX_CHUNK_TOKENS = 4000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final VectorDataChunker chunker = new VectorDataChunker();
+
+    VectorDataChunkerTest() {
+        ReflectionTestUtils.setField(chunker, "charsPerToken", 4.0);
+    }
+
+    @Test
+    void everyDataPointIsKeptExactlyOnce() throws Exception {
+        String vectorData = vectorData();
+
+        List<String> chunks = chunker.split(vectorData, MAX_CHUNK_TOKENS);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        List<String> expected = new ArrayList<>();
+        collectDataPoints(objectMapper.readTree(vectorData), "", expected);
+        List<String> actual = new ArrayList<>();
+        for (String chunk : chunks) {
+            JsonNode root = objectMapper.readTree(chunk);
+            assertThat(root.get("report_metadata")).isEqualTo(objectMapper.readTree(vectorData).get("report_metadata"));
+            collectDataPoints(root, "", actual);
+        }
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void everyChunkStaysWithinTheBudget() throws Exception {
+        for (String chunk : chunker.split(vectorData(), MAX_CHUNK_TOKENS)) {
+            assertThat(chunker.estimateTokens(chunk)).isLessThanOrEqualTo(MAX_CHUNK_TOKENS);
+        }
+    }
+
+    @Test
+    void timeSlicesOfOneMetricGetPartKeys() throws Exception {
+        List<String> chunks = chunker.split(vectorData(), MAX_CHUNK_TOKENS);
+
+        List<String> cpuKeys = new ArrayList<>();
+        List<JsonNode> cpuSlices = new ArrayList<>();
+        for (String chunk : chunks) {
+            JsonNode rds = objectMapper.readTree(chunk).get("rds_metrics");
+            if (rds == null) {
+                continue;
+            }
+            // The context of the metric comes along with every slice
+            assertThat(rds.get("db_instance").asText()).isEqualTo("db");
+            for (Map.Entry<String, JsonNode> field : rds.properties()) {
+                if (field.getKey().startsWith("cpu_utilization")) {
+                    cpuKeys.add(field.getKey());
+                    cpuSlices.add(field.getValue());
+                }
+            }
+        }
+
+        assertThat(cpuKeys).hasSizeGreaterThan(1);
+        for (int i = 0; i < cpuKeys.size(); i++) {
+            assertThat(cpuKeys.get(i)).isEqualTo("cpu_utilization_part_" + (i + 1));
+        }
+        assertThat(cpuSlices).allSatisfy(slice -> {
+            assertThat(slice.get("unit").asText()).isEqualTo("percent");
+            assertThat(slice.get("time_slice").get("start")).isEqualTo(slice.get("data_points").get(0).get("timestamp"));
+            assertThat(slice.get("time_slice").get("end"))
+                    .isEqualTo(slice.get("data_points").get(slice.get("data_points").size() - 1).get("timestamp"));
+        });
+        // Metrics that fit are not renamed
+        assertThat(chunks).anyMatch(chunk -> chunk.contains("\"freeable_memory\":{"));
+    }
+
+    @Test
+    void smallDataIsOneChunk() throws Exception {
+        String vectorData = objectMapper.writeValueAsString(objectMapper.readTree(
+                "{\"report_metadata\":{\"period_seconds\":60},\"rds_metrics\":{\"db_instance\":\"db\","
+                        + "\"cpu_utilization\":{\"unit\":\"percent\",\"data_points\":[{\"timestamp\":\"t\",\"average\":1.0}]}}}"));
+
+        assertThat(chunker.split(vectorData, MAX_CHUNK_TOKENS)).containsExactly(vectorData);
+    }
+
+    /**
+     * A day of minutes for RDS, more than one chunk holds, and a few small Kafka series.
+     */
+    private String vectorData() throws Exception {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode metadata = root.putObject("report_metadata");
+        metadata.put("generated_at", START.toString());
+        metadata.put("period_seconds", 60);
+
+        ObjectNode rds = root.putObject("rds_metrics");
+        rds.put("db_instance", "db");
+        addMetric(rds, "cpu_utilization", "percent", 1440);
+        addMetric(rds, "database_connections", "connections", 60);
+        addMetric(rds, "freeable_memory", "bytes", 60);
+
+        ObjectNode kafka = root.putObject("kafka_metrics");
+        kafka.put("cluster_name", "cluster");
+        ObjectNode consumerGroups = kafka.putObject("consumer_groups");
+        for (String name : List.of("worker", "notify")) {
+            ObjectNode group = consumerGroups.putObject(name);
+            group.put("consumer_group", name + "-group");
+            group.put("topic", name + "-topic");
+            addMetric(group, "sum_offset_lag", "messages", 120);
+            addMetric(group, "max_offset_lag", "messages", 120);
+        }
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private static void addMetric(ObjectNode parent, String name, String unit, int minutes) {
+        ObjectNode metric = parent.putObject(name);
+        metric.put("unit", unit);
+        ArrayNode dataPoints = metric.putArray("data_points");
+        for (int minute = 0; minute < minutes; minute++) {
+            dataPoints.addObject()
+                    .put("timestamp", START.plus(Duration.ofMinutes(minute)).toString())
+                    .put("average", minute * 1.5);
+        }
+    }
+
+    /**
+     * Every data point as path (without part suffixes) plus point.
+     */
+    private static void collectDataPoints(JsonNode node, String path, List<String> points) {
+        if (node.has("data_points")) {
+            node.get("data_points").forEach(point -> points.add(path + " " + point));
+            return;
+        }
+        for (Map.Entry<String, JsonNode> field : node.properties()) {
+            if (field.getValue().isObject() && !"report_metadata".equals(field.getKey())) {
+                collectDataPoints(field.getValue(), path + "/" + field.getKey().replaceAll("_part_\\d+$", ""), points);
+            }
+        }
+    }
+}